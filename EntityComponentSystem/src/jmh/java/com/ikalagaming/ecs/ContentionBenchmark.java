@@ -0,0 +1,95 @@
+package com.ikalagaming.ecs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmarks for several threads using the ECS at once. The read only group shows how well shared
+ * reads scale, and the mixed group shows how much a thread making structural changes slows the
+ * readers down.
+ *
+ * @author Ches Burks
+ */
+@State(Scope.Group)
+public class ContentionBenchmark {
+    /** The number of entities in the world. */
+    private static final int ENTITY_COUNT = 10_000;
+
+    /** Every entity in the world. */
+    private EntityHandle[] entities;
+
+    /** Fill the world with entities. */
+    @Setup(Level.Trial)
+    public void setup() {
+        ECSManager.clear();
+        this.entities = new EntityHandle[ENTITY_COUNT];
+        for (int i = 0; i < ENTITY_COUNT; ++i) {
+            EntityHandle entity = ECSManager.createEntity();
+            ECSManager.addComponent(entity, new Position());
+            this.entities[i] = entity;
+        }
+    }
+
+    /** Clean up after the benchmark. */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ECSManager.clear();
+    }
+
+    /**
+     * Pick a random entity.
+     *
+     * @return An entity.
+     */
+    private EntityHandle randomEntity() {
+        return this.entities[ThreadLocalRandom.current().nextInt(this.entities.length)];
+    }
+
+    /**
+     * Look up components while other threads are also only reading.
+     *
+     * @return The component.
+     */
+    @Benchmark
+    @Group("readOnly")
+    @GroupThreads(4)
+    public Optional<Position> readOnlyReader() {
+        return ECSManager.getComponent(this.randomEntity(), Position.class);
+    }
+
+    /**
+     * Look up components while another thread is adding and removing them.
+     *
+     * @return The component.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public Optional<Position> mixedReader() {
+        return ECSManager.getComponent(this.randomEntity(), Position.class);
+    }
+
+    /**
+     * Add and remove components while other threads are reading.
+     *
+     * @return The entity that was changed.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public EntityHandle mixedWriter() {
+        EntityHandle entity = this.randomEntity();
+        ECSManager.addComponent(entity, new Velocity());
+        ECSManager.removeComponent(entity, Velocity.class);
+        return entity;
+    }
+}
@@ -0,0 +1,111 @@
+package com.ikalagaming.ecs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Optional;
+
+/**
+ * Benchmarks for creating and destroying entities, moving components on and off of them, and
+ * looking up single components, against a world that already has some number of entities.
+ *
+ * @author Ches Burks
+ */
+@State(Scope.Thread)
+public class EntityBenchmark {
+    /** The number of entities that exist before each benchmark runs. */
+    @Param({"1000", "10000", "100000"})
+    public int entityCount;
+
+    /** Every entity in the world. */
+    private EntityHandle[] entities;
+
+    /** Used to pick which entity each invocation works on. */
+    private int next;
+
+    /** Fill the world with entities that have a mix of components. */
+    @Setup(Level.Trial)
+    public void setup() {
+        ECSManager.clear();
+        this.entities = new EntityHandle[this.entityCount];
+        for (int i = 0; i < this.entityCount; ++i) {
+            EntityHandle entity = ECSManager.createEntity();
+            ECSManager.addComponent(entity, new Position());
+            if (i % 2 == 0) {
+                ECSManager.addComponent(entity, new Velocity());
+            }
+            this.entities[i] = entity;
+        }
+    }
+
+    /** Clean up after the benchmark. */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ECSManager.clear();
+    }
+
+    /**
+     * Pick the next entity to work on, cycling through all of them.
+     *
+     * @return An entity.
+     */
+    private EntityHandle nextEntity() {
+        EntityHandle entity = this.entities[this.next];
+        this.next = (this.next + 1) % this.entities.length;
+        return entity;
+    }
+
+    /**
+     * Add a component and then remove it again, moving the entity to another table and back.
+     *
+     * @return The entity, so that the work is not optimized away.
+     */
+    @Benchmark
+    public EntityHandle addRemoveComponent() {
+        EntityHandle entity = this.nextEntity();
+        ECSManager.addComponent(entity, new Health());
+        ECSManager.removeComponent(entity, Health.class);
+        return entity;
+    }
+
+    /**
+     * Create an entity with a couple of components, and then destroy it.
+     *
+     * @return The entity, so that the work is not optimized away.
+     */
+    @Benchmark
+    public EntityHandle createDestroy() {
+        EntityHandle entity = ECSManager.createEntity();
+        ECSManager.addComponent(entity, new Position());
+        ECSManager.addComponent(entity, new Velocity());
+        ECSManager.destroyEntity(entity);
+        return entity;
+    }
+
+    /**
+     * Look up a single component on an entity.
+     *
+     * @param blackhole Consumes the result.
+     */
+    @Benchmark
+    public void getComponent(Blackhole blackhole) {
+        Optional<Velocity> velocity = ECSManager.getComponent(this.nextEntity(), Velocity.class);
+        blackhole.consume(velocity);
+    }
+
+    /**
+     * Check if an entity has a component.
+     *
+     * @return Whether the entity has the component.
+     */
+    @Benchmark
+    public boolean containsComponent() {
+        return ECSManager.containsComponent(this.nextEntity(), Velocity.class);
+    }
+}
@@ -0,0 +1,11 @@
+package com.ikalagaming.ecs;
+
+/**
+ * A component used for benchmarking.
+ *
+ * @author Ches Burks
+ */
+public class Health extends Component<Health> {
+    /** Some state, so that iterating has something to touch. */
+    public int value;
+}
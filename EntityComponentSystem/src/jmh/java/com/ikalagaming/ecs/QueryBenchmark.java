@@ -0,0 +1,111 @@
+package com.ikalagaming.ecs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmarks for iterating over entities that have several types of components. A quarter of the
+ * entities match the query, spread across a few tables, so that filtering matters.
+ *
+ * @author Ches Burks
+ */
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+    /** The number of entities in the world. */
+    @Param({"1000", "10000", "100000"})
+    public int entityCount;
+
+    /** Entities with both a position and velocity, but no health. */
+    private Query moving;
+
+    /** Fill the world with entities that have a mix of components. */
+    @Setup(Level.Trial)
+    public void setup() {
+        ECSManager.clear();
+        for (int i = 0; i < this.entityCount; ++i) {
+            EntityHandle entity = ECSManager.createEntity();
+            ECSManager.addComponent(entity, new Position());
+            if (i % 2 == 0) {
+                ECSManager.addComponent(entity, new Velocity());
+            }
+            if (i % 4 == 0) {
+                ECSManager.addComponent(entity, new Health());
+            }
+        }
+        this.moving =
+                Query.builder().with(Position.class, Velocity.class).without(Health.class).build();
+    }
+
+    /** Clean up after the benchmark. */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ECSManager.clear();
+    }
+
+    /**
+     * Build a list of every entity with a position and velocity through the list API, which scans
+     * the tables that store both types. Unlike the query benchmarks this includes entities that
+     * have health, and only collects handles rather than touching any components, so it measures
+     * the cost of the list API rather than comparing equal work.
+     *
+     * @return The matching entities.
+     */
+    @Benchmark
+    public List<EntityHandle> allEntitiesWithComponent() {
+        return ECSManager.getAllEntitiesWithComponent(Position.class, Velocity.class);
+    }
+
+    /**
+     * Walk a single component column directly.
+     *
+     * @return The sum of the component values.
+     */
+    @Benchmark
+    public long forEachComponent() {
+        long[] sum = new long[1];
+        ECSManager.forEach(Velocity.class, (entity, velocity) -> sum[0] += velocity.value);
+        return sum[0];
+    }
+
+    /**
+     * Iterate over a cached query, updating one component from another.
+     *
+     * @return The sum of the updated values.
+     */
+    @Benchmark
+    public long queryForEach() {
+        long[] sum = new long[1];
+        this.moving.forEach(
+                row -> {
+                    Position position = row.get(Position.class);
+                    position.value += row.get(Velocity.class).value + 1;
+                    sum[0] += position.value;
+                });
+        return sum[0];
+    }
+
+    /**
+     * Iterate over a cached query in parallel chunks.
+     *
+     * @return The sum of the updated values.
+     */
+    @Benchmark
+    public long queryForEachParallel() {
+        LongAdder sum = new LongAdder();
+        this.moving.forEachParallel(
+                row -> {
+                    Position position = row.get(Position.class);
+                    position.value += row.get(Velocity.class).value + 1;
+                    sum.add(position.value);
+                });
+        return sum.sum();
+    }
+}
@@ -0,0 +1,425 @@
+package com.ikalagaming.ecs;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * A table of all the entities that have exactly the same set of component types. Each component
+ * type gets its own densely packed column and each entity is one row across all the columns, so
+ * iterating over a type of component walks a contiguous array instead of scattered map entries.
+ *
+ * <p>Rows are kept packed by moving the last row into any gap left by a removal, so a row index is
+ * only valid until the next structural change to the table.
+ *
+ * <p>Columns for component types that have change tracking turned on also store the tick each
+ * component was added and last changed, in arrays parallel to the components.
+ *
+ * @author Ches Burks
+ */
+class Archetype {
+    /** The number of rows we allocate space for when a table is created. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * A unique number for the table, assigned in creation order.
+     *
+     * @return The table ID.
+     */
+    @Getter private final int id;
+
+    /**
+     * The set of component types stored in this table. This never changes after creation, and is
+     * shared by every entity in the table.
+     *
+     * @return The component types that every entity in this table has.
+     */
+    @Getter private final ComponentSignature signature;
+
+    /** The type of component stored in each column, in order of type ID. */
+    private final ComponentType[] columnTypes;
+
+    /** Maps component type IDs to the column they are stored in, or -1 if they are not stored. */
+    private final int[] columnIndices;
+
+    /** Column-major component storage, indexed as {@code columns[column][row]}. */
+    private Component<?>[][] columns;
+
+    /** The tick each component was added, or a null column if the type is not tracked. */
+    private long[][] addedTicks;
+
+    /** The tick each component last changed, or a null column if the type is not tracked. */
+    private long[][] changedTicks;
+
+    /** The slot index of the entity stored in each row. */
+    private int[] entities;
+
+    /**
+     * The number of rows that are currently in use.
+     *
+     * @return The number of entities in the table.
+     */
+    @Getter private int size;
+
+    /** Cached links to the table that has all our types plus one more, indexed by type ID. */
+    private Archetype[] addEdges = new Archetype[0];
+
+    /** Cached links to the table that has all our types except one, indexed by type ID. */
+    private Archetype[] removeEdges = new Archetype[0];
+
+    /**
+     * Create a new, empty table for the given set of component types.
+     *
+     * @param id The unique ID for the table.
+     * @param signature The component types each entity in the table will have.
+     */
+    Archetype(int id, @NonNull ComponentSignature signature) {
+        this.id = id;
+        this.signature = signature;
+        this.columnTypes = new ComponentType[signature.cardinality()];
+        this.columnIndices = new int[signature.maxId() + 1];
+        Arrays.fill(this.columnIndices, -1);
+        int column = 0;
+        for (int type = signature.nextId(0); type >= 0; type = signature.nextId(type + 1)) {
+            this.columnTypes[column] = ComponentTypeRegistry.get(type);
+            this.columnIndices[type] = column;
+            ++column;
+        }
+        this.columns = new Component<?>[this.columnTypes.length][INITIAL_CAPACITY];
+        this.addedTicks = new long[this.columnTypes.length][];
+        this.changedTicks = new long[this.columnTypes.length][];
+        for (int i = 0; i < this.columnTypes.length; ++i) {
+            if (this.columnTypes[i].isTracked()) {
+                this.addedTicks[i] = new long[INITIAL_CAPACITY];
+                this.changedTicks[i] = new long[INITIAL_CAPACITY];
+            }
+        }
+        this.entities = new int[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Append a new row for the entity, with all columns empty. The caller is expected to fill in
+     * every column before anything reads the row.
+     *
+     * @param entityIndex The slot index of the entity that the row belongs to.
+     * @return The index of the new row.
+     */
+    int addRow(int entityIndex) {
+        if (this.size == this.entities.length) {
+            this.grow();
+        }
+        this.entities[this.size] = entityIndex;
+        return this.size++;
+    }
+
+    /**
+     * Append a batch of rows at once, copying in every column.
+     *
+     * @param entityIndices The slot index of the entity for each new row.
+     * @param data The components for each column of this table, indexed as {@code
+     *     data[column][row]}.
+     * @param count The number of rows to append.
+     * @param tick The current tick, which the components are marked as added on.
+     * @return The index of the first new row.
+     */
+    int addRows(int[] entityIndices, Component<?>[][] data, int count, long tick) {
+        final int first = this.size;
+        while (this.entities.length < first + count) {
+            this.grow();
+        }
+        System.arraycopy(entityIndices, 0, this.entities, first, count);
+        for (int column = 0; column < this.columns.length; ++column) {
+            System.arraycopy(data[column], 0, this.columns[column], first, count);
+            if (this.addedTicks[column] != null) {
+                Arrays.fill(this.addedTicks[column], first, first + count, tick);
+                Arrays.fill(this.changedTicks[column], first, first + count, tick);
+            }
+        }
+        this.size += count;
+        return first;
+    }
+
+    /** Remove every row from the table, releasing references to the components. */
+    void clear() {
+        for (Component<?>[] column : this.columns) {
+            Arrays.fill(column, 0, this.size, null);
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Fetch a component out of the table.
+     *
+     * @param column The column index.
+     * @param row The row index.
+     * @return The component stored at that location.
+     */
+    Component<?> get(int column, int row) {
+        return this.columns[column][row];
+    }
+
+    /**
+     * Fetch the cached table that has one more type than this one.
+     *
+     * @param typeID The ID of the type being added.
+     * @return The destination table, or null if it has not been looked up yet.
+     */
+    Archetype getAddEdge(int typeID) {
+        return typeID < this.addEdges.length ? this.addEdges[typeID] : null;
+    }
+
+    /**
+     * Returns the backing array for a column. Only the first {@link #getSize()} elements are
+     * valid, and the array may be replaced by any structural change.
+     *
+     * @param column The column index.
+     * @return The components stored in the column.
+     */
+    Component<?>[] getColumn(int column) {
+        return this.columns[column];
+    }
+
+    /**
+     * The number of columns in the table.
+     *
+     * @return How many component types are stored in the table.
+     */
+    int getColumnCount() {
+        return this.columnTypes.length;
+    }
+
+    /**
+     * Look up which column a type of component is stored in.
+     *
+     * @param typeID The ID of the component type.
+     * @return The column index, or -1 if this table does not store that type.
+     */
+    int getColumnIndex(int typeID) {
+        return typeID < this.columnIndices.length ? this.columnIndices[typeID] : -1;
+    }
+
+    /**
+     * Returns the type of component stored in a column.
+     *
+     * @param column The column index.
+     * @return The component type for that column.
+     */
+    ComponentType getColumnType(int column) {
+        return this.columnTypes[column];
+    }
+
+    /**
+     * Returns the backing array of entity slot indices. Only the first {@link #getSize()} elements
+     * are valid, and the array may be replaced by any structural change.
+     *
+     * @return The entity slot index for each row.
+     */
+    int[] getEntities() {
+        return this.entities;
+    }
+
+    /**
+     * Fetch the cached table that has one less type than this one.
+     *
+     * @param typeID The ID of the type being removed.
+     * @return The destination table, or null if it has not been looked up yet.
+     */
+    Archetype getRemoveEdge(int typeID) {
+        return typeID < this.removeEdges.length ? this.removeEdges[typeID] : null;
+    }
+
+    /** Double the capacity of every column. */
+    private void grow() {
+        final int newCapacity = this.entities.length * 2;
+        this.entities = Arrays.copyOf(this.entities, newCapacity);
+        for (int i = 0; i < this.columns.length; ++i) {
+            this.columns[i] = Arrays.copyOf(this.columns[i], newCapacity);
+            if (this.addedTicks[i] != null) {
+                this.addedTicks[i] = Arrays.copyOf(this.addedTicks[i], newCapacity);
+                this.changedTicks[i] = Arrays.copyOf(this.changedTicks[i], newCapacity);
+            }
+        }
+    }
+
+    /**
+     * Check if a component was added after a tick. Components of types that are not tracked are
+     * always considered new, so that anything relying on tracking still sees them.
+     *
+     * @param column The column index.
+     * @param row The row index.
+     * @param tick The last tick that has already been processed.
+     * @return True if the component was added after that tick, or is not tracked.
+     */
+    boolean isAddedSince(int column, int row, long tick) {
+        final long[] ticks = this.addedTicks[column];
+        return ticks == null || ticks[row] > tick;
+    }
+
+    /**
+     * Check if a component was added or changed after a tick. Components of types that are not
+     * tracked are always considered changed, so that anything relying on tracking still sees them.
+     *
+     * @param column The column index.
+     * @param row The row index.
+     * @param tick The last tick that has already been processed.
+     * @return True if the component changed after that tick, or is not tracked.
+     */
+    boolean isChangedSince(int column, int row, long tick) {
+        final long[] ticks = this.changedTicks[column];
+        return ticks == null || ticks[row] > tick;
+    }
+
+    /**
+     * Check if a column has change tracking turned on.
+     *
+     * @param column The column index.
+     * @return True if ticks are recorded for the column.
+     */
+    boolean isTracked(int column) {
+        return this.changedTicks[column] != null;
+    }
+
+    /**
+     * Record that a component was just added. This counts as a change as well.
+     *
+     * @param column The column index.
+     * @param row The row index.
+     * @param tick The current tick.
+     */
+    void markAdded(int column, int row, long tick) {
+        if (this.addedTicks[column] != null) {
+            this.addedTicks[column][row] = tick;
+            this.changedTicks[column][row] = tick;
+        }
+    }
+
+    /**
+     * Record that a component was just changed. This may be called from several threads at once,
+     * as long as they are marking different rows.
+     *
+     * @param column The column index.
+     * @param row The row index.
+     * @param tick The current tick.
+     */
+    void markChanged(int column, int row, long tick) {
+        if (this.changedTicks[column] != null) {
+            this.changedTicks[column][row] = tick;
+        }
+    }
+
+    /**
+     * Move a row into another table, copying over every component the two tables have in common.
+     * Columns that only exist in the destination are left empty for the caller to fill in.
+     *
+     * @param row The row to move out of this table.
+     * @param destination The table to move the row into.
+     * @return The index of the row in the destination table.
+     */
+    int moveRow(int row, @NonNull Archetype destination) {
+        int newRow = destination.addRow(this.entities[row]);
+        for (int column = 0; column < this.columnTypes.length; ++column) {
+            int destinationColumn = destination.getColumnIndex(this.columnTypes[column].getId());
+            if (destinationColumn >= 0) {
+                destination.set(destinationColumn, newRow, this.columns[column][row]);
+                if (this.addedTicks[column] != null
+                        && destination.addedTicks[destinationColumn] != null) {
+                    destination.addedTicks[destinationColumn][newRow] =
+                            this.addedTicks[column][row];
+                    destination.changedTicks[destinationColumn][newRow] =
+                            this.changedTicks[column][row];
+                }
+            }
+        }
+        return newRow;
+    }
+
+    /**
+     * Remove a row by moving the last row into its place.
+     *
+     * @param row The row to remove.
+     * @return The slot index of the entity that was moved into the removed row, or -1 if the
+     *     removed row was the last one and nothing had to move.
+     */
+    int removeRow(int row) {
+        final int last = this.size - 1;
+        int moved = -1;
+        if (row != last) {
+            for (int column = 0; column < this.columns.length; ++column) {
+                this.columns[column][row] = this.columns[column][last];
+                if (this.addedTicks[column] != null) {
+                    this.addedTicks[column][row] = this.addedTicks[column][last];
+                    this.changedTicks[column][row] = this.changedTicks[column][last];
+                }
+            }
+            this.entities[row] = this.entities[last];
+            moved = this.entities[row];
+        }
+        for (Component<?>[] column : this.columns) {
+            column[last] = null;
+        }
+        this.size = last;
+        return moved;
+    }
+
+    /**
+     * Store a component in the table.
+     *
+     * @param column The column index.
+     * @param row The row index.
+     * @param component The component to store.
+     */
+    void set(int column, int row, Component<?> component) {
+        this.columns[column][row] = component;
+    }
+
+    /**
+     * Cache the table that has one more type than this one.
+     *
+     * @param typeID The ID of the type being added.
+     * @param destination The table that has all of our types plus the new one.
+     */
+    void setAddEdge(int typeID, @NonNull Archetype destination) {
+        if (typeID >= this.addEdges.length) {
+            this.addEdges = Arrays.copyOf(this.addEdges, typeID + 1);
+        }
+        this.addEdges[typeID] = destination;
+    }
+
+    /**
+     * Turn change tracking on or off for a column. When it is turned on, every existing component
+     * is treated as if it was added on the given tick.
+     *
+     * @param column The column index.
+     * @param tracked Whether ticks should be recorded for the column.
+     * @param tick The current tick.
+     */
+    void setTracked(int column, boolean tracked, long tick) {
+        if (tracked == this.isTracked(column)) {
+            return;
+        }
+        if (tracked) {
+            this.addedTicks[column] = new long[this.entities.length];
+            this.changedTicks[column] = new long[this.entities.length];
+            Arrays.fill(this.addedTicks[column], 0, this.size, tick);
+            Arrays.fill(this.changedTicks[column], 0, this.size, tick);
+        } else {
+            this.addedTicks[column] = null;
+            this.changedTicks[column] = null;
+        }
+    }
+
+    /**
+     * Cache the table that has one less type than this one.
+     *
+     * @param typeID The ID of the type being removed.
+     * @param destination The table that has all of our types except the removed one.
+     */
+    void setRemoveEdge(int typeID, @NonNull Archetype destination) {
+        if (typeID >= this.removeEdges.length) {
+            this.removeEdges = Arrays.copyOf(this.removeEdges, typeID + 1);
+        }
+        this.removeEdges[typeID] = destination;
+    }
+}
@@ -0,0 +1,207 @@
+package com.ikalagaming.ecs;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records structural changes (creating and destroying entities, adding and removing components) so
+ * that they can be applied later, all at once. This lets systems make changes while they are
+ * iterating over queries, and while other systems are running in parallel.
+ *
+ * <p>Each thread records into its own list, so recording from many threads at once does not
+ * contend on anything. When the buffer is {@link #apply() applied}, all of the changes for an
+ * entity are merged so that it moves straight to its final table, and entities moving into the
+ * same table are handled together. Everything is applied while holding the ECS write lock once.
+ *
+ * <p>Changes recorded by one thread are applied in the order they were recorded. There is no
+ * ordering between threads, except that destroying an entity always wins over changes to its
+ * components.
+ *
+ * @author Ches Burks
+ */
+public class CommandBuffer {
+
+    /** The kinds of commands that can be recorded. */
+    enum CommandType {
+        /** Add or replace a component on an existing entity. */
+        ADD,
+        /** Create a new entity with some components. */
+        CREATE,
+        /** Destroy an existing entity. */
+        DESTROY,
+        /** Remove a component from an existing entity. */
+        REMOVE
+    }
+
+    /**
+     * A single recorded change.
+     *
+     * @param type The kind of change.
+     * @param entity The entity being changed, null for creation.
+     * @param component The component being added, if any.
+     * @param componentType The type of component being removed, if any.
+     * @param components The components for a newly created entity, if any.
+     */
+    record Command(
+            CommandType type,
+            EntityHandle entity,
+            Component<?> component,
+            ComponentType componentType,
+            Component<?>[] components) {}
+
+    /** All the changes that need to be made to a single entity, merged together. */
+    static final class EntityChanges {
+        /** The entity being changed, or null if it is being created. */
+        final EntityHandle entity;
+
+        /**
+         * The final component for each type that is changed, with null meaning the type is
+         * removed.
+         */
+        final Map<ComponentType, Component<?>> components = new LinkedHashMap<>();
+
+        /** Whether the entity is being destroyed. */
+        boolean destroy;
+
+        /** The table the entity ends up in, filled in by the {@link ECSManager}. */
+        Archetype destination;
+
+        /**
+         * Create a new, empty set of changes.
+         *
+         * @param entity The entity being changed, or null if it is being created.
+         */
+        EntityChanges(EntityHandle entity) {
+            this.entity = entity;
+        }
+    }
+
+    /** Every per-thread list of commands that has been handed out. */
+    private final Queue<List<Command>> threadCommands = new ConcurrentLinkedQueue<>();
+
+    /** The list of commands for the current thread. */
+    private final ThreadLocal<List<Command>> localCommands =
+            ThreadLocal.withInitial(
+                    () -> {
+                        List<Command> commands = new ArrayList<>();
+                        this.threadCommands.add(commands);
+                        return commands;
+                    });
+
+    /**
+     * Record adding a component to an entity, replacing any existing component of the same type.
+     *
+     * @param entity The entity to add the component to.
+     * @param component The component to add.
+     */
+    public void addComponent(@NonNull EntityHandle entity, @NonNull Component<?> component) {
+        this.localCommands.get().add(new Command(CommandType.ADD, entity, component, null, null));
+    }
+
+    /**
+     * Apply all of the recorded changes, and then empty the buffer. This must only be called when
+     * no other thread is recording into the buffer, such as between ticks.
+     */
+    public void apply() {
+        Map<EntityHandle, EntityChanges> changes = new LinkedHashMap<>();
+        List<EntityChanges> creations = new ArrayList<>();
+
+        for (List<Command> commands : this.threadCommands) {
+            for (Command command : commands) {
+                switch (command.type()) {
+                    case ADD ->
+                            changes.computeIfAbsent(command.entity(), EntityChanges::new)
+                                    .components
+                                    .put(
+                                            ComponentTypeRegistry.of(command.component()),
+                                            command.component());
+                    case CREATE -> {
+                        EntityChanges creation = new EntityChanges(null);
+                        for (Component<?> component : command.components()) {
+                            creation.components.put(ComponentTypeRegistry.of(component), component);
+                        }
+                        creations.add(creation);
+                    }
+                    case DESTROY ->
+                            changes.computeIfAbsent(command.entity(), EntityChanges::new).destroy =
+                                    true;
+                    case REMOVE ->
+                            changes.computeIfAbsent(command.entity(), EntityChanges::new)
+                                    .components
+                                    .put(command.componentType(), null);
+                }
+            }
+            commands.clear();
+        }
+
+        if (changes.isEmpty() && creations.isEmpty()) {
+            return;
+        }
+        ECSManager.applyChanges(changes.values(), creations);
+    }
+
+    /**
+     * Record creating a new entity with a set of components.
+     *
+     * @param components The components the new entity will have.
+     */
+    public void createEntity(final @NonNull Component<?>... components) {
+        for (Component<?> component : components) {
+            if (component == null) {
+                throw new NullPointerException("null parameter passed in");
+            }
+        }
+        this.localCommands
+                .get()
+                .add(new Command(CommandType.CREATE, null, null, null, components.clone()));
+    }
+
+    /**
+     * Record destroying an entity.
+     *
+     * @param entity The entity to destroy.
+     */
+    public void destroyEntity(@NonNull EntityHandle entity) {
+        this.localCommands.get().add(new Command(CommandType.DESTROY, entity, null, null, null));
+    }
+
+    /**
+     * Check if there are any recorded changes. This must only be called when no other thread is
+     * recording into the buffer.
+     *
+     * @return True if there are no changes waiting to be applied.
+     */
+    public boolean isEmpty() {
+        for (List<Command> commands : this.threadCommands) {
+            if (!commands.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record removing a component from an entity.
+     *
+     * @param entity The entity to remove the component from.
+     * @param type The type of component to remove.
+     */
+    public void removeComponent(
+            @NonNull EntityHandle entity, @NonNull Class<? extends Component<?>> type) {
+        this.localCommands
+                .get()
+                .add(
+                        new Command(
+                                CommandType.REMOVE,
+                                entity,
+                                null,
+                                ComponentTypeRegistry.get(type),
+                                null));
+    }
+}
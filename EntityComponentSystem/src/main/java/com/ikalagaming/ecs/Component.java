@@ -2,10 +2,10 @@ package com.ikalagaming.ecs;
 
 import lombok.Getter;
 
-import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A component that stores state information.
@@ -16,12 +16,22 @@ import java.util.UUID;
 public abstract class Component<T extends Component<?>>
         implements Comparable<Component<Component<?>>> {
 
+    /** Used to hand out sequence numbers to components as they are created. */
+    private static final AtomicLong NEXT_SEQUENCE_NUMBER = new AtomicLong();
+
     /**
-     * The unique ID for a component instance.
+     * The order that components were created in, cheaper to generate and compare than a UUID.
+     */
+    private final long sequenceNumber = NEXT_SEQUENCE_NUMBER.getAndIncrement();
+
+    /**
+     * The unique ID for a component instance. This is only generated the first time it is
+     * requested, since most components never need one.
      *
      * @return The unique ID for the component instance.
      */
-    @Getter private final UUID uniqueID = UUID.randomUUID();
+    @Getter(lazy = true)
+    private final UUID uniqueID = UUID.randomUUID();
 
     /**
      * Reference counting in the case of shared components. Tracks the number of entities that
@@ -30,11 +40,11 @@ public abstract class Component<T extends Component<?>>
     int referenceCount = 0;
 
     /**
-     * The IDs of the Entities that this component belongs to.
+     * The Entities that this component belongs to.
      *
-     * @return The unique IDs of the entities that contains this component.
+     * @return The handles of the entities that contains this component.
      */
-    @Getter private List<UUID> parents = new ArrayList<>();
+    @Getter private List<EntityHandle> parents = new ArrayList<>();
 
     /**
      * Casts this component to its actual class.
@@ -49,7 +59,7 @@ public abstract class Component<T extends Component<?>>
 
     @Override
     public int compareTo(Component<Component<?>> o) {
-        return this.getUniqueID().compareTo(o.getUniqueID());
+        return Long.compare(this.sequenceNumber, o.sequenceNumber);
     }
 
     @Override
@@ -57,7 +67,7 @@ public abstract class Component<T extends Component<?>>
         if (!(obj instanceof Component<?>)) {
             return false;
         }
-        return this.getUniqueID().equals(((Component<?>) obj).getUniqueID());
+        return this.sequenceNumber == ((Component<?>) obj).sequenceNumber;
     }
 
     /**
@@ -68,14 +78,21 @@ public abstract class Component<T extends Component<?>>
     public Class<T> getOriginalClass() {
         @SuppressWarnings("unchecked")
         Class<T> persistentClass =
-                (Class<T>)
-                        ((ParameterizedType) this.getClass().getGenericSuperclass())
-                                .getActualTypeArguments()[0];
+                (Class<T>) ComponentTypeRegistry.originalClass(this.getClass());
         return persistentClass;
     }
 
+    /**
+     * Look up the registered type information for this component.
+     *
+     * @return The type of this component.
+     */
+    public ComponentType getComponentType() {
+        return ComponentTypeRegistry.of(this);
+    }
+
     @Override
     public int hashCode() {
-        return this.getUniqueID().hashCode();
+        return Long.hashCode(this.sequenceNumber);
     }
 }
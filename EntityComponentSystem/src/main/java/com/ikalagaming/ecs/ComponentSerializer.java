@@ -0,0 +1,33 @@
+package com.ikalagaming.ecs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts one type of component to and from a binary form, so that it can be included in a
+ * snapshot. Register one for each type that should be saved with {@link
+ * ECSSnapshot#registerSerializer(Class, ComponentSerializer)}.
+ *
+ * @author Ches Burks
+ * @param <T> The type of component.
+ */
+public interface ComponentSerializer<T extends Component<?>> {
+    /**
+     * Read a component that was written by {@link #write(Component, DataOutput)}.
+     *
+     * @param input The input to read from.
+     * @return The component.
+     * @throws IOException If there is a problem reading the input.
+     */
+    T read(DataInput input) throws IOException;
+
+    /**
+     * Write out a component.
+     *
+     * @param component The component to write.
+     * @param output The output to write to.
+     * @throws IOException If there is a problem writing the output.
+     */
+    void write(T component, DataOutput output) throws IOException;
+}
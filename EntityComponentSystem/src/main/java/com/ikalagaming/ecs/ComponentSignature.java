@@ -0,0 +1,218 @@
+package com.ikalagaming.ecs;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of component type IDs, stored as a bitset. Every entity in an {@link Archetype}
+ * shares the table's signature, so checking if an entity has a type of component, or if it matches
+ * a query, is just a few bit operations.
+ *
+ * @author Ches Burks
+ */
+final class ComponentSignature {
+    /** The signature with no types in it. */
+    static final ComponentSignature EMPTY = new ComponentSignature(new long[0]);
+
+    /** The bits, with no trailing words that are zero so that equal sets have equal arrays. */
+    private final long[] words;
+
+    /** Cached hash code, since signatures are used as map keys. */
+    private final int hash;
+
+    /**
+     * Create a signature from words that have already been trimmed.
+     *
+     * @param words The bitset words.
+     */
+    private ComponentSignature(long[] words) {
+        this.words = words;
+        this.hash = Arrays.hashCode(words);
+    }
+
+    /**
+     * Create a signature containing the given type IDs.
+     *
+     * @param ids The type IDs.
+     * @return The signature.
+     */
+    static ComponentSignature of(int... ids) {
+        ComponentSignature result = EMPTY;
+        for (int id : ids) {
+            result = result.with(id);
+        }
+        return result;
+    }
+
+    /**
+     * Remove trailing zero words from an array of bits.
+     *
+     * @param words The words, which may be modified.
+     * @return The signature with those bits.
+     */
+    private static ComponentSignature trimmed(long[] words) {
+        int length = words.length;
+        while (length > 0 && words[length - 1] == 0) {
+            --length;
+        }
+        if (length == 0) {
+            return EMPTY;
+        }
+        if (length == words.length) {
+            return new ComponentSignature(words);
+        }
+        return new ComponentSignature(Arrays.copyOf(words, length));
+    }
+
+    /**
+     * The number of types in the signature.
+     *
+     * @return How many bits are set.
+     */
+    int cardinality() {
+        int result = 0;
+        for (long word : this.words) {
+            result += Long.bitCount(word);
+        }
+        return result;
+    }
+
+    /**
+     * Check if a type is in the signature.
+     *
+     * @param id The type ID.
+     * @return True if the type is part of the signature.
+     */
+    boolean contains(int id) {
+        final int word = id >>> 6;
+        return word < this.words.length && (this.words[word] & (1L << id)) != 0;
+    }
+
+    /**
+     * Check if every type in another signature is also in this one.
+     *
+     * @param other The other signature.
+     * @return True if the other signature is a subset of this one.
+     */
+    boolean containsAll(ComponentSignature other) {
+        if (other.words.length > this.words.length) {
+            return false;
+        }
+        for (int i = 0; i < other.words.length; ++i) {
+            if ((other.words[i] & ~this.words[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ComponentSignature other)) {
+            return false;
+        }
+        return this.hash == other.hash && Arrays.equals(this.words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    /**
+     * Check if any type is in both signatures.
+     *
+     * @param other The other signature.
+     * @return True if the two signatures share at least one type.
+     */
+    boolean intersects(ComponentSignature other) {
+        final int length = Math.min(this.words.length, other.words.length);
+        for (int i = 0; i < length; ++i) {
+            if ((this.words[i] & other.words[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The highest type ID in the signature.
+     *
+     * @return The largest ID, or -1 if the signature is empty.
+     */
+    int maxId() {
+        if (this.words.length == 0) {
+            return -1;
+        }
+        final int last = this.words.length - 1;
+        return last * 64 + 63 - Long.numberOfLeadingZeros(this.words[last]);
+    }
+
+    /**
+     * Find the next type ID in the signature, for iterating over the types in order.
+     *
+     * @param from The ID to start looking at, inclusive.
+     * @return The next ID that is in the signature, or -1 if there are none left.
+     */
+    int nextId(int from) {
+        int word = from >>> 6;
+        if (word >= this.words.length) {
+            return -1;
+        }
+        long bits = this.words[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return word * 64 + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == this.words.length) {
+                return -1;
+            }
+            bits = this.words[word];
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int id = this.nextId(0); id >= 0; id = this.nextId(id + 1)) {
+            if (result.length() > 1) {
+                result.append(", ");
+            }
+            result.append(id);
+        }
+        return result.append(']').toString();
+    }
+
+    /**
+     * Create a signature that has all of our types plus another one.
+     *
+     * @param id The type ID to add.
+     * @return The new signature, or this one if it already has that type.
+     */
+    ComponentSignature with(int id) {
+        if (this.contains(id)) {
+            return this;
+        }
+        final int word = id >>> 6;
+        long[] result = Arrays.copyOf(this.words, Math.max(this.words.length, word + 1));
+        result[word] |= 1L << id;
+        return new ComponentSignature(result);
+    }
+
+    /**
+     * Create a signature that has all of our types except one.
+     *
+     * @param id The type ID to remove.
+     * @return The new signature, or this one if it did not have that type.
+     */
+    ComponentSignature without(int id) {
+        if (!this.contains(id)) {
+            return this;
+        }
+        long[] result = this.words.clone();
+        result[id >>> 6] &= ~(1L << id);
+        return ComponentSignature.trimmed(result);
+    }
+}
@@ -0,0 +1,77 @@
+package com.ikalagaming.ecs;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Information about a type of component, which is registered once per component class by the
+ * {@link ComponentTypeRegistry}. Each type has a small, dense ID that is used to index into arrays
+ * and bitsets instead of hashing the class.
+ *
+ * @author Ches Burks
+ */
+public final class ComponentType {
+    /**
+     * The dense ID for the type. IDs start at 0 and are handed out in order of registration.
+     *
+     * @return The ID for this type.
+     */
+    @Getter private final int id;
+
+    /**
+     * The component class.
+     *
+     * @return The class this type describes.
+     */
+    @Getter private final Class<?> type;
+
+    /**
+     * Whether the ECS records when components of this type are added, changed, and removed. On by
+     * default, and turned off through {@link ECSManager#setChangeTracking(Class, boolean)}.
+     *
+     * @return True if changes to this type are tracked.
+     */
+    @Getter private volatile boolean tracked = true;
+
+    /**
+     * Used to save and load components of this type in snapshots, if one has been registered.
+     *
+     * @return The serializer for this type, or null if components of this type are not saved.
+     */
+    @Getter private volatile ComponentSerializer<?> serializer;
+
+    /**
+     * Create a new component type. Types are only created by the registry.
+     *
+     * @param id The dense ID.
+     * @param type The component class.
+     */
+    ComponentType(int id, @NonNull Class<?> type) {
+        this.id = id;
+        this.type = type;
+    }
+
+    /**
+     * Set the serializer used for snapshots. Only the {@link ECSSnapshot} should call this.
+     *
+     * @param serializer The serializer for this type.
+     */
+    void setSerializer(ComponentSerializer<?> serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * Turn change tracking on or off. Only the {@link ECSManager} should call this, since it also
+     * has to update the existing tables.
+     *
+     * @param tracked Whether changes to this type should be tracked.
+     */
+    void setTracked(boolean tracked) {
+        this.tracked = tracked;
+    }
+
+    @Override
+    public String toString() {
+        return this.type.getSimpleName() + "#" + this.id;
+    }
+}
@@ -0,0 +1,132 @@
+package com.ikalagaming.ecs;
+
+import lombok.NonNull;
+import lombok.Synchronized;
+
+import java.lang.reflect.ParameterizedType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns each component class a dense integer ID the first time it is seen. Lookups are cached
+ * in {@link ClassValue ClassValues}, so after the first time a class is seen finding its type does
+ * not do any reflection or hashing.
+ *
+ * @author Ches Burks
+ */
+public final class ComponentTypeRegistry {
+    /** Maps the runtime class of a component to the class it was declared as. */
+    private static final ClassValue<Class<?>> ORIGINAL_CLASSES =
+            new ClassValue<>() {
+                @Override
+                protected Class<?> computeValue(Class<?> type) {
+                    return (Class<?>)
+                            ((ParameterizedType) type.getGenericSuperclass())
+                                    .getActualTypeArguments()[0];
+                }
+            };
+
+    /** Maps component classes to their registered type. */
+    private static final ClassValue<ComponentType> TYPES =
+            new ClassValue<>() {
+                @Override
+                protected ComponentType computeValue(Class<?> type) {
+                    return ComponentTypeRegistry.register(type);
+                }
+            };
+
+    /**
+     * The registered types, so that racing threads agree on which type belongs to a class. Only
+     * accessed while holding the lock.
+     */
+    private static final Map<Class<?>, ComponentType> registered = new HashMap<>();
+
+    /** Types indexed by their ID. */
+    private static volatile ComponentType[] byId = new ComponentType[16];
+
+    /** The number of types that have been registered. */
+    private static volatile int count = 0;
+
+    /**
+     * The number of types that have been registered. Every type ID is less than this.
+     *
+     * @return The number of registered types.
+     */
+    public static int count() {
+        return count;
+    }
+
+    /**
+     * Look up the type for a component class, registering it if it has not been seen before.
+     *
+     * @param type The component class.
+     * @return The type information for that class.
+     */
+    public static ComponentType get(@NonNull Class<?> type) {
+        return TYPES.get(type);
+    }
+
+    /**
+     * Look up a type by its ID.
+     *
+     * @param id The type ID.
+     * @return The type with that ID.
+     * @throws IndexOutOfBoundsException If there is no type with that ID.
+     */
+    public static ComponentType get(int id) {
+        if (id < 0 || id >= count) {
+            throw new IndexOutOfBoundsException("No component type with ID " + id);
+        }
+        return byId[id];
+    }
+
+    /**
+     * Look up the type of a component, based on the class it was declared as.
+     *
+     * @param component The component.
+     * @return The type information for the component.
+     */
+    public static ComponentType of(@NonNull Component<?> component) {
+        return TYPES.get(ORIGINAL_CLASSES.get(component.getClass()));
+    }
+
+    /**
+     * Find the class that a component class was declared as, through the type parameter it
+     * passes to {@link Component}.
+     *
+     * @param type The runtime class of a component.
+     * @return The declared component class.
+     */
+    static Class<?> originalClass(@NonNull Class<?> type) {
+        return ORIGINAL_CLASSES.get(type);
+    }
+
+    /**
+     * Assign the next ID to a class, unless another thread beat us to it.
+     *
+     * @param type The component class.
+     * @return The registered type information.
+     */
+    @Synchronized
+    private static ComponentType register(Class<?> type) {
+        ComponentType existing = registered.get(type);
+        if (existing != null) {
+            return existing;
+        }
+        final int id = count;
+        ComponentType result = new ComponentType(id, type);
+        ComponentType[] types = byId;
+        if (id == types.length) {
+            types = Arrays.copyOf(types, id * 2);
+        }
+        types[id] = result;
+        byId = types;
+        registered.put(type, result);
+        count = id + 1;
+        return result;
+    }
+
+    /** Private constructor so this class is not instantiated. */
+    private ComponentTypeRegistry() {}
+}
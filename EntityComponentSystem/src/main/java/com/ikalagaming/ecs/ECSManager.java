@@ -1,176 +1,553 @@
 package com.ikalagaming.ecs;
 
+import com.ikalagaming.ecs.CommandBuffer.EntityChanges;
+
+import lombok.Locked;
 import lombok.NonNull;
-import lombok.Synchronized;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Handles tracking and management of Entities, Components, and Systems.
  *
+ * <p>Entities that have exactly the same set of component types are stored together in an {@link
+ * Archetype}, a table with one densely packed column per component type. Adding or removing a
+ * component moves the entity into the table for its new set of types.
+ *
+ * <p>Entities are referred to with an {@link EntityHandle}, which is used to index directly into
+ * the location tables. UUIDs are only assigned to entities that need to be identified outside the
+ * running program, see {@link #getUUID(EntityHandle)}.
+ *
+ * <p>Reading components and iterating over queries only takes a shared lock, so any number of
+ * threads can do that at once. Adding or removing entities and components takes an exclusive lock,
+ * and must not be done from inside an iteration. Use a {@link CommandBuffer} to make changes while
+ * iterating.
+ *
+ * <p>The ECS keeps a change tick, which the {@link SystemScheduler} advances every tick. For
+ * component types that have change tracking turned on, the tick each component was added and last
+ * changed is recorded. Consumers like networking or saving can remember the last tick they
+ * processed and only look at what changed since then. Mutating a component in place cannot be
+ * detected, so it has to be reported with {@link #markChanged(EntityHandle, Class)} or {@link
+ * QueryRow#markChanged(Class)}.
+ *
+ * <p>Removals are only recorded while at least one consumer has registered with {@link
+ * #registerRemovalConsumer()}, since they are kept until they are cleared.
+ *
  * @author Ches Burks
  */
 public class ECSManager {
 
-    /** Maps the unique component class ID to a list of components of that type. */
-    private static Map<Class<? extends Component<?>>, List<Component<?>>> componentsMap =
-            new HashMap<>();
+    /** The number of entity slots we allocate space for at startup. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The number of rows that each task processes when iterating over a query in parallel. */
+    static final int PARALLEL_CHUNK_SIZE = 1024;
+
+    /**
+     * A record of a tracked component being removed from an entity.
+     *
+     * @param entity The entity the component was removed from.
+     * @param type The type of component that was removed.
+     * @param tick The tick it was removed on.
+     */
+    private record Removal(EntityHandle entity, ComponentType type, long tick) {}
+
+    /** The current change tick. */
+    private static final AtomicLong changeTick = new AtomicLong();
+
+    /** Orders batched changes by the table they end up in. */
+    private static final Comparator<EntityChanges> BY_DESTINATION =
+            Comparator.comparingInt(change -> change.destination.getId());
+
+    /** Hands out entity handles and recycles the slots of destroyed entities. */
+    private static EntityAllocator allocator = new EntityAllocator();
+
+    /** Every table that has been created, keyed by the set of component types it stores. */
+    private static Map<ComponentSignature, Archetype> archetypes = new HashMap<>();
+
+    /** Every table that stores each type of component, indexed by component type ID. */
+    private static List<List<Archetype>> archetypesByType = new ArrayList<>();
+
+    /** Every query that has been registered, keyed by its required and excluded types. */
+    private static Map<List<ComponentSignature>, Query> queries = new HashMap<>();
+
+    /** The table for entities that do not have any components. */
+    private static Archetype emptyArchetype =
+            ECSManager.getOrCreateArchetype(ComponentSignature.EMPTY);
+
+    /** The table that each entity is stored in, indexed by entity slot. */
+    private static Archetype[] entityArchetypes = new Archetype[INITIAL_CAPACITY];
 
-    private static Map<UUID, Map<Class<? extends Component<?>>, Component<?>>> entityMap =
-            new HashMap<>();
+    /** The row within its table that each entity is stored in, indexed by entity slot. */
+    private static int[] entityRows = new int[INITIAL_CAPACITY];
+
+    /** The UUID assigned to each entity, if any, indexed by entity slot. */
+    private static UUID[] entityUUIDs = new UUID[INITIAL_CAPACITY];
+
+    /** Maps UUIDs back to the entity they were assigned to. */
+    private static Map<UUID, EntityHandle> uuidMap = new HashMap<>();
+
+    /** Tracked components that have been removed, in the order they were removed. */
+    private static List<Removal> removals = new ArrayList<>();
+
+    /** The number of consumers that want removals to be recorded. */
+    private static int removalConsumers;
 
     /**
-     * Add a component to an entity.
+     * Add a component to an entity. If the entity already has a component of that type, it is
+     * replaced. Does nothing if the entity does not exist.
      *
      * @param <T> The type of component we are adding
-     * @param entityID The unique ID of the entity we are adding a component to.
+     * @param entity The entity we are adding a component to.
      * @param component The component to add.
      */
-    @Synchronized
+    @Locked.Write
     public static <T extends Component<?>> void addComponent(
-            @NonNull UUID entityID, @NonNull Component<T> component) {
-
-        List<Component<?>> components =
-                componentsMap.computeIfAbsent(
-                        component.getOriginalClass(), clazz -> new ArrayList<>());
+            @NonNull EntityHandle entity, @NonNull Component<T> component) {
+        if (!allocator.isAlive(entity)) {
+            return;
+        }
+        final int index = entity.index();
+        final int type = ComponentTypeRegistry.of(component).getId();
+        Archetype current = entityArchetypes[index];
+        int column = current.getColumnIndex(type);
 
-        if (!components.contains(component)) {
-            components.add(component);
+        if (column >= 0) {
+            Component<?> previous = current.get(column, entityRows[index]);
+            if (previous == component) {
+                return;
+            }
+            ECSManager.release(entity, previous);
+            current.set(column, entityRows[index], component);
+            current.markChanged(column, entityRows[index], changeTick.get());
+        } else {
+            Archetype destination = current.getAddEdge(type);
+            if (destination == null) {
+                destination = ECSManager.getOrCreateArchetype(current.getSignature().with(type));
+                current.setAddEdge(type, destination);
+                destination.setRemoveEdge(type, current);
+            }
+            ECSManager.moveEntity(index, destination);
+            column = destination.getColumnIndex(type);
+            destination.set(column, entityRows[index], component);
+            destination.markAdded(column, entityRows[index], changeTick.get());
         }
+
         component.referenceCount++;
+        component.getParents().add(entity);
+    }
 
-        Map<Class<? extends Component<?>>, Component<?>> entity =
-                entityMap.computeIfAbsent(entityID, id -> new HashMap<>());
+    /**
+     * Advance the change tick. Anything changed after this is stamped with the new tick.
+     *
+     * @return The new tick.
+     */
+    public static long advanceChangeTick() {
+        return changeTick.incrementAndGet();
+    }
 
-        component.getParents().add(entityID);
-        entity.put(component.getOriginalClass(), component);
+    /**
+     * Apply a batch of changes recorded by a {@link CommandBuffer}, holding the lock only once.
+     * Each entity is moved directly into its final table, and entities are processed grouped by
+     * the table they end up in.
+     *
+     * @param changes The merged changes for existing entities.
+     * @param creations The components for each new entity.
+     */
+    @Locked.Write
+    static void applyChanges(
+            @NonNull Collection<EntityChanges> changes, @NonNull List<EntityChanges> creations) {
+        List<EntityChanges> moves = new ArrayList<>(changes.size());
+        for (EntityChanges change : changes) {
+            if (!allocator.isAlive(change.entity)) {
+                continue;
+            }
+            if (change.destroy) {
+                ECSManager.destroyEntity(change.entity);
+                continue;
+            }
+            change.destination =
+                    ECSManager.resolveDestination(
+                            entityArchetypes[change.entity.index()], change.components);
+            moves.add(change);
+        }
+        moves.sort(BY_DESTINATION);
+
+        for (EntityChanges change : moves) {
+            final EntityHandle entity = change.entity;
+            final int index = entity.index();
+            final Archetype current = entityArchetypes[index];
+            final int row = entityRows[index];
+            for (Map.Entry<ComponentType, Component<?>> entry : change.components.entrySet()) {
+                final int column = current.getColumnIndex(entry.getKey().getId());
+                if (column >= 0) {
+                    Component<?> previous = current.get(column, row);
+                    if (previous != entry.getValue()) {
+                        ECSManager.release(entity, previous);
+                    }
+                    if (entry.getValue() == null && current.isTracked(column)) {
+                        ECSManager.recordRemoval(entity, entry.getKey());
+                    }
+                }
+            }
+            if (change.destination != current) {
+                ECSManager.moveEntity(index, change.destination);
+            }
+            ECSManager.placeComponents(entity, change.components);
+        }
+
+        for (EntityChanges creation : creations) {
+            creation.destination =
+                    ECSManager.resolveDestination(emptyArchetype, creation.components);
+        }
+        creations.sort(BY_DESTINATION);
+        for (EntityChanges creation : creations) {
+            final EntityHandle entity = allocator.allocate();
+            final int index = entity.index();
+            ECSManager.ensureCapacity(index + 1);
+            entityArchetypes[index] = creation.destination;
+            entityRows[index] = creation.destination.addRow(index);
+            ECSManager.placeComponents(entity, creation.components);
+        }
     }
 
     /**
      * Delete everything, all entities and components tracked by the system. Does not do anything to
-     * the actual contents of components, only dereferences the component.
+     * the actual contents of components, only dereferences the component. Handles to the old
+     * entities will not be valid afterwards.
      */
-    @Synchronized
+    @Locked.Write
     public static void clear() {
-        componentsMap.forEach((clazz, list) -> list.clear());
-        componentsMap.clear();
-        entityMap.forEach((id, map) -> map.clear());
-        entityMap.clear();
+        archetypes.values().forEach(Archetype::clear);
+        Arrays.fill(entityArchetypes, null);
+        Arrays.fill(entityUUIDs, null);
+        uuidMap.clear();
+        removals.clear();
+        allocator.clear();
+    }
+
+    /**
+     * Forget about removed components up to and including a tick, once every consumer has
+     * processed them. Removals are otherwise kept until the last consumer unregisters.
+     *
+     * @param tick The last tick that no longer needs to be reported.
+     */
+    @Locked.Write
+    public static void clearRemovals(long tick) {
+        int count = 0;
+        while (count < removals.size() && removals.get(count).tick() <= tick) {
+            ++count;
+        }
+        removals.subList(0, count).clear();
     }
 
     /**
      * Checks if an entity contains a specific component.
      *
      * @param <T> The type of the component to fetch.
-     * @param entityID The unique entity ID.
+     * @param entity The entity.
      * @param type The class of the component we are looking for.
      * @return True if the entity has a component of the given type, false if the entity is not
      *     found or does not have the component.
      */
-    @Synchronized
+    @Locked.Read
     public static <T extends Component<?>> boolean containsComponent(
-            @NonNull UUID entityID, @NonNull Class<T> type) {
-        Map<Class<? extends Component<?>>, Component<?>> components = entityMap.get(entityID);
-        if (components == null) {
+            @NonNull EntityHandle entity, @NonNull Class<T> type) {
+        if (!allocator.isAlive(entity)) {
             return false;
         }
-        return components.containsKey(type);
+        return entityArchetypes[entity.index()]
+                .getSignature()
+                .contains(ComponentTypeRegistry.get(type).getId());
     }
 
     /**
-     * Create a new entity, return the unique ID for that entity.
+     * Count the number of entities that match a query.
      *
-     * @return The entity's unique ID.
+     * @param query The query.
+     * @return The number of matching entities.
      */
-    @Synchronized
-    public static UUID createEntity() {
-        UUID uniqueID = UUID.randomUUID();
-        entityMap.put(uniqueID, new HashMap<>());
-        return uniqueID;
+    @Locked.Read
+    static int count(@NonNull Query query) {
+        int count = 0;
+        for (Archetype archetype : query.matches) {
+            count += archetype.getSize();
+        }
+        return count;
     }
 
     /**
-     * Removes a component from the components map, and if it's the last component in it's given
-     * list, deletes the list.
+     * Create a new entity, return the handle for that entity.
      *
-     * @param type The type of component to remove.
-     * @param component The actual component to delete.
+     * @return The entity's handle.
      */
-    @Synchronized
-    private static void deleteFromComponents(Class<?> type, Component<?> component) {
-        List<Component<?>> list = componentsMap.get(type);
-        if (list != null) {
-            list.remove(component);
-            if (list.isEmpty()) {
-                componentsMap.remove(type);
+    @Locked.Write
+    public static EntityHandle createEntity() {
+        EntityHandle entity = allocator.allocate();
+        final int index = entity.index();
+        ECSManager.ensureCapacity(index + 1);
+        entityArchetypes[index] = emptyArchetype;
+        entityRows[index] = emptyArchetype.addRow(index);
+        return entity;
+    }
+
+    /**
+     * Create an entity with a specific UUID, such as one loaded from a save or received over the
+     * network. If an entity already exists with that UUID, it is returned instead.
+     *
+     * @param uniqueID The UUID for the entity.
+     * @return The entity's handle.
+     */
+    @Locked.Write
+    public static EntityHandle createEntity(@NonNull UUID uniqueID) {
+        EntityHandle existing = uuidMap.get(uniqueID);
+        if (existing != null) {
+            return existing;
+        }
+        EntityHandle entity = ECSManager.createEntity();
+        entityUUIDs[entity.index()] = uniqueID;
+        uuidMap.put(uniqueID, entity);
+        return entity;
+    }
+
+    /**
+     * Remove an entity and clean up it's components. Does nothing if the entity was already
+     * destroyed.
+     *
+     * @param entity The entity to delete.
+     */
+    @Locked.Write
+    public static void destroyEntity(@NonNull EntityHandle entity) {
+        if (!allocator.free(entity)) {
+            return;
+        }
+        final int index = entity.index();
+        Archetype archetype = entityArchetypes[index];
+        final int row = entityRows[index];
+        for (int column = 0; column < archetype.getColumnCount(); ++column) {
+            ECSManager.release(entity, archetype.get(column, row));
+            if (archetype.isTracked(column)) {
+                ECSManager.recordRemoval(entity, archetype.getColumnType(column));
             }
         }
+        ECSManager.removeRow(archetype, row);
+        entityArchetypes[index] = null;
+
+        UUID uniqueID = entityUUIDs[index];
+        if (uniqueID != null) {
+            uuidMap.remove(uniqueID);
+            entityUUIDs[index] = null;
+        }
     }
 
     /**
-     * Remove an entity and clean up it's components.
+     * Make sure the location tables can store at least the given number of entities.
      *
-     * @param entityID The unique ID of the entity to delete.
+     * @param capacity The number of entity slots required.
      */
-    @Synchronized
-    public static void destroyEntity(UUID entityID) {
-        Map<Class<? extends Component<?>>, Component<?>> entity = entityMap.get(entityID);
-        if (entity != null) {
-            entity.forEach(
-                    (clazz, component) -> {
-                        component.referenceCount--;
-                        if (component.referenceCount <= 0) {
-                            deleteFromComponents(clazz, component);
-                        }
-                    });
-            entity.clear();
+    private static void ensureCapacity(int capacity) {
+        if (capacity <= entityArchetypes.length) {
+            return;
         }
-        entityMap.remove(entityID);
+        final int newCapacity = Math.max(capacity, entityArchetypes.length * 2);
+        entityArchetypes = Arrays.copyOf(entityArchetypes, newCapacity);
+        entityRows = Arrays.copyOf(entityRows, newCapacity);
+        entityUUIDs = Arrays.copyOf(entityUUIDs, newCapacity);
     }
 
     /**
-     * Return a list of all of the components of a given type.
+     * Run an action on every entity that has a given type of component. This walks the component
+     * columns directly, so it is much cheaper than looking up each entity individually. The action
+     * must not add or remove components or entities.
+     *
+     * @param <T> The type of component we are looking for.
+     * @param type The class of components we are interested in.
+     * @param action The action to perform on each entity and its component.
+     */
+    @Locked.Read
+    public static <T extends Component<?>> void forEach(
+            @NonNull Class<T> type, @NonNull BiConsumer<EntityHandle, T> action) {
+        final int typeID = ComponentTypeRegistry.get(type).getId();
+        for (Archetype archetype : ECSManager.getArchetypesWith(typeID)) {
+            final int size = archetype.getSize();
+            final int[] entities = archetype.getEntities();
+            final Component<?>[] column = archetype.getColumn(archetype.getColumnIndex(typeID));
+            for (int row = 0; row < size; ++row) {
+                action.accept(allocator.handleOf(entities[row]), type.cast(column[row]));
+            }
+        }
+    }
+
+    /**
+     * Run an action on every row that matches a query.
+     *
+     * @param query The query.
+     * @param cursor The cursor to move over each matching row.
+     * @param action The action to perform on each row.
+     */
+    @Locked.Read
+    static void forEach(
+            @NonNull Query query, @NonNull QueryRow cursor, @NonNull Consumer<QueryRow> action) {
+        for (Archetype archetype : query.matches) {
+            final int size = archetype.getSize();
+            if (size == 0) {
+                continue;
+            }
+            cursor.setArchetype(archetype);
+            for (int row = 0; row < size; ++row) {
+                cursor.moveTo(row);
+                action.accept(cursor);
+            }
+        }
+    }
+
+    /**
+     * Run an action on every row that matches a query, where at least one of the query's changed
+     * types has been added or changed after a tick.
+     *
+     * @param query The query.
+     * @param cursor The cursor to move over each matching row.
+     * @param tick The last tick that has already been processed.
+     * @param action The action to perform on each row.
+     */
+    @Locked.Read
+    static void forEachChangedSince(
+            @NonNull Query query,
+            @NonNull QueryRow cursor,
+            long tick,
+            @NonNull Consumer<QueryRow> action) {
+        for (Archetype archetype : query.matches) {
+            final int size = archetype.getSize();
+            if (size == 0) {
+                continue;
+            }
+            cursor.setArchetype(archetype);
+            for (int row = 0; row < size; ++row) {
+                cursor.moveTo(row);
+                if (cursor.isChangedSince(tick)) {
+                    action.accept(cursor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Run an action on every row that matches a query, splitting the rows into chunks that are
+     * processed in parallel. If called from a thread in a fork join pool, that pool is used,
+     * otherwise the common pool is. Small queries are just processed on the calling thread.
+     *
+     * @param query The query.
+     * @param action The action to perform on each row, which must be thread safe.
+     */
+    @Locked.Read
+    static void forEachParallel(@NonNull Query query, @NonNull Consumer<QueryRow> action) {
+        int chunkCount = 0;
+        for (Archetype archetype : query.matches) {
+            chunkCount += Math.ceilDiv(archetype.getSize(), PARALLEL_CHUNK_SIZE);
+        }
+        if (chunkCount <= 1) {
+            ECSManager.forEach(query, new QueryRow(query), action);
+            return;
+        }
+
+        Archetype[] tables = new Archetype[chunkCount];
+        int[] starts = new int[chunkCount];
+        int[] ends = new int[chunkCount];
+        int chunk = 0;
+        for (Archetype archetype : query.matches) {
+            final int size = archetype.getSize();
+            for (int start = 0; start < size; start += PARALLEL_CHUNK_SIZE) {
+                tables[chunk] = archetype;
+                starts[chunk] = start;
+                ends[chunk] = Math.min(start + PARALLEL_CHUNK_SIZE, size);
+                ++chunk;
+            }
+        }
+
+        // We hold the read lock for the whole time, so the workers don't need to lock anything
+        QueryChunkTask task =
+                new QueryChunkTask(query, tables, starts, ends, 0, chunkCount, action);
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+    }
+
+    /**
+     * Return a list of all of the components of a given type. Components that are shared between
+     * several entities are only included once.
      *
      * @param <T> The type of component we are looking for.
      * @param type The class of components we are interested in.
      * @return A list of all components with that given type, which may be empty.
      */
-    @Synchronized
+    @Locked.Read
     public static <T extends Component<?>> List<T> getAllComponents(@NonNull Class<T> type) {
-        List<?> output = componentsMap.get(type);
-        if (output == null) {
-            return new ArrayList<>();
+        final int typeID = ComponentTypeRegistry.get(type).getId();
+        List<T> output = new ArrayList<>();
+        Set<Component<?>> shared = null;
+        for (Archetype archetype : ECSManager.getArchetypesWith(typeID)) {
+            final int size = archetype.getSize();
+            final Component<?>[] column = archetype.getColumn(archetype.getColumnIndex(typeID));
+            for (int row = 0; row < size; ++row) {
+                Component<?> component = column[row];
+                if (component.referenceCount > 1) {
+                    if (shared == null) {
+                        shared = Collections.newSetFromMap(new IdentityHashMap<>());
+                    }
+                    if (!shared.add(component)) {
+                        continue;
+                    }
+                }
+                output.add(type.cast(component));
+            }
         }
-        // we know the type, that's how it's stored.
-        @SuppressWarnings("unchecked")
-        List<T> cast = (List<T>) output;
-        return cast;
+        return output;
     }
 
     /**
      * Generates a list of all entities that currently exist.
      *
-     * @return A list of all unique IDs for current entities.
+     * @return A list of handles for all current entities.
      */
-    @Synchronized
-    public static List<UUID> getAllEntities() {
-        return new ArrayList<>(entityMap.keySet());
+    @Locked.Read
+    public static List<EntityHandle> getAllEntities() {
+        List<EntityHandle> values = new ArrayList<>();
+        final int capacity = allocator.capacity();
+        for (int index = 0; index < capacity; ++index) {
+            if (entityArchetypes[index] != null) {
+                values.add(allocator.handleOf(index));
+            }
+        }
+        return values;
     }
 
     /**
-     * Return a list of all entity ID's that contain all the given types of components.
+     * Return a list of all entities that contain all the given types of components.
      *
      * @param types The types of component we are looking for.
-     * @return The list of unique ID's for entities that contain the given component. May be empty.
+     * @return The list of entities that contain the given component. May be empty.
      */
     @SafeVarargs
-    @Synchronized
-    public static List<UUID> getAllEntitiesWithComponent(
+    public static List<EntityHandle> getAllEntitiesWithComponent(
             final @NonNull Class<? extends Component<?>>... types) {
         for (Class<?> type : types) {
             if (type == null) {
@@ -180,91 +557,521 @@ public class ECSManager {
         if (types.length == 0) {
             return new ArrayList<>();
         }
+        return ECSManager.getEntities(Query.builder().with(types).build());
+    }
 
-        Class<?> firstType = types[0];
-        List<? extends Component<?>> components = componentsMap.get(firstType);
-        if (components == null) {
-            // we don't have anything with that component
-            return new ArrayList<>();
+    /**
+     * Fetches a component from an entity.
+     *
+     * @param <T> The type of the component to fetch.
+     * @param entity The entity.
+     * @param type The class of the component we are looking for.
+     * @return The component of that class, or an empty optional if the entity entity does not exist
+     *     or does not have that component.
+     */
+    @Locked.Read
+    public static <T extends Component<?>> Optional<T> getComponent(
+            @NonNull EntityHandle entity, @NonNull Class<T> type) {
+        if (!allocator.isAlive(entity)) {
+            return Optional.empty();
+        }
+        final int index = entity.index();
+        Archetype archetype = entityArchetypes[index];
+        int column = archetype.getColumnIndex(ComponentTypeRegistry.get(type).getId());
+        if (column < 0) {
+            return Optional.empty();
         }
+        return Optional.of(type.cast(archetype.get(column, entityRows[index])));
+    }
+
+    /**
+     * Generates a list of all entities that match a query.
+     *
+     * @param query The query.
+     * @return The list of matching entities. May be empty.
+     */
+    @Locked.Read
+    static List<EntityHandle> getEntities(@NonNull Query query) {
+        List<EntityHandle> values = new ArrayList<>();
+        for (Archetype archetype : query.matches) {
+            final int size = archetype.getSize();
+            final int[] entities = archetype.getEntities();
+            for (int row = 0; row < size; ++row) {
+                values.add(allocator.handleOf(entities[row]));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Fetch the current change tick.
+     *
+     * @return The tick that changes are currently being stamped with.
+     */
+    public static long getChangeTick() {
+        return changeTick.get();
+    }
+
+    /**
+     * Look up the entity that has been assigned a UUID.
+     *
+     * @param uniqueID The UUID of the entity.
+     * @return The entity, or an empty optional if no living entity has that UUID.
+     */
+    @Locked.Read
+    public static Optional<EntityHandle> getEntity(@NonNull UUID uniqueID) {
+        return Optional.ofNullable(uuidMap.get(uniqueID));
+    }
 
-        List<UUID> values = new ArrayList<>();
-        components.stream().forEach(component -> values.addAll(component.getParents()));
+    /**
+     * Fetch every table that stores a type of component.
+     *
+     * @param typeID The ID of the component type.
+     * @return The tables with that type, which may be empty.
+     */
+    private static List<Archetype> getArchetypesWith(int typeID) {
+        if (typeID >= archetypesByType.size()) {
+            return Collections.emptyList();
+        }
+        return archetypesByType.get(typeID);
+    }
 
-        if (types.length == 1) {
-            return values;
+    /**
+     * Fetch the table for a set of component types, creating it if it does not exist yet.
+     *
+     * @param signature The set of component types.
+     * @return The table that stores entities with exactly those types.
+     */
+    private static Archetype getOrCreateArchetype(ComponentSignature signature) {
+        Archetype archetype = archetypes.get(signature);
+        if (archetype != null) {
+            return archetype;
         }
-        boolean skipOne = true;
-        for (Class<? extends Component<?>> type : types) {
-            if (skipOne) {
-                // we already looked at the first list, skip one item
-                skipOne = false;
-                continue;
+        archetype = new Archetype(archetypes.size(), signature);
+        archetypes.put(signature, archetype);
+        for (int type = signature.nextId(0); type >= 0; type = signature.nextId(type + 1)) {
+            while (archetypesByType.size() <= type) {
+                archetypesByType.add(new ArrayList<>());
+            }
+            archetypesByType.get(type).add(archetype);
+        }
+        for (Query query : queries.values()) {
+            if (query.matches(archetype)) {
+                query.matches.add(archetype);
             }
-            List<? extends Component<?>> tempComponents = componentsMap.get(type);
+        }
+        return archetype;
+    }
 
-            if (tempComponents == null) {
-                // we don't have anything with that component
-                return new ArrayList<>();
+    /**
+     * Generates a list of entities that had a component of a tracked type removed after a tick,
+     * including entities that were destroyed. Entities may show up more than once, and may no
+     * longer be alive. Only removals made while a consumer was registered are included.
+     *
+     * @param type The type of component.
+     * @param tick The last tick that has already been processed.
+     * @return The entities the component was removed from, in the order they were removed.
+     */
+    @Locked.Read
+    public static List<EntityHandle> getRemovedSince(
+            @NonNull Class<? extends Component<?>> type, long tick) {
+        final ComponentType componentType = ComponentTypeRegistry.get(type);
+        int start = removals.size();
+        while (start > 0 && removals.get(start - 1).tick() > tick) {
+            --start;
+        }
+        List<EntityHandle> result = new ArrayList<>();
+        for (Removal removal : removals.subList(start, removals.size())) {
+            if (removal.type() == componentType) {
+                result.add(removal.entity());
             }
-            List<UUID> tempIDs = new ArrayList<>();
-            tempComponents.stream().forEach(component -> tempIDs.addAll(component.getParents()));
-            values.removeIf(uuid -> !tempIDs.contains(uuid));
         }
-        return values;
+        return result;
     }
 
     /**
-     * Fetches a component from an entity.
+     * Fetch the UUID for an entity, for use when it has to be identified outside of this program,
+     * like in save files or over the network. A UUID is generated and assigned the first time this
+     * is called for an entity.
      *
-     * @param <T> The type of the component to fetch.
-     * @param entityID The unique entity ID.
-     * @param type The class of the component we are looking for.
-     * @return The component of that class, or an empty optional if the entity entity does not exist
-     *     or does not have that component.
+     * @param entity The entity.
+     * @return The UUID for the entity, or an empty optional if the entity does not exist.
      */
-    @Synchronized
-    public static <T extends Component<?>> Optional<T> getComponent(
-            @NonNull UUID entityID, @NonNull Class<T> type) {
-        Map<Class<? extends Component<?>>, Component<?>> components = entityMap.get(entityID);
-        if (components == null) {
+    @Locked.Write
+    public static Optional<UUID> getUUID(@NonNull EntityHandle entity) {
+        if (!allocator.isAlive(entity)) {
             return Optional.empty();
         }
-        // we know the type, it's stored by that type
-        @SuppressWarnings("unchecked")
-        Component<T> component = (Component<T>) components.get(type);
-        if (component == null) {
-            return Optional.empty();
+        final int index = entity.index();
+        UUID uniqueID = entityUUIDs[index];
+        if (uniqueID == null) {
+            uniqueID = UUID.randomUUID();
+            entityUUIDs[index] = uniqueID;
+            uuidMap.put(uniqueID, entity);
         }
+        return Optional.of(uniqueID);
+    }
 
-        return Optional.of(component.asType());
+    /**
+     * Build the handle for the entity currently stored in a slot.
+     *
+     * @param index The slot index.
+     * @return The handle for the living entity in that slot.
+     */
+    static EntityHandle handleOf(int index) {
+        return allocator.handleOf(index);
+    }
+
+    /**
+     * Add a batch of entities that all have the same set of components, holding the lock only once.
+     * The new entities are stored directly in their final table.
+     *
+     * @param types The type of each column of data.
+     * @param data The components for each new entity, indexed as {@code data[column][entity]}.
+     * @param uuids The UUID for each new entity, where null means the entity has none.
+     * @param count The number of entities to add.
+     */
+    @Locked.Write
+    static void insertEntities(
+            @NonNull ComponentType[] types,
+            @NonNull Component<?>[][] data,
+            @NonNull UUID[] uuids,
+            int count) {
+        ComponentSignature signature = ComponentSignature.EMPTY;
+        for (ComponentType type : types) {
+            signature = signature.with(type.getId());
+        }
+        final Archetype table = ECSManager.getOrCreateArchetype(signature);
+        Component<?>[][] columns = new Component<?>[types.length][];
+        for (int i = 0; i < types.length; ++i) {
+            columns[table.getColumnIndex(types[i].getId())] = data[i];
+        }
+
+        EntityHandle[] entities = new EntityHandle[count];
+        int[] indices = new int[count];
+        for (int i = 0; i < count; ++i) {
+            entities[i] = allocator.allocate();
+            indices[i] = entities[i].index();
+        }
+        ECSManager.ensureCapacity(allocator.capacity());
+        final int first = table.addRows(indices, columns, count, changeTick.get());
+
+        for (int i = 0; i < count; ++i) {
+            final int index = indices[i];
+            entityArchetypes[index] = table;
+            entityRows[index] = first + i;
+            if (uuids[i] != null) {
+                entityUUIDs[index] = uuids[i];
+                uuidMap.put(uuids[i], entities[i]);
+            }
+            for (Component<?>[] column : columns) {
+                column[i].referenceCount++;
+                column[i].getParents().add(entities[i]);
+            }
+        }
+    }
+
+    /**
+     * Check if an entity still exists.
+     *
+     * @param entity The entity.
+     * @return True if the entity exists, false if it has been destroyed.
+     */
+    @Locked.Read
+    public static boolean isAlive(@NonNull EntityHandle entity) {
+        return allocator.isAlive(entity);
+    }
+
+    /**
+     * Record that a component was modified in place, so that it shows up as changed. Does nothing
+     * if the entity does not have that component, or the type is not tracked. This does not change
+     * the structure of anything, so it is safe to call while iterating.
+     *
+     * @param entity The entity.
+     * @param type The type of component that was changed.
+     */
+    @Locked.Read
+    public static void markChanged(
+            @NonNull EntityHandle entity, @NonNull Class<? extends Component<?>> type) {
+        if (!allocator.isAlive(entity)) {
+            return;
+        }
+        final int index = entity.index();
+        final Archetype archetype = entityArchetypes[index];
+        final int column = archetype.getColumnIndex(ComponentTypeRegistry.get(type).getId());
+        if (column >= 0) {
+            archetype.markChanged(column, entityRows[index], changeTick.get());
+        }
+    }
+
+    /**
+     * Move an entity into a different table, updating its location and the location of any entity
+     * that had to be moved to fill the gap.
+     *
+     * @param index The slot index of the entity we are moving.
+     * @param destination The table to move it into.
+     */
+    private static void moveEntity(int index, Archetype destination) {
+        Archetype source = entityArchetypes[index];
+        final int oldRow = entityRows[index];
+        final int newRow = source.moveRow(oldRow, destination);
+        ECSManager.removeRow(source, oldRow);
+        entityArchetypes[index] = destination;
+        entityRows[index] = newRow;
+    }
+
+    /**
+     * Store components in the table an entity is already in, which must have a column for each of
+     * them. Components that are already stored there are left alone.
+     *
+     * @param entity The entity.
+     * @param components The components to store, where null values are skipped.
+     */
+    private static void placeComponents(
+            EntityHandle entity, Map<ComponentType, Component<?>> components) {
+        final int index = entity.index();
+        final Archetype archetype = entityArchetypes[index];
+        final int row = entityRows[index];
+        for (Map.Entry<ComponentType, Component<?>> entry : components.entrySet()) {
+            Component<?> component = entry.getValue();
+            if (component == null) {
+                continue;
+            }
+            final int column = archetype.getColumnIndex(entry.getKey().getId());
+            final Component<?> previous = archetype.get(column, row);
+            if (previous == component) {
+                continue;
+            }
+            if (previous == null) {
+                archetype.markAdded(column, row, changeTick.get());
+            } else {
+                archetype.markChanged(column, row, changeTick.get());
+            }
+            archetype.set(column, row, component);
+            component.referenceCount++;
+            component.getParents().add(entity);
+        }
+    }
+
+    /**
+     * Record that a component of a tracked type was removed, if anyone is interested.
+     *
+     * @param entity The entity the component was removed from.
+     * @param type The type of component that was removed.
+     */
+    private static void recordRemoval(EntityHandle entity, ComponentType type) {
+        if (removalConsumers > 0) {
+            removals.add(new Removal(entity, type, changeTick.get()));
+        }
+    }
+
+    /**
+     * Look up a query with the given filters, registering a new one if there isn't one yet.
+     *
+     * @param with The types that matching entities must have.
+     * @param without The types that matching entities must not have.
+     * @param changed The required types that are checked for changes, or empty for all of them.
+     * @return The registered query.
+     */
+    @Locked.Write
+    static Query registerQuery(
+            @NonNull Set<Class<? extends Component<?>>> with,
+            @NonNull Set<Class<? extends Component<?>>> without,
+            @NonNull Set<Class<? extends Component<?>>> changed) {
+        List<ComponentSignature> key =
+                List.of(
+                        ECSManager.signatureOf(with),
+                        ECSManager.signatureOf(without),
+                        ECSManager.signatureOf(changed.isEmpty() ? with : changed));
+        Query query = queries.get(key);
+        if (query != null) {
+            return query;
+        }
+        query = new Query(with, without, changed);
+        for (Archetype archetype : archetypes.values()) {
+            if (query.matches(archetype)) {
+                query.matches.add(archetype);
+            }
+        }
+        queries.put(key, query);
+        return query;
+    }
+
+    /**
+     * Start recording removed components for a consumer, which will call {@link
+     * #getRemovedSince(Class, long)} and {@link #clearRemovals(long)}. Each call must be matched by
+     * a call to {@link #unregisterRemovalConsumer()} once the consumer no longer needs them.
+     */
+    @Locked.Write
+    public static void registerRemovalConsumer() {
+        ++removalConsumers;
+    }
+
+    /**
+     * Update bookkeeping for a component that is no longer attached to an entity.
+     *
+     * @param entity The entity the component was removed from.
+     * @param component The component that was removed.
+     */
+    private static void release(EntityHandle entity, Component<?> component) {
+        component.referenceCount--;
+        component.getParents().remove(entity);
     }
 
     /**
      * Removes a component from an entity.
      *
      * @param <T> The type of the component to fetch.
-     * @param entityID The unique entity ID.
+     * @param entity The entity.
      * @param type The class of the component we are looking for.
      */
-    @Synchronized
+    @Locked.Write
     public static <T extends Component<?>> void removeComponent(
-            @NonNull UUID entityID, @NonNull Class<T> type) {
-        Map<Class<? extends Component<?>>, Component<?>> components = entityMap.get(entityID);
-        if (components == null) {
+            @NonNull EntityHandle entity, @NonNull Class<T> type) {
+        if (!allocator.isAlive(entity)) {
             return;
         }
-        // we know the type, it's stored by that type
-        @SuppressWarnings("unchecked")
-        Component<T> component = (Component<T>) components.get(type);
-        if (component == null) {
+        final int index = entity.index();
+        final int typeID = ComponentTypeRegistry.get(type).getId();
+        Archetype current = entityArchetypes[index];
+        int column = current.getColumnIndex(typeID);
+        if (column < 0) {
             return;
         }
-        components.remove(type);
-        component.referenceCount--;
-        component.getParents().remove(entityID);
-        if (component.referenceCount <= 0) {
-            deleteFromComponents(type, component);
+        ECSManager.release(entity, current.get(column, entityRows[index]));
+        if (current.isTracked(column)) {
+            ECSManager.recordRemoval(entity, ComponentTypeRegistry.get(typeID));
+        }
+
+        Archetype destination = current.getRemoveEdge(typeID);
+        if (destination == null) {
+            destination = ECSManager.getOrCreateArchetype(current.getSignature().without(typeID));
+            current.setRemoveEdge(typeID, destination);
+            destination.setAddEdge(typeID, current);
+        }
+        ECSManager.moveEntity(index, destination);
+    }
+
+    /**
+     * Replace everything in the ECS with tables of entities that were read from a snapshot,
+     * holding the lock the whole time so that nothing sees a partial restore.
+     *
+     * @param tables The tables of entities to insert.
+     */
+    @Locked.Write
+    static void replaceAll(@NonNull List<ECSSnapshot.TableData> tables) {
+        ECSManager.clear();
+        for (ECSSnapshot.TableData table : tables) {
+            ECSManager.insertEntities(table.types(), table.data(), table.uuids(), table.count());
+        }
+    }
+
+    /**
+     * Figure out which table an entity ends up in after a set of changes.
+     *
+     * @param current The table the entity is currently in.
+     * @param components The changes for each type, where null means the type is removed.
+     * @return The table for the resulting set of types.
+     */
+    private static Archetype resolveDestination(
+            Archetype current, Map<ComponentType, Component<?>> components) {
+        ComponentSignature signature = current.getSignature();
+        for (Map.Entry<ComponentType, Component<?>> entry : components.entrySet()) {
+            final int type = entry.getKey().getId();
+            signature = entry.getValue() == null ? signature.without(type) : signature.with(type);
+        }
+        if (signature.equals(current.getSignature())) {
+            return current;
+        }
+        return ECSManager.getOrCreateArchetype(signature);
+    }
+
+    /**
+     * Turn change tracking on or off for a type of component. It is on by default. When it is off,
+     * components of that type always count as added and changed, and removals are not recorded.
+     *
+     * @param type The type of component.
+     * @param tracked Whether changes should be tracked.
+     */
+    @Locked.Write
+    public static void setChangeTracking(
+            @NonNull Class<? extends Component<?>> type, boolean tracked) {
+        final ComponentType componentType = ComponentTypeRegistry.get(type);
+        componentType.setTracked(tracked);
+        for (Archetype archetype : ECSManager.getArchetypesWith(componentType.getId())) {
+            archetype.setTracked(
+                    archetype.getColumnIndex(componentType.getId()), tracked, changeTick.get());
+        }
+    }
+
+    /**
+     * Build the signature for a set of component classes.
+     *
+     * @param types The component classes.
+     * @return The signature containing each of their types.
+     */
+    static ComponentSignature signatureOf(
+            @NonNull Collection<Class<? extends Component<?>>> types) {
+        ComponentSignature signature = ComponentSignature.EMPTY;
+        for (Class<? extends Component<?>> type : types) {
+            signature = signature.with(ComponentTypeRegistry.get(type).getId());
+        }
+        return signature;
+    }
+
+    /**
+     * Stop recording removed components for a consumer. Once the last consumer unregisters, every
+     * recorded removal is forgotten.
+     *
+     * @see #registerRemovalConsumer()
+     */
+    @Locked.Write
+    public static void unregisterRemovalConsumer() {
+        if (removalConsumers <= 0) {
+            return;
+        }
+        --removalConsumers;
+        if (removalConsumers == 0) {
+            removals.clear();
+        }
+    }
+
+    /**
+     * Pass every table that has entities in it to a writer, in the order the tables were created,
+     * while holding the shared lock.
+     *
+     * @param writer The writer to pass each table to.
+     * @throws IOException If the writer fails.
+     */
+    @Locked.Read
+    static void writeTables(@NonNull ECSSnapshot.TableWriter writer) throws IOException {
+        List<Archetype> tables = new ArrayList<>(archetypes.values());
+        tables.sort(Comparator.comparingInt(Archetype::getId));
+        for (Archetype table : tables) {
+            final int size = table.getSize();
+            if (size == 0) {
+                continue;
+            }
+            final int[] entities = table.getEntities();
+            UUID[] uuids = new UUID[size];
+            for (int row = 0; row < size; ++row) {
+                uuids[row] = entityUUIDs[entities[row]];
+            }
+            writer.write(table, uuids);
+        }
+    }
+
+    /**
+     * Remove a row from a table, fixing up the location of the entity that gets moved into its
+     * place.
+     *
+     * @param archetype The table to remove a row from.
+     * @param row The row to remove.
+     */
+    private static void removeRow(Archetype archetype, int row) {
+        final int moved = archetype.removeRow(row);
+        if (moved >= 0) {
+            entityRows[moved] = row;
         }
     }
 
@@ -0,0 +1,251 @@
+package com.ikalagaming.ecs;
+
+import lombok.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Saves every entity and component in the ECS to a compact binary stream, and restores them again.
+ *
+ * <p>The format is column oriented, following the tables the ECS stores entities in. Each table is
+ * written as its list of component type names, the UUIDs of the entities that have one, and then
+ * each column of components one after another. Restoring reads the whole snapshot before
+ * touching the ECS, then replaces everything in one batch while holding the lock once. A snapshot
+ * that can't be read leaves the ECS untouched, and other threads never see a partial restore.
+ *
+ * <p>Only component types that have a {@link ComponentSerializer} registered are saved, everything
+ * else is treated as transient and skipped. Types are identified by class name, so a snapshot can
+ * be restored in a different process where type IDs were assigned in a different order. Components
+ * that are shared between several entities are written once per entity, and are no longer shared
+ * after being restored.
+ *
+ * @author Ches Burks
+ */
+public final class ECSSnapshot {
+    /**
+     * The contents of a single table that has been read, but not yet inserted.
+     *
+     * @param types The type of each column of data.
+     * @param data The components for each entity, indexed as {@code data[column][entity]}.
+     * @param uuids The UUID for each entity, where null means the entity has none.
+     * @param count The number of entities.
+     */
+    record TableData(ComponentType[] types, Component<?>[][] data, UUID[] uuids, int count) {}
+
+    /**
+     * Writes out a single table of entities.
+     *
+     * @author Ches Burks
+     */
+    @FunctionalInterface
+    interface TableWriter {
+        /**
+         * Write out a table.
+         *
+         * @param table The table to write.
+         * @param uuids The UUID of the entity in each row, or null if it doesn't have one.
+         * @throws IOException If there is a problem writing the table.
+         */
+        void write(Archetype table, UUID[] uuids) throws IOException;
+    }
+
+    /** Marks the start of a snapshot, the characters "IECS". */
+    private static final int MAGIC = 0x49454353;
+
+    /** The version of the format that we write. */
+    private static final short VERSION = 1;
+
+    /** Marks that another table follows. */
+    private static final byte TABLE = 1;
+
+    /** Marks the end of the snapshot. */
+    private static final byte END = 0;
+
+    /** Types that have a serializer registered, by class name. */
+    private static final Map<String, ComponentType> typesByName = new ConcurrentHashMap<>();
+
+    /**
+     * Read a snapshot, replacing everything currently in the ECS with the entities it contains.
+     * Entities get new handles, but keep their UUIDs.
+     *
+     * @param input The stream to read from, which is not closed.
+     * @return The number of entities that were restored.
+     * @throws IOException If there is a problem reading the stream, it is not a snapshot, or it
+     *     contains a type that does not have a serializer registered.
+     */
+    public static int read(@NonNull InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an ECS snapshot");
+        }
+        final short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        List<TableData> tables = new ArrayList<>();
+        int total = 0;
+        byte marker;
+        while ((marker = in.readByte()) == TABLE) {
+            TableData table = ECSSnapshot.readTable(in);
+            tables.add(table);
+            total += table.count();
+        }
+        if (marker != END) {
+            throw new IOException("Unexpected marker " + marker + " in snapshot");
+        }
+
+        ECSManager.replaceAll(tables);
+        return total;
+    }
+
+    /**
+     * Read one table, without inserting its entities.
+     *
+     * @param in The input to read from.
+     * @return The contents of the table.
+     * @throws IOException If there is a problem reading the table.
+     */
+    private static TableData readTable(DataInputStream in) throws IOException {
+        final int columnCount = in.readShort();
+        if (columnCount < 0) {
+            throw new IOException("Invalid column count " + columnCount);
+        }
+        ComponentType[] types = new ComponentType[columnCount];
+        ComponentSignature signature = ComponentSignature.EMPTY;
+        for (int column = 0; column < columnCount; ++column) {
+            final String name = in.readUTF();
+            types[column] = typesByName.get(name);
+            if (types[column] == null) {
+                throw new IOException("No serializer registered for " + name);
+            }
+            signature = signature.with(types[column].getId());
+        }
+        if (signature.cardinality() != columnCount) {
+            throw new IOException("Duplicate component types in a table");
+        }
+
+        final int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid entity count " + count);
+        }
+        UUID[] uuids = new UUID[count];
+        long[] hasUUID = new long[Math.ceilDiv(count, Long.SIZE)];
+        for (int i = 0; i < hasUUID.length; ++i) {
+            hasUUID[i] = in.readLong();
+        }
+        for (int row = 0; row < count; ++row) {
+            if ((hasUUID[row / Long.SIZE] & (1L << row)) != 0) {
+                uuids[row] = new UUID(in.readLong(), in.readLong());
+            }
+        }
+
+        Component<?>[][] data = new Component<?>[columnCount][count];
+        for (int column = 0; column < columnCount; ++column) {
+            final ComponentSerializer<?> serializer = types[column].getSerializer();
+            final Component<?>[] components = data[column];
+            for (int row = 0; row < count; ++row) {
+                components[row] = serializer.read(in);
+            }
+        }
+
+        return new TableData(types, data, uuids, count);
+    }
+
+    /**
+     * Register the serializer for a type of component, so that it is included in snapshots.
+     * Registering another serializer for the same type replaces the previous one.
+     *
+     * @param <T> The type of component.
+     * @param type The class of component.
+     * @param serializer Used to convert those components to and from binary.
+     */
+    public static <T extends Component<?>> void registerSerializer(
+            @NonNull Class<T> type, @NonNull ComponentSerializer<T> serializer) {
+        ComponentType componentType = ComponentTypeRegistry.get(type);
+        componentType.setSerializer(serializer);
+        typesByName.put(type.getName(), componentType);
+    }
+
+    /**
+     * Write a snapshot of every entity and every component that has a serializer. Other threads
+     * can keep reading from the ECS while this is running, but structural changes have to wait.
+     *
+     * @param output The stream to write to, which is flushed but not closed.
+     * @throws IOException If there is a problem writing to the stream.
+     */
+    public static void write(@NonNull OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        ECSManager.writeTables((table, uuids) -> ECSSnapshot.writeTable(out, table, uuids));
+        out.writeByte(END);
+        out.flush();
+    }
+
+    /**
+     * Write out a single table.
+     *
+     * @param out The output to write to.
+     * @param table The table to write.
+     * @param uuids The UUID of the entity in each row, or null if it doesn't have one.
+     * @throws IOException If there is a problem writing the table.
+     */
+    @SuppressWarnings("unchecked")
+    private static void writeTable(DataOutputStream out, Archetype table, UUID[] uuids)
+            throws IOException {
+        List<Integer> columns = new ArrayList<>(table.getColumnCount());
+        for (int column = 0; column < table.getColumnCount(); ++column) {
+            if (table.getColumnType(column).getSerializer() != null) {
+                columns.add(column);
+            }
+        }
+
+        out.writeByte(TABLE);
+        out.writeShort(columns.size());
+        for (int column : columns) {
+            out.writeUTF(table.getColumnType(column).getType().getName());
+        }
+
+        final int count = table.getSize();
+        out.writeInt(count);
+        long[] hasUUID = new long[Math.ceilDiv(count, Long.SIZE)];
+        for (int row = 0; row < count; ++row) {
+            if (uuids[row] != null) {
+                hasUUID[row / Long.SIZE] |= 1L << row;
+            }
+        }
+        for (long word : hasUUID) {
+            out.writeLong(word);
+        }
+        for (UUID uuid : uuids) {
+            if (uuid != null) {
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+        }
+
+        for (int column : columns) {
+            final ComponentSerializer<Component<?>> serializer =
+                    (ComponentSerializer<Component<?>>) table.getColumnType(column).getSerializer();
+            final Component<?>[] components = table.getColumn(column);
+            for (int row = 0; row < count; ++row) {
+                serializer.write(components[row], out);
+            }
+        }
+    }
+
+    /** Private constructor so this class is not instantiated. */
+    private ECSSnapshot() {}
+}
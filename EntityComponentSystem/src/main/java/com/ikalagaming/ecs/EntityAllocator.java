@@ -0,0 +1,132 @@
+package com.ikalagaming.ecs;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Hands out entity handles, recycling the slots of destroyed entities through a free list. Each
+ * slot has a generation counter that is incremented when the slot is freed, so that old handles can
+ * be detected and rejected.
+ *
+ * <p>This is not thread safe, the caller is expected to handle synchronization.
+ *
+ * @author Ches Burks
+ */
+class EntityAllocator {
+    /** The number of slots we allocate space for when the allocator is created. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The current generation of each slot. */
+    private int[] generations;
+
+    /** Whether each slot currently holds a living entity. */
+    private boolean[] alive;
+
+    /** A stack of slots that have been freed and can be reused. */
+    private int[] freeList;
+
+    /** The number of slots in the free list. */
+    private int freeCount;
+
+    /** The number of slots that have ever been handed out, and so the next brand-new slot. */
+    private int highWaterMark;
+
+    /** Create a new allocator with no entities. */
+    EntityAllocator() {
+        this.generations = new int[INITIAL_CAPACITY];
+        this.alive = new boolean[INITIAL_CAPACITY];
+        this.freeList = new int[INITIAL_CAPACITY];
+        this.freeCount = 0;
+        this.highWaterMark = 0;
+    }
+
+    /**
+     * Create a handle for a new entity, reusing a free slot if there is one.
+     *
+     * @return The new handle.
+     */
+    EntityHandle allocate() {
+        int index;
+        if (this.freeCount > 0) {
+            index = this.freeList[--this.freeCount];
+        } else {
+            if (this.highWaterMark == this.generations.length) {
+                final int newCapacity = this.generations.length * 2;
+                this.generations = Arrays.copyOf(this.generations, newCapacity);
+                this.alive = Arrays.copyOf(this.alive, newCapacity);
+                this.freeList = Arrays.copyOf(this.freeList, newCapacity);
+            }
+            index = this.highWaterMark++;
+        }
+        this.alive[index] = true;
+        return new EntityHandle(index, this.generations[index]);
+    }
+
+    /**
+     * The number of slots that have ever been used. Every valid index is below this.
+     *
+     * @return The capacity required to store every slot.
+     */
+    int capacity() {
+        return this.highWaterMark;
+    }
+
+    /** Free every slot. Generations are kept so that existing handles stay invalid. */
+    void clear() {
+        for (int i = 0; i < this.highWaterMark; ++i) {
+            if (this.alive[i]) {
+                this.free(i);
+            }
+        }
+    }
+
+    /**
+     * Free a slot so it can be reused.
+     *
+     * @param handle The entity that is being destroyed.
+     * @return True if the slot was freed, false if the handle was already invalid.
+     */
+    boolean free(@NonNull EntityHandle handle) {
+        if (!this.isAlive(handle)) {
+            return false;
+        }
+        this.free(handle.index());
+        return true;
+    }
+
+    /**
+     * Free a slot, assuming it is currently alive.
+     *
+     * @param index The slot to free.
+     */
+    private void free(int index) {
+        this.alive[index] = false;
+        ++this.generations[index];
+        this.freeList[this.freeCount++] = index;
+    }
+
+    /**
+     * Build a handle for a living slot.
+     *
+     * @param index The slot.
+     * @return The handle for the entity currently in that slot.
+     */
+    EntityHandle handleOf(int index) {
+        return new EntityHandle(index, this.generations[index]);
+    }
+
+    /**
+     * Check if a handle refers to an entity that still exists.
+     *
+     * @param handle The handle to check.
+     * @return True if the entity exists, false if it was destroyed or never existed.
+     */
+    boolean isAlive(@NonNull EntityHandle handle) {
+        final int index = handle.index();
+        return index >= 0
+                && index < this.highWaterMark
+                && this.alive[index]
+                && this.generations[index] == handle.generation();
+    }
+}
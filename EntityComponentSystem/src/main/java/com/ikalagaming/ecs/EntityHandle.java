@@ -0,0 +1,15 @@
+package com.ikalagaming.ecs;
+
+/**
+ * A compact reference to an entity. The index is a slot in the entity tables, and is reused once
+ * the entity is destroyed. The generation is incremented every time a slot is freed, so a handle to
+ * a destroyed entity will never refer to whatever entity reuses its slot later on.
+ *
+ * <p>Handles are only meaningful while the program is running. Anything that needs to refer to an
+ * entity across a save or a network connection should use {@link ECSManager#getUUID(EntityHandle)}
+ * instead.
+ *
+ * @param index The slot the entity is stored in.
+ * @param generation How many times the slot has been reused.
+ */
+public record EntityHandle(int index, int generation) {}
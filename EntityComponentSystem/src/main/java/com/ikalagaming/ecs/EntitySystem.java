@@ -0,0 +1,68 @@
+package com.ikalagaming.ecs;
+
+import lombok.NonNull;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A system performs actions on entities that have relevant components, every tick. Systems declare
+ * which types of component they read and write, so that the {@link SystemScheduler} can run systems
+ * that don't touch the same data at the same time.
+ *
+ * <p>Named to avoid confusion with {@link java.lang.System}.
+ *
+ * @author Ches Burks
+ */
+public interface EntitySystem {
+
+    /**
+     * Check if this system has to be run separately from another one, because one of them writes
+     * a type of component that the other one reads or writes.
+     *
+     * @param other The other system.
+     * @return True if the two systems must not run at the same time.
+     */
+    default boolean conflictsWith(@NonNull EntitySystem other) {
+        final Set<Class<? extends Component<?>>> writes = this.getWrites();
+        final Set<Class<? extends Component<?>>> otherWrites = other.getWrites();
+        return !Collections.disjoint(writes, other.getReads())
+                || !Collections.disjoint(writes, otherWrites)
+                || !Collections.disjoint(this.getReads(), otherWrites);
+    }
+
+    /**
+     * A human readable name for the system, used when reporting timings.
+     *
+     * @return The name of the system.
+     */
+    default String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    /**
+     * The types of component that this system reads but does not modify.
+     *
+     * @return The types of component this system reads.
+     */
+    Set<Class<? extends Component<?>>> getReads();
+
+    /**
+     * The types of component that this system modifies.
+     *
+     * @return The types of component this system writes.
+     */
+    Set<Class<? extends Component<?>>> getWrites();
+
+    /**
+     * Run the system for one tick. This may be called from any thread, and at the same time as
+     * other systems that don't conflict with this one. It must only touch the types of component
+     * it declares, and must not add or remove components or entities directly. Structural changes
+     * are recorded in the command buffer instead, and applied once every system has finished the
+     * tick.
+     *
+     * @param tick The number of the tick being run.
+     * @param commands Records structural changes, which may be used from any thread.
+     */
+    void update(long tick, @NonNull CommandBuffer commands);
+}
@@ -0,0 +1,264 @@
+package com.ikalagaming.ecs;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * A cached view over every entity that has all of a set of component types, and none of another
+ * set. Queries are registered with the {@link ECSManager} when they are built, and the manager
+ * keeps the list of matching tables up to date as new combinations of components show up. Since
+ * adding or removing components moves an entity between tables, the set of matching entities is
+ * always current without rescanning anything, and iterating over it only allocates one cursor per
+ * pass rather than anything per entity.
+ *
+ * <p>Building a query with the same filters as an existing one returns the existing query.
+ *
+ * <p>Queries can also skip entities whose components have not been added or changed since a given
+ * tick, see {@link #forEachChangedSince(long, Consumer)}. By default every required type is checked
+ * for changes, which can be narrowed with {@link QueryBuilder#changed(Class...)}.
+ *
+ * <pre>{@code
+ * Query moving =
+ *         Query.builder().with(Position.class, Velocity.class).without(Frozen.class).build();
+ * moving.forEach(row -> row.get(Position.class).add(row.get(Velocity.class)));
+ * }</pre>
+ *
+ * @author Ches Burks
+ */
+public final class Query {
+    /** Used for building queries step-by-step. */
+    public static class QueryBuilder {
+        /** The types that entities must have. */
+        private final Set<Class<? extends Component<?>>> with = new LinkedHashSet<>();
+
+        /** The types that entities must not have. */
+        private final Set<Class<? extends Component<?>>> without = new LinkedHashSet<>();
+
+        /** The required types that are checked for changes. */
+        private final Set<Class<? extends Component<?>>> changed = new LinkedHashSet<>();
+
+        /** Non-public constructor so that it's not called directly. */
+        QueryBuilder() {
+            // NOTE(ches) nothing special, we just want only the builder method to create these
+        }
+
+        /**
+         * Look up or register the query.
+         *
+         * @return The query with the specified filters.
+         */
+        public Query build() {
+            return ECSManager.registerQuery(this.with, this.without, this.changed);
+        }
+
+        /**
+         * Require matching entities to have all of the given component types, and only check those
+         * types when looking for changes. If this is never called, all required types are checked.
+         *
+         * @param types The required types to check for changes.
+         * @return This builder, for chaining.
+         */
+        @SafeVarargs
+        public final QueryBuilder changed(final @NonNull Class<? extends Component<?>>... types) {
+            this.with(types);
+            this.changed.addAll(Arrays.asList(types));
+            return this;
+        }
+
+        /**
+         * Require matching entities to have all of the given component types.
+         *
+         * @param types The required types.
+         * @return This builder, for chaining.
+         */
+        @SafeVarargs
+        public final QueryBuilder with(final @NonNull Class<? extends Component<?>>... types) {
+            for (Class<? extends Component<?>> type : types) {
+                if (type == null) {
+                    throw new NullPointerException("null parameter passed in");
+                }
+                this.with.add(type);
+            }
+            return this;
+        }
+
+        /**
+         * Exclude entities that have any of the given component types.
+         *
+         * @param types The excluded types.
+         * @return This builder, for chaining.
+         */
+        @SafeVarargs
+        public final QueryBuilder without(final @NonNull Class<? extends Component<?>>... types) {
+            for (Class<? extends Component<?>> type : types) {
+                if (type == null) {
+                    throw new NullPointerException("null parameter passed in");
+                }
+                this.without.add(type);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Start a builder for a query.
+     *
+     * @return The builder.
+     */
+    public static QueryBuilder builder() {
+        return new QueryBuilder();
+    }
+
+    /**
+     * The component types that matching entities must have, in the order they were specified.
+     *
+     * @return The required types.
+     */
+    @Getter private final List<Class<? extends Component<?>>> with;
+
+    /**
+     * The component types that matching entities must not have.
+     *
+     * @return The excluded types.
+     */
+    @Getter private final Set<Class<? extends Component<?>>> without;
+
+    /** The required types as an array, for fast scanning while iterating. */
+    final Class<?>[] withArray;
+
+    /** The type IDs of the required types, in the same order as {@link #withArray}. */
+    final int[] withIds;
+
+    /** The positions within {@link #withArray} of the types that are checked for changes. */
+    final int[] changedIndices;
+
+    /** The required types as a signature, for matching against tables. */
+    private final ComponentSignature withSignature;
+
+    /** The excluded types as a signature, for matching against tables. */
+    private final ComponentSignature withoutSignature;
+
+    /** Every table that currently matches this query. Maintained by the {@link ECSManager}. */
+    final List<Archetype> matches = new ArrayList<>();
+
+    /**
+     * Create a new query. Queries should be created through the {@link #builder()} so that they
+     * are registered.
+     *
+     * @param with The required types.
+     * @param without The excluded types.
+     * @param changed The required types that are checked for changes, or empty for all of them.
+     */
+    Query(
+            @NonNull Set<Class<? extends Component<?>>> with,
+            @NonNull Set<Class<? extends Component<?>>> without,
+            @NonNull Set<Class<? extends Component<?>>> changed) {
+        this.with = List.copyOf(with);
+        this.without = Set.copyOf(without);
+        this.withArray = this.with.toArray(Class<?>[]::new);
+        this.withIds = new int[this.withArray.length];
+        for (int i = 0; i < this.withArray.length; ++i) {
+            this.withIds[i] = ComponentTypeRegistry.get(this.withArray[i]).getId();
+        }
+        this.withSignature = ECSManager.signatureOf(this.with);
+        this.withoutSignature = ECSManager.signatureOf(this.without);
+        this.changedIndices =
+                IntStream.range(0, this.withArray.length)
+                        .filter(i -> changed.isEmpty() || changed.contains(this.withArray[i]))
+                        .toArray();
+    }
+
+    /**
+     * Count the number of entities that currently match the query.
+     *
+     * @return The number of matching entities.
+     */
+    public int count() {
+        return ECSManager.count(this);
+    }
+
+    /**
+     * Run an action on every matching entity. The row passed to the action is reused for every
+     * entity, so it must not be stored. Each call gets its own row, so the same query can be
+     * iterated from several threads at once, or inside another iteration over it. The action must
+     * not add or remove components or entities.
+     *
+     * @param action The action to perform on each matching row.
+     */
+    public void forEach(@NonNull Consumer<QueryRow> action) {
+        ECSManager.forEach(this, new QueryRow(this), action);
+    }
+
+    /**
+     * Run an action on every matching entity where at least one of the types being checked for
+     * changes was added or changed after a tick. The row passed to the action is reused for every
+     * entity, so it must not be stored, but each call gets its own row. The action must not add or
+     * remove components or entities.
+     *
+     * @param tick The last tick that has already been processed, usually the value of {@link
+     *     ECSManager#getChangeTick()} from the last time this was called.
+     * @param action The action to perform on each changed row.
+     */
+    public void forEachChangedSince(long tick, @NonNull Consumer<QueryRow> action) {
+        ECSManager.forEachChangedSince(this, new QueryRow(this), tick, action);
+    }
+
+    /**
+     * Run an action on every matching entity, splitting large queries into chunks that are
+     * processed by several threads at once. Each chunk gets its own row, which must not be stored.
+     * The action must be thread safe, and must not add or remove components or entities.
+     *
+     * @param action The action to perform on each matching row.
+     */
+    public void forEachParallel(@NonNull Consumer<QueryRow> action) {
+        ECSManager.forEachParallel(this, action);
+    }
+
+    /**
+     * Run an action on every matching entity, passing in one of its components. The action must
+     * not add or remove components or entities.
+     *
+     * @param <T> The type of component we are interested in.
+     * @param type The class of component to pass in, which must be one of the required types.
+     * @param action The action to perform on each entity and its component.
+     * @throws IllegalArgumentException If the type is not one of the required types.
+     */
+    public <T extends Component<?>> void forEach(
+            @NonNull Class<T> type, @NonNull BiConsumer<EntityHandle, T> action) {
+        if (!this.with.contains(type)) {
+            throw new IllegalArgumentException(
+                    type.getName() + " is not a required type for this query");
+        }
+        this.forEach(row -> action.accept(row.getEntity(), row.get(type)));
+    }
+
+    /**
+     * Generates a list of all entities that currently match the query.
+     *
+     * @return The list of matching entities. May be empty.
+     */
+    public List<EntityHandle> getEntities() {
+        return ECSManager.getEntities(this);
+    }
+
+    /**
+     * Check if a table of entities matches this query.
+     *
+     * @param archetype The table to check.
+     * @return True if the entities in that table match the query.
+     */
+    boolean matches(@NonNull Archetype archetype) {
+        final ComponentSignature signature = archetype.getSignature();
+        return signature.containsAll(this.withSignature)
+                && !signature.intersects(this.withoutSignature);
+    }
+}
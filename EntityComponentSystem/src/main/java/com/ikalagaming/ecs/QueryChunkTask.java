@@ -0,0 +1,98 @@
+package com.ikalagaming.ecs;
+
+import lombok.NonNull;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Processes a range of chunks of a query, splitting the range in half and forking until there is
+ * only one chunk left. Each chunk is a run of consecutive rows from one table. The thread that
+ * created the task is expected to hold the ECS read lock until it completes.
+ *
+ * @author Ches Burks
+ */
+class QueryChunkTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    /** The query we are iterating over. */
+    private final transient Query query;
+
+    /** The table that each chunk is in. */
+    private final transient Archetype[] tables;
+
+    /** The first row of each chunk. */
+    private final int[] starts;
+
+    /** One past the last row of each chunk. */
+    private final int[] ends;
+
+    /** The first chunk this task is responsible for. */
+    private final int from;
+
+    /** One past the last chunk this task is responsible for. */
+    private final int to;
+
+    /** The action to perform on each row. */
+    private final transient Consumer<QueryRow> action;
+
+    /**
+     * Create a task to process a range of chunks.
+     *
+     * @param query The query we are iterating over.
+     * @param tables The table that each chunk is in.
+     * @param starts The first row of each chunk.
+     * @param ends One past the last row of each chunk.
+     * @param from The first chunk to process.
+     * @param to One past the last chunk to process.
+     * @param action The action to perform on each row.
+     */
+    QueryChunkTask(
+            @NonNull Query query,
+            @NonNull Archetype[] tables,
+            @NonNull int[] starts,
+            @NonNull int[] ends,
+            int from,
+            int to,
+            @NonNull Consumer<QueryRow> action) {
+        this.query = query;
+        this.tables = tables;
+        this.starts = starts;
+        this.ends = ends;
+        this.from = from;
+        this.to = to;
+        this.action = action;
+    }
+
+    @Override
+    protected void compute() {
+        if (this.to - this.from > 1) {
+            final int middle = (this.from + this.to) >>> 1;
+            RecursiveAction.invokeAll(
+                    new QueryChunkTask(
+                            this.query,
+                            this.tables,
+                            this.starts,
+                            this.ends,
+                            this.from,
+                            middle,
+                            this.action),
+                    new QueryChunkTask(
+                            this.query,
+                            this.tables,
+                            this.starts,
+                            this.ends,
+                            middle,
+                            this.to,
+                            this.action));
+            return;
+        }
+        QueryRow cursor = new QueryRow(this.query);
+        cursor.setArchetype(this.tables[this.from]);
+        final int end = this.ends[this.from];
+        for (int row = this.starts[this.from]; row < end; ++row) {
+            cursor.moveTo(row);
+            this.action.accept(cursor);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.ikalagaming.ecs;
+
+import lombok.NonNull;
+
+/**
+ * A cursor over the rows that match a {@link Query}. The same cursor is moved from row to row while
+ * iterating, so that walking a query does not allocate anything per entity. A row is only valid
+ * during the callback it was passed to.
+ *
+ * @author Ches Burks
+ */
+public final class QueryRow {
+    /** The query we are iterating over. */
+    private final Query query;
+
+    /** The column for each of the query's required types, in the current table. */
+    private final int[] columns;
+
+    /** The table we are currently in. */
+    private Archetype archetype;
+
+    /** The row within the table. */
+    private int row;
+
+    /**
+     * Create a new cursor for a query.
+     *
+     * @param query The query we will iterate over.
+     */
+    QueryRow(@NonNull Query query) {
+        this.query = query;
+        this.columns = new int[query.withArray.length];
+    }
+
+    /**
+     * Fetch a component from the current entity. Required types of the query are resolved without
+     * any lookups, other types have to be looked up in the current table.
+     *
+     * @param <T> The type of component.
+     * @param type The class of component we are looking for.
+     * @return The component, or null if the entity does not have one of that type.
+     */
+    public <T extends Component<?>> T get(@NonNull Class<T> type) {
+        final int column = this.columnOf(type);
+        if (column < 0) {
+            return null;
+        }
+        return type.cast(this.archetype.get(column, this.row));
+    }
+
+    /**
+     * Find the column a type of component is stored in for the current table.
+     *
+     * @param type The class of component we are looking for.
+     * @return The column index, or -1 if the current table does not store that type.
+     */
+    private int columnOf(Class<?> type) {
+        final Class<?>[] with = this.query.withArray;
+        for (int i = 0; i < with.length; ++i) {
+            if (with[i] == type) {
+                return this.columns[i];
+            }
+        }
+        return this.archetype.getColumnIndex(ComponentTypeRegistry.get(type).getId());
+    }
+
+    /**
+     * The entity the cursor is currently pointing at.
+     *
+     * @return The current entity.
+     */
+    public EntityHandle getEntity() {
+        return ECSManager.handleOf(this.archetype.getEntities()[this.row]);
+    }
+
+    /**
+     * Check if a component of the current entity was added after a tick.
+     *
+     * @param type The class of component.
+     * @param tick The last tick that has already been processed.
+     * @return True if the component was added after that tick, or its type is not tracked. False
+     *     if it was added earlier or the entity does not have it.
+     */
+    public boolean isAddedSince(@NonNull Class<? extends Component<?>> type, long tick) {
+        final int column = this.columnOf(type);
+        return column >= 0 && this.archetype.isAddedSince(column, this.row, tick);
+    }
+
+    /**
+     * Check if any of the types the query checks for changes were added or changed after a tick.
+     *
+     * @param tick The last tick that has already been processed.
+     * @return True if the current entity changed after that tick.
+     */
+    boolean isChangedSince(long tick) {
+        for (int i : this.query.changedIndices) {
+            if (this.archetype.isChangedSince(this.columns[i], this.row, tick)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if a component of the current entity was added or changed after a tick.
+     *
+     * @param type The class of component.
+     * @param tick The last tick that has already been processed.
+     * @return True if the component changed after that tick, or its type is not tracked. False if
+     *     it has not changed or the entity does not have it.
+     */
+    public boolean isChangedSince(@NonNull Class<? extends Component<?>> type, long tick) {
+        final int column = this.columnOf(type);
+        return column >= 0 && this.archetype.isChangedSince(column, this.row, tick);
+    }
+
+    /**
+     * Record that a component of the current entity was modified in place, so that it shows up as
+     * changed. Safe to call from parallel iteration, since each row is only visited once.
+     *
+     * @param type The class of component that was changed.
+     */
+    public void markChanged(@NonNull Class<? extends Component<?>> type) {
+        final int column = this.columnOf(type);
+        if (column >= 0) {
+            this.archetype.markChanged(column, this.row, ECSManager.getChangeTick());
+        }
+    }
+
+    /**
+     * Move to a row.
+     *
+     * @param newRow The row within the current table.
+     */
+    void moveTo(int newRow) {
+        this.row = newRow;
+    }
+
+    /**
+     * Move into a new table, resolving the columns for each required type.
+     *
+     * @param newArchetype The table we are now iterating over.
+     */
+    void setArchetype(@NonNull Archetype newArchetype) {
+        this.archetype = newArchetype;
+        final int[] with = this.query.withIds;
+        for (int i = 0; i < with.length; ++i) {
+            this.columns[i] = newArchetype.getColumnIndex(with[i]);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.ikalagaming.ecs;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs a set of {@link EntitySystem systems} once per tick, running systems in parallel on a fork
+ * join pool whenever their declared component access does not conflict.
+ *
+ * <p>Each tick, a dependency graph is built from the systems in the order they were added. A
+ * system waits for every earlier system that it conflicts with, and otherwise starts right away.
+ * So the results are the same as running the systems one after another in that order, but
+ * unrelated systems overlap.
+ *
+ * <p>Systems record structural changes in a {@link CommandBuffer}, which is applied in one batch
+ * after every system has finished the tick.
+ *
+ * <p>The ECS change tick is advanced at the start of each tick, so everything the systems and
+ * their command buffers change during a tick is stamped with the same value.
+ *
+ * @author Ches Burks
+ */
+public class SystemScheduler implements AutoCloseable {
+    /** The systems, in the order they were added. */
+    private final List<EntitySystem> systems = new CopyOnWriteArrayList<>();
+
+    /** Timing information for each system, in the same order as the systems. */
+    private final List<SystemTiming> timings = new CopyOnWriteArrayList<>();
+
+    /** Collects structural changes made by systems, applied at the end of each tick. */
+    private final CommandBuffer commands = new CommandBuffer();
+
+    /** The pool to run systems on. */
+    private final ForkJoinPool pool;
+
+    /** Whether we created the pool, and so are responsible for shutting it down. */
+    private final boolean ownsPool;
+
+    /**
+     * The number of ticks that have been run.
+     *
+     * @return The current tick count.
+     */
+    @Getter private long tick;
+
+    /**
+     * How long the last tick took, from start to when the last system finished, in nanoseconds.
+     *
+     * @return The wall clock time of the previous tick.
+     */
+    @Getter private long lastTickNanos;
+
+    /** Create a scheduler with its own pool, with a thread for each available processor. */
+    public SystemScheduler() {
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        this.ownsPool = true;
+    }
+
+    /**
+     * Create a scheduler that runs systems on an existing pool.
+     *
+     * @param pool The pool to run systems on, which will not be shut down by this scheduler.
+     */
+    public SystemScheduler(@NonNull ForkJoinPool pool) {
+        this.pool = pool;
+        this.ownsPool = false;
+    }
+
+    /**
+     * Add a system to the end of the schedule.
+     *
+     * @param system The system to add.
+     */
+    public synchronized void addSystem(@NonNull EntitySystem system) {
+        this.systems.add(system);
+        this.timings.add(new SystemTiming(system.getName()));
+    }
+
+    /**
+     * Figure out which earlier systems each system has to wait for.
+     *
+     * @param current The systems that are being scheduled.
+     * @return For each system, the indices of the systems it depends on.
+     */
+    private static int[][] buildDependencies(List<EntitySystem> current) {
+        final int count = current.size();
+        int[][] dependencies = new int[count][];
+        int[] scratch = new int[count];
+        for (int i = 0; i < count; ++i) {
+            EntitySystem system = current.get(i);
+            int found = 0;
+            for (int j = 0; j < i; ++j) {
+                if (system.conflictsWith(current.get(j))) {
+                    scratch[found++] = j;
+                }
+            }
+            int[] result = new int[found];
+            System.arraycopy(scratch, 0, result, 0, found);
+            dependencies[i] = result;
+        }
+        return dependencies;
+    }
+
+    @Override
+    public void close() {
+        if (this.ownsPool) {
+            this.pool.shutdown();
+        }
+    }
+
+    /**
+     * Fetch the timing information for each system, in schedule order. The returned objects are
+     * updated as more ticks run.
+     *
+     * @return The timings for each system.
+     */
+    public List<SystemTiming> getTimings() {
+        return List.copyOf(this.timings);
+    }
+
+    /**
+     * Remove a system from the schedule.
+     *
+     * @param system The system to remove.
+     * @return True if the system was removed, false if it was not scheduled.
+     */
+    public synchronized boolean removeSystem(@NonNull EntitySystem system) {
+        final int index = this.systems.indexOf(system);
+        if (index < 0) {
+            return false;
+        }
+        this.systems.remove(index);
+        this.timings.remove(index);
+        return true;
+    }
+
+    /**
+     * Run a system, recording how long it took.
+     *
+     * @param system The system to run.
+     * @param timing Where to record the time.
+     * @param currentTick The tick we are running.
+     * @param commands The buffer for structural changes.
+     */
+    private static void run(
+            EntitySystem system, SystemTiming timing, long currentTick, CommandBuffer commands) {
+        final long start = System.nanoTime();
+        try {
+            system.update(currentTick, commands);
+        } finally {
+            timing.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Run every system once, wait for them all to finish, and then apply their structural changes.
+     * If any system throws an exception, systems that depend on it are skipped, and the exception
+     * is rethrown once everything else is done. In that case the structural changes are kept until
+     * the next tick.
+     */
+    public synchronized void tick() {
+        final long start = System.nanoTime();
+        final long currentTick = this.tick++;
+        ECSManager.advanceChangeTick();
+        final List<EntitySystem> current = new ArrayList<>(this.systems);
+        final List<SystemTiming> currentTimings = new ArrayList<>(this.timings);
+        final int[][] dependencies = SystemScheduler.buildDependencies(current);
+
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Void>[] futures = new CompletableFuture[current.size()];
+        for (int i = 0; i < futures.length; ++i) {
+            final EntitySystem system = current.get(i);
+            final SystemTiming timing = currentTimings.get(i);
+            final Runnable task =
+                    () -> SystemScheduler.run(system, timing, currentTick, this.commands);
+
+            final int[] waitFor = dependencies[i];
+            if (waitFor.length == 0) {
+                futures[i] = CompletableFuture.runAsync(task, this.pool);
+            } else {
+                CompletableFuture<?>[] before = new CompletableFuture[waitFor.length];
+                for (int j = 0; j < waitFor.length; ++j) {
+                    before[j] = futures[waitFor[j]];
+                }
+                futures[i] = CompletableFuture.allOf(before).thenRunAsync(task, this.pool);
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(futures).join();
+            this.commands.apply();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        } finally {
+            this.lastTickNanos = System.nanoTime() - start;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.ikalagaming.ecs;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Tracks how long a system takes to run, so we can see which systems are expensive and how well
+ * they scale.
+ *
+ * @author Ches Burks
+ */
+public class SystemTiming {
+    /**
+     * The name of the system.
+     *
+     * @return The system name.
+     */
+    @Getter private final String name;
+
+    /**
+     * How long the system took the last time it ran, in nanoseconds.
+     *
+     * @return The most recent run time.
+     */
+    @Getter private volatile long lastNanos;
+
+    /**
+     * The total amount of time the system has spent running, in nanoseconds.
+     *
+     * @return The total run time.
+     */
+    @Getter private volatile long totalNanos;
+
+    /**
+     * The number of times the system has been run.
+     *
+     * @return The number of runs.
+     */
+    @Getter private volatile long runs;
+
+    /**
+     * Create a new, empty timing record.
+     *
+     * @param name The name of the system.
+     */
+    SystemTiming(@NonNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * The average time the system takes to run.
+     *
+     * @return The average run time in nanoseconds, or 0 if it has never run.
+     */
+    public double getAverageNanos() {
+        final long count = this.runs;
+        if (count == 0) {
+            return 0;
+        }
+        return (double) this.totalNanos / count;
+    }
+
+    /**
+     * Record a run of the system. Only called by the thread running the system, so the fields are
+     * never written concurrently.
+     *
+     * @param nanos How long the run took, in nanoseconds.
+     */
+    void record(long nanos) {
+        this.lastNanos = nanos;
+        this.totalNanos += nanos;
+        this.runs++;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s: last %.3f ms, average %.3f ms over %d runs",
+                this.name,
+                this.lastNanos / 1_000_000.0,
+                this.getAverageNanos() / 1_000_000.0,
+                this.runs);
+    }
+}
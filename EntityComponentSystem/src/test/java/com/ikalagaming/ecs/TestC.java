@@ -0,0 +1,8 @@
+package com.ikalagaming.ecs;
+
+/**
+ * A test component, which has no serializer registered.
+ *
+ * @author Ches Burks
+ */
+public class TestC extends Component<TestC> {}
@@ -0,0 +1,160 @@
+package com.ikalagaming.ecs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for tracking when components are added, changed, and removed.
+ *
+ * @author Ches Burks
+ */
+class TestChangeTracking {
+
+    /** Setup before each test. */
+    @BeforeEach
+    void beforeTest() {
+        ECSManager.clear();
+        ECSManager.setChangeTracking(TestA.class, true);
+        ECSManager.setChangeTracking(TestB.class, true);
+        ECSManager.registerRemovalConsumer();
+    }
+
+    /** Teardown after each test. */
+    @AfterEach
+    void afterTest() {
+        ECSManager.unregisterRemovalConsumer();
+    }
+
+    /**
+     * Collect the entities a query reports as changed.
+     *
+     * @param query The query.
+     * @param tick The last tick that was processed.
+     * @return The changed entities.
+     */
+    private static List<EntityHandle> changedSince(Query query, long tick) {
+        List<EntityHandle> result = new ArrayList<>();
+        query.forEachChangedSince(tick, row -> result.add(row.getEntity()));
+        return result;
+    }
+
+    /** Test that additions and in place changes are picked up, and only once. */
+    @Test
+    void testChangedSince() {
+        Query query = Query.builder().with(TestA.class).build();
+        EntityHandle entity1 = ECSManager.createEntity();
+        EntityHandle entity2 = ECSManager.createEntity();
+        ECSManager.addComponent(entity1, new TestA());
+        ECSManager.addComponent(entity2, new TestA());
+
+        long seen = ECSManager.getChangeTick();
+        ECSManager.advanceChangeTick();
+        Assertions.assertEquals(List.of(), TestChangeTracking.changedSince(query, seen));
+
+        ECSManager.getComponent(entity2, TestA.class).get().setTestInt(3);
+        ECSManager.markChanged(entity2, TestA.class);
+        Assertions.assertEquals(List.of(entity2), TestChangeTracking.changedSince(query, seen));
+
+        // Moving to another table keeps the ticks
+        ECSManager.addComponent(entity2, new TestB());
+        Assertions.assertEquals(List.of(entity2), TestChangeTracking.changedSince(query, seen));
+
+        seen = ECSManager.advanceChangeTick();
+        ECSManager.advanceChangeTick();
+        query.forEach(
+                row -> {
+                    if (row.getEntity().equals(entity1)) {
+                        row.markChanged(TestA.class);
+                    }
+                });
+        Assertions.assertEquals(List.of(entity1), TestChangeTracking.changedSince(query, seen));
+    }
+
+    /** Test that only the requested types are checked for changes. */
+    @Test
+    void testNarrowedChanges() {
+        Query query = Query.builder().with(TestB.class).changed(TestA.class).build();
+        EntityHandle entity = ECSManager.createEntity();
+        ECSManager.addComponent(entity, new TestA());
+        ECSManager.addComponent(entity, new TestB());
+
+        final long seen = ECSManager.advanceChangeTick();
+        ECSManager.advanceChangeTick();
+        ECSManager.markChanged(entity, TestB.class);
+        Assertions.assertEquals(List.of(), TestChangeTracking.changedSince(query, seen));
+
+        ECSManager.markChanged(entity, TestA.class);
+        Assertions.assertEquals(List.of(entity), TestChangeTracking.changedSince(query, seen));
+    }
+
+    /** Test that removals are reported until they are cleared. */
+    @Test
+    void testRemovals() {
+        EntityHandle entity1 = ECSManager.createEntity();
+        EntityHandle entity2 = ECSManager.createEntity();
+        ECSManager.addComponent(entity1, new TestA());
+        ECSManager.addComponent(entity2, new TestA());
+
+        final long seen = ECSManager.advanceChangeTick();
+        ECSManager.advanceChangeTick();
+        ECSManager.removeComponent(entity1, TestA.class);
+        ECSManager.destroyEntity(entity2);
+
+        Assertions.assertEquals(
+                List.of(entity1, entity2), ECSManager.getRemovedSince(TestA.class, seen));
+        Assertions.assertEquals(List.of(), ECSManager.getRemovedSince(TestB.class, seen));
+
+        ECSManager.clearRemovals(ECSManager.getChangeTick());
+        Assertions.assertEquals(List.of(), ECSManager.getRemovedSince(TestA.class, seen));
+    }
+
+    /** Test that removals are only kept while a consumer is registered. */
+    @Test
+    void testRemovalConsumers() {
+        EntityHandle entity1 = ECSManager.createEntity();
+        EntityHandle entity2 = ECSManager.createEntity();
+        ECSManager.addComponent(entity1, new TestA());
+        ECSManager.addComponent(entity2, new TestA());
+        final long seen = ECSManager.advanceChangeTick();
+        ECSManager.advanceChangeTick();
+
+        ECSManager.unregisterRemovalConsumer();
+        ECSManager.destroyEntity(entity1);
+        Assertions.assertEquals(List.of(), ECSManager.getRemovedSince(TestA.class, seen));
+
+        ECSManager.registerRemovalConsumer();
+        ECSManager.destroyEntity(entity2);
+        Assertions.assertEquals(List.of(entity2), ECSManager.getRemovedSince(TestA.class, seen));
+
+        // Everything is forgotten once nobody is interested
+        ECSManager.unregisterRemovalConsumer();
+        ECSManager.registerRemovalConsumer();
+        Assertions.assertEquals(List.of(), ECSManager.getRemovedSince(TestA.class, seen));
+    }
+
+    /** Test that untracked types always count as changed, and removals are not recorded. */
+    @Test
+    void testUntracked() {
+        Query query = Query.builder().with(TestA.class).build();
+        EntityHandle entity = ECSManager.createEntity();
+        ECSManager.addComponent(entity, new TestA());
+        ECSManager.setChangeTracking(TestA.class, false);
+
+        final long seen = ECSManager.advanceChangeTick();
+        Assertions.assertEquals(List.of(entity), TestChangeTracking.changedSince(query, seen));
+
+        ECSManager.removeComponent(entity, TestA.class);
+        Assertions.assertEquals(List.of(), ECSManager.getRemovedSince(TestA.class, seen));
+
+        ECSManager.setChangeTracking(TestA.class, true);
+        ECSManager.addComponent(entity, new TestA());
+        ECSManager.advanceChangeTick();
+        Assertions.assertEquals(
+                List.of(), TestChangeTracking.changedSince(query, ECSManager.getChangeTick()));
+    }
+}
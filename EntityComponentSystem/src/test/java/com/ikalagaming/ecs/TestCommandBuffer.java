@@ -0,0 +1,106 @@
+package com.ikalagaming.ecs;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link CommandBuffer} class.
+ *
+ * @author Ches Burks
+ */
+class TestCommandBuffer {
+
+    /** Setup before each test. */
+    @BeforeEach
+    void beforeTest() {
+        ECSManager.clear();
+    }
+
+    /** Test that changes are only made when the buffer is applied. */
+    @Test
+    void testDeferred() {
+        EntityHandle entity = ECSManager.createEntity();
+        TestA a = new TestA();
+        ECSManager.addComponent(entity, a);
+
+        CommandBuffer buffer = new CommandBuffer();
+        Assertions.assertTrue(buffer.isEmpty());
+
+        Query query = Query.builder().with(TestA.class).build();
+        query.forEach(row -> buffer.addComponent(row.getEntity(), new TestB()));
+        buffer.createEntity(new TestA(), new TestB());
+
+        Assertions.assertFalse(buffer.isEmpty());
+        Assertions.assertFalse(ECSManager.containsComponent(entity, TestB.class));
+        Assertions.assertEquals(1, ECSManager.getAllEntities().size());
+
+        buffer.apply();
+
+        Assertions.assertTrue(buffer.isEmpty());
+        Assertions.assertTrue(ECSManager.containsComponent(entity, TestB.class));
+        Assertions.assertSame(a, ECSManager.getComponent(entity, TestA.class).get());
+        Assertions.assertEquals(2, ECSManager.getAllEntities().size());
+        Assertions.assertEquals(
+                2, ECSManager.getAllEntitiesWithComponent(TestA.class, TestB.class).size());
+    }
+
+    /** Test that destroying an entity wins over other changes to it. */
+    @Test
+    void testDestroyWins() {
+        EntityHandle entity = ECSManager.createEntity();
+        CommandBuffer buffer = new CommandBuffer();
+
+        buffer.addComponent(entity, new TestA());
+        buffer.destroyEntity(entity);
+        buffer.addComponent(entity, new TestB());
+        buffer.apply();
+
+        Assertions.assertFalse(ECSManager.isAlive(entity));
+        Assertions.assertTrue(ECSManager.getAllComponents(TestA.class).isEmpty());
+        Assertions.assertTrue(ECSManager.getAllComponents(TestB.class).isEmpty());
+    }
+
+    /** Test that several changes to one entity are merged in the order they were recorded. */
+    @Test
+    void testMergedChanges() {
+        EntityHandle entity = ECSManager.createEntity();
+        TestA original = new TestA();
+        TestB b = new TestB();
+        ECSManager.addComponent(entity, original);
+        ECSManager.addComponent(entity, b);
+
+        TestA replacement = new TestA();
+        CommandBuffer buffer = new CommandBuffer();
+        buffer.removeComponent(entity, TestA.class);
+        buffer.addComponent(entity, replacement);
+        buffer.removeComponent(entity, TestB.class);
+        buffer.addComponent(entity, b);
+        buffer.apply();
+
+        Assertions.assertSame(replacement, ECSManager.getComponent(entity, TestA.class).get());
+        Assertions.assertSame(b, ECSManager.getComponent(entity, TestB.class).get());
+        Assertions.assertTrue(original.getParents().isEmpty());
+        Assertions.assertEquals(List.of(entity), b.getParents());
+    }
+
+    /** Test recording from several threads at once. */
+    @Test
+    void testParallelRecording() {
+        final int count = ECSManager.PARALLEL_CHUNK_SIZE * 4;
+        for (int i = 0; i < count; ++i) {
+            ECSManager.addComponent(ECSManager.createEntity(), new TestA());
+        }
+
+        CommandBuffer buffer = new CommandBuffer();
+        Query query = Query.builder().with(TestA.class).build();
+        query.forEachParallel(row -> buffer.removeComponent(row.getEntity(), TestA.class));
+        Assertions.assertEquals(count, query.count());
+
+        buffer.apply();
+        Assertions.assertEquals(0, query.count());
+        Assertions.assertEquals(count, ECSManager.getAllEntities().size());
+    }
+}
@@ -0,0 +1,58 @@
+package com.ikalagaming.ecs;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the component type registry and signatures.
+ *
+ * @author Ches Burks
+ */
+class TestComponentTypeRegistry {
+
+    /** Check that a class and its components always resolve to the same type. */
+    @Test
+    void testStableTypes() {
+        ComponentType type = ComponentTypeRegistry.get(TestA.class);
+        Assertions.assertSame(type, ComponentTypeRegistry.get(TestA.class));
+        Assertions.assertSame(type, ComponentTypeRegistry.of(new TestA()));
+        Assertions.assertSame(type, new TestA().getComponentType());
+        Assertions.assertSame(type, ComponentTypeRegistry.get(type.getId()));
+        Assertions.assertEquals(TestA.class, type.getType());
+    }
+
+    /** Check that IDs are dense and distinct. */
+    @Test
+    void testDenseIds() {
+        int a = ComponentTypeRegistry.get(TestA.class).getId();
+        int b = ComponentTypeRegistry.get(TestB.class).getId();
+        Assertions.assertNotEquals(a, b);
+        Assertions.assertTrue(a < ComponentTypeRegistry.count());
+        Assertions.assertTrue(b < ComponentTypeRegistry.count());
+        Assertions.assertThrows(
+                IndexOutOfBoundsException.class,
+                () -> ComponentTypeRegistry.get(ComponentTypeRegistry.count()));
+    }
+
+    /** Check the set operations on signatures. */
+    @Test
+    void testSignatures() {
+        ComponentSignature small = ComponentSignature.of(1, 70);
+        ComponentSignature large = small.with(3);
+
+        Assertions.assertEquals(2, small.cardinality());
+        Assertions.assertEquals(3, large.cardinality());
+        Assertions.assertTrue(large.containsAll(small));
+        Assertions.assertFalse(small.containsAll(large));
+        Assertions.assertTrue(small.intersects(large));
+        Assertions.assertFalse(small.intersects(ComponentSignature.of(2)));
+        Assertions.assertEquals(70, large.maxId());
+        Assertions.assertEquals(3, large.nextId(2));
+        Assertions.assertEquals(-1, large.nextId(71));
+
+        ComponentSignature trimmed = large.without(70).without(3);
+        Assertions.assertEquals(ComponentSignature.of(1), trimmed);
+        Assertions.assertEquals(ComponentSignature.of(1).hashCode(), trimmed.hashCode());
+        Assertions.assertEquals(ComponentSignature.EMPTY, trimmed.without(1));
+    }
+}
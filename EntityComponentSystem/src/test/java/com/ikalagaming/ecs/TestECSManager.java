@@ -25,8 +25,8 @@ class TestECSManager {
     /** Test that the clear method really clears everything. */
     @Test
     void testClear() {
-        UUID entity1 = ECSManager.createEntity();
-        UUID entity2 = ECSManager.createEntity();
+        EntityHandle entity1 = ECSManager.createEntity();
+        EntityHandle entity2 = ECSManager.createEntity();
         ECSManager.createEntity();
 
         TestA a1 = new TestA();
@@ -42,7 +42,7 @@ class TestECSManager {
 
         ECSManager.clear();
 
-        List<UUID> entities = ECSManager.getAllEntities();
+        List<EntityHandle> entities = ECSManager.getAllEntities();
         Assertions.assertNotNull(entities);
         Assertions.assertTrue(entities.isEmpty());
 
@@ -53,10 +53,10 @@ class TestECSManager {
         Assertions.assertNotNull(bComponents);
         Assertions.assertTrue(bComponents.isEmpty());
 
-        List<UUID> aEntities = ECSManager.getAllEntitiesWithComponent(TestA.class);
+        List<EntityHandle> aEntities = ECSManager.getAllEntitiesWithComponent(TestA.class);
         Assertions.assertNotNull(aEntities);
         Assertions.assertTrue(aEntities.isEmpty());
-        List<UUID> bEntities = ECSManager.getAllEntitiesWithComponent(TestB.class);
+        List<EntityHandle> bEntities = ECSManager.getAllEntitiesWithComponent(TestB.class);
         Assertions.assertNotNull(bEntities);
         Assertions.assertTrue(bEntities.isEmpty());
 
@@ -68,8 +68,8 @@ class TestECSManager {
     /** Test that components can be stored and retrieved. */
     @Test
     void testComponentRecovery() {
-        UUID entity1 = ECSManager.createEntity();
-        UUID entity2 = ECSManager.createEntity();
+        EntityHandle entity1 = ECSManager.createEntity();
+        EntityHandle entity2 = ECSManager.createEntity();
 
         TestA a1 = new TestA();
         a1.setTestInt(3);
@@ -95,13 +95,13 @@ class TestECSManager {
         Assertions.assertEquals(b1.getTestString(), retB1.getTestString());
     }
 
-    /** Tests the {@link ECSManager#containsComponent(UUID, Class)} method. */
+    /** Tests the {@link ECSManager#containsComponent(EntityHandle, Class)} method. */
     @Test
     void testContainsComponent() {
-        UUID hasA = ECSManager.createEntity();
-        UUID hasBoth = ECSManager.createEntity();
-        UUID hasB = ECSManager.createEntity();
-        UUID hasNone = ECSManager.createEntity();
+        EntityHandle hasA = ECSManager.createEntity();
+        EntityHandle hasBoth = ECSManager.createEntity();
+        EntityHandle hasB = ECSManager.createEntity();
+        EntityHandle hasNone = ECSManager.createEntity();
 
         TestA a1 = new TestA();
         TestA a2 = new TestA();
@@ -127,8 +127,8 @@ class TestECSManager {
     /** Test that deleting entities works. */
     @Test
     void testEntityDeletion() {
-        UUID entity1 = ECSManager.createEntity();
-        UUID entity2 = ECSManager.createEntity();
+        EntityHandle entity1 = ECSManager.createEntity();
+        EntityHandle entity2 = ECSManager.createEntity();
 
         TestA a1 = new TestA();
         a1.setTestInt(3);
@@ -159,16 +159,16 @@ class TestECSManager {
     @Test
     void testEntityDeletionEdgeCases() {
         // nothing there
-        ECSManager.destroyEntity(UUID.randomUUID());
+        ECSManager.destroyEntity(new EntityHandle(1000, 0));
 
         // destroy twice
-        UUID entity1 = ECSManager.createEntity();
+        EntityHandle entity1 = ECSManager.createEntity();
         ECSManager.destroyEntity(entity1);
         ECSManager.destroyEntity(entity1);
 
         // shared components
-        UUID entity2 = ECSManager.createEntity();
-        UUID entity3 = ECSManager.createEntity();
+        EntityHandle entity2 = ECSManager.createEntity();
+        EntityHandle entity3 = ECSManager.createEntity();
 
         TestA a1 = new TestA();
         a1.setTestInt(3);
@@ -185,6 +185,61 @@ class TestECSManager {
         Assertions.assertFalse(retA1.isPresent());
     }
 
+    /** Tests the {@link ECSManager#forEach(Class, java.util.function.BiConsumer)} method. */
+    @Test
+    void testForEach() {
+        EntityHandle entity1 = ECSManager.createEntity();
+        EntityHandle entity2 = ECSManager.createEntity();
+        EntityHandle entity3 = ECSManager.createEntity();
+
+        TestA a1 = new TestA();
+        a1.setTestInt(1);
+        TestA a2 = new TestA();
+        a2.setTestInt(2);
+        TestB b1 = new TestB();
+
+        ECSManager.addComponent(entity1, a1);
+        ECSManager.addComponent(entity2, a2);
+        ECSManager.addComponent(entity2, b1);
+        ECSManager.addComponent(entity3, new TestB());
+
+        List<EntityHandle> visited = new ArrayList<>();
+        int[] sum = {0};
+        ECSManager.forEach(
+                TestA.class,
+                (id, a) -> {
+                    visited.add(id);
+                    sum[0] += a.getTestInt();
+                });
+
+        Assertions.assertEquals(2, visited.size());
+        Assertions.assertTrue(visited.contains(entity1));
+        Assertions.assertTrue(visited.contains(entity2));
+        Assertions.assertEquals(3, sum[0]);
+    }
+
+    /** Test that the slots of destroyed entities are reused without reviving old handles. */
+    @Test
+    void testHandleRecycling() {
+        EntityHandle original = ECSManager.createEntity();
+        ECSManager.addComponent(original, new TestA());
+        ECSManager.destroyEntity(original);
+
+        EntityHandle recycled = ECSManager.createEntity();
+        Assertions.assertEquals(original.index(), recycled.index());
+        Assertions.assertNotEquals(original, recycled);
+
+        Assertions.assertFalse(ECSManager.isAlive(original));
+        Assertions.assertTrue(ECSManager.isAlive(recycled));
+        Assertions.assertFalse(ECSManager.containsComponent(recycled, TestA.class));
+
+        // the stale handle must not affect the new entity
+        ECSManager.addComponent(original, new TestB());
+        Assertions.assertFalse(ECSManager.containsComponent(recycled, TestB.class));
+        ECSManager.destroyEntity(original);
+        Assertions.assertTrue(ECSManager.isAlive(recycled));
+    }
+
     /** Tests the {@link ECSManager#getAllComponents(Class)} method. */
     @Test
     void testGetAllComponents() {
@@ -194,9 +249,9 @@ class TestECSManager {
         Assertions.assertTrue(aComponents.isEmpty());
 
         // Normal flow
-        UUID entity1 = ECSManager.createEntity();
-        UUID entity2 = ECSManager.createEntity();
-        UUID entity3 = ECSManager.createEntity();
+        EntityHandle entity1 = ECSManager.createEntity();
+        EntityHandle entity2 = ECSManager.createEntity();
+        EntityHandle entity3 = ECSManager.createEntity();
 
         TestA a1 = new TestA();
         TestA a2 = new TestA();
@@ -234,11 +289,11 @@ class TestECSManager {
     /** Tests the {@link ECSManager#getAllEntities()} method. */
     @Test
     void testGetAllEntities() {
-        List<UUID> entities = ECSManager.getAllEntities();
+        List<EntityHandle> entities = ECSManager.getAllEntities();
         Assertions.assertNotNull(entities);
         Assertions.assertTrue(entities.isEmpty());
 
-        List<UUID> ids = new ArrayList<>();
+        List<EntityHandle> ids = new ArrayList<>();
         for (int i = 0; i < 5; ++i) {
             ids.add(ECSManager.createEntity());
         }
@@ -248,7 +303,7 @@ class TestECSManager {
         Assertions.assertEquals(ids.size(), entities.size());
         entities.forEach(id -> Assertions.assertTrue(ids.contains(id)));
 
-        UUID removed = ids.remove(0);
+        EntityHandle removed = ids.remove(0);
         ECSManager.destroyEntity(removed);
 
         entities = ECSManager.getAllEntities();
@@ -261,14 +316,14 @@ class TestECSManager {
     /** Tests the {@link ECSManager#getAllEntitiesWithComponent(Class...)} method. */
     @Test
     void testGetAllEntitiesWithComponent() {
-        List<UUID> blank = ECSManager.getAllEntitiesWithComponent(TestA.class);
+        List<EntityHandle> blank = ECSManager.getAllEntitiesWithComponent(TestA.class);
         Assertions.assertNotNull(blank);
         Assertions.assertTrue(blank.isEmpty());
 
-        UUID hasA = ECSManager.createEntity();
-        UUID hasBoth = ECSManager.createEntity();
-        UUID hasB = ECSManager.createEntity();
-        UUID hasNone = ECSManager.createEntity();
+        EntityHandle hasA = ECSManager.createEntity();
+        EntityHandle hasBoth = ECSManager.createEntity();
+        EntityHandle hasB = ECSManager.createEntity();
+        EntityHandle hasNone = ECSManager.createEntity();
 
         TestA a1 = new TestA();
         TestA a2 = new TestA();
@@ -280,9 +335,9 @@ class TestECSManager {
         ECSManager.addComponent(hasBoth, b1);
         ECSManager.addComponent(hasB, b2);
 
-        List<UUID> withA = ECSManager.getAllEntitiesWithComponent(TestA.class);
-        List<UUID> withB = ECSManager.getAllEntitiesWithComponent(TestB.class);
-        List<UUID> withAB = ECSManager.getAllEntitiesWithComponent(TestA.class, TestB.class);
+        List<EntityHandle> withA = ECSManager.getAllEntitiesWithComponent(TestA.class);
+        List<EntityHandle> withB = ECSManager.getAllEntitiesWithComponent(TestB.class);
+        List<EntityHandle> withAB = ECSManager.getAllEntitiesWithComponent(TestA.class, TestB.class);
 
         Assertions.assertNotNull(withA);
         Assertions.assertNotNull(withB);
@@ -305,11 +360,49 @@ class TestECSManager {
         Assertions.assertFalse(withAB.contains(hasNone));
     }
 
+    /** Test that entities keep their other components as they move between tables. */
+    @Test
+    void testMovingBetweenTables() {
+        List<EntityHandle> entities = new ArrayList<>();
+        List<TestA> aComponents = new ArrayList<>();
+        for (int i = 0; i < 50; ++i) {
+            EntityHandle entity = ECSManager.createEntity();
+            TestA a = new TestA();
+            a.setTestInt(i);
+            ECSManager.addComponent(entity, a);
+            entities.add(entity);
+            aComponents.add(a);
+        }
+
+        // move every other entity to a new table, leaving gaps behind
+        for (int i = 0; i < entities.size(); i += 2) {
+            ECSManager.addComponent(entities.get(i), new TestB());
+        }
+        // and move some of them back again
+        for (int i = 0; i < entities.size(); i += 4) {
+            ECSManager.removeComponent(entities.get(i), TestB.class);
+        }
+
+        for (int i = 0; i < entities.size(); ++i) {
+            EntityHandle entity = entities.get(i);
+            Optional<TestA> a = ECSManager.getComponent(entity, TestA.class);
+            Assertions.assertTrue(a.isPresent());
+            Assertions.assertSame(aComponents.get(i), a.get());
+            Assertions.assertEquals(i, a.get().getTestInt());
+            boolean expectB = i % 2 == 0 && i % 4 != 0;
+            Assertions.assertEquals(expectB, ECSManager.containsComponent(entity, TestB.class));
+        }
+
+        Assertions.assertEquals(entities.size(), ECSManager.getAllComponents(TestA.class).size());
+        Assertions.assertEquals(
+                entities.size() / 4, ECSManager.getAllEntitiesWithComponent(TestB.class).size());
+    }
+
     /** Test the removal of components. */
     @Test
     void testRemoveComponent() {
-        UUID entity1 = ECSManager.createEntity();
-        UUID entity2 = ECSManager.createEntity();
+        EntityHandle entity1 = ECSManager.createEntity();
+        EntityHandle entity2 = ECSManager.createEntity();
 
         TestA a1 = new TestA();
         a1.setTestInt(3);
@@ -328,7 +421,7 @@ class TestECSManager {
         Assertions.assertNotNull(empty);
         Assertions.assertTrue(empty.isEmpty());
 
-        List<UUID> entities = ECSManager.getAllEntitiesWithComponent(TestA.class);
+        List<EntityHandle> entities = ECSManager.getAllEntitiesWithComponent(TestA.class);
         Assertions.assertNotNull(entities);
         Assertions.assertTrue(entities.isEmpty());
 
@@ -346,9 +439,9 @@ class TestECSManager {
     @Test
     void testRemoveComponentEdgeCases() {
         // No exceptions should occur
-        ECSManager.removeComponent(UUID.randomUUID(), TestA.class);
+        ECSManager.removeComponent(new EntityHandle(1000, 0), TestA.class);
 
-        UUID entity1 = ECSManager.createEntity();
+        EntityHandle entity1 = ECSManager.createEntity();
         TestA a1 = new TestA();
 
         ECSManager.addComponent(entity1, a1);
@@ -361,4 +454,56 @@ class TestECSManager {
         Assertions.assertFalse(ECSManager.containsComponent(entity1, TestA.class));
         Assertions.assertFalse(ECSManager.getComponent(entity1, TestA.class).isPresent());
     }
+
+    /** Test that replacing a component of the same type does not leave the old one behind. */
+    @Test
+    void testReplaceComponent() {
+        EntityHandle entity = ECSManager.createEntity();
+        TestA original = new TestA();
+        TestA replacement = new TestA();
+
+        ECSManager.addComponent(entity, original);
+        ECSManager.addComponent(entity, replacement);
+
+        Assertions.assertSame(replacement, ECSManager.getComponent(entity, TestA.class).get());
+        List<TestA> all = ECSManager.getAllComponents(TestA.class);
+        Assertions.assertEquals(1, all.size());
+        Assertions.assertTrue(all.contains(replacement));
+        Assertions.assertTrue(original.getParents().isEmpty());
+    }
+
+    /** Test that shared components are only reported once. */
+    @Test
+    void testSharedComponentsListedOnce() {
+        EntityHandle entity1 = ECSManager.createEntity();
+        EntityHandle entity2 = ECSManager.createEntity();
+        TestA shared = new TestA();
+
+        ECSManager.addComponent(entity1, shared);
+        ECSManager.addComponent(entity2, shared);
+        ECSManager.addComponent(entity2, new TestB());
+
+        List<TestA> all = ECSManager.getAllComponents(TestA.class);
+        Assertions.assertEquals(1, all.size());
+        Assertions.assertEquals(2, ECSManager.getAllEntitiesWithComponent(TestA.class).size());
+    }
+
+    /** Test that UUIDs are only assigned on request and can be mapped back to entities. */
+    @Test
+    void testUUIDMapping() {
+        EntityHandle entity = ECSManager.createEntity();
+        UUID uniqueID = ECSManager.getUUID(entity).get();
+
+        Assertions.assertEquals(uniqueID, ECSManager.getUUID(entity).get());
+        Assertions.assertEquals(entity, ECSManager.getEntity(uniqueID).get());
+
+        UUID loaded = UUID.randomUUID();
+        EntityHandle restored = ECSManager.createEntity(loaded);
+        Assertions.assertEquals(loaded, ECSManager.getUUID(restored).get());
+        Assertions.assertEquals(restored, ECSManager.createEntity(loaded));
+
+        ECSManager.destroyEntity(entity);
+        Assertions.assertFalse(ECSManager.getEntity(uniqueID).isPresent());
+        Assertions.assertFalse(ECSManager.getUUID(entity).isPresent());
+    }
 }
@@ -0,0 +1,206 @@
+package com.ikalagaming.ecs;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tests for the {@link ECSSnapshot} class.
+ *
+ * @author Ches Burks
+ */
+class TestECSSnapshot {
+
+    /** Register serializers for the test components. */
+    @BeforeAll
+    static void registerSerializers() {
+        ECSSnapshot.registerSerializer(
+                TestA.class,
+                new ComponentSerializer<>() {
+                    @Override
+                    public TestA read(DataInput input) throws IOException {
+                        TestA result = new TestA();
+                        result.setTestInt(input.readInt());
+                        return result;
+                    }
+
+                    @Override
+                    public void write(TestA component, DataOutput output) throws IOException {
+                        output.writeInt(component.getTestInt());
+                    }
+                });
+        ECSSnapshot.registerSerializer(
+                TestB.class,
+                new ComponentSerializer<>() {
+                    @Override
+                    public TestB read(DataInput input) throws IOException {
+                        TestB result = new TestB();
+                        result.setTestString(input.readUTF());
+                        return result;
+                    }
+
+                    @Override
+                    public void write(TestB component, DataOutput output) throws IOException {
+                        output.writeUTF(component.getTestString());
+                    }
+                });
+    }
+
+    /** Setup before each test. */
+    @BeforeEach
+    void beforeTest() {
+        ECSManager.clear();
+    }
+
+    /**
+     * Write a snapshot of the ECS into memory.
+     *
+     * @return The snapshot.
+     * @throws IOException If the snapshot can't be written.
+     */
+    private static byte[] snapshot() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ECSSnapshot.write(output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Test that a large number of entities survive being written and read back.
+     *
+     * @throws IOException If the snapshot can't be written or read.
+     */
+    @Test
+    void testLargeRoundTrip() throws IOException {
+        final int count = 100_000;
+        for (int i = 0; i < count; ++i) {
+            EntityHandle entity = ECSManager.createEntity();
+            TestA a = new TestA();
+            a.setTestInt(i);
+            ECSManager.addComponent(entity, a);
+        }
+        byte[] data = TestECSSnapshot.snapshot();
+
+        Assertions.assertEquals(count, ECSSnapshot.read(new ByteArrayInputStream(data)));
+        List<TestA> restored = ECSManager.getAllComponents(TestA.class);
+        Assertions.assertEquals(count, restored.size());
+        long sum = 0;
+        for (TestA a : restored) {
+            sum += a.getTestInt();
+        }
+        Assertions.assertEquals((long) count * (count - 1) / 2, sum);
+    }
+
+    /**
+     * Test that components, UUIDs, and unsaved types are handled correctly.
+     *
+     * @throws IOException If the snapshot can't be written or read.
+     */
+    @Test
+    void testRoundTrip() throws IOException {
+        EntityHandle both = ECSManager.createEntity();
+        TestA a = new TestA();
+        a.setTestInt(42);
+        TestB b = new TestB();
+        b.setTestString("saved");
+        ECSManager.addComponent(both, a);
+        ECSManager.addComponent(both, b);
+        UUID bothID = ECSManager.getUUID(both).get();
+
+        EntityHandle unsaved = ECSManager.createEntity();
+        ECSManager.addComponent(unsaved, new TestC());
+
+        byte[] data = TestECSSnapshot.snapshot();
+        Assertions.assertEquals(2, ECSSnapshot.read(new ByteArrayInputStream(data)));
+
+        EntityHandle restored = ECSManager.getEntity(bothID).get();
+        Assertions.assertEquals(
+                42, ECSManager.getComponent(restored, TestA.class).get().getTestInt());
+        Assertions.assertEquals(
+                "saved", ECSManager.getComponent(restored, TestB.class).get().getTestString());
+        Assertions.assertEquals(2, ECSManager.getAllEntities().size());
+        Assertions.assertTrue(ECSManager.getAllComponents(TestC.class).isEmpty());
+    }
+
+    /**
+     * Test that a snapshot that ends early leaves the existing entities alone.
+     *
+     * @throws IOException If the snapshot can't be written.
+     */
+    @Test
+    void testTruncatedInput() throws IOException {
+        for (int i = 0; i < 10; ++i) {
+            EntityHandle entity = ECSManager.createEntity();
+            TestA a = new TestA();
+            a.setTestInt(i);
+            ECSManager.addComponent(entity, a);
+            TestB b = new TestB();
+            b.setTestString("saved " + i);
+            ECSManager.addComponent(ECSManager.createEntity(), b);
+        }
+        byte[] data = TestECSSnapshot.snapshot();
+        // Cut off the end marker and part of the last table
+        byte[] truncated = Arrays.copyOf(data, data.length - 8);
+
+        ECSManager.clear();
+        EntityHandle existing = ECSManager.createEntity();
+        TestA a = new TestA();
+        a.setTestInt(-1);
+        ECSManager.addComponent(existing, a);
+
+        Assertions.assertThrows(
+                IOException.class, () -> ECSSnapshot.read(new ByteArrayInputStream(truncated)));
+        Assertions.assertEquals(List.of(existing), ECSManager.getAllEntities());
+        Assertions.assertEquals(List.of(a), ECSManager.getAllComponents(TestA.class));
+        Assertions.assertTrue(ECSManager.getAllComponents(TestB.class).isEmpty());
+    }
+
+    /**
+     * Test that tables with negative sizes are rejected.
+     *
+     * @throws IOException If the snapshot header can't be written.
+     */
+    @Test
+    void testNegativeCounts() throws IOException {
+        // An empty snapshot is just the header followed by the end marker
+        byte[] empty = TestECSSnapshot.snapshot();
+        byte[] header = Arrays.copyOf(empty, empty.length - 1);
+
+        ByteArrayOutputStream columns = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(columns);
+        out.write(header);
+        out.writeByte(1);
+        out.writeShort(-1);
+        Assertions.assertThrows(
+                IOException.class,
+                () -> ECSSnapshot.read(new ByteArrayInputStream(columns.toByteArray())));
+
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        out = new DataOutputStream(rows);
+        out.write(header);
+        out.writeByte(1);
+        out.writeShort(0);
+        out.writeInt(-1);
+        Assertions.assertThrows(
+                IOException.class,
+                () -> ECSSnapshot.read(new ByteArrayInputStream(rows.toByteArray())));
+    }
+
+    /** Test that garbage input is rejected. */
+    @Test
+    void testInvalidInput() {
+        Assertions.assertThrows(
+                IOException.class,
+                () -> ECSSnapshot.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6})));
+    }
+}
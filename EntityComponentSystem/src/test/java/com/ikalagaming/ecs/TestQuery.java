@@ -0,0 +1,201 @@
+package com.ikalagaming.ecs;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tests for the {@link Query} class.
+ *
+ * @author Ches Burks
+ */
+class TestQuery {
+
+    /** Setup before each test. */
+    @BeforeEach
+    void beforeTest() {
+        ECSManager.clear();
+    }
+
+    /** Test that queries with the same filters are shared. */
+    @Test
+    void testCaching() {
+        Query first = Query.builder().with(TestA.class, TestB.class).build();
+        Query second = Query.builder().with(TestB.class).with(TestA.class).build();
+        Query different = Query.builder().with(TestA.class).without(TestB.class).build();
+
+        Assertions.assertSame(first, second);
+        Assertions.assertNotSame(first, different);
+    }
+
+    /** Test that several threads can iterate over the same query at once. */
+    @Test
+    void testConcurrentIteration() throws InterruptedException {
+        final int count = 20_000;
+        long expected = 0;
+        for (int i = 0; i < count; ++i) {
+            EntityHandle entity = ECSManager.createEntity();
+            TestA a = new TestA();
+            a.setTestInt(i);
+            ECSManager.addComponent(entity, a);
+            if (i % 2 == 0) {
+                ECSManager.addComponent(entity, new TestB());
+            }
+            expected += i;
+        }
+
+        Query query = Query.builder().with(TestA.class).build();
+        final int threadCount = 4;
+        final int passes = 20;
+        LongAdder[] totals = new LongAdder[threadCount];
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; ++t) {
+            final LongAdder total = new LongAdder();
+            totals[t] = total;
+            threads[t] =
+                    new Thread(
+                            () -> {
+                                for (int pass = 0; pass < passes; ++pass) {
+                                    query.forEach(
+                                            row -> total.add(row.get(TestA.class).getTestInt()));
+                                }
+                            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (LongAdder total : totals) {
+            Assertions.assertEquals(expected * passes, total.sum());
+        }
+    }
+
+    /** Test that a query sees structural changes made after it was created. */
+    @Test
+    void testIncrementalUpdates() {
+        Query query = Query.builder().with(TestA.class).without(TestB.class).build();
+        Assertions.assertEquals(0, query.count());
+
+        EntityHandle entity1 = ECSManager.createEntity();
+        EntityHandle entity2 = ECSManager.createEntity();
+        ECSManager.addComponent(entity1, new TestA());
+        ECSManager.addComponent(entity2, new TestA());
+        Assertions.assertEquals(2, query.count());
+
+        ECSManager.addComponent(entity2, new TestB());
+        Assertions.assertEquals(1, query.count());
+        Assertions.assertEquals(List.of(entity1), query.getEntities());
+
+        ECSManager.removeComponent(entity2, TestB.class);
+        ECSManager.destroyEntity(entity1);
+        Assertions.assertEquals(List.of(entity2), query.getEntities());
+    }
+
+    /** Test that parallel iteration visits every row exactly once. */
+    @Test
+    void testParallelIteration() {
+        final int count = ECSManager.PARALLEL_CHUNK_SIZE * 5 + 7;
+        for (int i = 0; i < count; ++i) {
+            EntityHandle entity = ECSManager.createEntity();
+            TestA a = new TestA();
+            a.setTestInt(1);
+            ECSManager.addComponent(entity, a);
+            if (i % 3 == 0) {
+                // spread the rows over more than one table
+                ECSManager.addComponent(entity, new TestB());
+            }
+        }
+
+        Query query = Query.builder().with(TestA.class).build();
+        query.forEachParallel(
+                row -> {
+                    TestA a = row.get(TestA.class);
+                    a.setTestInt(a.getTestInt() + 1);
+                });
+
+        LongAdder total = new LongAdder();
+        query.forEach(TestA.class, (entity, a) -> total.add(a.getTestInt()));
+        Assertions.assertEquals(2L * count, total.sum());
+    }
+
+    /** Test iterating over a query while already iterating over it. */
+    @Test
+    void testNestedIteration() {
+        for (int i = 1; i <= 3; ++i) {
+            EntityHandle entity = ECSManager.createEntity();
+            TestA a = new TestA();
+            a.setTestInt(i);
+            ECSManager.addComponent(entity, a);
+            if (i == 2) {
+                ECSManager.addComponent(entity, new TestB());
+            }
+        }
+
+        Query query = Query.builder().with(TestA.class).build();
+        List<Integer> pairs = new ArrayList<>();
+        query.forEach(
+                outer -> {
+                    final int first = outer.get(TestA.class).getTestInt();
+                    query.forEach(
+                            inner -> pairs.add(first * 10 + inner.get(TestA.class).getTestInt()));
+                    // The outer row must still point at the same entity
+                    pairs.add(outer.get(TestA.class).getTestInt());
+                });
+
+        pairs.sort(null);
+        Assertions.assertEquals(List.of(1, 2, 3, 11, 12, 13, 21, 22, 23, 31, 32, 33), pairs);
+    }
+
+    /** Test iterating over the rows of a query. */
+    @Test
+    void testRowIteration() {
+        EntityHandle hasA = ECSManager.createEntity();
+        EntityHandle hasBoth = ECSManager.createEntity();
+        EntityHandle hasB = ECSManager.createEntity();
+
+        TestA a1 = new TestA();
+        a1.setTestInt(1);
+        TestA a2 = new TestA();
+        a2.setTestInt(2);
+        TestB b1 = new TestB();
+        b1.setTestString("both");
+
+        ECSManager.addComponent(hasA, a1);
+        ECSManager.addComponent(hasBoth, a2);
+        ECSManager.addComponent(hasBoth, b1);
+        ECSManager.addComponent(hasB, new TestB());
+
+        List<EntityHandle> visited = new ArrayList<>();
+        List<String> strings = new ArrayList<>();
+        int[] sum = {0};
+        Query query = Query.builder().with(TestA.class).build();
+        query.forEach(
+                row -> {
+                    visited.add(row.getEntity());
+                    sum[0] += row.get(TestA.class).getTestInt();
+                    TestB optional = row.get(TestB.class);
+                    if (optional != null) {
+                        strings.add(optional.getTestString());
+                    }
+                });
+
+        Assertions.assertEquals(2, visited.size());
+        Assertions.assertTrue(visited.contains(hasA));
+        Assertions.assertTrue(visited.contains(hasBoth));
+        Assertions.assertEquals(3, sum[0]);
+        Assertions.assertEquals(List.of("both"), strings);
+
+        List<TestA> components = new ArrayList<>();
+        query.forEach(TestA.class, (entity, a) -> components.add(a));
+        Assertions.assertEquals(2, components.size());
+
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> query.forEach(TestB.class, (entity, b) -> {}));
+    }
+}
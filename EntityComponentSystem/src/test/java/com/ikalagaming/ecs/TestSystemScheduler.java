@@ -0,0 +1,190 @@
+package com.ikalagaming.ecs;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongConsumer;
+
+/**
+ * Tests for the {@link SystemScheduler} class.
+ *
+ * @author Ches Burks
+ */
+class TestSystemScheduler {
+
+    /** A system that runs a callback, with whatever access it is told to declare. */
+    private static class SimpleSystem implements EntitySystem {
+        private final Set<Class<? extends Component<?>>> reads;
+        private final Set<Class<? extends Component<?>>> writes;
+        private final LongConsumer action;
+
+        SimpleSystem(
+                Set<Class<? extends Component<?>>> reads,
+                Set<Class<? extends Component<?>>> writes,
+                LongConsumer action) {
+            this.reads = reads;
+            this.writes = writes;
+            this.action = action;
+        }
+
+        @Override
+        public Set<Class<? extends Component<?>>> getReads() {
+            return this.reads;
+        }
+
+        @Override
+        public Set<Class<? extends Component<?>>> getWrites() {
+            return this.writes;
+        }
+
+        @Override
+        public void update(long tick, CommandBuffer commands) {
+            this.action.accept(tick);
+        }
+    }
+
+    /** Setup before each test. */
+    @BeforeEach
+    void beforeTest() {
+        ECSManager.clear();
+    }
+
+    /** Test that structural changes made by systems are applied at the end of the tick. */
+    @Test
+    void testCommandsApplied() {
+        EntityHandle entity = ECSManager.createEntity();
+        ECSManager.addComponent(entity, new TestA());
+        Query query = Query.builder().with(TestA.class).build();
+
+        EntitySystem spawner =
+                new EntitySystem() {
+                    @Override
+                    public Set<Class<? extends Component<?>>> getReads() {
+                        return Set.of(TestA.class);
+                    }
+
+                    @Override
+                    public Set<Class<? extends Component<?>>> getWrites() {
+                        return Set.of();
+                    }
+
+                    @Override
+                    public void update(long tick, CommandBuffer commands) {
+                        query.forEach(
+                                row -> commands.addComponent(row.getEntity(), new TestB()));
+                        // not applied yet
+                        Assertions.assertFalse(ECSManager.containsComponent(entity, TestB.class));
+                    }
+                };
+        try (SystemScheduler scheduler = new SystemScheduler()) {
+            scheduler.addSystem(spawner);
+            scheduler.tick();
+        }
+        Assertions.assertTrue(ECSManager.containsComponent(entity, TestB.class));
+    }
+
+    /** Test that a failing system is reported. */
+    @Test
+    void testExceptionsPropagate() {
+        try (SystemScheduler scheduler = new SystemScheduler()) {
+            scheduler.addSystem(
+                    new SimpleSystem(
+                            Set.of(),
+                            Set.of(TestA.class),
+                            tick -> {
+                                throw new IllegalStateException("broken");
+                            }));
+            Assertions.assertThrows(IllegalStateException.class, scheduler::tick);
+        }
+    }
+
+    /** Test that systems which don't conflict are able to run at the same time. */
+    @Test
+    void testIndependentSystemsOverlap() {
+        // each system waits for the other, which can only succeed if they overlap
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        LongConsumer rendezvous =
+                tick -> {
+                    try {
+                        barrier.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException
+                            | BrokenBarrierException
+                            | TimeoutException e) {
+                        throw new IllegalStateException(e);
+                    }
+                };
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try (SystemScheduler scheduler = new SystemScheduler(pool)) {
+            scheduler.addSystem(new SimpleSystem(Set.of(TestB.class), Set.of(), rendezvous));
+            scheduler.addSystem(new SimpleSystem(Set.of(TestB.class), Set.of(), rendezvous));
+            Assertions.assertDoesNotThrow(scheduler::tick);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Test that conflicting systems run in the order they were added. */
+    @Test
+    void testOrderingOfConflictingSystems() {
+        EntityHandle entity = ECSManager.createEntity();
+        TestA component = new TestA();
+        ECSManager.addComponent(entity, component);
+
+        Query query = Query.builder().with(TestA.class).build();
+        int[] seen = {-1};
+        try (SystemScheduler scheduler = new SystemScheduler()) {
+            scheduler.addSystem(
+                    new SimpleSystem(
+                            Set.of(),
+                            Set.of(TestA.class),
+                            tick -> {
+                                sleep();
+                                query.forEach(row -> row.get(TestA.class).setTestInt(42));
+                            }));
+            scheduler.addSystem(
+                    new SimpleSystem(
+                            Set.of(TestA.class),
+                            Set.of(),
+                            tick -> seen[0] = component.getTestInt()));
+            scheduler.tick();
+        }
+        Assertions.assertEquals(42, seen[0]);
+    }
+
+    /** Test that the scheduler records timing information. */
+    @Test
+    void testTimings() {
+        try (SystemScheduler scheduler = new SystemScheduler()) {
+            scheduler.addSystem(new SimpleSystem(Set.of(), Set.of(), tick -> sleep()));
+            scheduler.tick();
+            scheduler.tick();
+
+            Assertions.assertEquals(2, scheduler.getTick());
+            List<SystemTiming> timings = scheduler.getTimings();
+            Assertions.assertEquals(1, timings.size());
+            SystemTiming timing = timings.get(0);
+            Assertions.assertEquals("SimpleSystem", timing.getName());
+            Assertions.assertEquals(2, timing.getRuns());
+            Assertions.assertTrue(timing.getLastNanos() > 0);
+            Assertions.assertTrue(timing.getTotalNanos() >= timing.getLastNanos());
+            Assertions.assertTrue(scheduler.getLastTickNanos() >= timing.getLastNanos());
+        }
+    }
+
+    /** Sleep briefly, so that ordering problems would actually show up. */
+    private static void sleep() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.ikalagaming.factory.gui.window;
 
 import com.ikalagaming.factory.gui.DefaultWindows;
+import com.ikalagaming.factory.world.gen.NoiseParameters;
 import com.ikalagaming.graphics.GraphicsManager;
 import com.ikalagaming.graphics.Window;
 import com.ikalagaming.graphics.frontend.Format;
@@ -16,10 +17,11 @@ import com.ikalagaming.random.RandomGen;
 import imgui.flag.ImGuiWindowFlags;
 import lombok.NonNull;
 
-import java.awt.image.BufferedImage;
 import java.nio.ByteBuffer;
 
 public class BiomeDebug extends GuiWindow {
+    /** The width and height of the generated textures, in pixels. */
+    private static final int TEXTURE_SIZE = 400;
 
     public BiomeDebug() {
         super(DefaultWindows.BIOME_DEBUG.getName(), ImGuiWindowFlags.None);
@@ -86,19 +88,6 @@ public class BiomeDebug extends GuiWindow {
         addChild(generateButton);
     }
 
-    private static byte[] intARGBtoByteRGBA(int[] argb) {
-        byte[] rgba = new byte[argb.length * 4];
-
-        for (int i = 0; i < argb.length; i++) {
-            rgba[4 * i] = (byte) ((argb[i] >> 16) & 0xff); // R
-            rgba[4 * i + 1] = (byte) ((argb[i] >> 8) & 0xff); // G
-            rgba[4 * i + 2] = (byte) ((argb[i]) & 0xff); // B
-            rgba[4 * i + 3] = (byte) ((argb[i] >> 24) & 0xff); // A
-        }
-
-        return rgba;
-    }
-
     private final Image temperatureMap;
     private final Image heightMap;
     private final Image erosionMap;
@@ -110,23 +99,50 @@ public class BiomeDebug extends GuiWindow {
     private final Button generateButton;
 
     /**
-     * Convert a buffered image to a texture that the graphics library understands.
+     * Generate a greyscale texture of noise values, the same as used to generate the world.
      *
-     * @param image The image to turn into a texture.
+     * @param seed The seed to use for the noise.
+     * @param parameters The parameters to generate noise with.
      * @return The generated texture.
      */
-    private Texture generateTexture(@NonNull BufferedImage image) {
-        int[] rgbValues =
-                image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
-        byte[] rgba = intARGBtoByteRGBA(rgbValues);
-
-        ByteBuffer buffer = ByteBuffer.allocate(rgba.length);
-        buffer.put(rgba);
+    private static Texture generateTexture(long seed, @NonNull NoiseParameters parameters) {
+        float[] noise = new float[TEXTURE_SIZE * TEXTURE_SIZE];
+        RandomGen.generateSimplexNoise(
+                seed,
+                0,
+                0,
+                TEXTURE_SIZE,
+                TEXTURE_SIZE,
+                parameters.scale(),
+                parameters.octaves(),
+                noise);
+
+        ByteBuffer buffer = ByteBuffer.allocate(noise.length * 4);
+        for (float value : noise) {
+            final byte grey = (byte) (int) (value * 255);
+            buffer.put(grey).put(grey).put(grey).put((byte) 0xFF);
+        }
         buffer.rewind();
 
         return GraphicsManager.getRenderInstance()
                 .getTextureLoader()
-                .load(buffer, Format.R8G8B8A8_UINT, image.getWidth(), image.getHeight());
+                .load(buffer, Format.R8G8B8A8_UINT, TEXTURE_SIZE, TEXTURE_SIZE);
+    }
+
+    /**
+     * Replace the texture on an image with a newly generated noise texture, deleting the old one.
+     *
+     * @param image The image to update.
+     * @param seed The seed to use for the noise.
+     * @param parameters The parameters to generate noise with.
+     */
+    private static void updateTexture(
+            @NonNull Image image, long seed, @NonNull NoiseParameters parameters) {
+        if (image.getTexture() != null) {
+            GraphicsManager.getDeletionQueue().add(image.getTexture());
+            image.setTexture(null);
+        }
+        image.setTexture(BiomeDebug.generateTexture(seed, parameters));
     }
 
     @Override
@@ -134,92 +150,11 @@ public class BiomeDebug extends GuiWindow {
         if (generateButton.checkResult()) {
             long seed = RandomGen.generateSeed();
 
-            if (temperatureMap.getTexture() != null) {
-                GraphicsManager.getDeletionQueue().add(temperatureMap.getTexture());
-                temperatureMap.setTexture(null);
-            }
-            int w = 400;
-            int h = 400;
-            BufferedImage tempImage =
-                    RandomGen.generateSimplexNoise(
-                            RandomGen.SimplexParameters.builder()
-                                    .seed(seed)
-                                    .startX(0)
-                                    .startY(0)
-                                    .width(w)
-                                    .height(h)
-                                    .scale(0.001)
-                                    .octaves(4)
-                                    .build());
-            temperatureMap.setTexture(generateTexture(tempImage));
-
-            if (heightMap.getTexture() != null) {
-                GraphicsManager.getDeletionQueue().add(heightMap.getTexture());
-                heightMap.setTexture(null);
-            }
-            BufferedImage heightImage =
-                    RandomGen.generateSimplexNoise(
-                            RandomGen.SimplexParameters.builder()
-                                    .startX(0)
-                                    .startY(0)
-                                    .seed(seed + 1)
-                                    .width(w)
-                                    .height(h)
-                                    .scale(0.002)
-                                    .octaves(10)
-                                    .build());
-            heightMap.setTexture(generateTexture(heightImage));
-
-            if (erosionMap.getTexture() != null) {
-                GraphicsManager.getDeletionQueue().add(erosionMap.getTexture());
-                erosionMap.setTexture(null);
-            }
-            BufferedImage erosionImage =
-                    RandomGen.generateSimplexNoise(
-                            RandomGen.SimplexParameters.builder()
-                                    .startX(0)
-                                    .startY(0)
-                                    .seed(seed + 2)
-                                    .width(w)
-                                    .height(h)
-                                    .scale(0.002)
-                                    .octaves(6)
-                                    .build());
-            erosionMap.setTexture(generateTexture(erosionImage));
-
-            if (vegetationMap.getTexture() != null) {
-                GraphicsManager.getDeletionQueue().add(vegetationMap.getTexture());
-                vegetationMap.setTexture(null);
-            }
-            BufferedImage vegetationImage =
-                    RandomGen.generateSimplexNoise(
-                            RandomGen.SimplexParameters.builder()
-                                    .startX(0)
-                                    .startY(0)
-                                    .seed(seed + 3)
-                                    .width(w)
-                                    .height(h)
-                                    .scale(0.001)
-                                    .octaves(5)
-                                    .build());
-            vegetationMap.setTexture(generateTexture(vegetationImage));
-
-            if (weirdnessMap.getTexture() != null) {
-                GraphicsManager.getDeletionQueue().add(weirdnessMap.getTexture());
-                weirdnessMap.setTexture(null);
-            }
-            BufferedImage weirdnessImage =
-                    RandomGen.generateSimplexNoise(
-                            RandomGen.SimplexParameters.builder()
-                                    .startX(0)
-                                    .startY(0)
-                                    .seed(seed + 4)
-                                    .width(w)
-                                    .height(h)
-                                    .scale(0.002)
-                                    .octaves(6)
-                                    .build());
-            weirdnessMap.setTexture(generateTexture(weirdnessImage));
+            BiomeDebug.updateTexture(temperatureMap, seed, NoiseParameters.TEMPERATURE);
+            BiomeDebug.updateTexture(heightMap, seed + 1, NoiseParameters.HEIGHT);
+            BiomeDebug.updateTexture(erosionMap, seed + 2, NoiseParameters.EROSION);
+            BiomeDebug.updateTexture(vegetationMap, seed + 3, NoiseParameters.PRECIPITATION);
+            BiomeDebug.updateTexture(weirdnessMap, seed + 4, NoiseParameters.WEIRDNESS);
         }
         return false;
     }
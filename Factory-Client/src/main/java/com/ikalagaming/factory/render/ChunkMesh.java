@@ -0,0 +1,77 @@
+package com.ikalagaming.factory.render;
+
+import com.ikalagaming.graphics.graph.MeshData;
+
+import org.joml.Vector3f;
+
+/**
+ * The geometry for part of a chunk, built on the CPU and ready to be uploaded. Vertices use the
+ * same layout as {@link MeshData}, with positions relative to the corner of the subchunk. Every
+ * face is a quad made of 4 vertices and 6 indices.
+ *
+ * @param vertexData The vertex data, {@value MeshData#VERTEX_SIZE_IN_FLOATS} floats per vertex.
+ * @param indices The indices of all the triangles.
+ * @param quadStates The block state ID of each quad, in the order the quads were added, so that
+ *     the renderer can pick textures.
+ * @author Ches Burks
+ */
+public record ChunkMesh(float[] vertexData, int[] indices, int[] quadStates) {
+    /** A mesh without any faces. */
+    public static final ChunkMesh EMPTY = new ChunkMesh(new float[0], new int[0], new int[0]);
+
+    /**
+     * Check if there is anything to draw.
+     *
+     * @return True if the mesh has no faces.
+     */
+    public boolean isEmpty() {
+        return indices.length == 0;
+    }
+
+    /**
+     * The number of quads in the mesh.
+     *
+     * @return The quad count.
+     */
+    public int quadCount() {
+        return quadStates.length;
+    }
+
+    /**
+     * Create mesh data that can be rendered. This creates GPU buffers, so it has to be called on
+     * the render thread.
+     *
+     * @return The mesh data.
+     */
+    public MeshData toMeshData() {
+        float[] min = new float[3];
+        float[] max = new float[3];
+        if (!isEmpty()) {
+            System.arraycopy(vertexData, 0, min, 0, 3);
+            System.arraycopy(vertexData, 0, max, 0, 3);
+        }
+        for (int i = 0; i < vertexData.length; i += MeshData.VERTEX_SIZE_IN_FLOATS) {
+            for (int axis = 0; axis < 3; ++axis) {
+                min[axis] = Math.min(min[axis], vertexData[i + axis]);
+                max[axis] = Math.max(max[axis], vertexData[i + axis]);
+            }
+        }
+        return new MeshData(
+                new Vector3f(min[0], min[1], min[2]),
+                new Vector3f(max[0], max[1], max[2]),
+                vertexCount(),
+                vertexData,
+                indices,
+                0,
+                new byte[0]);
+    }
+
+    /**
+     * The number of vertices in the mesh.
+     *
+     * @return The vertex count.
+     */
+    public int vertexCount() {
+        return vertexData.length / MeshData.VERTEX_SIZE_IN_FLOATS;
+    }
+}
@@ -0,0 +1,371 @@
+package com.ikalagaming.factory.render;
+
+import com.ikalagaming.factory.FactoryClientPlugin;
+import com.ikalagaming.factory.world.Chunk;
+import com.ikalagaming.factory.world.Subchunk;
+import com.ikalagaming.factory.world.World;
+import com.ikalagaming.util.SafeResourceLoader;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the meshes of loaded subchunks up to date, building them on a pool of worker threads.
+ *
+ * <p>Block changes and chunks loading or unloading mark the affected subchunks as dirty, including
+ * neighbours whose faces along the shared edge might have changed. The thread that owns the chunks
+ * then calls {@link #submitDirty()}, usually once per frame, which takes a snapshot of each dirty
+ * subchunk and hands it off to be meshed. Only dirty subchunks are ever meshed again.
+ *
+ * <p>Finished meshes are collected with {@link #takeCompleted()}, typically on the render thread
+ * so they can be uploaded. If a subchunk was submitted again before an older mesh finished, only
+ * the newest mesh is returned.
+ *
+ * @author Ches Burks
+ */
+@Slf4j
+public class ChunkMeshService implements AutoCloseable {
+    /**
+     * Finds loaded chunks.
+     *
+     * @author Ches Burks
+     */
+    @FunctionalInterface
+    public interface ChunkLookup {
+        /**
+         * Fetch a chunk if it is loaded.
+         *
+         * @param chunkX The chunk x coordinate.
+         * @param chunkZ The chunk z coordinate.
+         * @return The chunk, or null if it is not loaded.
+         */
+        Chunk getChunk(int chunkX, int chunkZ);
+    }
+
+    /**
+     * The position of a subchunk in the world.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param subchunkIndex The index of the subchunk within the chunk, from the bottom up.
+     * @param chunkZ The chunk z coordinate.
+     * @author Ches Burks
+     */
+    public record SubchunkPosition(int chunkX, int subchunkIndex, int chunkZ) {}
+
+    /**
+     * A finished mesh.
+     *
+     * @param position The subchunk the mesh is for.
+     * @param mesh The mesh, which is empty if there is nothing to draw.
+     * @author Ches Burks
+     */
+    public record SubchunkMesh(SubchunkPosition position, ChunkMesh mesh) {}
+
+    /**
+     * A finished mesh along with the version of the subchunk it was built from.
+     *
+     * @param mesh The mesh.
+     * @param version The version that was submitted.
+     */
+    private record Result(SubchunkMesh mesh, long version) {}
+
+    /** Looks up loaded chunks. */
+    private final ChunkLookup chunks;
+
+    /** Builds the meshes. */
+    private final ExecutorService workers;
+
+    /** Subchunks that need to be meshed again, in the order they were marked. */
+    private final Set<SubchunkPosition> dirty = new LinkedHashSet<>();
+
+    /** The newest version submitted for each subchunk that has not been collected yet. */
+    private final Map<SubchunkPosition, Long> latest = new ConcurrentHashMap<>();
+
+    /** Meshes that have finished but have not been collected. */
+    private final Queue<Result> completed = new ConcurrentLinkedQueue<>();
+
+    /** The number of meshes that have been submitted but are not finished. */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /** The version assigned to the next submitted subchunk. */
+    private long nextVersion;
+
+    /**
+     * Create a service that uses one worker thread per available processor, leaving one for the
+     * render thread.
+     *
+     * @param chunks Looks up loaded chunks.
+     */
+    public ChunkMeshService(@NonNull ChunkLookup chunks) {
+        this(chunks, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Create a service with a specific number of workers.
+     *
+     * @param chunks Looks up loaded chunks.
+     * @param threadCount The number of worker threads, at least 1.
+     * @throws IllegalArgumentException If the thread count is less than 1.
+     */
+    public ChunkMeshService(@NonNull ChunkLookup chunks, int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Need at least one worker thread");
+        }
+        this.chunks = chunks;
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers =
+                Executors.newFixedThreadPool(
+                        threadCount,
+                        task -> {
+                            Thread thread =
+                                    new Thread(
+                                            task, "Chunk Mesher " + threadNumber.getAndIncrement());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    /**
+     * Mark the subchunk containing a block as dirty after the block changed. If the block is on
+     * the edge of the subchunk, the subchunk on the other side of that edge is marked too.
+     *
+     * @param x The block x coordinate.
+     * @param y The block y coordinate.
+     * @param z The block z coordinate.
+     */
+    public void blockChanged(int x, int y, int z) {
+        final int chunkX = Math.floorDiv(x, World.CHUNK_WIDTH);
+        final int chunkZ = Math.floorDiv(z, World.CHUNK_WIDTH);
+        final int subchunk = Math.floorDiv(y - World.WORLD_HEIGHT_MIN, Subchunk.SUBCHUNK_HEIGHT);
+        final int localX = Math.floorMod(x, World.CHUNK_WIDTH);
+        final int localY = Math.floorMod(y - World.WORLD_HEIGHT_MIN, Subchunk.SUBCHUNK_HEIGHT);
+        final int localZ = Math.floorMod(z, World.CHUNK_WIDTH);
+        markDirty(chunkX, subchunk, chunkZ);
+        if (localX == 0) {
+            markDirty(chunkX - 1, subchunk, chunkZ);
+        } else if (localX == World.CHUNK_WIDTH - 1) {
+            markDirty(chunkX + 1, subchunk, chunkZ);
+        }
+        if (localY == 0) {
+            markDirty(chunkX, subchunk - 1, chunkZ);
+        } else if (localY == Subchunk.SUBCHUNK_HEIGHT - 1) {
+            markDirty(chunkX, subchunk + 1, chunkZ);
+        }
+        if (localZ == 0) {
+            markDirty(chunkX, subchunk, chunkZ - 1);
+        } else if (localZ == World.CHUNK_WIDTH - 1) {
+            markDirty(chunkX, subchunk, chunkZ + 1);
+        }
+    }
+
+    /**
+     * Mark every subchunk of a chunk that was just loaded as dirty, along with the subchunks of
+     * neighbouring chunks, whose edges are no longer next to empty space.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     */
+    public void chunkLoaded(int chunkX, int chunkZ) {
+        markChunkDirty(chunkX, chunkZ);
+        markNeighboursDirty(chunkX, chunkZ);
+    }
+
+    /**
+     * Forget about a chunk that was unloaded, dropping any meshes for it that are not collected
+     * yet. The subchunks of neighbouring chunks are marked as dirty, since their edges are now next
+     * to empty space.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     */
+    public void chunkUnloaded(int chunkX, int chunkZ) {
+        synchronized (dirty) {
+            for (int i = 0; i < Chunk.SUBCHUNK_COUNT; ++i) {
+                var position = new SubchunkPosition(chunkX, i, chunkZ);
+                dirty.remove(position);
+                latest.remove(position);
+            }
+        }
+        markNeighboursDirty(chunkX, chunkZ);
+    }
+
+    /** Stop the workers, waiting for any meshes that are being built to finish. */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            // Meshing a single subchunk is quick, so this should never come close to timing out
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The number of subchunks that are marked dirty but have not been submitted.
+     *
+     * @return The number of dirty subchunks.
+     */
+    public int getDirtyCount() {
+        synchronized (dirty) {
+            return dirty.size();
+        }
+    }
+
+    /**
+     * The number of meshes that have been submitted but are not finished yet.
+     *
+     * @return The number of meshes being built.
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Mark every subchunk of a chunk that has blocks as dirty.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     */
+    private void markChunkDirty(int chunkX, int chunkZ) {
+        final Chunk chunk = chunks.getChunk(chunkX, chunkZ);
+        if (chunk == null) {
+            return;
+        }
+        for (int i = 0; i < Chunk.SUBCHUNK_COUNT; ++i) {
+            if (chunk.getSubchunk(i) != null) {
+                markDirty(chunkX, i, chunkZ);
+            }
+        }
+    }
+
+    /**
+     * Mark a subchunk as needing to be meshed again. Subchunks outside the world are ignored.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param subchunkIndex The index of the subchunk within the chunk, from the bottom up.
+     * @param chunkZ The chunk z coordinate.
+     */
+    public void markDirty(int chunkX, int subchunkIndex, int chunkZ) {
+        if (subchunkIndex < 0 || subchunkIndex >= Chunk.SUBCHUNK_COUNT) {
+            return;
+        }
+        synchronized (dirty) {
+            dirty.add(new SubchunkPosition(chunkX, subchunkIndex, chunkZ));
+        }
+    }
+
+    /**
+     * Mark the subchunks of the four chunks next to a chunk as dirty.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     */
+    private void markNeighboursDirty(int chunkX, int chunkZ) {
+        markChunkDirty(chunkX - 1, chunkZ);
+        markChunkDirty(chunkX + 1, chunkZ);
+        markChunkDirty(chunkX, chunkZ - 1);
+        markChunkDirty(chunkX, chunkZ + 1);
+    }
+
+    /**
+     * Build a mesh on a worker thread.
+     *
+     * @param position The subchunk.
+     * @param version The version that was submitted.
+     * @param snapshot The snapshot of the subchunk.
+     */
+    private void mesh(SubchunkPosition position, long version, int[] snapshot) {
+        try {
+            var mesh = SubchunkMesher.mesh(snapshot);
+            completed.add(new Result(new SubchunkMesh(position, mesh), version));
+        } catch (RuntimeException e) {
+            log.warn(
+                    SafeResourceLoader.getStringFormatted(
+                            "CHUNK_MESHING_FAILED",
+                            FactoryClientPlugin.getResourceBundle(),
+                            Integer.toString(position.subchunkIndex()),
+                            Integer.toString(position.chunkX()),
+                            Integer.toString(position.chunkZ())),
+                    e);
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Take a snapshot of every dirty subchunk and hand them to the workers to be meshed. This reads
+     * the chunks, so it must be called on the thread that modifies them. Dirty subchunks in chunks
+     * that are not loaded are dropped, and subchunks without any blocks get an empty mesh right
+     * away.
+     *
+     * @return The number of subchunks that were submitted.
+     */
+    public int submitDirty() {
+        List<SubchunkPosition> positions;
+        synchronized (dirty) {
+            positions = new ArrayList<>(dirty);
+            dirty.clear();
+        }
+        int submitted = 0;
+        for (SubchunkPosition position : positions) {
+            final int chunkX = position.chunkX();
+            final int chunkZ = position.chunkZ();
+            final Chunk chunk = chunks.getChunk(chunkX, chunkZ);
+            if (chunk == null) {
+                continue;
+            }
+            final long version;
+            synchronized (dirty) {
+                version = nextVersion++;
+            }
+            latest.put(position, version);
+            ++submitted;
+            if (chunk.getSubchunk(position.subchunkIndex()) == null) {
+                completed.add(new Result(new SubchunkMesh(position, ChunkMesh.EMPTY), version));
+                continue;
+            }
+            final int[] snapshot =
+                    SubchunkMesher.snapshot(
+                            chunk,
+                            position.subchunkIndex(),
+                            chunks.getChunk(chunkX - 1, chunkZ),
+                            chunks.getChunk(chunkX + 1, chunkZ),
+                            chunks.getChunk(chunkX, chunkZ - 1),
+                            chunks.getChunk(chunkX, chunkZ + 1));
+            pending.incrementAndGet();
+            workers.execute(() -> mesh(position, version, snapshot));
+        }
+        return submitted;
+    }
+
+    /**
+     * Collect the meshes that have finished since the last call. Meshes that were replaced by a
+     * newer submission, or belong to chunks that were unloaded, are dropped.
+     *
+     * @return The finished meshes, at most one per subchunk.
+     */
+    public List<SubchunkMesh> takeCompleted() {
+        List<SubchunkMesh> result = new ArrayList<>();
+        Result next;
+        while ((next = completed.poll()) != null) {
+            if (latest.remove(next.mesh().position(), next.version())) {
+                result.add(next.mesh());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,363 @@
+package com.ikalagaming.factory.render;
+
+import com.ikalagaming.factory.world.BlockStates;
+import com.ikalagaming.factory.world.Chunk;
+import com.ikalagaming.factory.world.Subchunk;
+import com.ikalagaming.factory.world.World;
+import com.ikalagaming.graphics.graph.MeshData;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Turns the blocks in a subchunk into a {@link ChunkMesh}.
+ *
+ * <p>Only faces between a block and empty space are kept, so faces between two blocks are never
+ * drawn. The remaining faces are merged greedily: within each layer, faces of the same block that
+ * face the same way are grown into the largest rectangles possible, so a flat wall of stone is a
+ * single quad rather than one per block. Textures are expected to repeat, since the texture
+ * coordinates of a merged quad go from 0 to its size in blocks.
+ *
+ * <p>Meshing works from a snapshot of the subchunk that also includes the blocks just outside each
+ * face, so the snapshot can be taken on the thread that owns the chunks and the meshing done on any
+ * other thread. This is all CPU work and does not need a GPU.
+ *
+ * @author Ches Burks
+ */
+public class SubchunkMesher {
+    /** The size of a subchunk along each axis, x, y, then z. */
+    private static final int[] SIZE = {
+        World.CHUNK_WIDTH, Subchunk.SUBCHUNK_HEIGHT, World.CHUNK_WIDTH
+    };
+
+    /** The width of a snapshot along x and z, including the blocks outside the subchunk. */
+    private static final int PADDED_WIDTH = World.CHUNK_WIDTH + 2;
+
+    /** The height of a snapshot, including the blocks outside the subchunk. */
+    private static final int PADDED_HEIGHT = Subchunk.SUBCHUNK_HEIGHT + 2;
+
+    /** The number of block states in a snapshot. */
+    public static final int SNAPSHOT_SIZE = PADDED_WIDTH * PADDED_HEIGHT * PADDED_WIDTH;
+
+    /** The distance between neighbouring entries of a snapshot along each axis, x, y, then z. */
+    private static final int[] STRIDE = {1, PADDED_WIDTH * PADDED_WIDTH, PADDED_WIDTH};
+
+    /**
+     * Collects the vertices and indices of a mesh as quads are added.
+     *
+     * @author Ches Burks
+     */
+    private static final class MeshBuilder {
+        /** The vertex data. */
+        private float[] vertices = new float[64 * MeshData.VERTEX_SIZE_IN_FLOATS];
+
+        /** The triangle indices. */
+        private int[] indices = new int[96];
+
+        /** The block state of each quad. */
+        private int[] states = new int[16];
+
+        /** The number of quads that have been added. */
+        private int quadCount;
+
+        /**
+         * Add a quad.
+         *
+         * @param corners The positions of the 4 corners, counter-clockwise seen from the front.
+         * @param textureCoordinates The texture coordinates of the 4 corners.
+         * @param normal The normal.
+         * @param tangent The direction of the first texture coordinate.
+         * @param bitangent The direction of the second texture coordinate.
+         * @param state The block state of the face.
+         */
+        private void add(
+                float[][] corners,
+                float[][] textureCoordinates,
+                float[] normal,
+                float[] tangent,
+                float[] bitangent,
+                int state) {
+            if (quadCount == states.length) {
+                states = Arrays.copyOf(states, quadCount * 2);
+                indices = Arrays.copyOf(indices, quadCount * 2 * 6);
+                vertices =
+                        Arrays.copyOf(
+                                vertices, quadCount * 2 * 4 * MeshData.VERTEX_SIZE_IN_FLOATS);
+            }
+            final int firstVertex = quadCount * 4;
+            int offset = firstVertex * MeshData.VERTEX_SIZE_IN_FLOATS;
+            for (int corner = 0; corner < 4; ++corner) {
+                System.arraycopy(corners[corner], 0, vertices, offset, 3);
+                System.arraycopy(normal, 0, vertices, offset + 3, 3);
+                System.arraycopy(tangent, 0, vertices, offset + 6, 3);
+                System.arraycopy(bitangent, 0, vertices, offset + 9, 3);
+                System.arraycopy(textureCoordinates[corner], 0, vertices, offset + 12, 2);
+                offset += MeshData.VERTEX_SIZE_IN_FLOATS;
+            }
+            final int index = quadCount * 6;
+            indices[index] = firstVertex;
+            indices[index + 1] = firstVertex + 1;
+            indices[index + 2] = firstVertex + 2;
+            indices[index + 3] = firstVertex;
+            indices[index + 4] = firstVertex + 2;
+            indices[index + 5] = firstVertex + 3;
+            states[quadCount] = state;
+            ++quadCount;
+        }
+
+        /**
+         * Create the mesh.
+         *
+         * @return The mesh containing every quad that was added.
+         */
+        private ChunkMesh build() {
+            if (quadCount == 0) {
+                return ChunkMesh.EMPTY;
+            }
+            return new ChunkMesh(
+                    Arrays.copyOf(vertices, quadCount * 4 * MeshData.VERTEX_SIZE_IN_FLOATS),
+                    Arrays.copyOf(indices, quadCount * 6),
+                    Arrays.copyOf(states, quadCount));
+        }
+    }
+
+    /**
+     * Add a merged face to the mesh.
+     *
+     * @param builder The mesh being built.
+     * @param axis The axis the face points along, 0 for x, 1 for y, 2 for z.
+     * @param positive Whether the face points towards the positive end of the axis.
+     * @param layer The layer of blocks along the axis that the face belongs to.
+     * @param u The start of the face along the first axis after the face axis.
+     * @param v The start of the face along the second axis after the face axis.
+     * @param width The size of the face along the first axis after the face axis.
+     * @param height The size of the face along the second axis after the face axis.
+     * @param state The block state of the face.
+     */
+    private static void addFace(
+            MeshBuilder builder,
+            int axis,
+            boolean positive,
+            int layer,
+            int u,
+            int v,
+            int width,
+            int height,
+            int state) {
+        final int uAxis = (axis + 1) % 3;
+        final int vAxis = (axis + 2) % 3;
+        // The u and v axes are ordered so that u cross v points along the positive axis
+        final int[][] offsets =
+                positive
+                        ? new int[][] {{0, 0}, {width, 0}, {width, height}, {0, height}}
+                        : new int[][] {{0, 0}, {0, height}, {width, height}, {width, 0}};
+        float[][] corners = new float[4][3];
+        float[][] textureCoordinates = new float[4][2];
+        for (int corner = 0; corner < 4; ++corner) {
+            corners[corner][axis] = positive ? layer + 1 : layer;
+            corners[corner][uAxis] = u + offsets[corner][0];
+            corners[corner][vAxis] = v + offsets[corner][1];
+            // Swap the texture axes on back faces, so textures are not mirrored
+            textureCoordinates[corner][0] = offsets[corner][positive ? 0 : 1];
+            textureCoordinates[corner][1] = offsets[corner][positive ? 1 : 0];
+        }
+        float[] normal = new float[3];
+        normal[axis] = positive ? 1 : -1;
+        float[] tangent = new float[3];
+        tangent[positive ? uAxis : vAxis] = 1;
+        float[] bitangent = new float[3];
+        bitangent[positive ? vAxis : uAxis] = 1;
+        builder.add(corners, textureCoordinates, normal, tangent, bitangent, state);
+    }
+
+    /**
+     * Build the mesh for a snapshot of a subchunk.
+     *
+     * @param snapshot The block states, as created by {@link #snapshot(Chunk, int, Chunk, Chunk,
+     *     Chunk, Chunk)}.
+     * @return The mesh, with positions relative to the corner of the subchunk.
+     * @throws IllegalArgumentException If the snapshot is the wrong size.
+     */
+    public static ChunkMesh mesh(@NonNull int[] snapshot) {
+        if (snapshot.length != SNAPSHOT_SIZE) {
+            throw new IllegalArgumentException("Snapshot must have " + SNAPSHOT_SIZE + " entries");
+        }
+        MeshBuilder builder = new MeshBuilder();
+        final int origin = SubchunkMesher.paddedIndex(0, 0, 0);
+        for (int axis = 0; axis < 3; ++axis) {
+            final int uAxis = (axis + 1) % 3;
+            final int vAxis = (axis + 2) % 3;
+            final int width = SIZE[uAxis];
+            final int height = SIZE[vAxis];
+            int[] mask = new int[width * height];
+            for (int direction = -1; direction <= 1; direction += 2) {
+                final int facing = direction * STRIDE[axis];
+                for (int layer = 0; layer < SIZE[axis]; ++layer) {
+                    // Find the visible faces in this layer
+                    for (int v = 0; v < height; ++v) {
+                        int index = origin + layer * STRIDE[axis] + v * STRIDE[vAxis];
+                        for (int u = 0; u < width; ++u) {
+                            final boolean visible = snapshot[index + facing] == BlockStates.EMPTY;
+                            mask[v * width + u] = visible ? snapshot[index] : BlockStates.EMPTY;
+                            index += STRIDE[uAxis];
+                        }
+                    }
+                    SubchunkMesher.mergeLayer(builder, mask, axis, direction > 0, layer);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Greedily merge the visible faces in one layer into rectangles, and add them to the mesh. The
+     * mask is cleared as faces are used.
+     *
+     * @param builder The mesh being built.
+     * @param mask The block state of the visible face at each position in the layer, or {@value
+     *     BlockStates#EMPTY} if there is none, in row-major order along the first and then second
+     *     axis after the face axis.
+     * @param axis The axis the faces point along.
+     * @param positive Whether the faces point towards the positive end of the axis.
+     * @param layer The layer along the axis.
+     */
+    private static void mergeLayer(
+            MeshBuilder builder, int[] mask, int axis, boolean positive, int layer) {
+        final int width = SIZE[(axis + 1) % 3];
+        final int height = SIZE[(axis + 2) % 3];
+        for (int v = 0; v < height; ++v) {
+            for (int u = 0; u < width; ) {
+                final int state = mask[v * width + u];
+                if (state == BlockStates.EMPTY) {
+                    ++u;
+                    continue;
+                }
+                int faceWidth = 1;
+                while (u + faceWidth < width && mask[v * width + u + faceWidth] == state) {
+                    ++faceWidth;
+                }
+                int faceHeight = 1;
+                grow:
+                while (v + faceHeight < height) {
+                    final int row = (v + faceHeight) * width + u;
+                    for (int i = 0; i < faceWidth; ++i) {
+                        if (mask[row + i] != state) {
+                            break grow;
+                        }
+                    }
+                    ++faceHeight;
+                }
+                for (int row = 0; row < faceHeight; ++row) {
+                    Arrays.fill(
+                            mask,
+                            (v + row) * width + u,
+                            (v + row) * width + u + faceWidth,
+                            BlockStates.EMPTY);
+                }
+                SubchunkMesher.addFace(
+                        builder, axis, positive, layer, u, v, faceWidth, faceHeight, state);
+                u += faceWidth;
+            }
+        }
+    }
+
+    /**
+     * Calculate where a block is stored in a snapshot.
+     *
+     * @param x The x coordinate, in the range [-1, {@value World#CHUNK_WIDTH}].
+     * @param y The y coordinate, in the range [-1, {@value Subchunk#SUBCHUNK_HEIGHT}].
+     * @param z The z coordinate, in the range [-1, {@value World#CHUNK_WIDTH}].
+     * @return The index into the snapshot.
+     */
+    static int paddedIndex(int x, int y, int z) {
+        return ((y + 1) * PADDED_WIDTH + (z + 1)) * PADDED_WIDTH + (x + 1);
+    }
+
+    /**
+     * Copy the block states of a subchunk, along with the blocks just outside each of its faces.
+     * This reads the chunks, so it should be called on the thread that modifies them. Missing
+     * neighbours are treated as empty space, so the faces along the edge are drawn until the
+     * neighbour is loaded and the subchunk is meshed again.
+     *
+     * @param chunk The chunk the subchunk is in.
+     * @param subchunkIndex The index of the subchunk within the chunk, from the bottom up.
+     * @param west The chunk towards negative x, or null if it is not loaded.
+     * @param east The chunk towards positive x, or null if it is not loaded.
+     * @param north The chunk towards negative z, or null if it is not loaded.
+     * @param south The chunk towards positive z, or null if it is not loaded.
+     * @return The block states, in a form that can be passed to {@link #mesh(int[])}.
+     * @throws IndexOutOfBoundsException If the subchunk index is out of range.
+     */
+    public static int[] snapshot(
+            @NonNull Chunk chunk,
+            int subchunkIndex,
+            Chunk west,
+            Chunk east,
+            Chunk north,
+            Chunk south) {
+        final int width = World.CHUNK_WIDTH;
+        final int height = Subchunk.SUBCHUNK_HEIGHT;
+        int[] result = new int[SNAPSHOT_SIZE];
+        final Subchunk center = chunk.getSubchunk(subchunkIndex);
+        if (center != null) {
+            for (int y = 0; y < height; ++y) {
+                for (int z = 0; z < width; ++z) {
+                    for (int x = 0; x < width; ++x) {
+                        result[SubchunkMesher.paddedIndex(x, y, z)] = center.getBlockState(x, y, z);
+                    }
+                }
+            }
+        }
+
+        final Subchunk below = subchunkIndex > 0 ? chunk.getSubchunk(subchunkIndex - 1) : null;
+        final Subchunk above =
+                subchunkIndex + 1 < Chunk.SUBCHUNK_COUNT
+                        ? chunk.getSubchunk(subchunkIndex + 1)
+                        : null;
+        for (int z = 0; z < width; ++z) {
+            for (int x = 0; x < width; ++x) {
+                result[SubchunkMesher.paddedIndex(x, -1, z)] =
+                        SubchunkMesher.stateAt(below, x, height - 1, z);
+                result[SubchunkMesher.paddedIndex(x, height, z)] =
+                        SubchunkMesher.stateAt(above, x, 0, z);
+            }
+        }
+
+        final Subchunk westSide = west == null ? null : west.getSubchunk(subchunkIndex);
+        final Subchunk eastSide = east == null ? null : east.getSubchunk(subchunkIndex);
+        final Subchunk northSide = north == null ? null : north.getSubchunk(subchunkIndex);
+        final Subchunk southSide = south == null ? null : south.getSubchunk(subchunkIndex);
+        for (int y = 0; y < height; ++y) {
+            for (int i = 0; i < width; ++i) {
+                result[SubchunkMesher.paddedIndex(-1, y, i)] =
+                        SubchunkMesher.stateAt(westSide, width - 1, y, i);
+                result[SubchunkMesher.paddedIndex(width, y, i)] =
+                        SubchunkMesher.stateAt(eastSide, 0, y, i);
+                result[SubchunkMesher.paddedIndex(i, y, -1)] =
+                        SubchunkMesher.stateAt(northSide, i, y, width - 1);
+                result[SubchunkMesher.paddedIndex(i, y, width)] =
+                        SubchunkMesher.stateAt(southSide, i, y, 0);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fetch a block state from a subchunk that might not exist.
+     *
+     * @param subchunk The subchunk, or null if it does not exist.
+     * @param x The x coordinate within the subchunk.
+     * @param y The y coordinate within the subchunk.
+     * @param z The z coordinate within the subchunk.
+     * @return The block state, {@value BlockStates#EMPTY} if the subchunk does not exist.
+     */
+    private static int stateAt(Subchunk subchunk, int x, int y, int z) {
+        return subchunk == null ? BlockStates.EMPTY : subchunk.getBlockState(x, y, z);
+    }
+
+    /** Private constructor so that this class is not instantiated. */
+    private SubchunkMesher() {
+        throw new UnsupportedOperationException("This utility class should not be instantiated");
+    }
+}
@@ -0,0 +1,149 @@
+package com.ikalagaming.factory.render;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ikalagaming.factory.world.BlockStates;
+import com.ikalagaming.factory.world.Chunk;
+import com.ikalagaming.factory.world.ChunkPosition;
+import com.ikalagaming.factory.world.World;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for meshing dirty subchunks on worker threads.
+ *
+ * @author Ches Burks
+ */
+class TestChunkMeshService {
+    /** The chunks that are loaded. */
+    private final Map<ChunkPosition, Chunk> chunks = new HashMap<>();
+
+    /**
+     * Look up a loaded chunk.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return The chunk, or null if it is not loaded.
+     */
+    private Chunk lookup(int chunkX, int chunkZ) {
+        return chunks.get(new ChunkPosition(chunkX, chunkZ));
+    }
+
+    /**
+     * Wait for every submitted mesh to finish, then collect them.
+     *
+     * @param service The service.
+     * @return The finished meshes.
+     */
+    private static List<ChunkMeshService.SubchunkMesh> finish(ChunkMeshService service) {
+        List<ChunkMeshService.SubchunkMesh> result = new ArrayList<>();
+        while (service.getPendingCount() > 0) {
+            result.addAll(service.takeCompleted());
+            Thread.onSpinWait();
+        }
+        result.addAll(service.takeCompleted());
+        return result;
+    }
+
+    /** Test that only subchunks with blocks are meshed when a chunk loads. */
+    @Test
+    void testChunkLoaded() {
+        var chunk = new Chunk();
+        chunk.setBlockState(1, 2, 3, BlockStates.getId("test:stone"));
+        chunks.put(new ChunkPosition(0, 0), chunk);
+
+        try (var service = new ChunkMeshService(this::lookup, 2)) {
+            service.chunkLoaded(0, 0);
+            assertEquals(1, service.getDirtyCount());
+            assertEquals(1, service.submitDirty());
+            assertEquals(0, service.getDirtyCount());
+
+            var meshes = TestChunkMeshService.finish(service);
+            assertEquals(1, meshes.size());
+            var position = meshes.get(0).position();
+            assertEquals(-World.WORLD_HEIGHT_MIN / 16, position.subchunkIndex());
+            assertEquals(6, meshes.get(0).mesh().quadCount());
+        }
+    }
+
+    /** Test that changing a block on a subchunk edge also marks the neighbour. */
+    @Test
+    void testBlockChanged() {
+        try (var service = new ChunkMeshService(this::lookup, 1)) {
+            service.blockChanged(5, 5, 5);
+            assertEquals(1, service.getDirtyCount());
+
+            service.blockChanged(0, 0, 15);
+            // The same subchunk as before, plus the ones to the west, below, and to the south
+            assertEquals(4, service.getDirtyCount());
+
+            // There is nothing below the bottom of the world
+            service.blockChanged(0, World.WORLD_HEIGHT_MIN, 0);
+            assertEquals(7, service.getDirtyCount());
+
+            // Nothing is loaded, so everything is dropped
+            assertEquals(0, service.submitDirty());
+            assertEquals(0, service.getDirtyCount());
+        }
+    }
+
+    /** Test that only the newest mesh is returned when a subchunk is submitted repeatedly. */
+    @Test
+    void testNewestWins() {
+        var chunk = new Chunk();
+        final int stone = BlockStates.getId("test:stone");
+        chunks.put(new ChunkPosition(0, 0), chunk);
+
+        try (var service = new ChunkMeshService(this::lookup, 4)) {
+            for (int i = 0; i < 10; ++i) {
+                chunk.setBlockState(i, 5, 5, stone);
+                service.blockChanged(i, 5, 5);
+                service.submitDirty();
+            }
+            var meshes = TestChunkMeshService.finish(service);
+            assertEquals(1, meshes.size());
+            // A single row of ten blocks merges into one quad per side
+            assertEquals(6, meshes.get(0).mesh().quadCount());
+        }
+    }
+
+    /** Test that removing the last block produces an empty mesh. */
+    @Test
+    void testEmptied() {
+        var chunk = new Chunk();
+        chunk.setBlockState(3, 3, 3, BlockStates.getId("test:stone"));
+        chunks.put(new ChunkPosition(0, 0), chunk);
+
+        try (var service = new ChunkMeshService(this::lookup, 1)) {
+            chunk.setBlockState(3, 3, 3, BlockStates.EMPTY);
+            service.blockChanged(3, 3, 3);
+            service.submitDirty();
+
+            var meshes = TestChunkMeshService.finish(service);
+            assertEquals(1, meshes.size());
+            assertTrue(meshes.get(0).mesh().isEmpty());
+        }
+    }
+
+    /** Test that meshes for unloaded chunks are dropped. */
+    @Test
+    void testUnloaded() {
+        var chunk = new Chunk();
+        chunk.setBlockState(3, 3, 3, BlockStates.getId("test:stone"));
+        chunks.put(new ChunkPosition(0, 0), chunk);
+
+        try (var service = new ChunkMeshService(this::lookup, 1)) {
+            service.chunkLoaded(0, 0);
+            service.submitDirty();
+            chunks.remove(new ChunkPosition(0, 0));
+            service.chunkUnloaded(0, 0);
+
+            assertTrue(TestChunkMeshService.finish(service).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.ikalagaming.factory.render;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ikalagaming.factory.world.BlockStates;
+import com.ikalagaming.factory.world.Chunk;
+import com.ikalagaming.factory.world.Subchunk;
+import com.ikalagaming.factory.world.World;
+import com.ikalagaming.graphics.graph.MeshData;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for turning subchunks into meshes.
+ *
+ * @author Ches Burks
+ */
+class TestSubchunkMesher {
+    /** The y coordinate of the bottom of the subchunk used in tests. */
+    private static final int BOTTOM = World.WORLD_HEIGHT_MIN + 3 * Subchunk.SUBCHUNK_HEIGHT;
+
+    /** The index of the subchunk used in tests. */
+    private static final int SUBCHUNK = 3;
+
+    /**
+     * Fill a whole subchunk with a block.
+     *
+     * @param chunk The chunk to fill.
+     * @param state The block state to fill it with.
+     */
+    private static void fill(Chunk chunk, int state) {
+        for (int y = 0; y < Subchunk.SUBCHUNK_HEIGHT; ++y) {
+            for (int z = 0; z < World.CHUNK_WIDTH; ++z) {
+                for (int x = 0; x < World.CHUNK_WIDTH; ++x) {
+                    chunk.setBlockState(x, BOTTOM + y, z, state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Mesh the test subchunk of a chunk.
+     *
+     * @param chunk The chunk.
+     * @param east The chunk towards positive x, or null.
+     * @return The mesh.
+     */
+    private static ChunkMesh mesh(Chunk chunk, Chunk east) {
+        return SubchunkMesher.mesh(
+                SubchunkMesher.snapshot(chunk, SUBCHUNK, null, east, null, null));
+    }
+
+    /**
+     * Read one component of a vertex.
+     *
+     * @param mesh The mesh.
+     * @param vertex The vertex index.
+     * @param offset The offset of the component within the vertex.
+     * @return The value.
+     */
+    private static float vertexValue(ChunkMesh mesh, int vertex, int offset) {
+        return mesh.vertexData()[vertex * MeshData.VERTEX_SIZE_IN_FLOATS + offset];
+    }
+
+    /** Test that an empty subchunk has no faces. */
+    @Test
+    void testEmpty() {
+        var mesh = TestSubchunkMesher.mesh(new Chunk(), null);
+
+        assertTrue(mesh.isEmpty());
+        assertEquals(0, mesh.vertexCount());
+    }
+
+    /** Test that a single block has all six faces. */
+    @Test
+    void testSingleBlock() {
+        var chunk = new Chunk();
+        final int stone = BlockStates.getId("test:stone");
+        chunk.setBlockState(4, BOTTOM + 5, 6, stone);
+
+        var mesh = TestSubchunkMesher.mesh(chunk, null);
+
+        assertEquals(6, mesh.quadCount());
+        assertEquals(24, mesh.vertexCount());
+        assertEquals(36, mesh.indices().length);
+        for (int state : mesh.quadStates()) {
+            assertEquals(stone, state);
+        }
+    }
+
+    /** Test that a solid subchunk becomes one quad per side. */
+    @Test
+    void testGreedyMerging() {
+        var chunk = new Chunk();
+        TestSubchunkMesher.fill(chunk, BlockStates.getId("test:stone"));
+
+        var mesh = TestSubchunkMesher.mesh(chunk, null);
+
+        assertEquals(6, mesh.quadCount());
+        // The top face covers the whole subchunk, with texture coordinates in blocks
+        float maxU = 0;
+        for (int vertex = 0; vertex < mesh.vertexCount(); ++vertex) {
+            maxU = Math.max(maxU, TestSubchunkMesher.vertexValue(mesh, vertex, 12));
+        }
+        assertEquals(World.CHUNK_WIDTH, maxU);
+    }
+
+    /** Test that faces between blocks are culled, and different blocks are not merged. */
+    @Test
+    void testCulling() {
+        var chunk = new Chunk();
+        final int stone = BlockStates.getId("test:stone");
+        final int dirt = BlockStates.getId("test:dirt");
+        chunk.setBlockState(0, BOTTOM, 0, stone);
+        chunk.setBlockState(1, BOTTOM, 0, dirt);
+        chunk.setBlockState(2, BOTTOM, 0, dirt);
+
+        var mesh = TestSubchunkMesher.mesh(chunk, null);
+
+        // Stone has 5 faces, and the two dirt blocks merge into 5 more
+        assertEquals(10, mesh.quadCount());
+    }
+
+    /** Test that faces against a neighbouring chunk are culled. */
+    @Test
+    void testNeighbourCulling() {
+        final int stone = BlockStates.getId("test:stone");
+        var chunk = new Chunk();
+        TestSubchunkMesher.fill(chunk, stone);
+        var east = new Chunk();
+        TestSubchunkMesher.fill(east, stone);
+
+        assertEquals(6, TestSubchunkMesher.mesh(chunk, null).quadCount());
+        assertEquals(5, TestSubchunkMesher.mesh(chunk, east).quadCount());
+    }
+
+    /** Test that triangles wind counter-clockwise when seen from the side the normal points. */
+    @Test
+    void testWinding() {
+        var chunk = new Chunk();
+        chunk.setBlockState(7, BOTTOM + 7, 7, BlockStates.getId("test:stone"));
+        chunk.setBlockState(8, BOTTOM + 7, 7, BlockStates.getId("test:dirt"));
+
+        var mesh = TestSubchunkMesher.mesh(chunk, null);
+
+        final int[] indices = mesh.indices();
+        for (int triangle = 0; triangle < indices.length; triangle += 3) {
+            float[][] corners = new float[3][3];
+            for (int corner = 0; corner < 3; ++corner) {
+                for (int axis = 0; axis < 3; ++axis) {
+                    corners[corner][axis] =
+                            TestSubchunkMesher.vertexValue(
+                                    mesh, indices[triangle + corner], axis);
+                }
+            }
+            float[] a = new float[3];
+            float[] b = new float[3];
+            for (int axis = 0; axis < 3; ++axis) {
+                a[axis] = corners[1][axis] - corners[0][axis];
+                b[axis] = corners[2][axis] - corners[0][axis];
+            }
+            float[] cross = {
+                a[1] * b[2] - a[2] * b[1], a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0]
+            };
+            final int vertex = indices[triangle];
+            for (int axis = 0; axis < 3; ++axis) {
+                final float normal = TestSubchunkMesher.vertexValue(mesh, vertex, 3 + axis);
+                assertEquals(Math.signum(normal), Math.signum(cross[axis]));
+            }
+        }
+    }
+
+    /** Test that snapshots of the wrong size are rejected. */
+    @Test
+    void testWrongSize() {
+        assertThrows(IllegalArgumentException.class, () -> SubchunkMesher.mesh(new int[10]));
+    }
+}
@@ -2,6 +2,7 @@ package com.ikalagaming.factory;
 
 import com.ikalagaming.event.Listener;
 import com.ikalagaming.factory.networking.RequestRegistry;
+import com.ikalagaming.factory.world.BlockStates;
 import com.ikalagaming.localization.Localization;
 import com.ikalagaming.plugins.Plugin;
 
@@ -67,6 +68,7 @@ public class FactoryPlugin extends Plugin {
     @Override
     public boolean onUnload() {
         RequestRegistry.purge();
+        BlockStates.purge();
         setResourceBundle(null);
         return true;
     }
@@ -1,8 +1,7 @@
 package com.ikalagaming.factory.crafting;
 
 import com.ikalagaming.factory.item.ItemStack;
-import com.ikalagaming.factory.kvt.KVT;
-import com.ikalagaming.factory.kvt.NodeType;
+import com.ikalagaming.factory.registry.TagRegistry;
 
 import lombok.NonNull;
 
@@ -38,10 +37,7 @@ public interface ItemMatchCondition {
                         && !actual.getItem().getTags().containsAll(item.getTags())) {
                     return false;
                 }
-                var kvt = item.getKvt();
-                return kvt == null
-                        || kvt.getKeys().isEmpty()
-                        || allKvtFound(kvt, actual.getItem().getKvt());
+                return actual.getItem().hasAllKvtOf(item);
             };
 
     /** Only check the item name. */
@@ -71,29 +67,33 @@ public interface ItemMatchCondition {
                             .containsAll(recipe.getItemStack().getItem().getTags());
 
     /**
-     * Check that all the KVT tags listed in the criteria are listed in the actual KVT data. Extra
-     * tags in the data are ignored.
+     * Check that the item has any of the tags in the condition, or a descendant of one of them,
+     * using tag sets.
      *
-     * @param criteria The KVT tags that must be present.
-     * @param tree The tree to check.
-     * @return Whether we found all the expected tags and they matched.
+     * @param registry The frozen tag registry.
+     * @return The condition.
      */
-    private static boolean allKvtFound(@NonNull KVT criteria, @NonNull KVT tree) {
-        for (String key : criteria.getKeys()) {
-            var expectedType = criteria.getType(key);
-            if (!tree.hasChild(key) || !Objects.equals(expectedType, tree.getType(key))) {
-                return false;
-            }
-            if (expectedType.map(NodeType.NODE::equals).orElse(false)
-                    && !allKvtFound(criteria.getNode(key), tree.getNode(key))) {
-                return false;
-            }
-            if (!Objects.equals(criteria.get(key), tree.get(key))) {
-                return false;
-            }
-        }
+    static ItemMatchCondition matchAnyTags(@NonNull TagRegistry registry) {
+        return (recipe, actual) ->
+                actual.getItem()
+                        .getTagSet(registry)
+                        .intersects(registry.exactSetOf(recipe.getItemStack().getItem().getTags()));
+    }
 
-        return true;
+    /**
+     * Check that the item has all the tags in the condition, or descendants of them, using tag
+     * sets.
+     *
+     * @param registry The frozen tag registry.
+     * @return The condition.
+     */
+    static ItemMatchCondition matchAllTags(@NonNull TagRegistry registry) {
+        // Item tag sets include every ancestor, so they contain all of the recipe tags exactly when
+        // they contain all of the recipe tags and their ancestors, which is cached on the item
+        return (recipe, actual) ->
+                actual.getItem()
+                        .getTagSet(registry)
+                        .containsAll(recipe.getItemStack().getItem().getTagSet(registry));
     }
 
     boolean matches(@NonNull InputItem recipeItem, @NonNull ItemStack actualItem);
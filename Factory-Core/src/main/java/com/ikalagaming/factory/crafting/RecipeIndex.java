@@ -0,0 +1,208 @@
+package com.ikalagaming.factory.crafting;
+
+import com.ikalagaming.factory.item.Item;
+import com.ikalagaming.factory.item.ItemStack;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the recipes that could possibly be crafted from some items, without running every {@link
+ * ItemMatchCondition} against every recipe.
+ *
+ * <p>Each item input with one of the built-in match conditions requires the item to have a
+ * specific name, material, or one of a set of tags. The index maps each of those to the recipes
+ * that need it. A recipe is only a candidate if every one of its item inputs has at least one of
+ * its requirements among the items. Inputs that use other match conditions can't be indexed, and
+ * never rule a recipe out.
+ *
+ * @author Ches Burks
+ */
+public class RecipeIndex {
+    /** The kinds of item properties that are indexed. */
+    private enum KeyType {
+        NAME,
+        MATERIAL,
+        TAG
+    }
+
+    /**
+     * A property of an item that recipes can require.
+     *
+     * @param type What kind of property it is.
+     * @param value The value of the property.
+     */
+    private record Key(KeyType type, String value) {}
+
+    /** The recipes, in the order they were provided. */
+    private final List<Recipe> recipes;
+
+    /**
+     * For each recipe, the requirements of each indexed item input. An input is satisfied if any
+     * of its keys are present.
+     */
+    private final Key[][][] requirements;
+
+    /** The recipes that require each key, as indices into {@link #recipes}. */
+    private final Map<Key, BitSet> recipesByKey = new HashMap<>();
+
+    /** Recipes without any indexed item inputs, which are always candidates. */
+    private final BitSet unindexed = new BitSet();
+
+    /**
+     * Build an index over some recipes.
+     *
+     * @param recipes The recipes to index.
+     */
+    public RecipeIndex(@NonNull List<Recipe> recipes) {
+        this.recipes = List.copyOf(recipes);
+        requirements = new Key[this.recipes.size()][][];
+        for (int i = 0; i < this.recipes.size(); ++i) {
+            List<Key[]> inputs = new ArrayList<>();
+            for (Ingredient ingredient : this.recipes.get(i).inputs()) {
+                if (ingredient instanceof InputItem input) {
+                    Key[] keys = RecipeIndex.requirementsOf(input);
+                    if (keys != null) {
+                        inputs.add(keys);
+                    }
+                }
+            }
+            requirements[i] = inputs.toArray(new Key[0][]);
+            if (inputs.isEmpty()) {
+                unindexed.set(i);
+                continue;
+            }
+            for (Key[] keys : inputs) {
+                for (Key key : keys) {
+                    recipesByKey.computeIfAbsent(key, ignored -> new BitSet()).set(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Work out what an item input requires of an item, if that can be indexed.
+     *
+     * @param input The input.
+     * @return The keys, any one of which an item needs to have to match the input, or null if the
+     *     input can't be indexed.
+     */
+    private static Key[] requirementsOf(InputItem input) {
+        Item item = input.getItemStack().getItem();
+        ItemMatchCondition condition = input.getMatchCondition();
+        if (condition == ItemMatchCondition.DEFAULT
+                || condition == ItemMatchCondition.EXACT
+                || condition == ItemMatchCondition.MATCH_NAME) {
+            return new Key[] {new Key(KeyType.NAME, item.getName())};
+        }
+        if (condition == ItemMatchCondition.MATCH_MATERIAL && item.getMaterial() != null) {
+            return new Key[] {new Key(KeyType.MATERIAL, item.getMaterial())};
+        }
+        if (item.getTags() == null || item.getTags().isEmpty()) {
+            return null;
+        }
+        if (condition == ItemMatchCondition.MATCH_ALL_TAGS) {
+            // Any one of the tags is enough to rule out items that have none of them
+            return new Key[] {new Key(KeyType.TAG, item.getTags().iterator().next())};
+        }
+        if (condition == ItemMatchCondition.MATCH_ANY_TAGS) {
+            return item.getTags().stream()
+                    .map(tag -> new Key(KeyType.TAG, tag))
+                    .toArray(Key[]::new);
+        }
+        return null;
+    }
+
+    /**
+     * Collect the indexed properties of some items.
+     *
+     * @param items The items.
+     * @return The keys for every property of the items.
+     */
+    private static Set<Key> keysOf(Collection<ItemStack> items) {
+        Set<Key> keys = new HashSet<>();
+        for (ItemStack stack : items) {
+            if (stack == null) {
+                continue;
+            }
+            Item item = stack.getItem();
+            keys.add(new Key(KeyType.NAME, item.getName()));
+            if (item.getMaterial() != null) {
+                keys.add(new Key(KeyType.MATERIAL, item.getMaterial()));
+            }
+            if (item.getTags() != null) {
+                for (String tag : item.getTags()) {
+                    keys.add(new Key(KeyType.TAG, tag));
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Find the recipes that might be craftable from some items. Every recipe that can actually be
+     * crafted is included, but some of the candidates may still not match once the full match
+     * conditions and amounts are checked.
+     *
+     * @param items The items that are available. Null entries are ignored.
+     * @return The candidate recipes, in the order they were provided.
+     */
+    public List<Recipe> getCandidates(@NonNull Collection<ItemStack> items) {
+        Set<Key> keys = RecipeIndex.keysOf(items);
+        BitSet reached = (BitSet) unindexed.clone();
+        for (Key key : keys) {
+            BitSet found = recipesByKey.get(key);
+            if (found != null) {
+                reached.or(found);
+            }
+        }
+
+        List<Recipe> result = new ArrayList<>();
+        for (int i = reached.nextSetBit(0); i >= 0; i = reached.nextSetBit(i + 1)) {
+            if (RecipeIndex.satisfied(requirements[i], keys)) {
+                result.add(recipes.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fetch every recipe in the index.
+     *
+     * @return An unmodifiable list of the recipes, in the order they were provided.
+     */
+    public List<Recipe> getRecipes() {
+        return recipes;
+    }
+
+    /**
+     * Check if every input has at least one of its requirements present.
+     *
+     * @param inputs The requirements of each input.
+     * @param keys The keys that are present.
+     * @return Whether every input could be satisfied.
+     */
+    private static boolean satisfied(Key[][] inputs, Set<Key> keys) {
+        for (Key[] input : inputs) {
+            boolean found = false;
+            for (Key key : input) {
+                if (keys.contains(key)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,213 @@
+package com.ikalagaming.factory.crafting;
+
+import com.ikalagaming.factory.inventory.Inventory;
+import com.ikalagaming.factory.item.ItemStack;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds the recipes that can be crafted from the contents of an inventory.
+ *
+ * <p>The {@link RecipeIndex} is used to skip recipes that can't possibly match, before checking
+ * the match conditions and amounts of the rest. Results are cached by the contents they were found
+ * for, so checking the inputs of a machine again when they have not changed only costs a hash
+ * lookup and comparison.
+ *
+ * @author Ches Burks
+ */
+public class RecipeMatcher {
+    /** The default number of different contents to remember the results for. */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    /**
+     * A cached result.
+     *
+     * @param contents A copy of the contents the result was found for.
+     * @param matches The recipes that matched.
+     */
+    private record CacheEntry(List<ItemStack> contents, List<Recipe> matches) {}
+
+    /** The recipes to match against. */
+    @Getter private final RecipeIndex index;
+
+    /** Results for recently checked contents, by the hash of the contents. */
+    private final Map<Integer, CacheEntry> cache;
+
+    /** The number of lookups that were answered from the cache. */
+    private final LongAdder hits = new LongAdder();
+
+    /** The number of lookups that had to check recipes. */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a matcher with the default cache size.
+     *
+     * @param index The recipes to match against.
+     */
+    public RecipeMatcher(@NonNull RecipeIndex index) {
+        this(index, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Create a matcher.
+     *
+     * @param index The recipes to match against.
+     * @param cacheSize The number of different contents to remember the results for, 0 to disable
+     *     caching.
+     * @throws IllegalArgumentException If the cache size is negative.
+     */
+    public RecipeMatcher(@NonNull RecipeIndex index, int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Cache size can't be negative");
+        }
+        this.index = index;
+        cache =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Integer, CacheEntry> eldest) {
+                        return size() > cacheSize;
+                    }
+                };
+    }
+
+    /**
+     * Copy stacks along with their items, so that later changes to them don't affect the cache.
+     *
+     * @param contents The stacks to copy.
+     * @return A copy of the contents.
+     */
+    private static List<ItemStack> copyOf(List<ItemStack> contents) {
+        List<ItemStack> copy = new ArrayList<>(contents.size());
+        for (ItemStack stack : contents) {
+            copy.add(new ItemStack(stack.getItem().copy(), stack.getCount()));
+        }
+        return copy;
+    }
+
+    /**
+     * Find the non-empty stacks of some contents.
+     *
+     * @param contents The contents.
+     * @return A new list of the stacks that are not null or empty.
+     */
+    private static List<ItemStack> nonEmpty(List<ItemStack> contents) {
+        List<ItemStack> result = new ArrayList<>(contents.size());
+        for (ItemStack stack : contents) {
+            if (stack != null && stack.getCount() > 0) {
+                result.add(stack);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check if a recipe can be crafted from some items. Each item can only be used towards one
+     * input, and inputs are given items in the order they are listed.
+     *
+     * @param recipe The recipe.
+     * @param contents The items that are available. Null entries are ignored.
+     * @return Whether there are enough matching items for every item input of the recipe.
+     */
+    public static boolean matches(@NonNull Recipe recipe, @NonNull List<ItemStack> contents) {
+        int[] available = new int[contents.size()];
+        for (int i = 0; i < available.length; ++i) {
+            ItemStack stack = contents.get(i);
+            available[i] = stack == null ? 0 : stack.getCount();
+        }
+        for (Ingredient ingredient : recipe.inputs()) {
+            if (!(ingredient instanceof InputItem input)) {
+                continue;
+            }
+            int needed = input.getItemStack().getCount();
+            for (int i = 0; i < available.length && needed > 0; ++i) {
+                if (available[i] <= 0
+                        || !input.getMatchCondition().matches(input, contents.get(i))) {
+                    continue;
+                }
+                final int used = Math.min(needed, available[i]);
+                available[i] -= used;
+                needed -= used;
+            }
+            if (needed > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the recipes that can be crafted from the contents of an inventory.
+     *
+     * @param inventory The inventory.
+     * @return The matching recipes, in the order they are in the index.
+     * @see #findMatches(List)
+     */
+    public List<Recipe> findMatches(@NonNull Inventory inventory) {
+        List<ItemStack> contents = new ArrayList<>(inventory.getSize());
+        for (int slot = 0; slot < inventory.getSize(); ++slot) {
+            final int count = inventory.getItemCount(slot);
+            inventory.getItem(slot).ifPresent(item -> contents.add(new ItemStack(item, count)));
+        }
+        return findMatches(contents);
+    }
+
+    /**
+     * Find the recipes that can be crafted from some items. Empty stacks are ignored, so contents
+     * that only differ by empty slots share a cache entry.
+     *
+     * @param contents The items that are available. Null entries are ignored.
+     * @return The matching recipes, in the order they are in the index.
+     */
+    public List<Recipe> findMatches(@NonNull List<ItemStack> contents) {
+        List<ItemStack> present = RecipeMatcher.nonEmpty(contents);
+        final int hash = present.hashCode();
+        synchronized (cache) {
+            CacheEntry entry = cache.get(hash);
+            if (entry != null && entry.contents().equals(present)) {
+                hits.increment();
+                return entry.matches();
+            }
+        }
+        misses.increment();
+
+        // Copy before matching, so the result is for exactly the contents it is cached with
+        List<ItemStack> copy = RecipeMatcher.copyOf(present);
+        List<Recipe> matches = new ArrayList<>();
+        for (Recipe recipe : index.getCandidates(copy)) {
+            if (RecipeMatcher.matches(recipe, copy)) {
+                matches.add(recipe);
+            }
+        }
+        matches = List.copyOf(matches);
+        synchronized (cache) {
+            // The items might have changed while being copied, so hash the copy
+            cache.put(copy.hashCode(), new CacheEntry(copy, matches));
+        }
+        return matches;
+    }
+
+    /**
+     * The number of lookups that were answered from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of lookups that had to check recipes.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
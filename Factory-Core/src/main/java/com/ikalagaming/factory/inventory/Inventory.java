@@ -9,10 +9,59 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
+/**
+ * A fixed number of slots that can each hold a stack of items.
+ *
+ * <p>An index of the slots is kept up to date alongside them, tracking which slots are empty and
+ * which slots hold each type of item along with the total count of it. Adding items and checking
+ * for room look up the type instead of scanning every slot, which matters for machines and chests
+ * with lots of slots that automation touches every tick. The index is keyed by a copy of the first
+ * item of each type, so changing an item that is already in a slot can't corrupt it. Until the
+ * slot is changed through the inventory, a changed item is still counted as what it was when it
+ * was added, but it won't be merged with items of that type.
+ *
+ * @author Ches Burks
+ */
 @Slf4j
 public class Inventory {
+    /**
+     * The slots that hold one type of item.
+     *
+     * @author Ches Burks
+     */
+    private static class TypeSlots {
+        /** A copy of the item type, which is the key in the index and is never modified. */
+        private final Item key;
+
+        /** The slot numbers holding the type. */
+        private final BitSet slots = new BitSet();
+
+        /** The total number of items of the type across all the slots. */
+        private long total;
+
+        /**
+         * Create the index entry for a type.
+         *
+         * @param key A copy of the item type that nothing else refers to.
+         */
+        private TypeSlots(@NonNull Item key) {
+            this.key = key;
+        }
+
+        /**
+         * The number of items of this type that could be added to the existing stacks.
+         *
+         * @return The room left in the stacks.
+         */
+        private long room() {
+            return (long) slots.cardinality() * ItemStack.MAX_STACK_SIZE - total;
+        }
+    }
 
     /**
      * Swap slots between inventories. If they are the same inventory and slot, or either is an
@@ -35,8 +84,12 @@ public class Inventory {
                 || (firstInventory == secondInventory && firstSlot == secondSlot)) {
             return;
         }
+        firstInventory.unindex(firstSlot);
+        secondInventory.unindex(secondSlot);
         InventorySlot.swapContents(
                 firstInventory.slots[firstSlot], secondInventory.slots[secondSlot]);
+        firstInventory.index(firstSlot);
+        secondInventory.index(secondSlot);
     }
 
     /**
@@ -49,6 +102,18 @@ public class Inventory {
     /** The actual slots of the inventory. */
     private final InventorySlot[] slots;
 
+    /** The slot numbers that are empty. */
+    private final BitSet emptySlots;
+
+    /** The slots holding each type of item, keyed by a copy of the item type. */
+    private final Map<Item, TypeSlots> types = new HashMap<>();
+
+    /**
+     * The index entry each slot was added to, so that it can be removed even if the item in the
+     * slot has changed since then. Null for empty slots.
+     */
+    private final TypeSlots[] slotTypes;
+
     /**
      * Create a new inventory of a given size.
      *
@@ -68,6 +133,9 @@ public class Inventory {
         for (int i = 0; i < size; ++i) {
             slots[i] = new InventorySlot();
         }
+        emptySlots = new BitSet(size);
+        emptySlots.set(0, size);
+        slotTypes = new TypeSlots[size];
     }
 
     /**
@@ -77,26 +145,29 @@ public class Inventory {
      * @return Whether we could fit the item.
      */
     public boolean addItem(@NonNull Item item) {
-        for (int i = 0; i < size; ++i) {
-            InventorySlot slot = slots[i];
-            if (slot.isEmpty()) {
-                ItemStack stack = new ItemStack(item, 1);
-                return slot.setItemStack(stack);
-            }
-
-            Item stackItem = slot.getItem();
-            if (!Item.isSameType(stackItem, item)) {
-                // Different items
-                continue;
-            }
-
-            ItemStack slotStack = slot.getItemStack();
-            if (slotStack.getCount() < ItemStack.MAX_STACK_SIZE) {
-                slotStack.setCount(slotStack.getCount() + 1);
-                return true;
+        final int empty = emptySlots.nextSetBit(0);
+        TypeSlots type = types.get(item);
+        if (type != null) {
+            // Only stacks before the first empty slot would have been chosen over it
+            for (int i = type.slots.nextSetBit(0);
+                    i >= 0 && (empty < 0 || i < empty);
+                    i = type.slots.nextSetBit(i + 1)) {
+                ItemStack slotStack = slots[i].getItemStack();
+                if (!type.key.equals(slotStack.getItem())) {
+                    reindex(i);
+                    continue;
+                }
+                if (slotStack.getCount() < ItemStack.MAX_STACK_SIZE) {
+                    slotStack.setCount(slotStack.getCount() + 1);
+                    ++type.total;
+                    return true;
+                }
             }
         }
-        return false;
+        if (empty < 0) {
+            return false;
+        }
+        return setEmptySlot(empty, new ItemStack(item, 1));
     }
 
     /**
@@ -128,13 +199,11 @@ public class Inventory {
      * @return Whether if we found a spot.
      */
     private boolean addToEmptySlot(@NonNull ItemStack stack) {
-        for (int i = 0; i < size; ++i) {
-            InventorySlot slot = slots[i];
-            if (slot.isEmpty()) {
-                return slot.setItemStack(stack);
-            }
+        final int empty = emptySlots.nextSetBit(0);
+        if (empty < 0) {
+            return false;
         }
-        return false;
+        return setEmptySlot(empty, stack);
     }
 
     /**
@@ -150,19 +219,23 @@ public class Inventory {
      *     in it.
      */
     private boolean addToExistingStacks(@NonNull ItemStack stack) {
-        for (int i = 0; i < size; ++i) {
-            InventorySlot slot = slots[i];
-            if (slot.isEmpty() || !ItemStack.isSameType(stack, slot.getItemStack())) {
+        TypeSlots type = types.get(stack.getItem());
+        if (type == null) {
+            return false;
+        }
+        for (int i = type.slots.nextSetBit(0); i >= 0; i = type.slots.nextSetBit(i + 1)) {
+            ItemStack slotStack = slots[i].getItemStack();
+            if (!type.key.equals(slotStack.getItem())) {
+                reindex(i);
                 continue;
             }
 
-            ItemStack slotStack = slot.getItemStack();
-
             final int itemsToTransfer =
                     Math.min(stack.getCount(), ItemStack.MAX_STACK_SIZE - slotStack.getCount());
 
             slotStack.setCount(slotStack.getCount() + itemsToTransfer);
             stack.setCount(stack.getCount() - itemsToTransfer);
+            type.total += itemsToTransfer;
             if (stack.getCount() <= 0) {
                 return true;
             }
@@ -201,24 +274,11 @@ public class Inventory {
      * @return Whether the inventory has room to fit the given item.
      */
     public boolean canFitItem(@NonNull Item item) {
-        for (int i = 0; i < size; ++i) {
-            InventorySlot slot = slots[i];
-            if (slot.isEmpty()) {
-                return true;
-            }
-
-            Item stackItem = slot.getItem();
-
-            if (!Item.isSameType(stackItem, item)) {
-                // Different items
-                continue;
-            }
-
-            if (slot.getItemStack().getCount() < ItemStack.MAX_STACK_SIZE) {
-                return true;
-            }
+        if (hasEmptySlot()) {
+            return true;
         }
-        return false;
+        TypeSlots type = types.get(item);
+        return type != null && type.room() > 0;
     }
 
     /**
@@ -234,22 +294,12 @@ public class Inventory {
         if (amount <= 0) {
             return false;
         }
-        int remainingAmount = amount;
-        for (int i = 0; i < size; ++i) {
-            InventorySlot slot = slots[i];
-            if (!slot.isEmpty() && !Item.isSameType(item, slot.getItem())) {
-                continue;
-            }
-
-            ItemStack stack = slot.getItemStack();
-            int amountInSlot = stack != null ? stack.getCount() : 0;
-            int roomInSlot = ItemStack.MAX_STACK_SIZE - amountInSlot;
-            if (roomInSlot >= remainingAmount) {
-                return true;
-            }
-            remainingAmount -= roomInSlot;
+        long room = (long) emptySlots.cardinality() * ItemStack.MAX_STACK_SIZE;
+        TypeSlots type = types.get(item);
+        if (type != null) {
+            room += type.room();
         }
-        return remainingAmount <= 0;
+        return room >= amount;
     }
 
     /**
@@ -261,7 +311,9 @@ public class Inventory {
         if (slotNumber < 0 || slotNumber >= size) {
             return;
         }
+        unindex(slotNumber);
         slots[slotNumber].clear();
+        index(slotNumber);
     }
 
     /**
@@ -280,11 +332,15 @@ public class Inventory {
                 || source == destination) {
             return false;
         }
-        if (InventorySlot.combine(slots[source], slots[destination])) {
+        unindex(source);
+        unindex(destination);
+        final boolean emptied = InventorySlot.combine(slots[source], slots[destination]);
+        if (emptied) {
             slots[source].clear();
-            return true;
         }
-        return false;
+        index(source);
+        index(destination);
+        return emptied;
     }
 
     /**
@@ -313,19 +369,24 @@ public class Inventory {
         return slots[slotNumber].getCount();
     }
 
+    /**
+     * Fetch the total number of an item across all the slots of the inventory.
+     *
+     * @param item The item to count.
+     * @return The number of items of the same type as the given item.
+     */
+    public long getTotalCount(@NonNull Item item) {
+        TypeSlots type = types.get(item);
+        return type == null ? 0 : type.total;
+    }
+
     /**
      * Whether there is an empty slot in the inventory.
      *
      * @return Whether there is an empty slot.
      */
     public boolean hasEmptySlot() {
-        for (int i = 0; i < size; ++i) {
-            InventorySlot slot = slots[i];
-            if (slot.isEmpty()) {
-                return true;
-            }
-        }
-        return false;
+        return !emptySlots.isEmpty();
     }
 
     /**
@@ -339,6 +400,41 @@ public class Inventory {
         return !this.isEmpty(slotNumber);
     }
 
+    /**
+     * Add a slot to the index, after its contents have changed.
+     *
+     * @param slotNumber The slot number.
+     * @see #unindex(int)
+     */
+    private void index(int slotNumber) {
+        InventorySlot slot = slots[slotNumber];
+        if (slot.isEmpty()) {
+            emptySlots.set(slotNumber);
+            return;
+        }
+        emptySlots.clear(slotNumber);
+        TypeSlots type = types.get(slot.getItem());
+        if (type == null) {
+            // The item in the slot can still be changed, so it can't be the key
+            type = new TypeSlots(slot.getItem().copy());
+            types.put(type.key, type);
+        }
+        type.slots.set(slotNumber);
+        type.total += slot.getCount();
+        slotTypes[slotNumber] = type;
+    }
+
+    /**
+     * Move a slot to the index entry for the item it holds now, after the item was changed without
+     * going through the inventory.
+     *
+     * @param slotNumber The slot number.
+     */
+    private void reindex(int slotNumber) {
+        unindex(slotNumber);
+        index(slotNumber);
+    }
+
     /**
      * Check if a slot is empty. Invalid slot numbers are considered empty, as that's easier than
      * throwing exceptions.
@@ -367,9 +463,26 @@ public class Inventory {
             return;
         }
 
+        unindex(slotNumber);
         slots[slotNumber].clear();
         ItemStack stack = new ItemStack(stackable, Math.min(count, ItemStack.MAX_STACK_SIZE));
         slots[slotNumber].setItemStack(stack);
+        index(slotNumber);
+    }
+
+    /**
+     * Place a stack into a slot that is known to be empty.
+     *
+     * @param slotNumber The empty slot number.
+     * @param stack The stack to store.
+     * @return Whether the stack was stored.
+     */
+    private boolean setEmptySlot(int slotNumber, @NonNull ItemStack stack) {
+        if (!slots[slotNumber].setItemStack(stack)) {
+            return false;
+        }
+        index(slotNumber);
+        return true;
     }
 
     /**
@@ -395,6 +508,8 @@ public class Inventory {
         ItemStack newStack = new ItemStack(stack.getItem(), amountToRemove);
         addToEmptySlot(newStack);
         stack.setCount(stack.getCount() - amountToRemove);
+        // The new stack was indexed when it was added, so only the total needs to be corrected
+        slotTypes[slotNumber].total -= amountToRemove;
         return true;
     }
 
@@ -409,6 +524,34 @@ public class Inventory {
         if (first < 0 || first >= size || second < 0 || second >= size || first == second) {
             return;
         }
+        unindex(first);
+        unindex(second);
         InventorySlot.swapContents(slots[first], slots[second]);
+        index(first);
+        index(second);
+    }
+
+    /**
+     * Remove a slot from the index, before its contents change.
+     *
+     * @param slotNumber The slot number.
+     * @see #index(int)
+     */
+    private void unindex(int slotNumber) {
+        InventorySlot slot = slots[slotNumber];
+        if (slot.isEmpty()) {
+            emptySlots.clear(slotNumber);
+            return;
+        }
+        TypeSlots type = slotTypes[slotNumber];
+        if (type == null) {
+            return;
+        }
+        slotTypes[slotNumber] = null;
+        type.slots.clear(slotNumber);
+        type.total -= slot.getCount();
+        if (type.slots.isEmpty()) {
+            types.remove(type.key);
+        }
     }
 }
@@ -0,0 +1,100 @@
+package com.ikalagaming.factory.item;
+
+import com.ikalagaming.factory.kvt.KVT;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The shared copy of an item type in an {@link ItemTypes} table. These can't be modified, since
+ * every stack of the type refers to the same instance, and they remember their hash and type ID.
+ * Their data is copied each time it is fetched, so changes to it don't reach the shared copy, and
+ * code that only needs to read it should use methods like {@link Item#hasAllKvtOf(Item)} instead.
+ *
+ * @author Ches Burks
+ */
+final class InternedItem extends Item {
+    /** The table that the item is interned in. */
+    @Getter private final ItemTypes table;
+
+    /** The ID of the item type within the table. */
+    @Getter private final int typeId;
+
+    /** A read only view of the tags. */
+    private final Set<String> tagView;
+
+    /** The hash code, which can't change. */
+    private final int hash;
+
+    /**
+     * Create the shared copy of an item type.
+     *
+     * @param table The table the item is interned in.
+     * @param typeId The ID of the item type within the table.
+     * @param name The name of the item.
+     * @param material The material of the item, which may be null.
+     * @param tags The tags of the item, which are copied.
+     * @param kvt The data for the item, which may be null. This should not be shared with anything
+     *     else.
+     */
+    InternedItem(
+            @NonNull ItemTypes table,
+            int typeId,
+            @NonNull String name,
+            String material,
+            Set<String> tags,
+            KVT kvt) {
+        super(name, material, tags, kvt);
+        this.table = table;
+        this.typeId = typeId;
+        tagView = Collections.unmodifiableSet(super.getTags());
+        hash = super.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj instanceof InternedItem other && other.table == table) {
+            // There is only one instance of each type in a table
+            return false;
+        }
+        return super.equals(obj);
+    }
+
+    @Override
+    public KVT getKvt() {
+        return ItemTypes.copyOf(super.getKvt());
+    }
+
+    @Override
+    public Set<String> getTags() {
+        return tagView;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public void setKvt(KVT kvt) {
+        throw new UnsupportedOperationException("Interned items can't be modified");
+    }
+
+    @Override
+    public void setMaterial(String material) {
+        throw new UnsupportedOperationException("Interned items can't be modified");
+    }
+
+    @Override
+    public ItemBuilder toBuilder() {
+        // Builders create regular items, which must not share the tags or data with this one
+        return super.toBuilder().tags(new TreeSet<>(getTags())).kvt(getKvt());
+    }
+}
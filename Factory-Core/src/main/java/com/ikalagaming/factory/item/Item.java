@@ -1,11 +1,15 @@
 package com.ikalagaming.factory.item;
 
 import com.ikalagaming.factory.kvt.KVT;
+import com.ikalagaming.factory.kvt.NodeType;
 import com.ikalagaming.factory.kvt.TreeStringSerialization;
+import com.ikalagaming.factory.registry.TagRegistry;
+import com.ikalagaming.factory.world.TagSet;
 
 import lombok.*;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Represents an item in the game.
@@ -14,22 +18,152 @@ import java.util.*;
  */
 @Getter
 @Setter
-@EqualsAndHashCode
+@EqualsAndHashCode(doNotUseGetters = true)
 @Builder(toBuilder = true)
 public class Item {
+    /**
+     * The tag set of an item, along with what it was built from so that we can tell when it needs
+     * to be built again.
+     *
+     * @param registry The registry the set was built with.
+     * @param version The version of the tags at the time.
+     * @param tagSet The tags and their ancestors.
+     */
+    private record CachedTagSet(TagRegistry registry, int version, TagSet tagSet) {}
+
+    /**
+     * An ordered set of tags that counts how many times it has been changed, so that a cached tag
+     * set can be checked without looking at the tags themselves. Every change goes through {@link
+     * #add(String)}, {@link #remove(Object)}, {@link #clear()}, or the iterator; the rest of the
+     * modifying methods are built on top of those.
+     *
+     * @author Ches Burks
+     */
+    private static final class TrackedTags extends AbstractSet<String> {
+        /** The actual tags. */
+        private final TreeSet<String> values = new TreeSet<>();
+
+        /** Incremented every time the tags change. */
+        private int version;
+
+        @Override
+        public boolean add(String tag) {
+            if (!values.add(tag)) {
+                return false;
+            }
+            ++version;
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            if (!values.isEmpty()) {
+                values.clear();
+                ++version;
+            }
+        }
+
+        @Override
+        public boolean contains(Object tag) {
+            return values.contains(tag);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            final Iterator<String> iterator = values.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    return iterator.next();
+                }
 
+                @Override
+                public void remove() {
+                    iterator.remove();
+                    ++version;
+                }
+            };
+        }
+
+        @Override
+        public boolean remove(Object tag) {
+            if (!values.remove(tag)) {
+                return false;
+            }
+            ++version;
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+    }
+
+    /**
+     * Check that all the KVT tags listed in the criteria are listed in the actual KVT data. Extra
+     * tags in the data are ignored.
+     *
+     * @param criteria The KVT tags that must be present.
+     * @param tree The tree to check.
+     * @return Whether we found all the expected tags and they matched.
+     */
+    private static boolean allKvtFound(@NonNull KVT criteria, @NonNull KVT tree) {
+        for (String key : criteria.getKeys()) {
+            var expectedType = criteria.getType(key);
+            if (!tree.hasChild(key) || !Objects.equals(expectedType, tree.getType(key))) {
+                return false;
+            }
+            if (expectedType.map(NodeType.NODE::equals).orElse(false)
+                    && !allKvtFound(criteria.getNode(key), tree.getNode(key))) {
+                return false;
+            }
+            if (!Objects.equals(criteria.get(key), tree.get(key))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if two items are the same type, which means they have the same name, material, tags,
+     * and data. If either item is null, checks that they both are. Items interned in the same
+     * {@link ItemTypes} table are only compared by reference.
+     *
+     * @param a The first item.
+     * @param b The second item.
+     * @return Whether the items are the same type.
+     */
     public static boolean isSameType(Item a, Item b) {
+        if (a == b) {
+            return true;
+        }
         if (a == null || b == null) {
-            return a == b;
+            return false;
         }
-        if (!a.getName().equals(b.getName())) {
+        if (a instanceof InternedItem first
+                && b instanceof InternedItem second
+                && first.getTable() == second.getTable()) {
+            // Each type is only interned once, so different instances are different types
             return false;
         }
-        if (!Objects.equals(a.getMaterial(), b.getMaterial())) {
+        // NOTE(ches) use the fields, since interned items copy their data when it is fetched
+        if (!a.name.equals(b.name)) {
             return false;
         }
-        // TODO(ches) tags, KVT
-        return true;
+        if (!Objects.equals(a.material, b.material)) {
+            return false;
+        }
+        if (!Objects.equals(a.tags, b.tags)) {
+            return false;
+        }
+        return Objects.equals(a.kvt, b.kvt);
     }
 
     /** The fully qualified name of the item. */
@@ -41,7 +175,10 @@ public class Item {
      */
     @Builder.Default private String material = null;
 
-    /** Tags associated with the item. This can be modified if desired. */
+    /**
+     * Tags associated with the item. This can be modified if desired. Always a {@link TrackedTags},
+     * so that changes are noticed by the tag set cache.
+     */
     private final Set<String> tags;
 
     /**
@@ -50,6 +187,11 @@ public class Item {
      */
     @Builder.Default private KVT kvt = null;
 
+    /** The most recently built tag set, which is not part of the identity of the item. */
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final AtomicReference<CachedTagSet> tagSetCache = new AtomicReference<>();
+
     /**
      * Construct an item with just a name and nothing else.
      *
@@ -73,13 +215,62 @@ public class Item {
     public Item(@NonNull String name, String material, Collection<String> tags, KVT kvt) {
         this.name = name;
         this.material = material;
-        this.tags = new TreeSet<>();
+        this.tags = new TrackedTags();
         if (tags != null && !tags.isEmpty()) {
             this.tags.addAll(tags);
         }
         this.kvt = kvt;
     }
 
+    /**
+     * Create a copy of the item that shares nothing with this one, so that either can be modified
+     * without affecting the other.
+     *
+     * @return A new item with the same name, material, tags, and data.
+     */
+    public Item copy() {
+        return new Item(name, material, tags, ItemTypes.copyOf(kvt));
+    }
+
+    /**
+     * Check if this item has all the data that another item has, with the same values. Extra data
+     * on this item is ignored. The data is read in place, so interned items don't copy it.
+     *
+     * @param criteria The item with the data that must be present.
+     * @return Whether all the data from the criteria was found. True if the criteria has no data.
+     */
+    public boolean hasAllKvtOf(@NonNull Item criteria) {
+        if (criteria.kvt == null || criteria.kvt.getKeys().isEmpty()) {
+            return true;
+        }
+        return kvt != null && Item.allKvtFound(criteria.kvt, kvt);
+    }
+
+    /**
+     * Fetch the tags of the item along with all of their ancestors, as a set that can be checked
+     * quickly. The set is cached, and only built again if the tags change or a different registry
+     * is used.
+     *
+     * @param registry The frozen tag registry to look up tags in.
+     * @return The tag set for the item. Tags that are not in the registry are left out.
+     * @see TagRegistry#closureOf(Collection)
+     */
+    public TagSet getTagSet(@NonNull TagRegistry registry) {
+        if (tags == null || tags.isEmpty()) {
+            return TagSet.EMPTY;
+        }
+        final int version = ((TrackedTags) tags).version;
+        CachedTagSet cached = tagSetCache.get();
+        if (cached != null && cached.registry() == registry && cached.version() == version) {
+            return cached.tagSet();
+        }
+        TagSet result = registry.closureOf(tags);
+        if (registry.isFrozen()) {
+            tagSetCache.set(new CachedTagSet(registry, version, result));
+        }
+        return result;
+    }
+
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder("Item[name=");
@@ -0,0 +1,142 @@
+package com.ikalagaming.factory.item;
+
+import com.ikalagaming.factory.kvt.KVT;
+import com.ikalagaming.factory.kvt.Node;
+import com.ikalagaming.factory.kvt.TreeBinarySerialization;
+
+import lombok.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one shared copy of each distinct item type, so that equal items are not stored over and
+ * over, and each type gets an integer ID.
+ *
+ * <p>Two items are the same type if they have the same name, material, tags, and data. Interned
+ * items can't be modified, and remember their hash. Checking if two items interned in the same
+ * table are the same type, or equal, only compares references. Items are not interned
+ * automatically, so code that keeps lots of stacks of the same few types has to intern them itself
+ * to get that.
+ *
+ * @author Ches Burks
+ */
+public class ItemTypes {
+    /** The shared copy of each type, keyed by itself so that equal items can find it. */
+    private final Map<Item, InternedItem> types = new ConcurrentHashMap<>();
+
+    /** The shared copy of each type, indexed by ID. Guarded by this table. */
+    private final List<InternedItem> byId = new ArrayList<>();
+
+    /**
+     * Copy item data so that later changes to the original don't affect the copy.
+     *
+     * @param kvt The data to copy, which may be null.
+     * @return The copy.
+     */
+    static KVT copyOf(KVT kvt) {
+        if (!(kvt instanceof Node node)) {
+            // Value nodes can't be changed after they are created
+            return kvt;
+        }
+        var output = new ByteArrayOutputStream();
+        if (!TreeBinarySerialization.write(node, output)) {
+            return node;
+        }
+        return TreeBinarySerialization.read(new ByteArrayInputStream(output.toByteArray()))
+                .map(KVT.class::cast)
+                .orElse(node);
+    }
+
+    /**
+     * Look up the type ID of an item.
+     *
+     * @param item The item.
+     * @return The type ID, or -1 if the item is null or was not returned by {@link #intern(Item)}
+     *     for this table.
+     */
+    public int getId(Item item) {
+        if (item instanceof InternedItem interned && interned.getTable() == this) {
+            return interned.getTypeId();
+        }
+        return -1;
+    }
+
+    /**
+     * Fetch the shared copy of an item type by ID.
+     *
+     * @param id The type ID.
+     * @return The item, or an empty optional if there is no type with that ID.
+     */
+    public synchronized Optional<Item> getItem(int id) {
+        if (id < 0 || id >= byId.size()) {
+            return Optional.empty();
+        }
+        return Optional.of(byId.get(id));
+    }
+
+    /**
+     * Fetch the shared copy of an item type, adding it if this is the first time the type has been
+     * seen. The item that is passed in is copied rather than being shared, so it can still be
+     * modified afterward without affecting the type.
+     *
+     * @param item The item.
+     * @return The shared copy of the item type, which can't be modified.
+     */
+    public Item intern(@NonNull Item item) {
+        if (getId(item) >= 0) {
+            return item;
+        }
+        InternedItem existing = types.get(item);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (this) {
+            existing = types.get(item);
+            if (existing != null) {
+                return existing;
+            }
+            var interned =
+                    new InternedItem(
+                            this,
+                            byId.size(),
+                            item.getName(),
+                            item.getMaterial(),
+                            item.getTags(),
+                            ItemTypes.copyOf(item.getKvt()));
+            byId.add(interned);
+            types.put(interned, interned);
+            return interned;
+        }
+    }
+
+    /**
+     * Fetch a stack of the shared copy of the item type of a stack.
+     *
+     * @param stack The stack.
+     * @return The original stack if the item is already interned in this table, otherwise a new
+     *     stack with the same count.
+     * @see #intern(Item)
+     */
+    public ItemStack intern(@NonNull ItemStack stack) {
+        Item interned = intern(stack.getItem());
+        if (interned == stack.getItem()) {
+            return stack;
+        }
+        return stack.withItem(interned);
+    }
+
+    /**
+     * The number of distinct item types that have been interned.
+     *
+     * @return The number of types.
+     */
+    public synchronized int size() {
+        return byId.size();
+    }
+}
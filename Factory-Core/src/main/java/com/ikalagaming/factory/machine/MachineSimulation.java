@@ -0,0 +1,557 @@
+package com.ikalagaming.factory.machine;
+
+import com.ikalagaming.factory.FactoryPlugin;
+import com.ikalagaming.factory.crafting.Recipe;
+import com.ikalagaming.util.SafeResourceLoader;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Advances every machine that is working on a recipe.
+ *
+ * <p>Machines are stored in arrays grouped by their {@link MachineDefinition}, rather than as
+ * individual objects, and referred to by an ID. Within each group the running machines are kept
+ * at the start of the arrays, so each tick is a tight loop over only the machines that are doing
+ * something, split into batches that run in parallel.
+ *
+ * <p>Ingredients are only exchanged on cycle boundaries, through the {@link MachineIO}. When a
+ * cycle starts the inputs are consumed, and when it finishes after {@link Recipe#time()} ticks the
+ * outputs are produced. A machine that is missing inputs goes to sleep as {@link
+ * MachineState#IDLE}, and one without room for its outputs goes to sleep as {@link
+ * MachineState#BLOCKED}. Sleeping machines cost nothing per tick until they are {@link #wake(int)
+ * woken}, which should happen whenever their inputs or outputs change.
+ *
+ * <p>Apart from the {@link MachineIO} calls, this is not thread safe. Machines should be added,
+ * removed, and woken from the same thread that calls {@link #tick()}.
+ *
+ * @author Ches Burks
+ */
+@Slf4j
+public class MachineSimulation implements AutoCloseable {
+    /**
+     * Moves ingredients in and out of machines on cycle boundaries. Methods are called from worker
+     * threads, possibly for several machines at once, but never for the same machine at once.
+     *
+     * @author Ches Burks
+     */
+    public interface MachineIO {
+        /**
+         * Consume all the inputs for one cycle of a recipe, or nothing if they are not all
+         * available.
+         *
+         * @param machine The ID of the machine.
+         * @param recipe The recipe the machine is running.
+         * @return True if the inputs were consumed, false if nothing was consumed.
+         */
+        boolean consumeInputs(int machine, @NonNull Recipe recipe);
+
+        /**
+         * Produce all the outputs for one cycle of a recipe, or nothing if they don't all fit.
+         *
+         * @param machine The ID of the machine.
+         * @param recipe The recipe the machine is running.
+         * @return True if the outputs were produced, false if nothing was produced.
+         */
+        boolean produceOutputs(int machine, @NonNull Recipe recipe);
+    }
+
+    /**
+     * The machines that share a definition. Running machines are in [0, activeCount), and
+     * sleeping machines are in [activeCount, size).
+     *
+     * @author Ches Burks
+     */
+    private static class MachineGroup {
+        /** The definition shared by every machine in the group. */
+        private final MachineDefinition definition;
+
+        /** The ID of the machine at each position. */
+        private int[] ids = new int[INITIAL_CAPACITY];
+
+        /** The recipe each machine is set to, which may be null. */
+        private Recipe[] recipes = new Recipe[INITIAL_CAPACITY];
+
+        /** The number of ticks left in the current cycle of each machine. */
+        private long[] remaining = new long[INITIAL_CAPACITY];
+
+        /** The state of each machine. */
+        private MachineState[] states = new MachineState[INITIAL_CAPACITY];
+
+        /** The number of machines in the group. */
+        private int size;
+
+        /** The number of machines in the group that are running. */
+        private int activeCount;
+
+        /**
+         * Create an empty group.
+         *
+         * @param definition The definition shared by every machine in the group.
+         */
+        private MachineGroup(MachineDefinition definition) {
+            this.definition = definition;
+        }
+    }
+
+    /**
+     * A range of running machines in a group that are run together.
+     *
+     * @param group The group.
+     * @param start The first position to run.
+     * @param end The position after the last one to run.
+     */
+    private record Batch(MachineGroup group, int start, int end) {}
+
+    /**
+     * The result of running a batch of machines.
+     *
+     * @param group The group the batch was from.
+     * @param completed The number of cycles that finished.
+     * @param sleepers The positions of machines that went to sleep, in ascending order.
+     */
+    private record BatchResult(MachineGroup group, int completed, int[] sleepers) {}
+
+    /** The starting capacity of the arrays. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The number of machines handled by each task during a tick. */
+    static final int BATCH_SIZE = 4096;
+
+    /** Exchanges ingredients on cycle boundaries. */
+    private final MachineIO io;
+
+    /** Runs the batches for each tick. */
+    private final ExecutorService workers;
+
+    /** Every group that has been created. */
+    private final List<MachineGroup> groups = new ArrayList<>();
+
+    /** The index into {@link #groups} for each definition. */
+    private final Map<MachineDefinition, Integer> groupIndices = new HashMap<>();
+
+    /** The group index of each machine ID, or -1 for IDs that are not in use. */
+    private int[] groupOf = new int[INITIAL_CAPACITY];
+
+    /** The position of each machine ID within its group. */
+    private int[] positionOf = new int[INITIAL_CAPACITY];
+
+    /** The number of IDs that have ever been handed out. */
+    private int nextId;
+
+    /** IDs of removed machines, that can be reused. */
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+
+    /** The number of entries in {@link #freeIds}. */
+    private int freeCount;
+
+    /**
+     * Create a simulation that uses one worker thread per available processor.
+     *
+     * @param io Exchanges ingredients on cycle boundaries.
+     */
+    public MachineSimulation(@NonNull MachineIO io) {
+        this(io, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a simulation with a specific number of workers.
+     *
+     * @param io Exchanges ingredients on cycle boundaries.
+     * @param threadCount The number of worker threads, at least 1.
+     * @throws IllegalArgumentException If the thread count is less than 1.
+     */
+    public MachineSimulation(@NonNull MachineIO io, int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Need at least one worker thread");
+        }
+        this.io = io;
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers =
+                Executors.newFixedThreadPool(
+                        threadCount,
+                        task -> {
+                            Thread thread =
+                                    new Thread(
+                                            task,
+                                            "Machine Simulation " + threadNumber.getAndIncrement());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    /**
+     * The number of ticks a cycle of a recipe takes.
+     *
+     * @param recipe The recipe.
+     * @return The number of ticks, at least 1.
+     */
+    private static long cycleTime(Recipe recipe) {
+        return Math.max(1, recipe.time());
+    }
+
+    /**
+     * Swap two machines within a group, updating their positions.
+     *
+     * @param group The group.
+     * @param first The first position.
+     * @param second The second position.
+     */
+    private void swap(MachineGroup group, int first, int second) {
+        if (first == second) {
+            return;
+        }
+        final int firstId = group.ids[first];
+        final int secondId = group.ids[second];
+        group.ids[first] = secondId;
+        group.ids[second] = firstId;
+        positionOf[firstId] = second;
+        positionOf[secondId] = first;
+
+        Recipe recipe = group.recipes[first];
+        group.recipes[first] = group.recipes[second];
+        group.recipes[second] = recipe;
+
+        final long remaining = group.remaining[first];
+        group.remaining[first] = group.remaining[second];
+        group.remaining[second] = remaining;
+
+        MachineState state = group.states[first];
+        group.states[first] = group.states[second];
+        group.states[second] = state;
+    }
+
+    /**
+     * Add a machine. It will try to start its first cycle on the next tick.
+     *
+     * @param definition The definition of the machine.
+     * @param recipe The recipe the machine is set to, or null if none is selected.
+     * @return The ID of the new machine.
+     */
+    public int add(@NonNull MachineDefinition definition, Recipe recipe) {
+        final int index =
+                groupIndices.computeIfAbsent(
+                        definition,
+                        ignored -> {
+                            groups.add(new MachineGroup(definition));
+                            return groups.size() - 1;
+                        });
+        MachineGroup group = groups.get(index);
+
+        final int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId++;
+            if (id >= groupOf.length) {
+                groupOf = Arrays.copyOf(groupOf, groupOf.length * 2);
+                positionOf = Arrays.copyOf(positionOf, positionOf.length * 2);
+            }
+        }
+
+        if (group.size == group.ids.length) {
+            final int capacity = group.ids.length * 2;
+            group.ids = Arrays.copyOf(group.ids, capacity);
+            group.recipes = Arrays.copyOf(group.recipes, capacity);
+            group.remaining = Arrays.copyOf(group.remaining, capacity);
+            group.states = Arrays.copyOf(group.states, capacity);
+        }
+        final int position = group.size++;
+        group.ids[position] = id;
+        group.recipes[position] = recipe;
+        group.remaining[position] = 0;
+        group.states[position] = MachineState.IDLE;
+        groupOf[id] = index;
+        positionOf[id] = position;
+        wake(id);
+        return id;
+    }
+
+    /**
+     * Stop the workers, waiting for any batches that are running to finish. Machines are not
+     * ticked after this.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The number of machines that are running, and so are processed every tick.
+     *
+     * @return The number of running machines.
+     */
+    public int getActiveCount() {
+        int total = 0;
+        for (MachineGroup group : groups) {
+            total += group.activeCount;
+        }
+        return total;
+    }
+
+    /**
+     * Fetch the definition of a machine.
+     *
+     * @param machine The ID of the machine.
+     * @return The definition.
+     * @throws IllegalArgumentException If there is no machine with that ID.
+     */
+    public MachineDefinition getDefinition(int machine) {
+        return groups.get(groupIndex(machine)).definition;
+    }
+
+    /**
+     * The number of machines, both running and asleep.
+     *
+     * @return The number of machines.
+     */
+    public int getMachineCount() {
+        return nextId - freeCount;
+    }
+
+    /**
+     * Fetch the recipe a machine is set to.
+     *
+     * @param machine The ID of the machine.
+     * @return The recipe, or null if none is selected.
+     * @throws IllegalArgumentException If there is no machine with that ID.
+     */
+    public Recipe getRecipe(int machine) {
+        return groups.get(groupIndex(machine)).recipes[positionOf[machine]];
+    }
+
+    /**
+     * The number of ticks until a running machine finishes its current cycle.
+     *
+     * @param machine The ID of the machine.
+     * @return The remaining ticks, or 0 if the machine is not running.
+     * @throws IllegalArgumentException If there is no machine with that ID.
+     */
+    public long getRemainingTicks(int machine) {
+        MachineGroup group = groups.get(groupIndex(machine));
+        final int position = positionOf[machine];
+        if (group.states[position] != MachineState.RUNNING) {
+            return 0;
+        }
+        return Math.max(0, group.remaining[position]);
+    }
+
+    /**
+     * Fetch what a machine is doing. A machine that was just added or given a new recipe is
+     * {@link MachineState#IDLE} until the next tick.
+     *
+     * @param machine The ID of the machine.
+     * @return The state of the machine.
+     * @throws IllegalArgumentException If there is no machine with that ID.
+     */
+    public MachineState getState(int machine) {
+        return groups.get(groupIndex(machine)).states[positionOf[machine]];
+    }
+
+    /**
+     * Look up the group a machine is in.
+     *
+     * @param machine The ID of the machine.
+     * @return The group index.
+     * @throws IllegalArgumentException If there is no machine with that ID.
+     */
+    private int groupIndex(int machine) {
+        if (machine < 0 || machine >= nextId || groupOf[machine] < 0) {
+            throw new IllegalArgumentException("There is no machine with ID " + machine);
+        }
+        return groupOf[machine];
+    }
+
+    /**
+     * Remove a machine. Its ID may be reused for machines that are added later.
+     *
+     * @param machine The ID of the machine.
+     * @throws IllegalArgumentException If there is no machine with that ID.
+     */
+    public void remove(int machine) {
+        MachineGroup group = groups.get(groupIndex(machine));
+        int position = positionOf[machine];
+        if (position < group.activeCount) {
+            swap(group, position, --group.activeCount);
+            position = group.activeCount;
+        }
+        swap(group, position, --group.size);
+        group.recipes[group.size] = null;
+        group.states[group.size] = null;
+        groupOf[machine] = -1;
+
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeCount++] = machine;
+    }
+
+    /**
+     * Run part of the running machines in a group for one tick.
+     *
+     * @param batch The machines to run.
+     * @return The result of the batch.
+     */
+    private BatchResult runBatch(Batch batch) {
+        final MachineGroup group = batch.group();
+        final int start = batch.start();
+        final int end = batch.end();
+        final long[] remaining = group.remaining;
+        int boundaries = 0;
+        for (int i = start; i < end; ++i) {
+            if (--remaining[i] <= 0) {
+                ++boundaries;
+            }
+        }
+        int completed = 0;
+        int[] sleepers = new int[boundaries];
+        int sleeperCount = 0;
+        for (int i = start; i < end && boundaries > 0; ++i) {
+            if (remaining[i] > 0) {
+                continue;
+            }
+            --boundaries;
+            final int id = group.ids[i];
+            Recipe recipe = group.recipes[i];
+            MachineState state = group.states[i];
+            // Whether a finished cycle still has outputs that have not been produced
+            boolean producing = recipe != null && state != MachineState.IDLE;
+            try {
+                if (recipe == null) {
+                    state = MachineState.IDLE;
+                } else if (producing && !io.produceOutputs(id, recipe)) {
+                    state = MachineState.BLOCKED;
+                } else {
+                    if (producing) {
+                        producing = false;
+                        ++completed;
+                    }
+                    if (io.consumeInputs(id, recipe)) {
+                        state = MachineState.RUNNING;
+                        remaining[i] = MachineSimulation.cycleTime(recipe);
+                    } else {
+                        state = MachineState.IDLE;
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn(
+                        SafeResourceLoader.getStringFormatted(
+                                "MACHINE_CYCLE_FAILED",
+                                FactoryPlugin.getResourceBundle(),
+                                Integer.toString(id)),
+                        e);
+                // Try the outputs again when woken, rather than losing them
+                state = producing ? MachineState.BLOCKED : MachineState.IDLE;
+            }
+            group.states[i] = state;
+            if (state != MachineState.RUNNING) {
+                sleepers[sleeperCount++] = i;
+            }
+        }
+        return new BatchResult(group, completed, Arrays.copyOf(sleepers, sleeperCount));
+    }
+
+    /**
+     * Change the recipe a machine is set to. Any cycle in progress is abandoned, without
+     * returning the inputs that were consumed for it, and the machine will try to start the new
+     * recipe on the next tick.
+     *
+     * @param machine The ID of the machine.
+     * @param recipe The new recipe, or null to stop the machine.
+     * @throws IllegalArgumentException If there is no machine with that ID.
+     */
+    public void setRecipe(int machine, Recipe recipe) {
+        MachineGroup group = groups.get(groupIndex(machine));
+        final int position = positionOf[machine];
+        group.recipes[position] = recipe;
+        group.states[position] = MachineState.IDLE;
+        group.remaining[position] = 0;
+        wake(machine);
+    }
+
+    /**
+     * Advance every running machine by one tick, finishing and starting cycles as needed, and
+     * waiting for all of them to be done.
+     *
+     * @return The number of cycles that finished.
+     */
+    public int tick() {
+        List<Batch> batches = new ArrayList<>();
+        for (MachineGroup group : groups) {
+            for (int start = 0; start < group.activeCount; start += BATCH_SIZE) {
+                batches.add(
+                        new Batch(group, start, Math.min(group.activeCount, start + BATCH_SIZE)));
+            }
+        }
+
+        List<BatchResult> results = new ArrayList<>(batches.size());
+        if (batches.size() == 1) {
+            // Not worth handing off to another thread
+            results.add(runBatch(batches.get(0)));
+        } else if (!batches.isEmpty()) {
+            List<Callable<BatchResult>> tasks = new ArrayList<>(batches.size());
+            for (Batch batch : batches) {
+                tasks.add(() -> runBatch(batch));
+            }
+            try {
+                for (Future<BatchResult> result : workers.invokeAll(tasks)) {
+                    results.add(result.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            } catch (ExecutionException e) {
+                // runBatch catches everything the machine IO throws, so this should not happen
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        int completed = 0;
+        // Later batches first, so that sleeping machines are swapped out from the end down
+        for (int i = results.size() - 1; i >= 0; --i) {
+            BatchResult result = results.get(i);
+            completed += result.completed();
+            MachineGroup group = result.group();
+            for (int j = result.sleepers().length - 1; j >= 0; --j) {
+                swap(group, result.sleepers()[j], --group.activeCount);
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Wake a sleeping machine, so that it tries to start or finish a cycle again on the next tick.
+     * This should be called whenever the inputs or outputs of a machine change. Machines that are
+     * already running are not affected.
+     *
+     * @param machine The ID of the machine.
+     * @throws IllegalArgumentException If there is no machine with that ID.
+     */
+    public void wake(int machine) {
+        MachineGroup group = groups.get(groupIndex(machine));
+        final int position = positionOf[machine];
+        if (position < group.activeCount) {
+            return;
+        }
+        group.remaining[position] = 0;
+        swap(group, position, group.activeCount++);
+    }
+}
@@ -0,0 +1,15 @@
+package com.ikalagaming.factory.machine;
+
+/**
+ * What a machine in a {@link MachineSimulation} is currently doing.
+ *
+ * @author Ches Burks
+ */
+public enum MachineState {
+    /** Working on a recipe, with the inputs for the current cycle already consumed. */
+    RUNNING,
+    /** Asleep because it has no recipe, or is missing inputs for the next cycle. */
+    IDLE,
+    /** Asleep because it finished a cycle but has no room for the outputs. */
+    BLOCKED
+}
@@ -1,11 +1,21 @@
 package com.ikalagaming.factory.registry;
 
+import com.ikalagaming.factory.FactoryPlugin;
 import com.ikalagaming.factory.crafting.Recipe;
+import com.ikalagaming.factory.crafting.RecipeIndex;
+import com.ikalagaming.util.SafeResourceLoader;
 
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
 
+/**
+ * The recipes that each machine can craft. Once all recipes have been added, the registry should
+ * be {@link #freeze() frozen}, which builds a {@link RecipeIndex} for each machine.
+ */
+@Slf4j
 public class RecipeRegistry {
     /**
      * A map from the machine name in {@link RegistryConstants#FULLY_QUALIFIED_NAME_FORMAT} format
@@ -13,6 +23,16 @@ public class RecipeRegistry {
      */
     private final Map<String, List<Recipe>> definitions = new HashMap<>();
 
+    /** The index of the recipes for each machine, built when the registry is frozen. */
+    private final Map<String, RecipeIndex> indices = new HashMap<>();
+
+    /**
+     * Whether the registry has been frozen, after which recipes can't be added.
+     *
+     * @return True if the registry is frozen.
+     */
+    @Getter private boolean frozen;
+
     /**
      * Add a recipe to multiple machines.
      *
@@ -35,6 +55,14 @@ public class RecipeRegistry {
      * @param recipe The recipe to add to that machine.
      */
     public void add(@NonNull String machineName, @NonNull Recipe recipe) {
+        if (frozen) {
+            log.warn(
+                    SafeResourceLoader.getStringFormatted(
+                            "RECIPE_REGISTRY_FROZEN",
+                            FactoryPlugin.getResourceBundle(),
+                            machineName));
+            return;
+        }
         var list = definitions.computeIfAbsent(machineName, ignored -> new ArrayList<>());
         if (!list.contains(recipe)) {
             list.add(recipe);
@@ -64,6 +92,30 @@ public class RecipeRegistry {
         return Optional.ofNullable(definitions.get(machineName));
     }
 
+    /**
+     * Look up the index of the recipes for a machine.
+     *
+     * @param machineName The machine name.
+     * @return The index, or an empty optional if the registry is not frozen yet or the machine has
+     *     no recipes.
+     */
+    public Optional<RecipeIndex> findIndex(@NonNull String machineName) {
+        return Optional.ofNullable(indices.get(machineName));
+    }
+
+    /**
+     * Stop accepting new recipes and build the index for each machine. Does nothing if the
+     * registry is already frozen.
+     */
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+        frozen = true;
+        definitions.forEach(
+                (machineName, recipes) -> indices.put(machineName, new RecipeIndex(recipes)));
+    }
+
     /**
      * Fetch an unmodifiable copy of the list of the names that currently exist.
      *
@@ -1,5 +1,7 @@
 package com.ikalagaming.factory.registry;
 
+import com.ikalagaming.factory.item.ItemTypes;
+
 import lombok.Getter;
 
 /** All the definitions used for the game, like items, blocks, tags. */
@@ -23,6 +25,9 @@ public class Registries {
     /** Stores all the crafting recipes. */
     private final RecipeRegistry recipeRegistry;
 
+    /** Stores the shared copy of each distinct item type. */
+    private final ItemTypes itemTypes;
+
     public Registries() {
         tagRegistry = new TagRegistry();
         materialRegistry = new MaterialRegistry(tagRegistry);
@@ -30,5 +35,6 @@ public class Registries {
         blockRegistry = new BlockRegistry(tagRegistry, materialRegistry);
         machineRegistry = new MachineRegistry();
         recipeRegistry = new RecipeRegistry();
+        itemTypes = new ItemTypes();
     }
 }
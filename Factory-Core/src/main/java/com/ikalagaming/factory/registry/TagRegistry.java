@@ -1,16 +1,39 @@
 package com.ikalagaming.factory.registry;
 
 import com.ikalagaming.factory.FactoryPlugin;
+import com.ikalagaming.factory.item.Item;
 import com.ikalagaming.factory.world.Tag;
+import com.ikalagaming.factory.world.TagSet;
 import com.ikalagaming.util.SafeResourceLoader;
 
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.*;
 
+/**
+ * The tags that exist, along with their parents. Once all tags have been added, the registry should
+ * be {@link #freeze() frozen}, which assigns each tag a dense integer ID and works out the
+ * ancestors of every tag, so that tags can be checked using {@link TagSet tag sets}.
+ */
 @Slf4j
 public class TagRegistry extends Registry<Tag> {
+    /**
+     * Whether the registry has been frozen, after which tags can't be added.
+     *
+     * @return True if the registry is frozen.
+     */
+    @Getter private boolean frozen;
+
+    /** The ID of each tag, assigned when the registry is frozen. */
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    /** The name of the tag with each ID. */
+    private String[] names = new String[0];
+
+    /** For each tag ID, a set containing the tag and all of its ancestors. */
+    private TagSet[] ancestries = new TagSet[0];
 
     /**
      * Add a tag to the list of tags. If the tag already exists, this will fail.
@@ -31,6 +54,12 @@ public class TagRegistry extends Registry<Tag> {
      * @return Whether we successfully added the tag.
      */
     public boolean addTag(@NonNull String tag, String parentName) {
+        if (frozen) {
+            log.warn(
+                    SafeResourceLoader.getStringFormatted(
+                            "TAG_REGISTRY_FROZEN", FactoryPlugin.getResourceBundle(), tag));
+            return false;
+        }
         if (containsKey(tag)) {
             log.warn(
                     SafeResourceLoader.getStringFormatted(
@@ -58,6 +87,114 @@ public class TagRegistry extends Registry<Tag> {
         return true;
     }
 
+    /**
+     * Build a set containing some tags and all of their ancestors, like the tags of an item. Tags
+     * that don't exist are ignored. Checking if the result {@link TagSet#contains(int) contains} a
+     * tag finds any of the tags that are that tag or one of its descendants.
+     *
+     * @param tags The names of the tags.
+     * @return The set of tags, which is empty if the registry is not frozen.
+     */
+    public TagSet closureOf(@NonNull Collection<String> tags) {
+        BitSet bits = new BitSet(names.length);
+        for (String tag : tags) {
+            final int id = getTagId(tag);
+            if (id >= 0) {
+                bits.or(ancestries[id].toBitSet());
+            }
+        }
+        return TagSet.of(bits);
+    }
+
+    /**
+     * Build a set containing exactly the given tags, without their ancestors, like the tags a
+     * recipe requires. Tags that don't exist are ignored.
+     *
+     * @param tags The names of the tags.
+     * @return The set of tags, which is empty if the registry is not frozen.
+     */
+    public TagSet exactSetOf(@NonNull Collection<String> tags) {
+        BitSet bits = new BitSet(names.length);
+        for (String tag : tags) {
+            final int id = getTagId(tag);
+            if (id >= 0) {
+                bits.set(id);
+            }
+        }
+        return TagSet.of(bits);
+    }
+
+    /**
+     * Stop accepting new tags, assign each tag an ID, and work out the ancestors of every tag. IDs
+     * are assigned in order of the tag names, so the same tags always get the same IDs. Does
+     * nothing if the registry is already frozen.
+     */
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+        frozen = true;
+        names = definitions.keySet().stream().sorted().toArray(String[]::new);
+        for (int i = 0; i < names.length; ++i) {
+            ids.put(names[i], i);
+        }
+        ancestries = new TagSet[names.length];
+        for (int i = 0; i < names.length; ++i) {
+            BitSet bits = new BitSet(names.length);
+            for (Tag tag = definitions.get(names[i]); tag != null; tag = tag.parent()) {
+                bits.set(ids.get(tag.name()));
+            }
+            ancestries[i] = TagSet.of(bits);
+        }
+    }
+
+    /**
+     * Fetch the set containing a tag and all of its ancestors.
+     *
+     * @param tagName The name of the tag.
+     * @return The tag and its ancestors, or an empty set if the tag does not exist or the registry
+     *     is not frozen.
+     */
+    public TagSet getAncestry(@NonNull String tagName) {
+        final int id = getTagId(tagName);
+        return id < 0 ? TagSet.EMPTY : ancestries[id];
+    }
+
+    /**
+     * Check if an item has a tag, or a descendant of that tag.
+     *
+     * @param item The item.
+     * @param tagName The name of the tag.
+     * @return True if the item has the tag or one of its descendants, false if it does not, or the
+     *     tag does not exist, or the registry is not frozen.
+     */
+    public boolean hasTag(@NonNull Item item, @NonNull String tagName) {
+        return item.getTagSet(this).contains(getTagId(tagName));
+    }
+
+    /**
+     * Look up the ID of a tag.
+     *
+     * @param tagName The name of the tag.
+     * @return The ID, or -1 if the tag does not exist or the registry is not frozen.
+     */
+    public int getTagId(@NonNull String tagName) {
+        return ids.getOrDefault(tagName, -1);
+    }
+
+    /**
+     * Look up the name of a tag by its ID.
+     *
+     * @param id The ID of the tag.
+     * @return The name of the tag, or an empty optional if there is no tag with that ID.
+     */
+    public Optional<String> getTagName(int id) {
+        if (id < 0 || id >= names.length) {
+            return Optional.empty();
+        }
+        return Optional.of(names[id]);
+    }
+
     /**
      * Look through the list of tags and search for one with the given name.
      *
@@ -4,13 +4,23 @@ import com.ikalagaming.factory.kvt.KVT;
 
 import lombok.*;
 
+/**
+ * A type of block along with its state, like which way it is facing.
+ *
+ * <p>Blocks are shared between every position they are placed at, see {@link BlockStates}, so
+ * they are immutable and their data must not be modified once they are placed. Data that is unique
+ * to a single position, like the contents of a machine, is stored separately as a block entity in
+ * the {@link Chunk}.
+ *
+ * @author Ches Burks
+ */
 @Getter
-@Setter
 @AllArgsConstructor
 @EqualsAndHashCode
 public class Block {
     /** The fully qualified name. */
     private final @NonNull String name;
 
-    private KVT data;
+    /** The state of the block, or null if it has none. */
+    private final KVT data;
 }
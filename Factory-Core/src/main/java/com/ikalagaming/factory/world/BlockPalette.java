@@ -1,3 +1,106 @@
 package com.ikalagaming.factory.world;
 
-public class BlockPalette {}
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the block states used in part of the world to small local indices, so that each position
+ * only needs to store an index. The palette stores the global IDs from {@link BlockStates}, and
+ * empty space gets an index like any other block.
+ *
+ * <p>Most palettes only hold a handful of blocks, so they are searched directly. Larger palettes
+ * also keep a map from IDs to indices so that lookups don't slow down.
+ *
+ * @author Ches Burks
+ */
+public class BlockPalette {
+    /** The size past which the palette keeps a map of indices instead of searching. */
+    private static final int SEARCH_LIMIT = 16;
+
+    /** The block state ID for each index. */
+    private int[] states = new int[4];
+
+    /** The number of entries in the palette. */
+    private int size;
+
+    /** Maps block state IDs back to their index, or null while the palette is small. */
+    private Map<Integer, Integer> indices;
+
+    /**
+     * Create a new palette with a single entry, which gets index 0.
+     *
+     * @param initial The block state ID of the first entry.
+     */
+    public BlockPalette(int initial) {
+        getOrAdd(initial);
+    }
+
+    /**
+     * Fetch the block state ID for an index.
+     *
+     * @param index The local index.
+     * @return The block state ID.
+     * @throws IndexOutOfBoundsException If the index is not in the palette.
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return states[index];
+    }
+
+    /**
+     * Look up the index for a block state, adding it to the palette if it's not already there.
+     *
+     * @param state The block state ID.
+     * @return The local index for the block state.
+     */
+    public int getOrAdd(int state) {
+        final int existing = indexOf(state);
+        if (existing >= 0) {
+            return existing;
+        }
+        if (size == states.length) {
+            states = Arrays.copyOf(states, size * 2);
+        }
+        final int index = size++;
+        states[index] = state;
+        if (indices != null) {
+            indices.put(state, index);
+        } else if (size > SEARCH_LIMIT) {
+            indices = new HashMap<>();
+            for (int i = 0; i < size; ++i) {
+                indices.put(states[i], i);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Look up the index for a block state.
+     *
+     * @param state The block state ID.
+     * @return The local index for the block state, or -1 if it is not in the palette.
+     */
+    public int indexOf(int state) {
+        if (indices != null) {
+            return indices.getOrDefault(state, -1);
+        }
+        for (int i = 0; i < size; ++i) {
+            if (states[i] == state) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The number of entries in the palette.
+     *
+     * @return The palette size.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,129 @@
+package com.ikalagaming.factory.world;
+
+import lombok.NonNull;
+import lombok.Synchronized;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns every distinct block, meaning a name and its state data, a small integer ID that is
+ * shared by the whole game. The blocks themselves are stored once here and shared by every place
+ * they are used, so the world only needs to store IDs.
+ *
+ * <p>ID {@value #EMPTY} is always empty space. IDs are only valid while the game is running, so
+ * anything that is saved should store the block itself rather than the ID.
+ *
+ * <p>Looking up existing IDs and blocks does not lock, so this is safe and cheap to use from
+ * several threads at once, like world generation threads.
+ *
+ * @author Ches Burks
+ */
+public class BlockStates {
+    /** The ID of empty space, which has a null block. */
+    public static final int EMPTY = 0;
+
+    /** The block for each ID, replaced whenever a new block is added. */
+    private static volatile Block[] states = {null};
+
+    /** Maps blocks back to their ID. */
+    private static final Map<Block, Integer> ids = new ConcurrentHashMap<>();
+
+    /** Maps the names of blocks without any state data to their ID. */
+    private static final Map<String, Integer> plainIds = new ConcurrentHashMap<>();
+
+    /**
+     * Add a block that is not registered yet.
+     *
+     * @param block The block to add.
+     * @return The ID for the block, which might already exist if another thread added it first.
+     */
+    @Synchronized
+    private static int add(Block block) {
+        Integer existing = ids.get(block);
+        if (existing != null) {
+            return existing;
+        }
+        final int id = states.length;
+        Block[] newStates = Arrays.copyOf(states, id + 1);
+        newStates[id] = block;
+        // NOTE(ches) publish the block before the ID, so anyone with the ID can fetch the block
+        states = newStates;
+        ids.put(block, id);
+        if (block.getData() == null) {
+            plainIds.put(block.getName(), id);
+        }
+        return id;
+    }
+
+    /**
+     * Fetch the shared block for an ID.
+     *
+     * @param id The block ID.
+     * @return The block, or null for empty space.
+     * @throws IndexOutOfBoundsException If the ID has not been assigned.
+     */
+    public static Block getBlock(int id) {
+        return states[id];
+    }
+
+    /**
+     * Fetch the ID for a block, assigning one if it does not have one yet. The data of a block
+     * must not be modified after it is given an ID, since the block might be shared.
+     *
+     * @param block The block, or null for empty space.
+     * @return The ID for the block.
+     */
+    public static int getId(Block block) {
+        if (block == null) {
+            return EMPTY;
+        }
+        Integer existing = ids.get(block);
+        if (existing != null) {
+            return existing;
+        }
+        return BlockStates.add(block);
+    }
+
+    /**
+     * Fetch the ID for a block that has no state data, assigning one if it does not have one yet.
+     * This is the same as looking up a block with no data, but does not need a block to be
+     * created.
+     *
+     * @param name The fully qualified name of the block.
+     * @return The ID for the block.
+     */
+    public static int getId(@NonNull String name) {
+        Integer existing = plainIds.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        return BlockStates.add(new Block(name, null));
+    }
+
+    /**
+     * The number of IDs that have been assigned, including empty space.
+     *
+     * @return The number of block states.
+     */
+    public static int getStateCount() {
+        return states.length;
+    }
+
+    /**
+     * Clean out all blocks, leaving only empty space. Any IDs that are still stored anywhere become
+     * invalid, so this is only really applicable for testing or reloading plugins.
+     */
+    @Synchronized
+    public static void purge() {
+        states = new Block[] {null};
+        ids.clear();
+        plainIds.clear();
+    }
+
+    /** Private constructor so that this class is not instantiated. */
+    private BlockStates() {
+        throw new UnsupportedOperationException("This utility class should not be instantiated");
+    }
+}
@@ -0,0 +1,418 @@
+package com.ikalagaming.factory.world;
+
+import com.ikalagaming.factory.FactoryPlugin;
+import com.ikalagaming.util.SafeResourceLoader;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs updates that blocks have scheduled for some point in the future, so that blocks like
+ * machines don't have to be checked every tick to see if they have anything to do.
+ *
+ * <p>Scheduled ticks are kept in a priority queue per region, ordered by the tick they are due on
+ * and then the order they were scheduled in. Scheduling a tick that is already scheduled for the
+ * same block, state, and game tick does nothing. Each call to {@link #tick()} only looks at the
+ * regions that have ticks scheduled, and only runs the ones that are due, so the cost scales with
+ * the number of scheduled updates rather than the size of the world.
+ *
+ * <p>Due ticks run in parallel across regions. Regions are split into four groups in a
+ * checkerboard pattern, so that no two regions in a group are next to each other, and the groups
+ * are run one after another. The {@link TickHandler} can safely change blocks less than half a
+ * region away from the block that was ticked, even if they are in a neighbouring region.
+ *
+ * <p>Ticks for chunks that are unloaded are stored in the chunk by {@link #unloadChunk(int, int,
+ * Chunk)}, and are scheduled again by {@link #loadChunk(int, int, Chunk)}, keeping the same number
+ * of ticks until they are due.
+ *
+ * @author Ches Burks
+ */
+@Slf4j
+public class BlockTickScheduler implements AutoCloseable {
+    /**
+     * Handles a scheduled tick once it is due.
+     *
+     * @author Ches Burks
+     */
+    @FunctionalInterface
+    public interface TickHandler {
+        /**
+         * Update the block a tick was scheduled for. This is called from worker threads.
+         *
+         * @param tick The tick that is due.
+         */
+        void onTick(ScheduledTick tick);
+    }
+
+    /**
+     * A scheduled tick, along with the order it was scheduled in.
+     *
+     * @param tick The scheduled tick.
+     * @param order The order the tick was scheduled in, to break ties between ticks due at the
+     *     same time.
+     */
+    private record Entry(ScheduledTick tick, long order) {}
+
+    /**
+     * The ticks scheduled for a single region. Guarded by its own lock, since neighbouring regions
+     * may schedule ticks in it while they run.
+     *
+     * @author Ches Burks
+     */
+    private static class RegionTicks {
+        /** The scheduled ticks, soonest first. */
+        private final PriorityQueue<Entry> queue =
+                new PriorityQueue<>(
+                        Comparator.comparingLong((Entry entry) -> entry.tick().tick())
+                                .thenComparingLong(Entry::order));
+
+        /** The ticks that are in the queue, to skip ones that are already scheduled. */
+        private final Set<ScheduledTick> scheduled = new HashSet<>();
+
+        /** The number of ticks that have been scheduled in the region. */
+        private long nextOrder;
+
+        /** Set once the region is removed from the map, so ticks are not added to it any more. */
+        private boolean removed;
+
+        /**
+         * Add a tick to the region, unless it is already scheduled.
+         *
+         * @param tick The tick to add.
+         * @return True if the tick was added, false if it was already scheduled.
+         */
+        private boolean add(ScheduledTick tick) {
+            if (!scheduled.add(tick)) {
+                return false;
+            }
+            queue.add(new Entry(tick, nextOrder++));
+            return true;
+        }
+
+        /**
+         * Remove every tick that is due.
+         *
+         * @param now The current game tick.
+         * @return The due ticks, in the order they should run.
+         */
+        private List<ScheduledTick> pollDue(long now) {
+            List<ScheduledTick> due = new ArrayList<>();
+            while (!queue.isEmpty() && queue.peek().tick().tick() <= now) {
+                ScheduledTick tick = queue.poll().tick();
+                scheduled.remove(tick);
+                due.add(tick);
+            }
+            return due;
+        }
+    }
+
+    /** The ticks for each region that has any, keyed by the packed region coordinates. */
+    private final Map<Long, RegionTicks> regions = new ConcurrentHashMap<>();
+
+    /** Updates blocks when their ticks are due. */
+    private final TickHandler handler;
+
+    /** Runs the due ticks for each region. */
+    private final ExecutorService workers;
+
+    /** The game tick that is currently running, or last ran. */
+    private volatile long currentTick;
+
+    /**
+     * Create a scheduler that uses one worker thread per available processor.
+     *
+     * @param handler Updates blocks when their ticks are due.
+     */
+    public BlockTickScheduler(@NonNull TickHandler handler) {
+        this(handler, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a scheduler with a specific number of workers.
+     *
+     * @param handler Updates blocks when their ticks are due.
+     * @param threadCount The number of worker threads, at least 1.
+     * @throws IllegalArgumentException If the thread count is less than 1.
+     */
+    public BlockTickScheduler(@NonNull TickHandler handler, int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Need at least one worker thread");
+        }
+        this.handler = handler;
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers =
+                Executors.newFixedThreadPool(
+                        threadCount,
+                        task -> {
+                            Thread thread =
+                                    new Thread(
+                                            task, "Block Ticks " + threadNumber.getAndIncrement());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    /**
+     * Pack region coordinates into a key.
+     *
+     * @param regionX The region x coordinate.
+     * @param regionZ The region z coordinate.
+     * @return The key for the region.
+     */
+    private static long regionKey(int regionX, int regionZ) {
+        return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Find the key of the region that contains a block.
+     *
+     * @param x The block x coordinate.
+     * @param z The block z coordinate.
+     * @return The key for the region.
+     */
+    private static long regionKeyOfBlock(int x, int z) {
+        final int regionWidth = WorldSave.REGION_WIDTH * World.CHUNK_WIDTH;
+        return BlockTickScheduler.regionKey(
+                Math.floorDiv(x, regionWidth), Math.floorDiv(z, regionWidth));
+    }
+
+    /** Stop the workers, waiting for any ticks that are running to finish. */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The game tick that is currently running, or that ran most recently.
+     *
+     * @return The current game tick.
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * The number of ticks that are scheduled but have not run yet.
+     *
+     * @return The number of scheduled ticks.
+     */
+    public int getScheduledCount() {
+        int total = 0;
+        for (RegionTicks region : regions.values()) {
+            synchronized (region) {
+                total += region.queue.size();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Schedule the ticks that were stored in a chunk when it was unloaded, and clear them from the
+     * chunk. If there were any, the chunk is marked dirty, since the saved copy still has them and
+     * they must not run again if it is loaded after they are done.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @param chunk The chunk that was loaded.
+     */
+    public void loadChunk(int chunkX, int chunkZ, @NonNull Chunk chunk) {
+        for (ScheduledTick stored : chunk.getScheduledTicks()) {
+            schedule(
+                    chunkX * World.CHUNK_WIDTH + stored.x(),
+                    stored.y(),
+                    chunkZ * World.CHUNK_WIDTH + stored.z(),
+                    stored.state(),
+                    stored.tick());
+        }
+        chunk.setScheduledTicks(List.of());
+    }
+
+    /**
+     * Schedule a block to be updated in the future. If the exact same tick is already scheduled,
+     * nothing happens.
+     *
+     * @param x The block x coordinate.
+     * @param y The block y coordinate.
+     * @param z The block z coordinate.
+     * @param state The {@link BlockStates} ID of the block the tick is for.
+     * @param delay The number of game ticks from now until the update. Delays less than 1 are
+     *     treated as 1, so the update always happens on a later tick.
+     * @return True if the tick was scheduled, false if it was already scheduled or the position is
+     *     outside the world.
+     */
+    public boolean schedule(int x, int y, int z, int state, long delay) {
+        if (y < World.WORLD_HEIGHT_MIN || y >= World.WORLD_HEIGHT_MIN + World.WORLD_HEIGHT_TOTAL) {
+            log.warn(
+                    SafeResourceLoader.getString(
+                            "INVALID_BLOCK_COORDINATES", FactoryPlugin.getResourceBundle()));
+            return false;
+        }
+        ScheduledTick tick = new ScheduledTick(x, y, z, state, currentTick + Math.max(1, delay));
+        final long key = BlockTickScheduler.regionKeyOfBlock(x, z);
+        while (true) {
+            RegionTicks region = regions.computeIfAbsent(key, ignored -> new RegionTicks());
+            synchronized (region) {
+                if (!region.removed) {
+                    return region.add(tick);
+                }
+            }
+        }
+    }
+
+    /**
+     * Advance to the next game tick and run every scheduled tick that is due, waiting for them to
+     * finish. This should only be called from one thread at a time. Ticks scheduled while running
+     * will be due on a later game tick.
+     *
+     * @return The number of scheduled ticks that ran.
+     */
+    public int tick() {
+        final long now = ++currentTick;
+        List<List<Callable<Integer>>> groups = new ArrayList<>(4);
+        for (int i = 0; i < 4; ++i) {
+            groups.add(new ArrayList<>());
+        }
+        for (var entry : regions.entrySet()) {
+            final long key = entry.getKey();
+            RegionTicks region = entry.getValue();
+            synchronized (region) {
+                var next = region.queue.peek();
+                if (next == null || next.tick().tick() > now) {
+                    continue;
+                }
+            }
+            final int group = (int) ((key >>> 32) & 1) * 2 + (int) (key & 1);
+            groups.get(group).add(() -> runRegion(key, region, now));
+        }
+
+        int total = 0;
+        for (List<Callable<Integer>> group : groups) {
+            if (group.isEmpty()) {
+                continue;
+            }
+            try {
+                for (Future<Integer> result : workers.invokeAll(group)) {
+                    total += result.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return total;
+            } catch (ExecutionException e) {
+                // runRegion catches everything the handler throws, so this should not happen
+                log.warn(
+                        SafeResourceLoader.getString(
+                                "SCHEDULED_TICKS_FAILED", FactoryPlugin.getResourceBundle()),
+                        e.getCause());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Run the ticks that are due in a region, then forget the region if it has none left.
+     *
+     * @param key The region key.
+     * @param region The ticks for the region.
+     * @param now The current game tick.
+     * @return The number of ticks that ran.
+     */
+    private int runRegion(long key, RegionTicks region, long now) {
+        List<ScheduledTick> due;
+        synchronized (region) {
+            due = region.pollDue(now);
+        }
+        for (ScheduledTick tick : due) {
+            try {
+                handler.onTick(tick);
+            } catch (Exception e) {
+                log.warn(
+                        SafeResourceLoader.getStringFormatted(
+                                "SCHEDULED_TICK_FAILED",
+                                FactoryPlugin.getResourceBundle(),
+                                Integer.toString(tick.x()),
+                                Integer.toString(tick.y()),
+                                Integer.toString(tick.z())),
+                        e);
+            }
+        }
+        synchronized (region) {
+            if (region.queue.isEmpty()) {
+                region.removed = true;
+                regions.remove(key, region);
+            }
+        }
+        return due.size();
+    }
+
+    /**
+     * Remove the ticks scheduled for blocks in a chunk and store them in the chunk, so that they
+     * are saved with it. The chunk is only marked dirty if the stored ticks changed.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @param chunk The chunk that is being unloaded.
+     */
+    public void unloadChunk(int chunkX, int chunkZ, @NonNull Chunk chunk) {
+        final int minX = chunkX * World.CHUNK_WIDTH;
+        final int minZ = chunkZ * World.CHUNK_WIDTH;
+        RegionTicks region = regions.get(BlockTickScheduler.regionKeyOfBlock(minX, minZ));
+        if (region == null) {
+            chunk.setScheduledTicks(List.of());
+            return;
+        }
+        List<Entry> removed = new ArrayList<>();
+        synchronized (region) {
+            Iterator<Entry> iterator = region.queue.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                ScheduledTick tick = entry.tick();
+                if (Math.floorDiv(tick.x(), World.CHUNK_WIDTH) == chunkX
+                        && Math.floorDiv(tick.z(), World.CHUNK_WIDTH) == chunkZ) {
+                    iterator.remove();
+                    region.scheduled.remove(tick);
+                    removed.add(entry);
+                }
+            }
+            if (region.queue.isEmpty()) {
+                region.removed = true;
+                regions.remove(BlockTickScheduler.regionKeyOfBlock(minX, minZ), region);
+            }
+        }
+        removed.sort(Comparator.comparingLong(Entry::order));
+        final long now = currentTick;
+        List<ScheduledTick> stored = new ArrayList<>(removed.size());
+        for (Entry entry : removed) {
+            ScheduledTick tick = entry.tick();
+            stored.add(
+                    new ScheduledTick(
+                            tick.x() - minX,
+                            tick.y(),
+                            tick.z() - minZ,
+                            tick.state(),
+                            tick.tick() - now));
+        }
+        chunk.setScheduledTicks(stored);
+    }
+}
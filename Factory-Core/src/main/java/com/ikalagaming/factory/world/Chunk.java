@@ -1,41 +1,464 @@
 package com.ikalagaming.factory.world;
 
 import com.ikalagaming.factory.FactoryPlugin;
+import com.ikalagaming.factory.kvt.KVT;
+import com.ikalagaming.factory.kvt.Node;
+import com.ikalagaming.factory.kvt.TreeBinarySerialization;
 import com.ikalagaming.util.SafeResourceLoader;
 
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 /**
  * A region of blocks in the world.
  *
  * <p>Chunks have a {@value World#CHUNK_WIDTH}x{@value World#CHUNK_WIDTH} square footprint but are
- * {@value World#WORLD_HEIGHT_TOTAL} blocks tall.
+ * {@value World#WORLD_HEIGHT_TOTAL} blocks tall. Blocks are stored in {@link Subchunk subchunks},
+ * which are only created once something is placed in them.
+ *
+ * <p>Most blocks are completely described by their shared {@link Block} and stored as {@link
+ * BlockStates} IDs. Blocks that need data of their own, like machines, also have a block entity
+ * holding that data, which is only kept for the positions that need one.
+ *
+ * <p>Updates that were scheduled for blocks in the chunk are stored with it while it is unloaded,
+ * so that they can be scheduled again by the {@link BlockTickScheduler} when it is loaded.
  *
  * @author Ches Burks
  */
 @Slf4j
 public class Chunk {
     /** The number of sub-chunks that we store in each chunk. */
-    private static final int SUBCHUNK_COUNT = World.WORLD_HEIGHT_TOTAL / Subchunk.SUBCHUNK_HEIGHT;
+    public static final int SUBCHUNK_COUNT = World.WORLD_HEIGHT_TOTAL / Subchunk.SUBCHUNK_HEIGHT;
+
+    /** The number of block positions in a chunk. */
+    private static final int BLOCK_COUNT =
+            World.WORLD_HEIGHT_TOTAL * World.CHUNK_WIDTH * World.CHUNK_WIDTH;
+
+    /** The version of the binary format written by {@link #write(DataOutput)}. */
+    private static final byte FORMAT_VERSION = 1;
+
+    /** The oldest binary format version that can still be read. */
+    private static final byte OLDEST_FORMAT_VERSION = FORMAT_VERSION;
 
     private byte[][] biomes = new byte[World.CHUNK_WIDTH][World.CHUNK_WIDTH];
 
+    /** The subchunks from the bottom of the world up, null if nothing has been placed there. */
     private Subchunk[] subchunks = new Subchunk[SUBCHUNK_COUNT];
 
+    /** The data for blocks that need their own, keyed by {@link #entityKey(int, int, int)}. */
+    private final Map<Integer, KVT> blockEntities = new HashMap<>();
+
+    /**
+     * Updates scheduled for blocks in the chunk while it is not loaded, with coordinates within
+     * the chunk and ticks relative to when they were stored.
+     */
+    private List<ScheduledTick> scheduledTicks = List.of();
+
+    /**
+     * Whether the chunk has been modified since it was created, read, or last {@link #markClean()
+     * marked clean}, and so needs to be saved.
+     */
+    @Getter private volatile boolean dirty;
+
+    /**
+     * Pack the position of a block within the chunk into a key for block entities.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate, in world coordinates, which must be inside the world.
+     * @param z The z coordinate.
+     * @return The key for the position.
+     */
+    private static int entityKey(int x, int y, int z) {
+        return ((y - World.WORLD_HEIGHT_MIN) * World.CHUNK_WIDTH
+                        + Math.floorMod(z, World.CHUNK_WIDTH))
+                        * World.CHUNK_WIDTH
+                + Math.floorMod(x, World.CHUNK_WIDTH);
+    }
+
+    /**
+     * Find the index of the subchunk that contains a y level.
+     *
+     * @param y The y level in world coordinates.
+     * @return The subchunk index, or -1 if the y level is outside the world.
+     */
+    private static int subchunkIndex(int y) {
+        final int index = Math.floorDiv(y - World.WORLD_HEIGHT_MIN, Subchunk.SUBCHUNK_HEIGHT);
+        if (index < 0 || index >= SUBCHUNK_COUNT) {
+            return -1;
+        }
+        return index;
+    }
+
+    /** Compact the palette of every subchunk, intended to be called before saving. */
+    public void compact() {
+        for (Subchunk subchunk : subchunks) {
+            if (subchunk != null) {
+                subchunk.compact();
+            }
+        }
+    }
+
+    /**
+     * Create a copy of the chunk with the palette of every subchunk compacted, for saving. The
+     * chunk itself is only read, so other threads can keep reading it, but it must not be modified
+     * until the copy is done.
+     *
+     * @return The compacted copy.
+     */
+    public Chunk compactedCopy() {
+        Chunk copy = new Chunk();
+        for (int x = 0; x < World.CHUNK_WIDTH; ++x) {
+            copy.biomes[x] = biomes[x].clone();
+        }
+        for (int i = 0; i < SUBCHUNK_COUNT; ++i) {
+            Subchunk subchunk = subchunks[i];
+            if (subchunk != null) {
+                copy.subchunks[i] = subchunk.compacted();
+            }
+        }
+        copy.blockEntities.putAll(blockEntities);
+        copy.scheduledTicks = scheduledTicks;
+        return copy;
+    }
+
+    /**
+     * Fetch the block at a location.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate, in world coordinates.
+     * @param z The z coordinate.
+     * @return The block, or null if there is no block there or it is outside the world.
+     */
+    public Block getBlock(int x, int y, int z) {
+        return BlockStates.getBlock(getBlockState(x, y, z));
+    }
+
+    /**
+     * Fetch the block entity data at a location.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate, in world coordinates.
+     * @param z The z coordinate.
+     * @return The block entity data, or empty if there is none there or it is outside the world.
+     */
+    public Optional<KVT> getBlockEntity(int x, int y, int z) {
+        if (Chunk.subchunkIndex(y) < 0) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(blockEntities.get(Chunk.entityKey(x, y, z)));
+    }
+
+    /**
+     * Fetch one of the subchunks, from the bottom of the world up.
+     *
+     * @param index The subchunk index in the range [0, {@value #SUBCHUNK_COUNT}).
+     * @return The subchunk, or null if nothing has been placed in it.
+     * @throws IndexOutOfBoundsException If the index is out of range.
+     */
+    public Subchunk getSubchunk(int index) {
+        return subchunks[index];
+    }
+
+    /**
+     * The number of block entities in the chunk.
+     *
+     * @return The number of positions that have block entity data.
+     */
+    public int getBlockEntityCount() {
+        return blockEntities.size();
+    }
+
+    /**
+     * Fetch the ID of the block at a location.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate, in world coordinates.
+     * @param z The z coordinate.
+     * @return The {@link BlockStates} ID of the block, which is {@value BlockStates#EMPTY} if there
+     *     is no block there or it is outside the world.
+     */
+    public int getBlockState(int x, int y, int z) {
+        final int subchunkIndex = Chunk.subchunkIndex(y);
+        if (subchunkIndex < 0 || subchunks[subchunkIndex] == null) {
+            return BlockStates.EMPTY;
+        }
+        return subchunks[subchunkIndex].getBlockState(
+                Math.floorMod(x, World.CHUNK_WIDTH),
+                Math.floorMod(y, Subchunk.SUBCHUNK_HEIGHT),
+                Math.floorMod(z, World.CHUNK_WIDTH));
+    }
+
+    /**
+     * Fetch the updates stored with the chunk while it was not loaded.
+     *
+     * @return The scheduled ticks, with x and z coordinates within the chunk and each tick being
+     *     the number of ticks from when they were stored until they are due.
+     */
+    public List<ScheduledTick> getScheduledTicks() {
+        return scheduledTicks;
+    }
+
+    /**
+     * Mark the chunk as not having any changes that need to be saved, usually right after saving
+     * it.
+     */
+    public void markClean() {
+        dirty = false;
+    }
+
     public void setBiome(int x, int z, byte biome) {
         biomes[x][z] = biome;
+        dirty = true;
+    }
+
+    /**
+     * Read a chunk that was written with {@link #write(DataOutput)}.
+     *
+     * @param input The input to read from.
+     * @return The chunk.
+     * @throws IOException If the input can't be read or is not a valid chunk.
+     */
+    public static Chunk read(@NonNull DataInput input) throws IOException {
+        final byte version = input.readByte();
+        if (version < OLDEST_FORMAT_VERSION || version > FORMAT_VERSION) {
+            throw new IOException("Unsupported chunk format version " + version);
+        }
+        Chunk result = new Chunk();
+        for (byte[] row : result.biomes) {
+            input.readFully(row);
+        }
+        final long present = input.readLong();
+        for (int i = 0; i < SUBCHUNK_COUNT; ++i) {
+            if ((present & (1L << i)) != 0) {
+                result.subchunks[i] = Subchunk.read(input);
+            }
+        }
+        Chunk.readBlockEntities(input, result);
+        final int tickCount = input.readInt();
+        if (tickCount < 0) {
+            throw new IOException("Invalid scheduled tick count " + tickCount);
+        }
+        List<ScheduledTick> ticks = new ArrayList<>(tickCount);
+        for (int i = 0; i < tickCount; ++i) {
+            final int key = input.readInt();
+            if (key < 0 || key >= BLOCK_COUNT) {
+                throw new IOException("Invalid scheduled tick position " + key);
+            }
+            final int state = BlockStates.getId(Subchunk.readBlock(input));
+            final long delay = input.readLong();
+            ticks.add(
+                    new ScheduledTick(
+                            key % World.CHUNK_WIDTH,
+                            key / (World.CHUNK_WIDTH * World.CHUNK_WIDTH)
+                                    + World.WORLD_HEIGHT_MIN,
+                            key / World.CHUNK_WIDTH % World.CHUNK_WIDTH,
+                            state,
+                            delay));
+        }
+        result.scheduledTicks = List.copyOf(ticks);
+        return result;
+    }
+
+    /**
+     * Read the block entities section of a chunk.
+     *
+     * @param input The input to read from.
+     * @param result The chunk to add the block entities to.
+     * @throws IOException If the input can't be read or the block entities are not valid.
+     */
+    private static void readBlockEntities(DataInput input, Chunk result) throws IOException {
+        final int entityCount = input.readInt();
+        if (entityCount < 0) {
+            throw new IOException("Invalid block entity count " + entityCount);
+        }
+        for (int i = 0; i < entityCount; ++i) {
+            final int key = input.readInt();
+            final int dataLength = input.readInt();
+            if (dataLength <= 0) {
+                throw new IOException("Invalid block entity data length " + dataLength);
+            }
+            byte[] data = new byte[dataLength];
+            input.readFully(data);
+            Optional<Node> node = TreeBinarySerialization.read(new ByteArrayInputStream(data));
+            if (node.isEmpty()) {
+                throw new IOException("Invalid data for block entity " + key);
+            }
+            result.blockEntities.put(key, node.get());
+        }
+    }
+
+    /**
+     * Remove the block entity data at a location, if there is any.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate, in world coordinates.
+     * @param z The z coordinate.
+     */
+    public void removeBlockEntity(int x, int y, int z) {
+        if (Chunk.subchunkIndex(y) < 0) {
+            return;
+        }
+        if (blockEntities.remove(Chunk.entityKey(x, y, z)) != null) {
+            dirty = true;
+        }
     }
 
+    /**
+     * Set the block at a location, creating the subchunk if required. Any block entity at that
+     * location is removed.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate, in world coordinates.
+     * @param z The z coordinate.
+     * @param block The block to set.
+     */
     public void setBlock(int x, int y, int z, @NonNull Block block) {
-        final int subchunkIndex = y / Subchunk.SUBCHUNK_HEIGHT;
-        if (subchunkIndex < 0 || subchunkIndex >= SUBCHUNK_COUNT) {
+        setBlockState(x, y, z, BlockStates.getId(block));
+    }
+
+    /**
+     * Attach block entity data to a location, replacing any that is already there. The block
+     * itself is not changed, so this is usually done right after placing the block.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate, in world coordinates.
+     * @param z The z coordinate.
+     * @param data The data for the block at that location. Only {@link Node} data is saved.
+     */
+    public void setBlockEntity(int x, int y, int z, @NonNull KVT data) {
+        if (Chunk.subchunkIndex(y) < 0) {
             log.warn(
                     SafeResourceLoader.getString(
                             "INVALID_BLOCK_COORDINATES", FactoryPlugin.getResourceBundle()));
             return;
         }
-        subchunks[subchunkIndex].setBlock(
-                x % World.CHUNK_WIDTH, y % Subchunk.SUBCHUNK_HEIGHT, z % World.CHUNK_WIDTH, block);
+        blockEntities.put(Chunk.entityKey(x, y, z), data);
+        dirty = true;
+    }
+
+    /**
+     * Set the block at a location by its ID, creating the subchunk if required. Any block entity
+     * at that location is removed.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate, in world coordinates.
+     * @param z The z coordinate.
+     * @param state The {@link BlockStates} ID of the block to set.
+     */
+    public void setBlockState(int x, int y, int z, int state) {
+        final int subchunkIndex = Chunk.subchunkIndex(y);
+        if (subchunkIndex < 0) {
+            log.warn(
+                    SafeResourceLoader.getString(
+                            "INVALID_BLOCK_COORDINATES", FactoryPlugin.getResourceBundle()));
+            return;
+        }
+        if (subchunks[subchunkIndex] == null) {
+            subchunks[subchunkIndex] = new Subchunk();
+        }
+        subchunks[subchunkIndex].setBlockState(
+                Math.floorMod(x, World.CHUNK_WIDTH),
+                Math.floorMod(y, Subchunk.SUBCHUNK_HEIGHT),
+                Math.floorMod(z, World.CHUNK_WIDTH),
+                state);
+        dirty = true;
+        if (!blockEntities.isEmpty()) {
+            blockEntities.remove(Chunk.entityKey(x, y, z));
+        }
+    }
+
+    /**
+     * Replace the updates stored with the chunk while it is not loaded. The chunk is only marked
+     * dirty if they changed.
+     *
+     * @param ticks The scheduled ticks, with x and z coordinates within the chunk and each tick
+     *     being the number of ticks from now until they are due. Ticks outside the world are
+     *     dropped.
+     */
+    public void setScheduledTicks(@NonNull List<ScheduledTick> ticks) {
+        List<ScheduledTick> stored = new ArrayList<>(ticks.size());
+        for (ScheduledTick tick : ticks) {
+            if (Chunk.subchunkIndex(tick.y()) < 0) {
+                continue;
+            }
+            stored.add(
+                    new ScheduledTick(
+                            Math.floorMod(tick.x(), World.CHUNK_WIDTH),
+                            tick.y(),
+                            Math.floorMod(tick.z(), World.CHUNK_WIDTH),
+                            tick.state(),
+                            tick.tick()));
+        }
+        if (!stored.equals(scheduledTicks)) {
+            scheduledTicks = List.copyOf(stored);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Write out the biomes, every subchunk that has been created, the block entities, and the
+     * scheduled ticks. Subchunks that are entirely empty space are skipped. Palettes are written
+     * as is, so {@link #compact()} should usually be called first. Blocks are written by name and
+     * data rather than by state ID, since IDs are only assigned while the game is running.
+     *
+     * @param output The output to write to.
+     * @throws IOException If the output can't be written.
+     */
+    public void write(@NonNull DataOutput output) throws IOException {
+        output.writeByte(FORMAT_VERSION);
+        for (byte[] row : biomes) {
+            output.write(row);
+        }
+        long present = 0;
+        for (int i = 0; i < SUBCHUNK_COUNT; ++i) {
+            if (subchunks[i] != null
+                    && !(subchunks[i].isUniform()
+                            && subchunks[i].getBlockState(0, 0, 0) == BlockStates.EMPTY)) {
+                present |= 1L << i;
+            }
+        }
+        output.writeLong(present);
+        for (int i = 0; i < SUBCHUNK_COUNT; ++i) {
+            if ((present & (1L << i)) != 0) {
+                subchunks[i].write(output);
+            }
+        }
+
+        Map<Integer, byte[]> entities = new HashMap<>();
+        for (var entry : blockEntities.entrySet()) {
+            if (!(entry.getValue() instanceof Node node)) {
+                continue;
+            }
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            if (!TreeBinarySerialization.write(node, data)) {
+                throw new IOException("Could not serialize block entity " + entry.getKey());
+            }
+            entities.put(entry.getKey(), data.toByteArray());
+        }
+        output.writeInt(entities.size());
+        for (var entry : entities.entrySet()) {
+            output.writeInt(entry.getKey());
+            output.writeInt(entry.getValue().length);
+            output.write(entry.getValue());
+        }
+
+        output.writeInt(scheduledTicks.size());
+        for (ScheduledTick tick : scheduledTicks) {
+            output.writeInt(Chunk.entityKey(tick.x(), tick.y(), tick.z()));
+            Subchunk.writeBlock(output, BlockStates.getBlock(tick.state()));
+            output.writeLong(tick.tick());
+        }
     }
 }
@@ -0,0 +1,611 @@
+package com.ikalagaming.factory.world;
+
+import com.ikalagaming.factory.world.gen.ChunkGenerationService;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of which chunks are loaded.
+ *
+ * <p>A chunk stays loaded as long as it holds at least one ticket. Tickets are counted separately
+ * for each {@link TicketType}, so for example several players can keep the same chunk loaded, and
+ * it is only released once the last of them leaves. Chunks without any tickets are kept in a cache
+ * of the most recently used ones, so that moving back and forth does not reload them. Once the
+ * cache is full, the least recently used chunk is unloaded and saved in the background if it was
+ * modified.
+ *
+ * <p>Chunks that are not loaded are read from the {@link WorldSave} on a background thread, or
+ * generated if they have never been saved, so chunks are handed out as futures. Asking for a chunk
+ * that was just unloaded waits for it to finish saving and then reuses it, rather than reading it
+ * back.
+ *
+ * <p>If the manager has a {@link BlockTickScheduler}, the ticks scheduled in a chunk are stored in
+ * it when it is unloaded, and scheduled again when it is loaded.
+ *
+ * <p>The manager is safe to use from several threads at once. Chunks themselves are not, so they
+ * should only be modified by one thread, and not while {@link #saveAll()} is running. Chunks that
+ * have been unloaded are saved in the background, so they must not be modified either. Ask the
+ * manager for the chunk again instead, which waits for the save to finish.
+ *
+ * @author Ches Burks
+ */
+public class ChunkManager implements AutoCloseable {
+    /**
+     * Generates chunks that have never been saved.
+     *
+     * @author Ches Burks
+     */
+    @FunctionalInterface
+    interface Generator {
+        /**
+         * Generate a chunk.
+         *
+         * @param chunkX The chunk x coordinate.
+         * @param chunkZ The chunk z coordinate.
+         * @return A future that completes with the generated chunk.
+         */
+        CompletableFuture<Chunk> generate(int chunkX, int chunkZ);
+    }
+
+    /**
+     * A chunk that is loaded or being loaded.
+     *
+     * @author Ches Burks
+     */
+    private static final class Entry {
+        /** Completes once the chunk is loaded, set when the entry is created. */
+        private CompletableFuture<Chunk> chunk;
+
+        /** The number of tickets of each type, indexed by ordinal. */
+        private final int[] tickets = new int[TicketType.values().length];
+
+        /** The total number of tickets of any type. */
+        private int totalTickets;
+    }
+
+    /**
+     * A chunk that has been unloaded but might not be saved yet.
+     *
+     * @param chunk The chunk that was unloaded.
+     * @param saved Completes once the chunk has been saved, or did not need to be.
+     */
+    private record PendingSave(CompletableFuture<Chunk> chunk, CompletableFuture<Void> saved) {}
+
+    /** The default number of chunks without tickets that are kept loaded. */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /** Where chunks are loaded from and saved to. */
+    private final WorldSave save;
+
+    /** Used to generate chunks that have never been saved. */
+    private final Generator generator;
+
+    /** Schedules block updates in loaded chunks, or null if ticks are not saved with chunks. */
+    private final BlockTickScheduler ticks;
+
+    /** Reads and writes chunks in the background, one at a time. */
+    private final ExecutorService io;
+
+    /** Every chunk that is loaded or being loaded, keyed by packed chunk coordinates. */
+    private final Map<Long, Entry> loaded = new ConcurrentHashMap<>();
+
+    /** The loaded chunks without any tickets, least recently used first. */
+    private final Map<Long, Entry> unticketed = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Chunks that have been unloaded and are still being saved, keyed like loaded chunks. */
+    private final Map<Long, PendingSave> pendingSaves = new ConcurrentHashMap<>();
+
+    /** Guards tickets, the cache, and the closed flag. */
+    private final Object lock = new Object();
+
+    /** The number of requests for chunks that were already in memory. */
+    private final LongAdder hits = new LongAdder();
+
+    /** The number of requests for chunks that had to be read or generated. */
+    private final LongAdder misses = new LongAdder();
+
+    /** The number of chunks that were unloaded to make room in the cache. */
+    private final LongAdder evictions = new LongAdder();
+
+    /** The maximum number of chunks without tickets that are kept loaded. */
+    @Getter private volatile int maxCachedChunks;
+
+    /** Whether the manager has been closed. */
+    private boolean closed;
+
+    /**
+     * Create a chunk manager. The save and generation service are not closed along with the
+     * manager.
+     *
+     * @param save Where chunks are loaded from and saved to.
+     * @param generator Used to generate chunks that have never been saved.
+     * @param maxCachedChunks The maximum number of chunks without tickets that are kept loaded.
+     * @throws IllegalArgumentException If the cache size is negative.
+     */
+    public ChunkManager(
+            @NonNull WorldSave save,
+            @NonNull ChunkGenerationService generator,
+            int maxCachedChunks) {
+        this(save, generator::request, null, maxCachedChunks);
+    }
+
+    /**
+     * Create a chunk manager that stores the scheduled ticks of chunks while they are unloaded.
+     * The save, generation service, and scheduler are not closed along with the manager.
+     *
+     * @param save Where chunks are loaded from and saved to.
+     * @param generator Used to generate chunks that have never been saved.
+     * @param ticks Schedules block updates in loaded chunks.
+     * @param maxCachedChunks The maximum number of chunks without tickets that are kept loaded.
+     * @throws IllegalArgumentException If the cache size is negative.
+     */
+    public ChunkManager(
+            @NonNull WorldSave save,
+            @NonNull ChunkGenerationService generator,
+            @NonNull BlockTickScheduler ticks,
+            int maxCachedChunks) {
+        this(save, generator::request, ticks, maxCachedChunks);
+    }
+
+    /**
+     * Create a chunk manager with a specific generator.
+     *
+     * @param save Where chunks are loaded from and saved to.
+     * @param generator Used to generate chunks that have never been saved.
+     * @param maxCachedChunks The maximum number of chunks without tickets that are kept loaded.
+     * @throws IllegalArgumentException If the cache size is negative.
+     */
+    ChunkManager(@NonNull WorldSave save, @NonNull Generator generator, int maxCachedChunks) {
+        this(save, generator, null, maxCachedChunks);
+    }
+
+    /**
+     * Create a chunk manager with a specific generator and tick scheduler.
+     *
+     * @param save Where chunks are loaded from and saved to.
+     * @param generator Used to generate chunks that have never been saved.
+     * @param ticks Schedules block updates in loaded chunks, or null if ticks are not saved with
+     *     chunks.
+     * @param maxCachedChunks The maximum number of chunks without tickets that are kept loaded.
+     * @throws IllegalArgumentException If the cache size is negative.
+     */
+    ChunkManager(
+            @NonNull WorldSave save,
+            @NonNull Generator generator,
+            BlockTickScheduler ticks,
+            int maxCachedChunks) {
+        if (maxCachedChunks < 0) {
+            throw new IllegalArgumentException("The cache size can't be negative");
+        }
+        this.save = save;
+        this.generator = generator;
+        this.ticks = ticks;
+        this.maxCachedChunks = maxCachedChunks;
+        io =
+                Executors.newSingleThreadExecutor(
+                        task -> {
+                            Thread thread = new Thread(task, "Chunk IO");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    /**
+     * Pack chunk coordinates into a key.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return The key for the chunk.
+     */
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Find a chunk, loading it if required, and optionally add a ticket to it. Must be called while
+     * holding the lock.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @param ticket The type of ticket to add, or null to just use the chunk.
+     * @return The entry for the chunk.
+     * @throws IllegalStateException If the manager has been closed.
+     */
+    private Entry acquire(int chunkX, int chunkZ, TicketType ticket) {
+        if (closed) {
+            throw new IllegalStateException("Chunk manager is closed");
+        }
+        final long key = ChunkManager.chunkKey(chunkX, chunkZ);
+        Entry entry = loaded.get(key);
+        final boolean created = entry == null;
+        if (created) {
+            PendingSave pending = pendingSaves.get(key);
+            CompletableFuture<Chunk> source;
+            if (pending != null) {
+                hits.increment();
+                // Don't hand out the chunk until it's written, so it isn't modified mid-save
+                source =
+                        pending.saved()
+                                .handle((ignored, failure) -> null)
+                                .thenCompose(ignored -> pending.chunk());
+            } else {
+                misses.increment();
+                source = load(chunkX, chunkZ);
+            }
+            if (ticks != null) {
+                source =
+                        source.thenApply(
+                                chunk -> {
+                                    ticks.loadChunk(chunkX, chunkZ, chunk);
+                                    return chunk;
+                                });
+            }
+            final Entry added = new Entry();
+            // Forget failed chunks before anyone waiting on them finds out, so retries work
+            added.chunk =
+                    source.whenComplete(
+                            (chunk, failure) -> {
+                                if (failure != null) {
+                                    forget(key, added);
+                                }
+                            });
+            if (added.chunk.isCompletedExceptionally()) {
+                return added;
+            }
+            entry = added;
+            loaded.put(key, entry);
+        } else {
+            hits.increment();
+        }
+
+        if (ticket != null) {
+            if (entry.totalTickets == 0) {
+                unticketed.remove(key);
+            }
+            ++entry.tickets[ticket.ordinal()];
+            ++entry.totalTickets;
+        } else if (created) {
+            unticketed.put(key, entry);
+            evictExcess();
+        } else if (entry.totalTickets == 0) {
+            // Mark it as recently used
+            unticketed.get(key);
+        }
+        return entry;
+    }
+
+    /**
+     * Load a chunk, and keep it loaded until the ticket is removed with {@link
+     * #removeTicket(int, int, TicketType)}. If the chunk fails to load, it is forgotten along with
+     * its tickets.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @param type The reason the chunk needs to stay loaded.
+     * @return A future that completes with the chunk once it is loaded.
+     * @throws IllegalStateException If the manager has been closed.
+     */
+    public CompletableFuture<Chunk> addTicket(int chunkX, int chunkZ, @NonNull TicketType type) {
+        synchronized (lock) {
+            return acquire(chunkX, chunkZ, type).chunk;
+        }
+    }
+
+    /**
+     * Save every loaded chunk that has been modified, then stop using the background thread. The
+     * save itself is not closed. If there is a tick scheduler, the ticks in every loaded chunk are
+     * removed from it and saved with the chunk.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        saveLoaded(true);
+        io.shutdown();
+        synchronized (lock) {
+            loaded.clear();
+            unticketed.clear();
+        }
+    }
+
+    /**
+     * Unload chunks without tickets, least recently used first, until the cache is within its
+     * size limit. Must be called while holding the lock.
+     */
+    private void evictExcess() {
+        var iterator = unticketed.entrySet().iterator();
+        while (unticketed.size() > maxCachedChunks) {
+            var eldest = iterator.next();
+            iterator.remove();
+            loaded.remove(eldest.getKey());
+            evictions.increment();
+            unload(eldest.getKey(), eldest.getValue().chunk);
+        }
+    }
+
+    /**
+     * Remove a chunk that failed to load.
+     *
+     * @param key The key for the chunk.
+     * @param entry The entry that failed, which might have been replaced already.
+     */
+    private void forget(long key, Entry entry) {
+        synchronized (lock) {
+            if (loaded.remove(key, entry)) {
+                unticketed.remove(key, entry);
+            }
+        }
+    }
+
+    /**
+     * The number of chunks that are currently cached without any tickets.
+     *
+     * @return The number of cached chunks.
+     */
+    public int getCachedCount() {
+        synchronized (lock) {
+            return unticketed.size();
+        }
+    }
+
+    /**
+     * Fetch a chunk, loading it if required. The chunk is only kept loaded while it is in the
+     * cache, so anything that needs it to stay loaded should {@link #addTicket(int, int,
+     * TicketType) add a ticket} instead.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return A future that completes with the chunk once it is loaded.
+     * @throws IllegalStateException If the manager has been closed.
+     */
+    public CompletableFuture<Chunk> getChunk(int chunkX, int chunkZ) {
+        synchronized (lock) {
+            return acquire(chunkX, chunkZ, null).chunk;
+        }
+    }
+
+    /**
+     * The number of chunks that were unloaded to make room in the cache.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * The number of times a chunk was requested and it was already in memory, including chunks
+     * that were still loading or being saved.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Fetch a chunk only if it is already loaded. This does not load anything, count as a use of
+     * the chunk, or wait on a lock.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return The chunk, or empty if it is not loaded or is still loading.
+     */
+    public Optional<Chunk> getLoadedChunk(int chunkX, int chunkZ) {
+        Entry entry = loaded.get(ChunkManager.chunkKey(chunkX, chunkZ));
+        if (entry == null || !entry.chunk.isDone() || entry.chunk.isCompletedExceptionally()) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.chunk.join());
+    }
+
+    /**
+     * The number of chunks that are loaded or loading, with or without tickets.
+     *
+     * @return The number of loaded chunks.
+     */
+    public int getLoadedCount() {
+        return loaded.size();
+    }
+
+    /**
+     * The number of times a chunk was requested and it had to be read from the save or generated.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * The number of tickets of a type that a chunk holds.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @param type The type of ticket.
+     * @return The number of tickets of that type, 0 if the chunk is not loaded.
+     */
+    public int getTicketCount(int chunkX, int chunkZ, @NonNull TicketType type) {
+        synchronized (lock) {
+            Entry entry = loaded.get(ChunkManager.chunkKey(chunkX, chunkZ));
+            return entry == null ? 0 : entry.tickets[type.ordinal()];
+        }
+    }
+
+    /**
+     * Read a chunk from the save in the background, generating it if it has never been saved. If
+     * the saved chunk can't be read, the future fails rather than generating a chunk that would
+     * overwrite it.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return A future that completes with the chunk.
+     */
+    private CompletableFuture<Chunk> load(int chunkX, int chunkZ) {
+        return CompletableFuture.supplyAsync(
+                        () -> {
+                            try {
+                                return save.loadChunk(chunkX, chunkZ);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        },
+                        io)
+                .thenCompose(
+                        saved ->
+                                saved.map(CompletableFuture::completedFuture)
+                                        .orElseGet(() -> generator.generate(chunkX, chunkZ)));
+    }
+
+    /**
+     * Remove a ticket from a chunk. Once a chunk has no tickets left it moves to the cache, and
+     * might be unloaded to make room.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @param type The type of ticket to remove.
+     * @return True if the ticket was removed, false if the chunk did not have a ticket of that
+     *     type.
+     */
+    public boolean removeTicket(int chunkX, int chunkZ, @NonNull TicketType type) {
+        final long key = ChunkManager.chunkKey(chunkX, chunkZ);
+        synchronized (lock) {
+            Entry entry = loaded.get(key);
+            if (entry == null || entry.tickets[type.ordinal()] == 0) {
+                return false;
+            }
+            --entry.tickets[type.ordinal()];
+            --entry.totalTickets;
+            if (entry.totalTickets == 0) {
+                unticketed.put(key, entry);
+                evictExcess();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Save every loaded chunk that has been modified, and wait for any chunks that were unloaded
+     * to finish saving. Blocks until everything is written.
+     *
+     * @throws IllegalStateException If the manager has been closed.
+     */
+    public void saveAll() {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Chunk manager is closed");
+            }
+        }
+        saveLoaded(false);
+    }
+
+    /**
+     * Save a chunk if it has been modified. Problems are logged by the save.
+     *
+     * @param key The key for the chunk.
+     * @param chunk The chunk.
+     */
+    private void saveIfDirty(long key, Chunk chunk) {
+        if (chunk.isDirty() && save.saveChunk((int) (key >> 32), (int) key, chunk)) {
+            chunk.markClean();
+        }
+    }
+
+    /**
+     * Save every loaded chunk that has been modified, and wait for pending saves.
+     *
+     * @param unloading Whether the chunks are being unloaded, so their ticks should be stored.
+     */
+    private void saveLoaded(boolean unloading) {
+        List<CompletableFuture<Void>> work = new ArrayList<>();
+        synchronized (lock) {
+            for (var entry : loaded.entrySet()) {
+                final long key = entry.getKey();
+                work.add(
+                        entry.getValue()
+                                .chunk
+                                .thenAcceptAsync(
+                                        c -> {
+                                            if (unloading) {
+                                                storeTicks(key, c);
+                                            }
+                                            saveIfDirty(key, c);
+                                        },
+                                        io));
+            }
+            for (PendingSave pending : pendingSaves.values()) {
+                work.add(pending.saved());
+            }
+        }
+        CompletableFuture.allOf(work.toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, failure) -> null)
+                .join();
+    }
+
+    /**
+     * Change the maximum number of chunks without tickets that are kept loaded, unloading chunks
+     * right away if there are too many.
+     *
+     * @param maxCachedChunks The maximum number of cached chunks.
+     * @throws IllegalArgumentException If the cache size is negative.
+     */
+    public void setMaxCachedChunks(int maxCachedChunks) {
+        if (maxCachedChunks < 0) {
+            throw new IllegalArgumentException("The cache size can't be negative");
+        }
+        synchronized (lock) {
+            this.maxCachedChunks = maxCachedChunks;
+            evictExcess();
+        }
+    }
+
+    /**
+     * Move the ticks scheduled in a chunk into the chunk, if there is a tick scheduler.
+     *
+     * @param key The key for the chunk.
+     * @param chunk The chunk that is being unloaded.
+     */
+    private void storeTicks(long key, Chunk chunk) {
+        if (ticks != null) {
+            ticks.unloadChunk((int) (key >> 32), (int) key, chunk);
+        }
+    }
+
+    /**
+     * Store the ticks of an unloaded chunk and save it in the background, keeping track of it
+     * until it's written so that it can be reused if it's needed again.
+     *
+     * @param key The key for the chunk.
+     * @param chunk The chunk that was unloaded.
+     */
+    private void unload(long key, CompletableFuture<Chunk> chunk) {
+        CompletableFuture<Void> saved =
+                chunk.thenAcceptAsync(
+                        c -> {
+                            storeTicks(key, c);
+                            saveIfDirty(key, c);
+                        },
+                        io);
+        PendingSave pending = new PendingSave(chunk, saved);
+        pendingSaves.put(key, pending);
+        saved.whenComplete((ignored, failure) -> pendingSaves.remove(key, pending));
+    }
+}
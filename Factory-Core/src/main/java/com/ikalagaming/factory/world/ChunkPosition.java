@@ -0,0 +1,34 @@
+package com.ikalagaming.factory.world;
+
+/**
+ * The position of a chunk in the world, in chunk coordinates. Chunk (1, 0) starts at block x = 16.
+ *
+ * @param x The chunk x coordinate.
+ * @param z The chunk z coordinate.
+ * @author Ches Burks
+ */
+public record ChunkPosition(int x, int z) {
+    /**
+     * Find the chunk that contains a block.
+     *
+     * @param blockX The block x coordinate.
+     * @param blockZ The block z coordinate.
+     * @return The position of the chunk containing that block.
+     */
+    public static ChunkPosition ofBlock(int blockX, int blockZ) {
+        return new ChunkPosition(
+                Math.floorDiv(blockX, World.CHUNK_WIDTH), Math.floorDiv(blockZ, World.CHUNK_WIDTH));
+    }
+
+    /**
+     * Calculate the squared distance to another chunk, in chunks.
+     *
+     * @param other The other chunk position.
+     * @return The squared distance between the two chunks.
+     */
+    public long distanceSquared(ChunkPosition other) {
+        final long dx = (long) x - other.x;
+        final long dz = (long) z - other.z;
+        return dx * dx + dz * dz;
+    }
+}
@@ -0,0 +1,144 @@
+package com.ikalagaming.factory.world;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A fixed length array of small unsigned integers, packed into longs using as few bits per entry
+ * as possible. Entries never span two longs, so a few bits at the top of each long may go unused,
+ * but reading or writing an entry only ever touches one long.
+ *
+ * @author Ches Burks
+ */
+class PackedStorage {
+    /**
+     * The number of bits used for each entry.
+     *
+     * @return The bits per entry.
+     */
+    @Getter private final int bitsPerEntry;
+
+    /**
+     * The number of entries.
+     *
+     * @return The size of the array.
+     */
+    @Getter private final int size;
+
+    /** The number of entries that fit in each long. */
+    private final int entriesPerLong;
+
+    /** A mask with the lowest {@link #bitsPerEntry} bits set. */
+    private final long mask;
+
+    /** The packed entries. */
+    private final long[] data;
+
+    /**
+     * Create a new array, with every entry set to 0.
+     *
+     * @param bitsPerEntry The number of bits to use for each entry, in the range [1, 32].
+     * @param size The number of entries.
+     */
+    PackedStorage(int bitsPerEntry, int size) {
+        if (bitsPerEntry < 1 || bitsPerEntry > Integer.SIZE) {
+            throw new IllegalArgumentException("Invalid bits per entry " + bitsPerEntry);
+        }
+        this.bitsPerEntry = bitsPerEntry;
+        this.size = size;
+        entriesPerLong = Long.SIZE / bitsPerEntry;
+        mask = (1L << bitsPerEntry) - 1;
+        data = new long[Math.ceilDiv(size, entriesPerLong)];
+    }
+
+    /**
+     * Read an array that was written with {@link #write(DataOutput)}.
+     *
+     * @param input The input to read from.
+     * @param bitsPerEntry The number of bits used for each entry.
+     * @param size The number of entries.
+     * @return The array.
+     * @throws IOException If the input can't be read.
+     */
+    static PackedStorage read(@NonNull DataInput input, int bitsPerEntry, int size)
+            throws IOException {
+        PackedStorage result = new PackedStorage(bitsPerEntry, size);
+        for (int i = 0; i < result.data.length; ++i) {
+            result.data[i] = input.readLong();
+        }
+        return result;
+    }
+
+    /**
+     * Calculate the minimum number of bits needed to store every value in the range [0, count).
+     *
+     * @param count The number of distinct values.
+     * @return The bits needed, which is at least 1.
+     */
+    static int bitsFor(int count) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(count - 1));
+    }
+
+    /**
+     * Fetch an entry.
+     *
+     * @param index The index of the entry.
+     * @return The value stored there.
+     */
+    int get(int index) {
+        final int shift = (index % entriesPerLong) * bitsPerEntry;
+        return (int) ((data[index / entriesPerLong] >>> shift) & mask);
+    }
+
+    /**
+     * The memory used for the packed entries.
+     *
+     * @return The size of the backing array in bytes.
+     */
+    int getByteSize() {
+        return data.length * Long.BYTES;
+    }
+
+    /**
+     * Copy every entry into a new array that uses a different number of bits per entry. Every
+     * value must fit in the new size.
+     *
+     * @param newBitsPerEntry The number of bits per entry in the new array.
+     * @return The new array.
+     */
+    PackedStorage resize(int newBitsPerEntry) {
+        PackedStorage result = new PackedStorage(newBitsPerEntry, size);
+        for (int i = 0; i < size; ++i) {
+            result.set(i, get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Write out the packed entries. The bits per entry and size are not included.
+     *
+     * @param output The output to write to.
+     * @throws IOException If the output can't be written.
+     */
+    void write(@NonNull DataOutput output) throws IOException {
+        for (long word : data) {
+            output.writeLong(word);
+        }
+    }
+
+    /**
+     * Store an entry.
+     *
+     * @param index The index of the entry.
+     * @param value The value to store, which must fit in {@link #getBitsPerEntry()} bits.
+     */
+    void set(int index, int value) {
+        final int word = index / entriesPerLong;
+        final int shift = (index % entriesPerLong) * bitsPerEntry;
+        data[word] = (data[word] & ~(mask << shift)) | ((value & mask) << shift);
+    }
+}
@@ -0,0 +1,428 @@
+package com.ikalagaming.factory.world;
+
+import lombok.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A file storing up to {@value WorldSave#REGION_WIDTH}x{@value WorldSave#REGION_WIDTH} chunks.
+ *
+ * <p>The file is divided into {@value #SECTOR_SIZE} byte sectors. The first sectors hold a header
+ * with a location entry for each chunk, giving the first sector of the chunk and how many sectors
+ * it spans, followed by the time each chunk was last saved. Each chunk is stored compressed in a
+ * run of whole sectors, starting with its length and compression type.
+ *
+ * <p>Chunks are read and written with positional I/O, so loading a chunk only touches the sectors
+ * that chunk is stored in, and saving a chunk only rewrites its own sectors and header entries. A
+ * chunk that grows past its sectors is moved to the first free run of sectors that fits it, which
+ * may be at the end of the file.
+ *
+ * @author Ches Burks
+ */
+public class RegionFile implements Closeable {
+    /** The size of a sector in bytes. Chunks are always stored in whole sectors. */
+    public static final int SECTOR_SIZE = 4096;
+
+    /** The number of chunks stored in each region. */
+    private static final int CHUNK_COUNT = WorldSave.REGION_WIDTH * WorldSave.REGION_WIDTH;
+
+    /** The number of sectors taken up by the header. */
+    private static final int HEADER_SECTORS =
+            Math.ceilDiv(CHUNK_COUNT * (Integer.BYTES + Long.BYTES), SECTOR_SIZE);
+
+    /** The byte offset in the file where the timestamp table starts. */
+    private static final int TIMESTAMP_OFFSET = CHUNK_COUNT * Integer.BYTES;
+
+    /** The largest number of sectors a single chunk can span. */
+    private static final int MAX_CHUNK_SECTORS = 0xFF;
+
+    /** The size of the length and compression type that precede each chunk. */
+    private static final int CHUNK_HEADER_SIZE = Integer.BYTES + 1;
+
+    /** Marks a chunk that is stored without compression. */
+    private static final byte COMPRESSION_NONE = 0;
+
+    /** Marks a chunk that is compressed with Deflate. */
+    private static final byte COMPRESSION_DEFLATE = 1;
+
+    private final FileChannel channel;
+
+    /**
+     * The location of each chunk, with the first sector in the upper 24 bits and sector count in
+     * the lower 8 bits. Zero means the chunk is not stored.
+     */
+    private final int[] locations = new int[CHUNK_COUNT];
+
+    /** The time each chunk was last saved, in milliseconds since the epoch. */
+    private final long[] timestamps = new long[CHUNK_COUNT];
+
+    /** Which sectors are in use, by the header or a chunk. */
+    private final BitSet usedSectors = new BitSet();
+
+    /** The Deflate compression level used when saving chunks. */
+    private final int compressionLevel;
+
+    /**
+     * Open a region file, creating it if it does not exist. Chunks are saved using the fastest
+     * Deflate compression level.
+     *
+     * @param path The path to the file.
+     * @throws IOException If the file can't be opened or the header is corrupt.
+     */
+    public RegionFile(@NonNull Path path) throws IOException {
+        this(path, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Open a region file, creating it if it does not exist.
+     *
+     * @param path The path to the file.
+     * @param compressionLevel The Deflate compression level used when saving chunks, from {@link
+     *     Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}.
+     * @throws IOException If the file can't be opened or the header is corrupt.
+     */
+    public RegionFile(@NonNull Path path, int compressionLevel) throws IOException {
+        this.compressionLevel = compressionLevel;
+        channel =
+                FileChannel.open(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+        try {
+            readHeader();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Calculate the index of a chunk within the region tables.
+     *
+     * @param x The x coordinate of the chunk within the region.
+     * @param z The z coordinate of the chunk within the region.
+     * @return The index into the tables.
+     * @throws IndexOutOfBoundsException If the coordinates are outside the region.
+     */
+    private static int chunkIndex(int x, int z) {
+        if (x < 0 || x >= WorldSave.REGION_WIDTH || z < 0 || z >= WorldSave.REGION_WIDTH) {
+            throw new IndexOutOfBoundsException("Chunk " + x + ", " + z + " is not in the region");
+        }
+        return z * WorldSave.REGION_WIDTH + x;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Compress chunk data, prefixed with its length and compression type.
+     *
+     * @param data The uncompressed data.
+     * @return The bytes to store in the file.
+     */
+    private byte[] compress(byte[] data) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 64);
+        output.writeBytes(new byte[CHUNK_HEADER_SIZE]);
+        Deflater deflater = new Deflater(compressionLevel);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[SECTOR_SIZE];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+        byte[] result = output.toByteArray();
+        ByteBuffer.wrap(result)
+                .putInt(result.length - Integer.BYTES)
+                .put(COMPRESSION_DEFLATE);
+        return result;
+    }
+
+    /**
+     * Decompress chunk data.
+     *
+     * @param compression The compression type.
+     * @param data The stored data.
+     * @return The uncompressed data.
+     * @throws IOException If the data is corrupt or the compression type is unknown.
+     */
+    private static byte[] decompress(byte compression, byte[] data) throws IOException {
+        if (compression == COMPRESSION_NONE) {
+            return data;
+        }
+        if (compression != COMPRESSION_DEFLATE) {
+            throw new IOException("Unknown compression type " + compression);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[SECTOR_SIZE];
+            while (!inflater.finished()) {
+                final int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Truncated chunk data");
+                }
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt chunk data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Find a run of free sectors, which may extend past the end of the file.
+     *
+     * @param count The number of sectors required.
+     * @return The first sector of the run.
+     */
+    private int findFreeSectors(int count) {
+        int start = usedSectors.nextClearBit(HEADER_SECTORS);
+        while (true) {
+            final int nextUsed = usedSectors.nextSetBit(start);
+            if (nextUsed < 0 || nextUsed - start >= count) {
+                return start;
+            }
+            start = usedSectors.nextClearBit(nextUsed);
+        }
+    }
+
+    /**
+     * Save the file contents to the storage device.
+     *
+     * @throws IOException If there is a problem writing.
+     */
+    public synchronized void flush() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Fetch the time a chunk was last saved.
+     *
+     * @param x The x coordinate of the chunk within the region.
+     * @param z The z coordinate of the chunk within the region.
+     * @return The time in milliseconds since the epoch, or 0 if the chunk is not stored.
+     */
+    public synchronized long getTimestamp(int x, int z) {
+        return timestamps[RegionFile.chunkIndex(x, z)];
+    }
+
+    /**
+     * Check if a chunk is stored in the file.
+     *
+     * @param x The x coordinate of the chunk within the region.
+     * @param z The z coordinate of the chunk within the region.
+     * @return True if there is data for that chunk.
+     */
+    public synchronized boolean hasChunk(int x, int z) {
+        return locations[RegionFile.chunkIndex(x, z)] != 0;
+    }
+
+    /**
+     * Read exactly enough bytes to fill a buffer.
+     *
+     * @param buffer The buffer to fill.
+     * @param position The position in the file to start reading at.
+     * @throws IOException If the end of the file is reached first.
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of region file");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Load a chunk.
+     *
+     * @param x The x coordinate of the chunk within the region.
+     * @param z The z coordinate of the chunk within the region.
+     * @return The chunk, or an empty optional if it is not stored.
+     * @throws IOException If the chunk can't be read or is corrupt.
+     */
+    public Optional<Chunk> readChunk(int x, int z) throws IOException {
+        Optional<byte[]> data = readData(x, z);
+        if (data.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(Chunk.read(new DataInputStream(new ByteArrayInputStream(data.get()))));
+    }
+
+    /**
+     * Load the raw, uncompressed data for a chunk.
+     *
+     * @param x The x coordinate of the chunk within the region.
+     * @param z The z coordinate of the chunk within the region.
+     * @return The chunk data, or an empty optional if it is not stored.
+     * @throws IOException If the data can't be read or is corrupt.
+     */
+    synchronized Optional<byte[]> readData(int x, int z) throws IOException {
+        final int location = locations[RegionFile.chunkIndex(x, z)];
+        if (location == 0) {
+            return Optional.empty();
+        }
+        final long position = (long) (location >>> 8) * SECTOR_SIZE;
+        final int sectorCount = location & 0xFF;
+
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+        readFully(header, position);
+        final int length = header.getInt() - 1;
+        final byte compression = header.get();
+        if (length < 0 || length + CHUNK_HEADER_SIZE > sectorCount * SECTOR_SIZE) {
+            throw new IOException("Invalid length for chunk " + x + ", " + z);
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        readFully(body, position + CHUNK_HEADER_SIZE);
+        return Optional.of(RegionFile.decompress(compression, body.array()));
+    }
+
+    /**
+     * Read the header tables, and mark which sectors are in use. A new, empty file gets a blank
+     * header.
+     *
+     * @throws IOException If the header can't be read or written, or is corrupt.
+     */
+    private void readHeader() throws IOException {
+        usedSectors.set(0, HEADER_SECTORS);
+        if (channel.size() == 0) {
+            channel.write(ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE), 0);
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+        readFully(header, 0);
+        final long fileSectors = Math.ceilDiv(channel.size(), SECTOR_SIZE);
+        for (int i = 0; i < CHUNK_COUNT; ++i) {
+            locations[i] = header.getInt();
+        }
+        for (int i = 0; i < CHUNK_COUNT; ++i) {
+            timestamps[i] = header.getLong();
+        }
+        for (int i = 0; i < CHUNK_COUNT; ++i) {
+            if (locations[i] == 0) {
+                continue;
+            }
+            final int start = locations[i] >>> 8;
+            final int count = locations[i] & 0xFF;
+            if (start < HEADER_SECTORS || count == 0 || start + count > fileSectors) {
+                throw new IOException("Invalid location for chunk " + i + " in region file");
+            }
+            usedSectors.set(start, start + count);
+        }
+    }
+
+    /**
+     * Delete a chunk from the file, freeing up its sectors.
+     *
+     * @param x The x coordinate of the chunk within the region.
+     * @param z The z coordinate of the chunk within the region.
+     * @throws IOException If the header can't be updated.
+     */
+    public synchronized void removeChunk(int x, int z) throws IOException {
+        final int index = RegionFile.chunkIndex(x, z);
+        final int location = locations[index];
+        if (location == 0) {
+            return;
+        }
+        writeHeaderEntry(index, 0, 0);
+        usedSectors.clear(location >>> 8, (location >>> 8) + (location & 0xFF));
+    }
+
+    /**
+     * Save a chunk, replacing any previous version of it.
+     *
+     * @param x The x coordinate of the chunk within the region.
+     * @param z The z coordinate of the chunk within the region.
+     * @param chunk The chunk to save.
+     * @throws IOException If the chunk can't be written, or is too large for the format.
+     */
+    public void writeChunk(int x, int z, @NonNull Chunk chunk) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        chunk.write(new DataOutputStream(data));
+        writeData(x, z, data.toByteArray());
+    }
+
+    /**
+     * Save the raw, uncompressed data for a chunk, replacing any previous data.
+     *
+     * @param x The x coordinate of the chunk within the region.
+     * @param z The z coordinate of the chunk within the region.
+     * @param data The chunk data.
+     * @throws IOException If the data can't be written, or is too large for the format.
+     */
+    synchronized void writeData(int x, int z, @NonNull byte[] data) throws IOException {
+        final int index = RegionFile.chunkIndex(x, z);
+        final byte[] stored = compress(data);
+        final int sectorCount = Math.ceilDiv(stored.length, SECTOR_SIZE);
+        if (sectorCount > MAX_CHUNK_SECTORS) {
+            throw new IOException("Chunk " + x + ", " + z + " is too large to save");
+        }
+
+        final int oldLocation = locations[index];
+        final int oldStart = oldLocation >>> 8;
+        final int oldCount = oldLocation & 0xFF;
+        int start;
+        if (oldLocation != 0 && sectorCount <= oldCount) {
+            start = oldStart;
+            usedSectors.clear(oldStart + sectorCount, oldStart + oldCount);
+        } else {
+            if (oldLocation != 0) {
+                usedSectors.clear(oldStart, oldStart + oldCount);
+            }
+            start = findFreeSectors(sectorCount);
+        }
+        usedSectors.set(start, start + sectorCount);
+
+        // Pad to a whole sector so the file always ends on a sector boundary
+        ByteBuffer buffer = ByteBuffer.allocate(sectorCount * SECTOR_SIZE);
+        buffer.put(stored).clear();
+        final long position = (long) start * SECTOR_SIZE;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        writeHeaderEntry(index, (start << 8) | sectorCount, System.currentTimeMillis());
+    }
+
+    /**
+     * Update the location and timestamp of a chunk, both in memory and in the file.
+     *
+     * @param index The index of the chunk.
+     * @param location The new location entry.
+     * @param timestamp The new timestamp.
+     * @throws IOException If the header can't be written.
+     */
+    private void writeHeaderEntry(int index, int location, long timestamp) throws IOException {
+        locations[index] = location;
+        timestamps[index] = timestamp;
+        ByteBuffer locationBuffer = ByteBuffer.allocate(Integer.BYTES).putInt(location).flip();
+        channel.write(locationBuffer, (long) index * Integer.BYTES);
+        ByteBuffer timestampBuffer = ByteBuffer.allocate(Long.BYTES).putLong(timestamp).flip();
+        channel.write(timestampBuffer, TIMESTAMP_OFFSET + (long) index * Long.BYTES);
+    }
+}
@@ -0,0 +1,15 @@
+package com.ikalagaming.factory.world;
+
+/**
+ * An update that has been scheduled for a block at some point in the future, like a machine
+ * finishing a recipe.
+ *
+ * @param x The block x coordinate.
+ * @param y The block y coordinate.
+ * @param z The block z coordinate.
+ * @param state The {@link BlockStates} ID of the block the tick is for, so that the block can
+ *     tell whether it was replaced in the meantime.
+ * @param tick The game tick the update is due on.
+ * @author Ches Burks
+ */
+public record ScheduledTick(int x, int y, int z, int state, long tick) {}
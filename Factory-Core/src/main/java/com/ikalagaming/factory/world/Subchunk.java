@@ -1,22 +1,284 @@
 package com.ikalagaming.factory.world;
 
+import com.ikalagaming.factory.kvt.Node;
+import com.ikalagaming.factory.kvt.TreeBinarySerialization;
+
 import lombok.NonNull;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Optional;
 
+/**
+ * A {@value World#CHUNK_WIDTH}x{@value #SUBCHUNK_HEIGHT}x{@value World#CHUNK_WIDTH} cube of blocks
+ * within a {@link Chunk}.
+ *
+ * <p>Blocks are stored as indices into a {@link BlockPalette} of {@link BlockStates} IDs, packed
+ * into as few bits as the palette size allows. A subchunk that is all the same block, like empty
+ * sky or solid stone, does not store any per-block data at all until a different block is placed
+ * in it.
+ *
+ * @author Ches Burks
+ */
 public class Subchunk {
     /** The height of a sub-chunk in blocks. */
     public static final int SUBCHUNK_HEIGHT = 16;
 
     private static final int DATA_SIZE = SUBCHUNK_HEIGHT * World.CHUNK_WIDTH * World.CHUNK_WIDTH;
 
-    private List<Block> palette;
+    private BlockPalette palette;
 
-    private int[] data = new int[DATA_SIZE];
+    /** The palette index for each block, or null if every block is palette entry 0. */
+    private PackedStorage data;
 
+    /** Create a new subchunk that is completely empty. */
     public Subchunk() {
-        palette = new ArrayList<>();
+        palette = new BlockPalette(BlockStates.EMPTY);
+    }
+
+    /**
+     * Calculate where a block is stored in the data array.
+     *
+     * @param x The x coordinate in the range [0, {@value World#CHUNK_WIDTH}).
+     * @param y The y coordinate in the range [0, {@value SUBCHUNK_HEIGHT}).
+     * @param z The z coordinate in the range [0, {@value World#CHUNK_WIDTH}).
+     * @return The index into the data array.
+     */
+    private static int indexOf(int x, int y, int z) {
+        return (y * World.CHUNK_WIDTH + z) * World.CHUNK_WIDTH + x;
+    }
+
+    /**
+     * Rebuild the palette with only the blocks that are still in use, and repack the data with as
+     * few bits as possible. If only one block remains, the per-block data is dropped entirely.
+     * This is relatively expensive, so it is intended to be done when saving rather than every
+     * time a block changes.
+     *
+     * @see #compacted()
+     */
+    public void compact() {
+        if (data == null) {
+            return;
+        }
+        Subchunk result = compacted();
+        palette = result.palette;
+        data = result.data;
+    }
+
+    /**
+     * Create a compacted copy of the subchunk, leaving this one as it is. This only reads the
+     * subchunk, so it must not be modified until the copy is done.
+     *
+     * @return A new subchunk with the same blocks, using as small a palette and as few bits as
+     *     possible.
+     * @see #compact()
+     */
+    public Subchunk compacted() {
+        final BlockPalette currentPalette = palette;
+        final PackedStorage currentData = data;
+        Subchunk result = new Subchunk();
+        if (currentData == null) {
+            result.palette = new BlockPalette(currentPalette.get(0));
+            return result;
+        }
+        int[] counts = new int[currentPalette.size()];
+        for (int i = 0; i < DATA_SIZE; ++i) {
+            ++counts[currentData.get(i)];
+        }
+
+        BlockPalette newPalette = null;
+        int[] remap = new int[counts.length];
+        for (int index = 0; index < counts.length; ++index) {
+            if (counts[index] == 0) {
+                continue;
+            }
+            if (newPalette == null) {
+                newPalette = new BlockPalette(currentPalette.get(index));
+            } else {
+                remap[index] = newPalette.getOrAdd(currentPalette.get(index));
+            }
+        }
+
+        result.palette = newPalette;
+        if (newPalette.size() == 1) {
+            return result;
+        }
+
+        PackedStorage newData =
+                new PackedStorage(PackedStorage.bitsFor(newPalette.size()), DATA_SIZE);
+        for (int i = 0; i < DATA_SIZE; ++i) {
+            newData.set(i, remap[currentData.get(i)]);
+        }
+        result.data = newData;
+        return result;
+    }
+
+    /**
+     * Read a subchunk that was written with {@link #write(DataOutput)}.
+     *
+     * @param input The input to read from.
+     * @return The subchunk.
+     * @throws IOException If the input can't be read or is not a valid subchunk.
+     */
+    static Subchunk read(@NonNull DataInput input) throws IOException {
+        final int paletteSize = input.readUnsignedShort();
+        if (paletteSize == 0) {
+            throw new IOException("Empty subchunk palette");
+        }
+        Subchunk result = new Subchunk();
+        result.palette = new BlockPalette(BlockStates.getId(Subchunk.readBlock(input)));
+        for (int i = 1; i < paletteSize; ++i) {
+            result.palette.getOrAdd(BlockStates.getId(Subchunk.readBlock(input)));
+        }
+        if (result.palette.size() != paletteSize) {
+            throw new IOException("Duplicate blocks in subchunk palette");
+        }
+        if (paletteSize > 1) {
+            final int bits = input.readUnsignedByte();
+            if (bits < PackedStorage.bitsFor(paletteSize) || bits > Integer.SIZE) {
+                throw new IOException("Invalid bits per entry " + bits);
+            }
+            result.data = PackedStorage.read(input, bits, DATA_SIZE);
+        }
+        return result;
+    }
+
+    /**
+     * Read a palette entry.
+     *
+     * @param input The input to read from.
+     * @return The block, or null for empty space.
+     * @throws IOException If the input can't be read.
+     */
+    static Block readBlock(DataInput input) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        final String name = input.readUTF();
+        final int dataLength = input.readInt();
+        if (dataLength == 0) {
+            return new Block(name, null);
+        }
+        byte[] data = new byte[dataLength];
+        input.readFully(data);
+        Optional<Node> node = TreeBinarySerialization.read(new ByteArrayInputStream(data));
+        if (node.isEmpty()) {
+            throw new IOException("Invalid data for block " + name);
+        }
+        return new Block(name, node.get());
+    }
+
+    /**
+     * Write out the palette and packed data. The palette is written as is, so {@link #compact()}
+     * should usually be called first.
+     *
+     * @param output The output to write to.
+     * @throws IOException If the output can't be written.
+     */
+    void write(@NonNull DataOutput output) throws IOException {
+        output.writeShort(palette.size());
+        for (int i = 0; i < palette.size(); ++i) {
+            Subchunk.writeBlock(output, BlockStates.getBlock(palette.get(i)));
+        }
+        if (data != null) {
+            output.writeByte(data.getBitsPerEntry());
+            data.write(output);
+        }
+    }
+
+    /**
+     * Write a palette entry. Only block data that is a {@link Node} can be saved.
+     *
+     * @param output The output to write to.
+     * @param block The block, or null for empty space.
+     * @throws IOException If the output can't be written.
+     */
+    static void writeBlock(DataOutput output, Block block) throws IOException {
+        output.writeBoolean(block != null);
+        if (block == null) {
+            return;
+        }
+        output.writeUTF(block.getName());
+        if (block.getData() instanceof Node node) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            if (!TreeBinarySerialization.write(node, data)) {
+                throw new IOException("Could not serialize data for block " + block.getName());
+            }
+            output.writeInt(data.size());
+            output.write(data.toByteArray());
+        } else {
+            output.writeInt(0);
+        }
+    }
+
+    /**
+     * Fetch the block at the specified coordinates within the subchunk.
+     *
+     * @param x The x coordinate in the range [0, {@value World#CHUNK_WIDTH}).
+     * @param y The y coordinate in the range [0, {@value SUBCHUNK_HEIGHT}).
+     * @param z The z coordinate in the range [0, {@value World#CHUNK_WIDTH}).
+     * @return The block, or null if there is no block there.
+     */
+    public Block getBlock(int x, int y, int z) {
+        return BlockStates.getBlock(getBlockState(x, y, z));
+    }
+
+    /**
+     * Fetch the ID of the block at the specified coordinates within the subchunk.
+     *
+     * @param x The x coordinate in the range [0, {@value World#CHUNK_WIDTH}).
+     * @param y The y coordinate in the range [0, {@value SUBCHUNK_HEIGHT}).
+     * @param z The z coordinate in the range [0, {@value World#CHUNK_WIDTH}).
+     * @return The {@link BlockStates} ID of the block, which is {@value BlockStates#EMPTY} if there
+     *     is no block there.
+     */
+    public int getBlockState(int x, int y, int z) {
+        if (data == null) {
+            return palette.get(0);
+        }
+        return palette.get(data.get(Subchunk.indexOf(x, y, z)));
+    }
+
+    /**
+     * The memory used for per-block data, not counting the palette.
+     *
+     * @return The number of bytes used to store block indices.
+     */
+    public int getDataByteSize() {
+        return data == null ? 0 : data.getByteSize();
+    }
+
+    /**
+     * The number of distinct blocks in the palette. This can include blocks that are no longer
+     * used until the subchunk is {@link #compact() compacted}.
+     *
+     * @return The palette size.
+     */
+    public int getPaletteSize() {
+        return palette.size();
+    }
+
+    /**
+     * Check if every block in the subchunk is the same, so no per-block data is stored.
+     *
+     * @return True if the subchunk is a single block repeated.
+     */
+    public boolean isUniform() {
+        return data == null;
+    }
+
+    /**
+     * Remove the block at the specified coordinates, leaving empty space.
+     *
+     * @param x The x coordinate in the range [0, {@value World#CHUNK_WIDTH}).
+     * @param y The y coordinate in the range [0, {@value SUBCHUNK_HEIGHT}).
+     * @param z The z coordinate in the range [0, {@value World#CHUNK_WIDTH}).
+     */
+    public void removeBlock(int x, int y, int z) {
+        store(Subchunk.indexOf(x, y, z), BlockStates.EMPTY);
     }
 
     /**
@@ -28,6 +290,38 @@ public class Subchunk {
      * @param block The block to set.
      */
     public void setBlock(int x, int y, int z, @NonNull Block block) {
-        // TODO(ches) update the palette if required, set the block
+        store(Subchunk.indexOf(x, y, z), BlockStates.getId(block));
+    }
+
+    /**
+     * Set the block at the specified coordinates within the subchunk by its ID.
+     *
+     * @param x The x coordinate in the range [0, {@value World#CHUNK_WIDTH}).
+     * @param y The y coordinate in the range [0, {@value SUBCHUNK_HEIGHT}).
+     * @param z The z coordinate in the range [0, {@value World#CHUNK_WIDTH}).
+     * @param state The {@link BlockStates} ID of the block to set.
+     */
+    public void setBlockState(int x, int y, int z, int state) {
+        store(Subchunk.indexOf(x, y, z), state);
+    }
+
+    /**
+     * Store a block, growing the palette and the bits per entry as needed.
+     *
+     * @param index The index into the data array.
+     * @param state The block state ID to store.
+     */
+    private void store(int index, int state) {
+        if (data == null && palette.get(0) == state) {
+            return;
+        }
+        final int paletteIndex = palette.getOrAdd(state);
+        final int bits = PackedStorage.bitsFor(palette.size());
+        if (data == null) {
+            data = new PackedStorage(bits, DATA_SIZE);
+        } else if (bits > data.getBitsPerEntry()) {
+            data = data.resize(bits);
+        }
+        data.set(index, paletteIndex);
     }
 }
@@ -0,0 +1,141 @@
+package com.ikalagaming.factory.world;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An immutable set of tags, stored as a bitset of the IDs a frozen {@link
+ * com.ikalagaming.factory.registry.TagRegistry TagRegistry} assigned them. Checking whether one
+ * set contains or overlaps another only takes a few word operations, no matter how many tags are
+ * involved.
+ *
+ * <p>Sets built by the registry for items include the ancestors of every tag, so checking if a set
+ * contains a tag also finds anything tagged with a descendant of it.
+ *
+ * @author Ches Burks
+ */
+public final class TagSet {
+    /** A set without any tags. */
+    public static final TagSet EMPTY = new TagSet(new long[0]);
+
+    /** The bits for each tag ID, with trailing zero words trimmed. */
+    private final long[] words;
+
+    /**
+     * Create a set from its words.
+     *
+     * @param words The words, which must not have trailing zero words.
+     */
+    private TagSet(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * Create a set containing the tag IDs that are set in a bitset.
+     *
+     * @param bits The IDs to include.
+     * @return The set.
+     */
+    public static TagSet of(@NonNull BitSet bits) {
+        if (bits.isEmpty()) {
+            return EMPTY;
+        }
+        return new TagSet(bits.toLongArray());
+    }
+
+    /**
+     * Check if a tag is in the set.
+     *
+     * @param id The tag ID.
+     * @return True if the tag is in the set, false if it is not or the ID is negative.
+     */
+    public boolean contains(int id) {
+        if (id < 0) {
+            return false;
+        }
+        final int word = id >>> 6;
+        return word < words.length && (words[word] & (1L << id)) != 0;
+    }
+
+    /**
+     * Check if every tag in another set is in this one.
+     *
+     * @param other The other set.
+     * @return True if this set contains all of the other set.
+     */
+    public boolean containsAll(@NonNull TagSet other) {
+        if (other.words.length > words.length) {
+            return false;
+        }
+        for (int i = 0; i < other.words.length; ++i) {
+            if ((other.words[i] & ~words[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TagSet other && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    /**
+     * Check if this set has at least one tag in common with another.
+     *
+     * @param other The other set.
+     * @return True if there is a tag in both sets.
+     */
+    public boolean intersects(@NonNull TagSet other) {
+        final int length = Math.min(words.length, other.words.length);
+        for (int i = 0; i < length; ++i) {
+            if ((words[i] & other.words[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the set has no tags.
+     *
+     * @return True if the set is empty.
+     */
+    public boolean isEmpty() {
+        return words.length == 0;
+    }
+
+    /**
+     * The number of tags in the set.
+     *
+     * @return The number of tags.
+     */
+    public int size() {
+        int total = 0;
+        for (long word : words) {
+            total += Long.bitCount(word);
+        }
+        return total;
+    }
+
+    /**
+     * Convert the set to a bitset, for example to combine it with other sets.
+     *
+     * @return A new bitset with the IDs in this set.
+     */
+    public BitSet toBitSet() {
+        return BitSet.valueOf(words);
+    }
+
+    @Override
+    public String toString() {
+        return "TagSet" + toBitSet();
+    }
+}
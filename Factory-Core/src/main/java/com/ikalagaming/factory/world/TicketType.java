@@ -0,0 +1,16 @@
+package com.ikalagaming.factory.world;
+
+/**
+ * The reasons a chunk can be kept loaded by the {@link ChunkManager}. Each chunk counts its
+ * tickets separately for every type.
+ *
+ * @author Ches Burks
+ */
+public enum TicketType {
+    /** A player is close enough to need the chunk. */
+    PLAYER,
+    /** A machine in the chunk needs to keep running. */
+    MACHINE,
+    /** The chunk is part of the spawn area, which is always loaded. */
+    SPAWN
+}
@@ -3,7 +3,7 @@ package com.ikalagaming.factory.world;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Tracks the state of the world.
+ * Tracks the state of the world. Loaded chunks are tracked by a {@link ChunkManager}.
  *
  * @author Ches Burks
  */
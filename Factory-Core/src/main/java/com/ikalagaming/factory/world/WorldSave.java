@@ -1,16 +1,297 @@
 package com.ikalagaming.factory.world;
 
+import com.ikalagaming.factory.FactoryPlugin;
+import com.ikalagaming.util.SafeResourceLoader;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
 /**
- * Used to read and write from save files.
+ * Used to read and write from save files. Chunks are grouped into regions, each of which is
+ * stored in its own {@link RegionFile} in the save directory.
+ *
+ * <p>Only a limited number of region files are kept open at once. Once there are too many, the
+ * least recently used regions that are not being read or written are closed, and opened again the
+ * next time they are needed.
  *
  * @author Ches Burks
  */
-public class WorldSave {
+@Slf4j
+public class WorldSave implements Closeable {
     /**
      * The width in chunks of a region. A region stores {@value}x{@value} chunks, each of which is
      * {@value World#CHUNK_WIDTH}x{@value World#CHUNK_WIDTH} blocks wide.
      */
     public static final int REGION_WIDTH = 32;
 
-    public void saveNewRegion() {}
+    /** The default number of region files that are kept open at once. */
+    public static final int DEFAULT_MAX_OPEN_REGIONS = 64;
+
+    /**
+     * Reads from or writes to a chunk in a region file.
+     *
+     * @param <T> The type of result.
+     * @author Ches Burks
+     */
+    @FunctionalInterface
+    private interface RegionAction<T> {
+        /**
+         * Perform the action.
+         *
+         * @param region The region file the chunk is in.
+         * @param x The x coordinate of the chunk within the region.
+         * @param z The z coordinate of the chunk within the region.
+         * @return The result.
+         * @throws IOException If the region file can't be read or written.
+         */
+        T apply(RegionFile region, int x, int z) throws IOException;
+    }
+
+    /**
+     * A region file that is open.
+     *
+     * @author Ches Burks
+     */
+    private static final class OpenRegion {
+        /** The region file. */
+        private final RegionFile file;
+
+        /** The number of reads and writes currently using the file, which keep it open. */
+        private int users;
+
+        /**
+         * Keep track of an open region file.
+         *
+         * @param file The region file.
+         */
+        private OpenRegion(RegionFile file) {
+            this.file = file;
+        }
+    }
+
+    /** The directory that region files are stored in. */
+    private final Path directory;
+
+    /** The maximum number of region files to keep open while they are not in use. */
+    private final int maxOpenRegions;
+
+    /**
+     * Region files that are currently open, keyed by their packed region coordinates, least
+     * recently used first.
+     */
+    private final Map<Long, OpenRegion> regions = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Create a save that stores regions in the given directory, keeping the default number of
+     * region files open.
+     *
+     * @param directory The directory to store region files in, created if it does not exist yet.
+     * @throws IOException If the directory can't be created.
+     */
+    public WorldSave(@NonNull Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_OPEN_REGIONS);
+    }
+
+    /**
+     * Create a save that stores regions in the given directory.
+     *
+     * @param directory The directory to store region files in, created if it does not exist yet.
+     * @param maxOpenRegions The number of region files to keep open at once. More may be open
+     *     briefly if they are all being used at the same time.
+     * @throws IOException If the directory can't be created.
+     * @throws IllegalArgumentException If the maximum number of open regions is less than 1.
+     */
+    public WorldSave(@NonNull Path directory, int maxOpenRegions) throws IOException {
+        if (maxOpenRegions < 1) {
+            throw new IllegalArgumentException("At least one region file must be allowed open");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxOpenRegions = maxOpenRegions;
+    }
+
+    /**
+     * Close a region file, logging any problems.
+     *
+     * @param region The region to close.
+     */
+    private static void closeRegion(OpenRegion region) {
+        try {
+            region.file.close();
+        } catch (IOException e) {
+            log.warn(
+                    SafeResourceLoader.getString(
+                            "REGION_CLOSE_FAILED", FactoryPlugin.getResourceBundle()),
+                    e);
+        }
+    }
+
+    /**
+     * Pack region coordinates into a key.
+     *
+     * @param regionX The region x coordinate.
+     * @param regionZ The region z coordinate.
+     * @return The key for the region.
+     */
+    private static long regionKey(int regionX, int regionZ) {
+        return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+    }
+
+    /** Close every open region file. Problems closing files are logged. */
+    @Override
+    public synchronized void close() {
+        for (OpenRegion region : regions.values()) {
+            WorldSave.closeRegion(region);
+        }
+        regions.clear();
+    }
+
+    /**
+     * Close the least recently used regions that are not in use, until no more than the maximum
+     * are open. Must be called while synchronized on this save.
+     */
+    private void closeExcess() {
+        Iterator<OpenRegion> iterator = regions.values().iterator();
+        while (regions.size() > maxOpenRegions && iterator.hasNext()) {
+            OpenRegion region = iterator.next();
+            if (region.users == 0) {
+                iterator.remove();
+                WorldSave.closeRegion(region);
+            }
+        }
+    }
+
+    /**
+     * The number of region files that are currently open.
+     *
+     * @return The number of open regions.
+     */
+    synchronized int getOpenRegionCount() {
+        return regions.size();
+    }
+
+    /**
+     * Find the region file that contains a chunk, opening it if required, and mark it as in use so
+     * that it is not closed. Must be matched with a call to {@link #release(OpenRegion)}.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return The region.
+     * @throws IOException If the region file can't be opened.
+     */
+    private synchronized OpenRegion acquire(int chunkX, int chunkZ) throws IOException {
+        final int regionX = Math.floorDiv(chunkX, REGION_WIDTH);
+        final int regionZ = Math.floorDiv(chunkZ, REGION_WIDTH);
+        final long key = WorldSave.regionKey(regionX, regionZ);
+        OpenRegion region = regions.get(key);
+        if (region == null) {
+            region =
+                    new OpenRegion(
+                            new RegionFile(
+                                    directory.resolve(
+                                            "r." + regionX + "." + regionZ + ".region")));
+            regions.put(key, region);
+        }
+        ++region.users;
+        closeExcess();
+        return region;
+    }
+
+    /**
+     * Stop using a region, closing it if too many regions are open.
+     *
+     * @param region The region returned by {@link #acquire(int, int)}.
+     */
+    private synchronized void release(OpenRegion region) {
+        --region.users;
+        closeExcess();
+    }
+
+    /**
+     * Run an action on the region file that contains a chunk, keeping it open until the action is
+     * done.
+     *
+     * @param <T> The type of result.
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @param action The action to run.
+     * @return The result of the action.
+     * @throws IOException If the region file can't be opened, read, or written.
+     */
+    private <T> T withRegion(int chunkX, int chunkZ, RegionAction<T> action) throws IOException {
+        OpenRegion region = acquire(chunkX, chunkZ);
+        try {
+            return action.apply(
+                    region.file,
+                    Math.floorMod(chunkX, REGION_WIDTH),
+                    Math.floorMod(chunkZ, REGION_WIDTH));
+        } finally {
+            release(region);
+        }
+    }
+
+    /**
+     * Load a chunk from the save.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return The chunk, or an empty optional if it has not been saved.
+     * @throws IOException If the chunk was saved but could not be read. This is distinct from the
+     *     chunk not existing, so that callers do not replace a damaged chunk with a new one.
+     */
+    public Optional<Chunk> loadChunk(int chunkX, int chunkZ) throws IOException {
+        try {
+            return withRegion(chunkX, chunkZ, RegionFile::readChunk);
+        } catch (IOException e) {
+            log.warn(
+                    SafeResourceLoader.getStringFormatted(
+                            "REGION_READ_FAILED",
+                            FactoryPlugin.getResourceBundle(),
+                            Integer.toString(chunkX),
+                            Integer.toString(chunkZ)),
+                    e);
+            throw e;
+        }
+    }
+
+    /**
+     * Save a chunk, replacing any previously saved version. A compacted copy of the chunk is
+     * written, so the chunk itself is only read. Other threads can keep reading it, but it must
+     * not be modified until this returns.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @param chunk The chunk to save.
+     * @return True if the chunk was saved, false if there was a problem writing it.
+     */
+    public boolean saveChunk(int chunkX, int chunkZ, @NonNull Chunk chunk) {
+        final Chunk compacted = chunk.compactedCopy();
+        try {
+            withRegion(
+                    chunkX,
+                    chunkZ,
+                    (region, x, z) -> {
+                        region.writeChunk(x, z, compacted);
+                        return null;
+                    });
+            return true;
+        } catch (IOException e) {
+            log.warn(
+                    SafeResourceLoader.getStringFormatted(
+                            "REGION_WRITE_FAILED",
+                            FactoryPlugin.getResourceBundle(),
+                            Integer.toString(chunkX),
+                            Integer.toString(chunkZ)),
+                    e);
+            return false;
+        }
+    }
 }
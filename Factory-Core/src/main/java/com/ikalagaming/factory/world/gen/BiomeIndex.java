@@ -0,0 +1,342 @@
+package com.ikalagaming.factory.world.gen;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A precomputed lookup structure for picking biomes based on the generated parameters.
+ *
+ * <p>The five dimensional parameter space is divided into a uniform grid, and each cell stores the
+ * biomes whose ranges overlap it. Picking a biome only has to check the biomes in one cell rather
+ * than every registered biome, and does not allocate anything.
+ *
+ * <p>Biomes are picked with the following rules:
+ *
+ * <ol>
+ *   <li>If any biomes contain the parameters, only those are considered, otherwise all biomes are.
+ *   <li>The biomes with centers closest to the parameters are kept.
+ *   <li>Of those, the biomes with the smallest total width are kept, as they are more specific.
+ *   <li>If there is still more than one biome, one is chosen based on the coordinates.
+ * </ol>
+ *
+ * Distances and widths within {@value #EPSILON} of each other are treated as equal.
+ *
+ * @author Ches Burks
+ */
+public class BiomeIndex {
+    /** Distances and widths closer than this are considered the same. */
+    static final float EPSILON = 0.001f;
+
+    /** The number of grid cells along each parameter axis. */
+    private static final int CELLS_PER_AXIS = 4;
+
+    /** The number of parameters, which is the number of dimensions of the grid. */
+    private static final int DIMENSIONS = 5;
+
+    /** The biome names, indexed by biome. */
+    private final String[] names;
+
+    /**
+     * The parameter range minimums, indexed by biome * {@value #DIMENSIONS} + parameter. Parameters
+     * are in the same order as the {@link ParameterPack} fields.
+     */
+    private final float[] mins;
+
+    /** The parameter range maximums, laid out like {@link #mins}. */
+    private final float[] maxes;
+
+    /** The parameter range midpoints, laid out like {@link #mins}. */
+    private final float[] midpoints;
+
+    /** The total width of each biome. */
+    private final float[] widths;
+
+    /**
+     * For each grid cell, the biomes whose ranges overlap that cell. Sorted by the hash code of the
+     * biome names, which is the order ties are broken in.
+     */
+    private final int[][] cells;
+
+    /**
+     * Every biome, sorted the same way as the cells. Used when no biome contains the parameters.
+     */
+    private final int[] all;
+
+    /**
+     * Build an index over a list of biomes. The position of a biome in the list is used as its
+     * index.
+     *
+     * @param names The names of each biome.
+     * @param parameters The parameters for each biome, in the same order as the names.
+     * @throws IllegalArgumentException If the lists are not the same size.
+     */
+    public BiomeIndex(@NonNull List<String> names, @NonNull List<BiomeParameters> parameters) {
+        if (names.size() != parameters.size()) {
+            throw new IllegalArgumentException("Each biome needs a name and parameters");
+        }
+        final int count = names.size();
+        this.names = names.toArray(new String[0]);
+        mins = new float[count * DIMENSIONS];
+        maxes = new float[count * DIMENSIONS];
+        midpoints = new float[count * DIMENSIONS];
+        widths = new float[count];
+        for (int biome = 0; biome < count; ++biome) {
+            final var biomeParameters = parameters.get(biome);
+            final ParameterRange[] ranges = {
+                biomeParameters.temperature(),
+                biomeParameters.height(),
+                biomeParameters.erosion(),
+                biomeParameters.precipitation(),
+                biomeParameters.weirdness()
+            };
+            for (int i = 0; i < DIMENSIONS; ++i) {
+                mins[biome * DIMENSIONS + i] = ranges[i].min();
+                maxes[biome * DIMENSIONS + i] = ranges[i].max();
+                midpoints[biome * DIMENSIONS + i] = ranges[i].getMidpoint();
+            }
+            widths[biome] = biomeParameters.getTotalWidth();
+        }
+
+        all =
+                IntStream.range(0, count)
+                        .boxed()
+                        .sorted(Comparator.comparingInt(biome -> this.names[biome].hashCode()))
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+
+        int cellCount = 1;
+        for (int i = 0; i < DIMENSIONS; ++i) {
+            cellCount *= CELLS_PER_AXIS;
+        }
+        List<List<Integer>> cellLists = new ArrayList<>(cellCount);
+        for (int i = 0; i < cellCount; ++i) {
+            cellLists.add(new ArrayList<>());
+        }
+        int[] low = new int[DIMENSIONS];
+        int[] high = new int[DIMENSIONS];
+        for (int biome : all) {
+            for (int i = 0; i < DIMENSIONS; ++i) {
+                low[i] = BiomeIndex.cellCoordinate(mins[biome * DIMENSIONS + i]);
+                high[i] = BiomeIndex.cellCoordinate(maxes[biome * DIMENSIONS + i]);
+            }
+            addToCells(cellLists, biome, low, high, 0, 0);
+        }
+        cells = new int[cellCount][];
+        for (int i = 0; i < cellCount; ++i) {
+            cells[i] = cellLists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Recursively add a biome to every cell in the box between low and high.
+     *
+     * @param cellLists The biomes in each cell.
+     * @param biome The biome to add.
+     * @param low The lowest cell coordinate along each axis.
+     * @param high The highest cell coordinate along each axis.
+     * @param dimension The axis we are currently iterating over.
+     * @param cell The partial cell index for the axes before this one.
+     */
+    private static void addToCells(
+            List<List<Integer>> cellLists,
+            int biome,
+            int[] low,
+            int[] high,
+            int dimension,
+            int cell) {
+        if (dimension == DIMENSIONS) {
+            cellLists.get(cell).add(biome);
+            return;
+        }
+        for (int i = low[dimension]; i <= high[dimension]; ++i) {
+            BiomeIndex.addToCells(
+                    cellLists, biome, low, high, dimension + 1, cell * CELLS_PER_AXIS + i);
+        }
+    }
+
+    /**
+     * Find the grid coordinate along one axis for a parameter value.
+     *
+     * @param value The parameter value, which should be in the range [0, 1].
+     * @return The grid coordinate, clamped to the grid.
+     */
+    private static int cellCoordinate(float value) {
+        return Math.clamp((int) (value * CELLS_PER_AXIS), 0, CELLS_PER_AXIS - 1);
+    }
+
+    /**
+     * The number of biomes in the index.
+     *
+     * @return How many biomes there are.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Check whether a biome contains the parameters.
+     *
+     * @param biome The biome index.
+     * @param parameters The parameter values.
+     * @return True if every parameter is inside the range for the biome.
+     */
+    private boolean contains(int biome, ParameterPack parameters) {
+        final int offset = biome * DIMENSIONS;
+        return inRange(offset, parameters.temperature())
+                && inRange(offset + 1, parameters.height())
+                && inRange(offset + 2, parameters.erosion())
+                && inRange(offset + 3, parameters.precipitation())
+                && inRange(offset + 4, parameters.weirdness());
+    }
+
+    /**
+     * Calculate the distance from the parameters to the center of a biome, matching {@link
+     * BiomeParameters#getDistance(ParameterPack)}.
+     *
+     * @param biome The biome index.
+     * @param parameters The parameter values.
+     * @return The total distance in all dimensions.
+     */
+    private float distance(int biome, ParameterPack parameters) {
+        final int offset = biome * DIMENSIONS;
+        return Math.abs(parameters.temperature() - midpoints[offset])
+                + Math.abs(parameters.height() - midpoints[offset + 1])
+                + Math.abs(parameters.erosion() - midpoints[offset + 2])
+                + Math.abs(parameters.precipitation() - midpoints[offset + 3])
+                + Math.abs(parameters.weirdness() - midpoints[offset + 4]);
+    }
+
+    /**
+     * Fetch the name of a biome.
+     *
+     * @param biome The biome index.
+     * @return The name of the biome.
+     */
+    public String getName(int biome) {
+        return names[biome];
+    }
+
+    /**
+     * Pick the biome for a set of parameters at a location.
+     *
+     * @param parameters The parameters generated for the location.
+     * @param x The x coordinate that we want a biome for.
+     * @param z The z coordinate that we want a biome for.
+     * @return The index of the selected biome, or -1 if there are no biomes.
+     */
+    public int pick(@NonNull ParameterPack parameters, int x, int z) {
+        if (names.length == 0) {
+            return -1;
+        }
+        int cell = BiomeIndex.cellCoordinate(parameters.temperature());
+        cell = cell * CELLS_PER_AXIS + BiomeIndex.cellCoordinate(parameters.height());
+        cell = cell * CELLS_PER_AXIS + BiomeIndex.cellCoordinate(parameters.erosion());
+        cell = cell * CELLS_PER_AXIS + BiomeIndex.cellCoordinate(parameters.precipitation());
+        cell = cell * CELLS_PER_AXIS + BiomeIndex.cellCoordinate(parameters.weirdness());
+
+        final int[] candidates = cells[cell];
+        for (int biome : candidates) {
+            if (contains(biome, parameters)) {
+                return pickFrom(candidates, true, parameters, x, z);
+            }
+        }
+        return pickFrom(all, false, parameters, x, z);
+    }
+
+    /**
+     * Check if a value is inside the range for one parameter of a biome.
+     *
+     * @param index The index into the range arrays.
+     * @param value The parameter value.
+     * @return True if the value is between the min and max, inclusive.
+     */
+    private boolean inRange(int index, float value) {
+        return value >= mins[index] && value <= maxes[index];
+    }
+
+
+    /**
+     * Pick the best biome out of a list of candidates.
+     *
+     * @param candidates The candidate biomes, sorted by name hash code.
+     * @param mustContain Whether to skip candidates that do not contain the parameters.
+     * @param parameters The parameter values.
+     * @param x The x coordinate that we want a biome for.
+     * @param z The z coordinate that we want a biome for.
+     * @return The index of the selected biome.
+     */
+    private int pickFrom(
+            int[] candidates, boolean mustContain, ParameterPack parameters, int x, int z) {
+        float closest = Float.MAX_VALUE;
+        for (int biome : candidates) {
+            if (!mustContain || contains(biome, parameters)) {
+                closest = Math.min(closest, distance(biome, parameters));
+            }
+        }
+
+        float narrowest = Float.MAX_VALUE;
+        for (int biome : candidates) {
+            if (isClosest(biome, mustContain, parameters, closest)) {
+                narrowest = Math.min(narrowest, widths[biome]);
+            }
+        }
+
+        int ties = 0;
+        for (int biome : candidates) {
+            if (isBest(biome, mustContain, parameters, closest, narrowest)) {
+                ++ties;
+            }
+        }
+
+        // Same as Arrays.hashCode(new int[] {x, z}), without the allocation
+        int selection = ties == 1 ? 0 : Math.floorMod(31 * (31 + x) + z, ties);
+        for (int biome : candidates) {
+            if (isBest(biome, mustContain, parameters, closest, narrowest)) {
+                if (selection == 0) {
+                    return biome;
+                }
+                --selection;
+            }
+        }
+        throw new IllegalStateException("No biome selected");
+    }
+
+    /**
+     * Check if a biome is one of the closest candidates.
+     *
+     * @param biome The biome index.
+     * @param mustContain Whether the biome has to contain the parameters.
+     * @param parameters The parameter values.
+     * @param closest The smallest distance out of all candidates.
+     * @return Whether the biome is close enough to the smallest distance.
+     */
+    private boolean isClosest(
+            int biome, boolean mustContain, ParameterPack parameters, float closest) {
+        return (!mustContain || contains(biome, parameters))
+                && distance(biome, parameters) <= closest + EPSILON;
+    }
+
+    /**
+     * Check if a biome is one of the best candidates, being both closest and narrowest.
+     *
+     * @param biome The biome index.
+     * @param mustContain Whether the biome has to contain the parameters.
+     * @param parameters The parameter values.
+     * @param closest The smallest distance out of all candidates.
+     * @param narrowest The smallest width out of the closest candidates.
+     * @return Whether the biome is one of the best choices.
+     */
+    private boolean isBest(
+            int biome,
+            boolean mustContain,
+            ParameterPack parameters,
+            float closest,
+            float narrowest) {
+        return isClosest(biome, mustContain, parameters, closest)
+                && widths[biome] <= narrowest + EPSILON;
+    }
+}
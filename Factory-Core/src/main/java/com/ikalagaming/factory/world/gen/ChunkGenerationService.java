@@ -0,0 +1,370 @@
+package com.ikalagaming.factory.world.gen;
+
+import com.ikalagaming.factory.FactoryPlugin;
+import com.ikalagaming.factory.world.Chunk;
+import com.ikalagaming.factory.world.ChunkPosition;
+import com.ikalagaming.util.SafeResourceLoader;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Generates chunks on a pool of worker threads.
+ *
+ * <p>Requests are queued and handed out to workers closest first, based on the squared distance
+ * from the chunk to the nearest player. When players move, {@link #setPlayerPositions(Collection)}
+ * re-orders everything that is still waiting. Requesting a chunk that is already queued or being
+ * generated returns the existing future rather than generating it twice.
+ *
+ * <p>Chunks are independent of each other and the generator does not share any mutable state
+ * between chunks, so throughput scales with the number of workers.
+ *
+ * @author Ches Burks
+ */
+@Slf4j
+public class ChunkGenerationService implements AutoCloseable {
+    /**
+     * Generates a single chunk.
+     *
+     * @author Ches Burks
+     */
+    @FunctionalInterface
+    interface Generator {
+        /**
+         * Generate a chunk.
+         *
+         * @param seed The world seed.
+         * @param chunkX The chunk x coordinate.
+         * @param chunkZ The chunk z coordinate.
+         * @return The generated chunk.
+         */
+        Chunk generate(long seed, int chunkX, int chunkZ);
+    }
+
+    /**
+     * A chunk that has been requested.
+     *
+     * @author Ches Burks
+     */
+    private static final class Request implements Comparable<Request> {
+        /** The chunk to generate. */
+        private final ChunkPosition position;
+
+        /** Completed once the chunk is generated. */
+        private final CompletableFuture<Chunk> result = new CompletableFuture<>();
+
+        /** The order requests were made in, so equally close chunks are generated in order. */
+        private final long sequence;
+
+        /** The squared distance to the nearest player, lower values are generated first. */
+        private long priority;
+
+        /**
+         * Create a new request.
+         *
+         * @param position The chunk to generate.
+         * @param sequence The order the request was made in.
+         * @param priority The initial priority.
+         */
+        private Request(ChunkPosition position, long sequence, long priority) {
+            this.position = position;
+            this.sequence = sequence;
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(Request other) {
+            final int comparison = Long.compare(priority, other.priority);
+            if (comparison != 0) {
+                return comparison;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /** The seed used to generate chunks. */
+    private final long seed;
+
+    /** Used to actually generate chunks. */
+    private final Generator generator;
+
+    /** The worker threads. */
+    private final List<Thread> workers;
+
+    /** Guards all the mutable state below. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when a request is queued, or the service is closed. */
+    private final Condition available = lock.newCondition();
+
+    /** Requests waiting on a worker, closest first. */
+    private final PriorityQueue<Request> queue = new PriorityQueue<>();
+
+    /** Requests that are queued or being generated. */
+    private final Map<ChunkPosition, Request> inFlight = new HashMap<>();
+
+    /** The chunks players are currently in. */
+    private List<ChunkPosition> players = List.of();
+
+    /** The sequence number for the next request. */
+    private long nextSequence;
+
+    /** Whether the service has been closed. */
+    private boolean closed;
+
+    /**
+     * Create a service that uses one worker thread per available processor.
+     *
+     * @param seed The world seed.
+     */
+    public ChunkGenerationService(long seed) {
+        this(seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a service with a specific number of workers. Chunks are generated with a {@link
+     * ParameterSampler}, so the workers share lattice points between neighbouring chunks.
+     *
+     * @param seed The world seed.
+     * @param threadCount The number of worker threads, at least 1.
+     * @throws IllegalArgumentException If the thread count is less than 1.
+     */
+    public ChunkGenerationService(long seed, int threadCount) {
+        this(seed, threadCount, new ParameterSampler(NoiseGenerator.SIMPLEX, seed));
+    }
+
+    /**
+     * Create a service that generates chunks with a sampler.
+     *
+     * @param seed The world seed.
+     * @param threadCount The number of worker threads, at least 1.
+     * @param sampler Used to generate the biome parameters.
+     * @throws IllegalArgumentException If the thread count is less than 1.
+     */
+    private ChunkGenerationService(long seed, int threadCount, ParameterSampler sampler) {
+        this(
+                seed,
+                threadCount,
+                (ignored, chunkX, chunkZ) ->
+                        WorldGenerator.generateChunk(sampler, chunkX, chunkZ));
+    }
+
+    /**
+     * Create a service with a specific number of workers and generator.
+     *
+     * @param seed The world seed.
+     * @param threadCount The number of worker threads, at least 1.
+     * @param generator Used to generate the chunks.
+     * @throws IllegalArgumentException If the thread count is less than 1.
+     */
+    ChunkGenerationService(long seed, int threadCount, @NonNull Generator generator) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Need at least one worker thread");
+        }
+        this.seed = seed;
+        this.generator = generator;
+        workers = new ArrayList<>(threadCount);
+        for (int i = 0; i < threadCount; ++i) {
+            Thread worker = new Thread(this::work, "Chunk Generator " + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Stop generating chunks. Chunks that are being generated are finished, but anything still
+     * waiting in the queue is cancelled. Waits for the workers to finish.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Request request : queue) {
+                request.result.cancel(false);
+                inFlight.remove(request.position);
+            }
+            queue.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * The number of chunks that are waiting for a worker, not counting ones being generated.
+     *
+     * @return The number of queued requests.
+     */
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Calculate the priority of a chunk based on the current player positions. Must be called
+     * while holding the lock.
+     *
+     * @param position The chunk position.
+     * @return The squared distance to the nearest player, or 0 if there are no players.
+     */
+    private long priorityOf(ChunkPosition position) {
+        if (players.isEmpty()) {
+            return 0;
+        }
+        long closest = Long.MAX_VALUE;
+        for (ChunkPosition player : players) {
+            closest = Math.min(closest, position.distanceSquared(player));
+        }
+        return closest;
+    }
+
+    /**
+     * Request that a chunk be generated. The future is completed on a worker thread, so callbacks
+     * that do a lot of work should be attached with one of the async methods. Cancelling the
+     * future before a worker gets to it skips generating the chunk.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return A future that completes with the chunk, or exceptionally if generation fails.
+     * @throws IllegalStateException If the service has been closed.
+     */
+    public CompletableFuture<Chunk> request(int chunkX, int chunkZ) {
+        final var position = new ChunkPosition(chunkX, chunkZ);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Chunk generation service is closed");
+            }
+            Request existing = inFlight.get(position);
+            if (existing != null) {
+                if (!existing.result.isCancelled()) {
+                    return existing.result;
+                }
+                queue.remove(existing);
+            }
+            Request request = new Request(position, nextSequence++, priorityOf(position));
+            inFlight.put(position, request);
+            queue.add(request);
+            available.signal();
+            return request.result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Update where players are, and re-order the queued chunks so that the ones closest to a player
+     * are generated first.
+     *
+     * @param positions The chunks that players are in.
+     */
+    public void setPlayerPositions(@NonNull Collection<ChunkPosition> positions) {
+        lock.lock();
+        try {
+            players = List.copyOf(positions);
+            List<Request> pending = new ArrayList<>(queue);
+            queue.clear();
+            for (Request request : pending) {
+                request.priority = priorityOf(request.position);
+            }
+            queue.addAll(pending);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for the next request to work on.
+     *
+     * @return The next request, or null if the service has been closed.
+     */
+    private Request take() {
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    return null;
+                }
+                Request request = queue.poll();
+                if (request == null) {
+                    available.awaitUninterruptibly();
+                    continue;
+                }
+                if (request.result.isCancelled()) {
+                    inFlight.remove(request.position);
+                    continue;
+                }
+                return request;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The main loop for worker threads. If generation fails, the request is still removed and its
+     * result completed exceptionally, so nobody waits on it forever. Errors are rethrown
+     * afterwards, stopping the worker.
+     */
+    private void work() {
+        Request request;
+        while ((request = take()) != null) {
+            Chunk chunk = null;
+            Throwable failure = null;
+            try {
+                chunk = generator.generate(seed, request.position.x(), request.position.z());
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                lock.lock();
+                try {
+                    inFlight.remove(request.position, request);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            if (failure == null) {
+                request.result.complete(chunk);
+                continue;
+            }
+            log.warn(
+                    SafeResourceLoader.getStringFormatted(
+                            "CHUNK_GENERATION_FAILED",
+                            FactoryPlugin.getResourceBundle(),
+                            Integer.toString(request.position.x()),
+                            Integer.toString(request.position.z())),
+                    failure);
+            request.result.completeExceptionally(failure);
+            if (failure instanceof Error error) {
+                throw error;
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.ikalagaming.factory.world.gen;
 
+import com.ikalagaming.random.RandomGen;
+
 /**
  * Specifies the type of a noise generator that we expect to use for world generation.
  *
@@ -7,6 +9,33 @@ package com.ikalagaming.factory.world.gen;
  */
 @FunctionalInterface
 public interface NoiseGenerator {
+    /** Simplex noise, which generates whole grids at once rather than one point at a time. */
+    NoiseGenerator SIMPLEX =
+            new NoiseGenerator() {
+                @Override
+                public double getNoise(
+                        final long seed,
+                        final int x,
+                        final int y,
+                        final double scale,
+                        final int octaves) {
+                    return RandomGen.generateSimplexNoise(seed, x, y, scale, octaves);
+                }
+
+                @Override
+                public void getNoise(
+                        final long seed,
+                        final int x,
+                        final int y,
+                        final int width,
+                        final int height,
+                        final double scale,
+                        final int octaves,
+                        final float[] output) {
+                    RandomGen.generateSimplexNoise(
+                            seed, x, y, width, height, scale, octaves, output);
+                }
+            };
 
     /**
      * Generate noise at a specific position.
@@ -20,4 +49,36 @@ public interface NoiseGenerator {
      */
     double getNoise(
             final long seed, final int x, final int y, final double scale, final int octaves);
+
+    /**
+     * Generate noise for a grid of positions. Values are stored in row-major order, so the value
+     * at (x + i, y + j) is written to index j * width + i. By default this samples one position at
+     * a time, implementations that can share work between positions should override it.
+     *
+     * @param seed The seed to use for noise generation.
+     * @param x The x coordinate of the first column.
+     * @param y The y coordinate of the first row.
+     * @param width The number of columns.
+     * @param height The number of rows.
+     * @param scale The scale of the noise.
+     * @param octaves The number of octaves of noise to use.
+     * @param output Where to store the noise values, mapped to the range [0, 1]. Must have room
+     *     for at least width * height values.
+     */
+    default void getNoise(
+            final long seed,
+            final int x,
+            final int y,
+            final int width,
+            final int height,
+            final double scale,
+            final int octaves,
+            final float[] output) {
+        for (int row = 0; row < height; ++row) {
+            for (int column = 0; column < width; ++column) {
+                output[row * width + column] =
+                        (float) getNoise(seed, x + column, y + row, scale, octaves);
+            }
+        }
+    }
 }
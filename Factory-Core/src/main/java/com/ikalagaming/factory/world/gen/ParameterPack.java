@@ -36,6 +36,77 @@ public record ParameterPack(
                 generate(generator, seed, x, y, NoiseParameters.WEIRDNESS));
     }
 
+    /**
+     * Generate the parameter packs for a grid of coordinates at once, which is much faster than
+     * generating them one at a time when the generator supports it.
+     *
+     * @param generator The noise generator to use.
+     * @param seed The seed to use for the noise function.
+     * @param x The x coordinate of the first column.
+     * @param y The y coordinate of the first row.
+     * @param width The number of columns.
+     * @param height The number of rows.
+     * @return The parameter packs in row-major order, so the pack for (x + i, y + j) is at index j
+     *     * width + i.
+     */
+    public static ParameterPack[] generateParameters(
+            @NonNull NoiseGenerator generator,
+            final long seed,
+            final int x,
+            final int y,
+            final int width,
+            final int height) {
+        final int count = width * height;
+        float[] temperature = new float[count];
+        float[] heightValues = new float[count];
+        float[] erosion = new float[count];
+        float[] precipitation = new float[count];
+        float[] weirdness = new float[count];
+        generate(generator, seed, x, y, width, height, NoiseParameters.TEMPERATURE, temperature);
+        generate(generator, seed, x, y, width, height, NoiseParameters.HEIGHT, heightValues);
+        generate(generator, seed, x, y, width, height, NoiseParameters.EROSION, erosion);
+        generate(
+                generator, seed, x, y, width, height, NoiseParameters.PRECIPITATION, precipitation);
+        generate(generator, seed, x, y, width, height, NoiseParameters.WEIRDNESS, weirdness);
+
+        ParameterPack[] result = new ParameterPack[count];
+        for (int i = 0; i < count; ++i) {
+            result[i] =
+                    new ParameterPack(
+                            temperature[i],
+                            heightValues[i],
+                            erosion[i],
+                            precipitation[i],
+                            weirdness[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Generate the noise values for a grid of coordinates, given the specified parameters.
+     *
+     * @param generator The noise generator to use.
+     * @param seed The seed to use for the noise function.
+     * @param x The x coordinate of the first column.
+     * @param y The y coordinate of the first row.
+     * @param width The number of columns.
+     * @param height The number of rows.
+     * @param parameters The parameters to use.
+     * @param output Where to store the noise values, in the range [0, 1].
+     */
+    private static void generate(
+            @NonNull NoiseGenerator generator,
+            final long seed,
+            final int x,
+            final int y,
+            final int width,
+            final int height,
+            @NonNull NoiseParameters parameters,
+            float[] output) {
+        generator.getNoise(
+                seed, x, y, width, height, parameters.scale(), parameters.octaves(), output);
+    }
+
     /**
      * Generate the simplex noise value at specified coordinates, given the specified parameters.
      *
@@ -0,0 +1,239 @@
+package com.ikalagaming.factory.world.gen;
+
+import com.ikalagaming.factory.world.World;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates the biome parameters for whole chunks, sampling the slowly changing parameters on a
+ * coarse lattice and interpolating between lattice points.
+ *
+ * <p>Temperature, erosion, precipitation, and weirdness use large scales, so they barely change
+ * over a few blocks. Those are sampled every {@value #SPACING} blocks and bilinearly interpolated
+ * for the blocks in between. Height directly controls the terrain, so it is still sampled for
+ * every column.
+ *
+ * <p>Lattice points are generated in tiles of one chunk, and each chunk also needs the edges of the
+ * tiles next to it. Tiles are cached, so neighbouring chunks share lattice points rather than
+ * generating them again. The cache is safe to use from several threads at once, and only keeps
+ * the most recently used tiles.
+ *
+ * @author Ches Burks
+ */
+public class ParameterSampler {
+    /** The distance in blocks between lattice points. */
+    public static final int SPACING = 4;
+
+    /** The number of lattice points along each side of a tile. */
+    private static final int TILE_WIDTH = World.CHUNK_WIDTH / SPACING;
+
+    /** The number of lattice points along each side of a chunk, including the far edges. */
+    private static final int LATTICE_WIDTH = TILE_WIDTH + 1;
+
+    /** The parameters that are sampled on the lattice, in the order they are stored in tiles. */
+    private static final NoiseParameters[] COARSE_PARAMETERS = {
+        NoiseParameters.TEMPERATURE,
+        NoiseParameters.EROSION,
+        NoiseParameters.PRECIPITATION,
+        NoiseParameters.WEIRDNESS
+    };
+
+    /** The maximum number of tiles kept in the cache. */
+    private static final int MAX_CACHED_TILES = 1024;
+
+    /** Used to generate noise. */
+    private final NoiseGenerator generator;
+
+    /** The world seed. */
+    @Getter private final long seed;
+
+    /**
+     * Lattice values for each tile, keyed by the packed chunk coordinates. Each tile stores every
+     * coarse parameter in turn, with the lattice points for each in row-major order.
+     */
+    private final Map<Long, float[]> tiles =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, float[]> eldest) {
+                    return size() > MAX_CACHED_TILES;
+                }
+            };
+
+    /**
+     * Create a sampler for a world.
+     *
+     * @param generator Used to generate noise.
+     * @param seed The world seed.
+     */
+    public ParameterSampler(@NonNull NoiseGenerator generator, long seed) {
+        this.generator = generator;
+        this.seed = seed;
+    }
+
+    /**
+     * Pack chunk coordinates into a key.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return The key for the tile.
+     */
+    private static long tileKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Linearly interpolate between two values.
+     *
+     * @param start The value at 0.
+     * @param end The value at 1.
+     * @param fraction How far between the two values to go.
+     * @return The interpolated value.
+     */
+    private static float lerp(float start, float end, float fraction) {
+        return start + (end - start) * fraction;
+    }
+
+    /**
+     * Generate the lattice values for a tile.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return The lattice values.
+     */
+    private float[] generateTile(int chunkX, int chunkZ) {
+        final int points = TILE_WIDTH * TILE_WIDTH;
+        float[] tile = new float[COARSE_PARAMETERS.length * points];
+        float[] values = new float[points];
+        for (int i = 0; i < COARSE_PARAMETERS.length; ++i) {
+            // NOTE(ches) lattice coordinates times a larger scale land on the same block positions
+            generator.getNoise(
+                    seed,
+                    chunkX * TILE_WIDTH,
+                    chunkZ * TILE_WIDTH,
+                    TILE_WIDTH,
+                    TILE_WIDTH,
+                    COARSE_PARAMETERS[i].scale() * SPACING,
+                    COARSE_PARAMETERS[i].octaves(),
+                    values);
+            System.arraycopy(values, 0, tile, i * points, points);
+        }
+        return tile;
+    }
+
+    /**
+     * The number of tiles that are currently cached.
+     *
+     * @return The number of cached tiles.
+     */
+    int getCachedTileCount() {
+        synchronized (tiles) {
+            return tiles.size();
+        }
+    }
+
+    /**
+     * Fetch the lattice values for a tile, generating them if they are not cached. Generation
+     * happens outside the lock, so two threads might both generate the same tile, but they will
+     * get the same values.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return The lattice values for the tile.
+     */
+    private float[] getTile(int chunkX, int chunkZ) {
+        final long key = ParameterSampler.tileKey(chunkX, chunkZ);
+        synchronized (tiles) {
+            float[] tile = tiles.get(key);
+            if (tile != null) {
+                return tile;
+            }
+        }
+        float[] tile = generateTile(chunkX, chunkZ);
+        synchronized (tiles) {
+            tiles.putIfAbsent(key, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * Generate the parameters for every column of a chunk.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return The parameter packs in row-major order, so the pack for block (x, z) within the
+     *     chunk is at index z * {@value World#CHUNK_WIDTH} + x.
+     */
+    public ParameterPack[] sampleChunk(int chunkX, int chunkZ) {
+        final int width = World.CHUNK_WIDTH;
+        float[] height = new float[width * width];
+        generator.getNoise(
+                seed,
+                chunkX * width,
+                chunkZ * width,
+                width,
+                width,
+                NoiseParameters.HEIGHT.scale(),
+                NoiseParameters.HEIGHT.octaves(),
+                height);
+
+        // Gather this tile and the edges of the tiles after it into one lattice
+        final int tilePoints = TILE_WIDTH * TILE_WIDTH;
+        final int latticePoints = LATTICE_WIDTH * LATTICE_WIDTH;
+        float[] lattice = new float[COARSE_PARAMETERS.length * latticePoints];
+        for (int tileZ = 0; tileZ < 2; ++tileZ) {
+            for (int tileX = 0; tileX < 2; ++tileX) {
+                float[] tile = getTile(chunkX + tileX, chunkZ + tileZ);
+                // Only the first row and column are needed from the neighbours
+                final int rows = tileZ == 0 ? TILE_WIDTH : 1;
+                final int columns = tileX == 0 ? TILE_WIDTH : 1;
+                for (int parameter = 0; parameter < COARSE_PARAMETERS.length; ++parameter) {
+                    for (int row = 0; row < rows; ++row) {
+                        System.arraycopy(
+                                tile,
+                                parameter * tilePoints + row * TILE_WIDTH,
+                                lattice,
+                                parameter * latticePoints
+                                        + (tileZ * TILE_WIDTH + row) * LATTICE_WIDTH
+                                        + tileX * TILE_WIDTH,
+                                columns);
+                    }
+                }
+            }
+        }
+
+        ParameterPack[] result = new ParameterPack[width * width];
+        float[] values = new float[COARSE_PARAMETERS.length];
+        for (int z = 0; z < width; ++z) {
+            final int cellZ = z / SPACING;
+            final float fractionZ = (z % SPACING) / (float) SPACING;
+            for (int x = 0; x < width; ++x) {
+                final int cellX = x / SPACING;
+                final float fractionX = (x % SPACING) / (float) SPACING;
+                final int corner = cellZ * LATTICE_WIDTH + cellX;
+                for (int parameter = 0; parameter < values.length; ++parameter) {
+                    final int base = parameter * latticePoints + corner;
+                    values[parameter] =
+                            ParameterSampler.lerp(
+                                    ParameterSampler.lerp(
+                                            lattice[base], lattice[base + 1], fractionX),
+                                    ParameterSampler.lerp(
+                                            lattice[base + LATTICE_WIDTH],
+                                            lattice[base + LATTICE_WIDTH + 1],
+                                            fractionX),
+                                    fractionZ);
+                }
+                final int index = z * width + x;
+                result[index] =
+                        new ParameterPack(
+                                values[0], height[index], values[1], values[2], values[3]);
+            }
+        }
+        return result;
+    }
+}
@@ -1,18 +1,21 @@
 package com.ikalagaming.factory.world.gen;
 
-import com.ikalagaming.factory.world.Block;
+import com.ikalagaming.factory.world.BlockStates;
 import com.ikalagaming.factory.world.Chunk;
 import com.ikalagaming.factory.world.World;
-import com.ikalagaming.random.RandomGen;
 
 import lombok.NonNull;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Used to generate the world.
  *
+ * <p>Biomes are registered up front, after which chunks can be generated from any number of
+ * threads at once. See {@link ChunkGenerationService} for generating chunks in the background.
+ *
  * @author Ches Burks
  */
 public class WorldGenerator {
@@ -25,9 +28,28 @@ public class WorldGenerator {
      */
     private static final int WORLD_HEIGHT_SCALE = World.WORLD_HEIGHT_TOTAL / 4;
 
-    private static final Map<String, BiomeParameters> biomes = new HashMap<>();
-    private static final Map<String, Byte> biomeEncoding = new HashMap<>();
-    private static final Map<String, BiomeDefinition> biomeDefinitions = new HashMap<>();
+    /**
+     * The registered biomes, replaced as a whole whenever a biome is registered so that generation
+     * threads always see a consistent set.
+     *
+     * @param names The biome names, in the order of their encoding.
+     * @param parameters The parameters for each biome, in the same order.
+     * @param definitions The definitions for each biome, in the same order.
+     * @param index Used to pick biomes.
+     */
+    private record Biomes(
+            List<String> names,
+            List<BiomeParameters> parameters,
+            BiomeDefinition[] definitions,
+            BiomeIndex index) {}
+
+    /** The currently registered biomes. */
+    private static volatile Biomes registered =
+            new Biomes(
+                    List.of(),
+                    List.of(),
+                    new BiomeDefinition[0],
+                    new BiomeIndex(List.of(), List.of()));
 
     /**
      * Convert from the height parameter to the actual world height in blocks. This serves as the
@@ -49,58 +71,31 @@ public class WorldGenerator {
     }
 
     /**
-     * Compare two biomes based on a set of parameters.
+     * Fill in the terrain for a chunk.
      *
-     * @param first A map from biome name to parameters, for the first biome.
-     * @param second A map from biome name to parameters, for the second biome.
-     * @param target The parameters used to pick the biome.
-     * @return The value 0 if the values are equivalent; the value less than 0 if first is a better
-     *     match than the second; and a value greater than 0 if the first is a worse match than the
-     *     second.
+     * @param biomes The registered biomes.
+     * @param startX The x coordinate of the first block in the chunk.
+     * @param startZ The z coordinate of the first block in the chunk.
+     * @param parameters The parameters for each column, in row-major order with rows along z.
+     * @return The newly generated chunk.
      */
-    private static int compareBiomes(
-            @NonNull Map.Entry<String, BiomeParameters> first,
-            @NonNull Map.Entry<String, BiomeParameters> second,
-            @NonNull ParameterPack target) {
-
-        BiomeParameters firstBiome = first.getValue();
-        BiomeParameters secondBiome = second.getValue();
-        float distanceDifference = secondBiome.getDistance(target) - firstBiome.getDistance(target);
-        final float epsilon = 0.001f;
-        if (distanceDifference < -epsilon) {
-            return -1;
-        }
-        if (distanceDifference > epsilon) {
-            return 1;
-        }
-        // NOTE(ches) They are the same distance away, and may share a center point.
-        float rangeDifference = secondBiome.getTotalWidth() - firstBiome.getTotalWidth();
-        if (rangeDifference < -epsilon) {
-            return -1;
-        }
-        if (rangeDifference > epsilon) {
-            return 1;
-        }
-        return 0;
-    }
-
-    public static Chunk generateChunk(
-            final long seed, final int chunkCoordinateX, final int chunkCoordinateZ) {
+    private static Chunk buildChunk(
+            final Biomes biomes,
+            final int startX,
+            final int startZ,
+            final ParameterPack[] parameters) {
         var chunk = new Chunk();
-
         for (int x = 0; x < World.CHUNK_WIDTH; ++x) {
             for (int z = 0; z < World.CHUNK_WIDTH; ++z) {
-                final int actualX = chunkCoordinateX + x;
-                final int actualZ = chunkCoordinateZ + z;
-                var params =
-                        ParameterPack.generateParameters(
-                                RandomGen::generateSimplexNoise, seed, actualX, actualZ);
-                var biomeName = pickBiome(biomes, params, actualX, actualZ);
-                chunk.setBiome(x, z, biomeEncoding.get(biomeName));
+                final int actualX = startX + x;
+                final int actualZ = startZ + z;
+                var params = parameters[z * World.CHUNK_WIDTH + x];
+                final int biome = biomes.index().pick(params, actualX, actualZ);
+                chunk.setBiome(x, z, (byte) biome);
 
                 final int height = calculateHeight(params.height());
 
-                BiomeDefinition definition = biomeDefinitions.get(biomeName);
+                BiomeDefinition definition = biomes.definitions()[biome];
 
                 // Bottom to top
                 int currentLayer = 0;
@@ -111,9 +106,9 @@ public class WorldGenerator {
                                     layer.extraProportion()
                                             * (height - definition.totalMinHeight()));
                     int actualHeight = layer.min() + proportionalExtraHeight;
+                    final int state = BlockStates.getId(layer.block());
                     for (int j = 0; j < actualHeight; ++j) {
-                        String blockName = layer.block();
-                        chunk.setBlock(x, currentLayer, z, new Block(blockName, null));
+                        chunk.setBlockState(x, currentLayer, z, state);
                         ++currentLayer;
                     }
                 }
@@ -123,86 +118,126 @@ public class WorldGenerator {
     }
 
     /**
-     * Select a biome from a list given a set of biome parameters and coordinates.
+     * Fetch the registered biomes, making sure there is at least one.
      *
-     * @param biomes The list of biomes we are selecting from.
-     * @param parameters The biome parameters that have been generated to pick a biome with.
-     * @param x The x coordinate that we want a biome for.
-     * @param z The z coordinate that we want a biome for.
-     * @return The name of the biome we have selected.
+     * @return The registered biomes.
+     * @throws IllegalStateException If no biomes have been registered.
      */
-    public static String pickBiome(
-            @NonNull Map<String, BiomeParameters> biomes,
-            final @NonNull ParameterPack parameters,
-            int x,
-            int z) {
-
-        List<Map.Entry<String, BiomeParameters>> choices =
-                biomes.entrySet().stream()
-                        .filter(entry -> entry.getValue().contains(parameters))
-                        .sorted((e1, e2) -> compareBiomes(e1, e2, parameters))
-                        .collect(Collectors.toCollection(ArrayList::new));
-
-        if (choices.isEmpty()) {
-            var fallbacks =
-                    biomes.entrySet().stream()
-                            .sorted((e1, e2) -> compareBiomes(e1, e2, parameters))
-                            .collect(Collectors.toCollection(ArrayList::new));
-            pruneWorseChoices(fallbacks, parameters);
-            if (fallbacks.size() == 1) {
-                return fallbacks.get(0).getKey();
-            }
-            var names = fallbacks.stream().map(Map.Entry::getKey).toList();
-            return pickBiomeBasedOnName(names, x, z);
-        }
-        if (choices.size() == 1) {
-            return choices.get(0).getKey();
+    private static Biomes requireBiomes() {
+        final Biomes biomes = registered;
+        if (biomes.names().isEmpty()) {
+            throw new IllegalStateException("No biomes have been registered");
         }
+        return biomes;
+    }
 
-        pruneWorseChoices(choices, parameters);
-
-        if (choices.size() == 1) {
-            return choices.get(0).getKey();
-        }
+    /**
+     * Generate the terrain for a chunk, sampling every parameter at every column. This only reads
+     * the registered biomes, so it is safe to call from several threads at once.
+     *
+     * @param seed The world seed.
+     * @param chunkCoordinateX The chunk x coordinate.
+     * @param chunkCoordinateZ The chunk z coordinate.
+     * @return The newly generated chunk.
+     * @throws IllegalStateException If no biomes have been registered.
+     * @see #generateChunk(ParameterSampler, int, int)
+     */
+    public static Chunk generateChunk(
+            final long seed, final int chunkCoordinateX, final int chunkCoordinateZ) {
+        final Biomes biomes = WorldGenerator.requireBiomes();
+        final int startX = chunkCoordinateX * World.CHUNK_WIDTH;
+        final int startZ = chunkCoordinateZ * World.CHUNK_WIDTH;
+        // NOTE(ches) rows are z and columns are x
+        final ParameterPack[] parameters =
+                ParameterPack.generateParameters(
+                        NoiseGenerator.SIMPLEX,
+                        seed,
+                        startX,
+                        startZ,
+                        World.CHUNK_WIDTH,
+                        World.CHUNK_WIDTH);
+        return WorldGenerator.buildChunk(biomes, startX, startZ, parameters);
+    }
 
-        var names = choices.stream().map(Map.Entry::getKey).toList();
-        return pickBiomeBasedOnName(names, x, z);
+    /**
+     * Generate the terrain for a chunk, using a sampler that interpolates the slowly changing
+     * parameters from a coarse lattice. This is much faster than sampling every parameter at every
+     * column, with slightly different biome borders. It only reads the registered biomes, and the
+     * sampler is thread safe, so it is safe to call from several threads at once.
+     *
+     * @param sampler Used to generate the parameters, which also determines the seed.
+     * @param chunkCoordinateX The chunk x coordinate.
+     * @param chunkCoordinateZ The chunk z coordinate.
+     * @return The newly generated chunk.
+     * @throws IllegalStateException If no biomes have been registered.
+     */
+    public static Chunk generateChunk(
+            final @NonNull ParameterSampler sampler,
+            final int chunkCoordinateX,
+            final int chunkCoordinateZ) {
+        final Biomes biomes = WorldGenerator.requireBiomes();
+        return WorldGenerator.buildChunk(
+                biomes,
+                chunkCoordinateX * World.CHUNK_WIDTH,
+                chunkCoordinateZ * World.CHUNK_WIDTH,
+                sampler.sampleChunk(chunkCoordinateX, chunkCoordinateZ));
     }
 
     /**
-     * Pick a biome from a list of valid choices based on the unique names and coordinates.
+     * Select one of the registered biomes given a set of biome parameters and coordinates. See
+     * {@link BiomeIndex} for how the biome is picked.
      *
-     * @param choices The list of biome names that are all equivalently good choices.
+     * @param parameters The biome parameters that have been generated to pick a biome with.
      * @param x The x coordinate that we want a biome for.
      * @param z The z coordinate that we want a biome for.
-     * @return The name of the biome we have selected.
+     * @return The name of the biome we have selected, or empty if there are no biomes registered.
      */
-    private static String pickBiomeBasedOnName(@NonNull final List<String> choices, int x, int z) {
-        var orderedChoices =
-                choices.stream().sorted(Comparator.comparingInt(String::hashCode)).toList();
-        var selection = Arrays.hashCode(new int[] {x, z}) % orderedChoices.size();
-        return orderedChoices.get(selection);
+    public static Optional<String> pickBiome(
+            final @NonNull ParameterPack parameters, int x, int z) {
+        final Biomes biomes = registered;
+        final int biome = biomes.index().pick(parameters, x, z);
+        if (biome < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(biomes.index().getName(biome));
     }
 
     /**
-     * Remove any entries from the list that are worse matches than the first, presumably best,
-     * choice.
+     * Register a biome that can be picked during generation. Registering a biome with the same name
+     * again replaces its parameters and definition, but keeps its encoding. Chunks that are being
+     * generated while a biome is registered use the biomes from before it was registered.
      *
-     * @param choices The choices, sorted by how close their centers are to the parameters and their
-     *     width. The best matches should be first.
-     * @param parameters The parameters used to generate the biome.
+     * @param name The name of the biome.
+     * @param parameters The parameters that the biome is picked for.
+     * @param definition The layers that make up the biome.
+     * @throws IllegalStateException If there are too many biomes to encode in a byte.
      */
-    private static void pruneWorseChoices(
-            @NonNull List<Map.Entry<String, BiomeParameters>> choices,
-            final @NonNull ParameterPack parameters) {
-        var firstItem = choices.get(0).getValue();
-        var distance = firstItem.getDistance(parameters);
-        var width = firstItem.getTotalWidth();
-
-        choices.removeIf(
-                entry ->
-                        entry.getValue().getDistance(parameters) > distance
-                                || entry.getValue().getTotalWidth() > width);
+    public static synchronized void registerBiome(
+            @NonNull String name,
+            @NonNull BiomeParameters parameters,
+            @NonNull BiomeDefinition definition) {
+        final Biomes current = registered;
+        List<String> names = new ArrayList<>(current.names());
+        List<BiomeParameters> allParameters = new ArrayList<>(current.parameters());
+        List<BiomeDefinition> definitions = new ArrayList<>(List.of(current.definitions()));
+        final int existing = names.indexOf(name);
+        if (existing >= 0) {
+            allParameters.set(existing, parameters);
+            definitions.set(existing, definition);
+        } else {
+            if (names.size() > 0xFF) {
+                throw new IllegalStateException("Too many biomes registered");
+            }
+            names.add(name);
+            allParameters.add(parameters);
+            definitions.add(definition);
+        }
+        registered =
+                new Biomes(
+                        List.copyOf(names),
+                        List.copyOf(allParameters),
+                        definitions.toArray(new BiomeDefinition[0]),
+                        new BiomeIndex(names, allParameters));
     }
 
     /** Private constructor so that this class is not instantiated. */
@@ -0,0 +1,188 @@
+package com.ikalagaming.factory.crafting;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ikalagaming.factory.inventory.Inventory;
+import com.ikalagaming.factory.item.Item;
+import com.ikalagaming.factory.item.ItemStack;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for finding recipes that can be crafted from some items.
+ *
+ * @author Ches Burks
+ */
+class TestRecipeMatcher {
+    private Item ironOre;
+    private Item copperOre;
+    private Item hammer;
+
+    private Recipe ironIngot;
+    private Recipe copperIngot;
+    private Recipe anyOre;
+    private Recipe crushOre;
+    private Recipe custom;
+    private Recipe power;
+
+    private RecipeIndex index;
+
+    @BeforeEach
+    void setup() {
+        ironOre = new Item("lotomation:iron_ore", "iron", Set.of("ore"), null);
+        copperOre = new Item("lotomation:copper_ore", "copper", Set.of("ore"), null);
+        hammer = new Item("lotomation:hammer", "steel", Set.of("tool"), null);
+        var result = new OutputItem(new ItemStack(new Item("lotomation:ingot")));
+
+        ironIngot =
+                Recipe.builder()
+                        .withInput(new InputItem(new ItemStack(ironOre, 2)))
+                        .withOutput(result)
+                        .build();
+        copperIngot =
+                Recipe.builder()
+                        .withInput(new InputItem(new ItemStack(copperOre, 1)))
+                        .withOutput(result)
+                        .build();
+        anyOre =
+                Recipe.builder()
+                        .withInput(
+                                new InputItem(
+                                        new ItemStack(
+                                                new Item("any", null, Set.of("ore", "gem"), null),
+                                                1),
+                                        TransformItem.CONSUME_ALL,
+                                        ItemMatchCondition.MATCH_ANY_TAGS))
+                        .withOutput(result)
+                        .build();
+        crushOre =
+                Recipe.builder()
+                        .withInput(
+                                new InputItem(
+                                        new ItemStack(new Item("any", "iron", null, null), 1),
+                                        TransformItem.CONSUME_ALL,
+                                        ItemMatchCondition.MATCH_MATERIAL))
+                        .and(
+                                new InputItem(
+                                        new ItemStack(hammer, 1),
+                                        TransformItem.REUSE,
+                                        ItemMatchCondition.MATCH_NAME))
+                        .withOutput(result)
+                        .build();
+        custom =
+                Recipe.builder()
+                        .withInput(
+                                new InputItem(
+                                        new ItemStack(hammer, 1),
+                                        TransformItem.REUSE,
+                                        (recipe, actual) -> actual.getCount() >= 5))
+                        .withOutput(result)
+                        .build();
+        power = Recipe.builder().withInput(new IngredientPower(10)).withOutput(result).build();
+
+        index =
+                new RecipeIndex(
+                        List.of(ironIngot, copperIngot, anyOre, crushOre, custom, power));
+    }
+
+    /** Test that candidates are narrowed down by the items that are present. */
+    @Test
+    void testCandidates() {
+        assertEquals(List.of(custom, power), index.getCandidates(List.of()));
+        assertEquals(
+                List.of(ironIngot, anyOre, custom, power),
+                index.getCandidates(List.of(new ItemStack(ironOre, 1))));
+        assertEquals(
+                List.of(ironIngot, anyOre, crushOre, custom, power),
+                index.getCandidates(
+                        List.of(new ItemStack(ironOre, 1), new ItemStack(hammer, 1))));
+    }
+
+    /** Test that amounts and match conditions are checked for the candidates. */
+    @Test
+    void testMatches() {
+        var matcher = new RecipeMatcher(index);
+
+        assertEquals(
+                List.of(anyOre, power), matcher.findMatches(List.of(new ItemStack(ironOre, 1))));
+        assertEquals(
+                List.of(ironIngot, anyOre, crushOre, power),
+                matcher.findMatches(
+                        List.of(new ItemStack(ironOre, 2), new ItemStack(hammer, 1))));
+        assertEquals(
+                List.of(copperIngot, anyOre, custom, power),
+                matcher.findMatches(
+                        List.of(new ItemStack(copperOre, 1), new ItemStack(hammer, 5))));
+    }
+
+    /** Test that each stack is only used towards one input. */
+    @Test
+    void testSharedStack() {
+        var twoOres =
+                Recipe.builder()
+                        .withInput(new InputItem(new ItemStack(ironOre, 1)))
+                        .and(new InputItem(new ItemStack(ironOre, 1)))
+                        .build();
+
+        assertFalse(RecipeMatcher.matches(twoOres, List.of(new ItemStack(ironOre, 1))));
+        assertTrue(RecipeMatcher.matches(twoOres, List.of(new ItemStack(ironOre, 2))));
+        assertTrue(
+                RecipeMatcher.matches(
+                        twoOres, List.of(new ItemStack(ironOre, 1), new ItemStack(ironOre, 1))));
+    }
+
+    /** Test that unchanged contents are answered from the cache. */
+    @Test
+    void testCache() {
+        var matcher = new RecipeMatcher(index);
+        List<ItemStack> contents = new ArrayList<>();
+        contents.add(new ItemStack(ironOre, 2));
+        contents.add(null);
+
+        var first = matcher.findMatches(contents);
+        var second = matcher.findMatches(List.of(new ItemStack(ironOre, 2)));
+        assertSame(first, second);
+        assertEquals(1, matcher.getHitCount());
+        assertEquals(1, matcher.getMissCount());
+
+        // Changing the contents after they were cached doesn't affect the cache
+        contents.get(0).setCount(1);
+        assertEquals(List.of(anyOre, power), matcher.findMatches(contents));
+        assertEquals(2, matcher.getMissCount());
+    }
+
+    /** Test that changing an item after its contents were cached doesn't change the cache. */
+    @Test
+    void testCacheItemChanged() {
+        var matcher = new RecipeMatcher(index);
+        var ore = new Item("lotomation:iron_ore", "iron", Set.of("ore"), null);
+        var contents = List.of(new ItemStack(ore, 2));
+
+        assertEquals(List.of(ironIngot, anyOre, power), matcher.findMatches(contents));
+        ore.setMaterial("copper");
+        ore.getTags().add("gem");
+        assertEquals(List.of(anyOre, power), matcher.findMatches(contents));
+        assertEquals(2, matcher.getMissCount());
+
+        // The first result is still cached for an item like the original
+        assertEquals(
+                List.of(ironIngot, anyOre, power),
+                matcher.findMatches(List.of(new ItemStack(ironOre, 2))));
+        assertEquals(1, matcher.getHitCount());
+    }
+
+    /** Test matching against an inventory. */
+    @Test
+    void testInventory() {
+        var inventory = new Inventory(4);
+        inventory.setItem(2, ironOre, 3);
+        var matcher = new RecipeMatcher(index);
+
+        assertEquals(List.of(ironIngot, anyOre, power), matcher.findMatches(inventory));
+    }
+}
@@ -117,6 +117,45 @@ class TestInventory {
         Assertions.assertTrue(inventory.isEmpty(1));
     }
 
+    /** Test that items go into the first slot that could take them, even in large inventories. */
+    @Test
+    void testAddItemOrder() {
+        Inventory inventory = new Inventory(500);
+        Item stackable = getUniqueItem();
+        for (int i = 0; i < 400; ++i) {
+            inventory.setItem(i, getUniqueItem(), 1);
+        }
+        inventory.setItem(450, stackable, 1);
+
+        // An empty slot before the existing stack is used first
+        inventory.clearSlot(10);
+        Assertions.assertTrue(inventory.addItem(stackable));
+        Assertions.assertEquals(1, inventory.getItemCount(10));
+        Assertions.assertTrue(inventory.addItem(stackable));
+        Assertions.assertEquals(2, inventory.getItemCount(10));
+
+        // Stacks are filled before empty slots when adding several
+        Assertions.assertTrue(inventory.addItem(stackable, 5));
+        Assertions.assertEquals(7, inventory.getItemCount(10));
+        Assertions.assertEquals(1, inventory.getItemCount(450));
+        Assertions.assertTrue(inventory.isEmpty(400));
+
+        inventory.setItem(10, stackable, ItemStack.MAX_STACK_SIZE);
+        Assertions.assertTrue(inventory.addItem(stackable));
+        Assertions.assertEquals(1, inventory.getItemCount(400));
+        Assertions.assertEquals(1, inventory.getItemCount(450));
+
+        // Moving stacks between inventories keeps track of where they are
+        Inventory other = new Inventory(2);
+        Inventory.swapSlots(inventory, 400, other, 1);
+        other.setItem(0, getUniqueItem(), 1);
+        Assertions.assertTrue(other.addItem(stackable));
+        Assertions.assertEquals(2, other.getItemCount(1));
+        Assertions.assertEquals(2, other.getTotalCount(stackable));
+        Assertions.assertTrue(inventory.addItem(stackable));
+        Assertions.assertEquals(1, inventory.getItemCount(400));
+    }
+
     /** Test the stack comparisons. */
     @Test
     void testIsSameType() {
@@ -457,6 +496,69 @@ class TestInventory {
         Assertions.assertEquals(999, inventory.getSize());
     }
 
+    /** Test counting items across all the slots. */
+    @Test
+    void testGetTotalCount() {
+        Inventory inventory = new Inventory(5);
+        Item stackable = getUniqueItem();
+        Item other = getUniqueItem();
+        Assertions.assertEquals(0, inventory.getTotalCount(stackable));
+
+        inventory.setItem(0, stackable, ItemStack.MAX_STACK_SIZE);
+        inventory.setItem(2, stackable, ItemStack.MAX_STACK_SIZE);
+        inventory.setItem(3, other, 4);
+        Assertions.assertEquals(2L * ItemStack.MAX_STACK_SIZE, inventory.getTotalCount(stackable));
+        Assertions.assertEquals(4, inventory.getTotalCount(other));
+
+        // Equal items count as the same type
+        var copy = stackable.toBuilder().build();
+        Assertions.assertEquals(2L * ItemStack.MAX_STACK_SIZE, inventory.getTotalCount(copy));
+
+        Assertions.assertTrue(inventory.splitStack(3, 1));
+        Assertions.assertEquals(4, inventory.getTotalCount(other));
+        Assertions.assertTrue(inventory.combineSlots(1, 3));
+        Assertions.assertEquals(4, inventory.getTotalCount(other));
+        inventory.swapSlots(0, 4);
+        inventory.clearSlot(2);
+        Assertions.assertEquals(ItemStack.MAX_STACK_SIZE, inventory.getTotalCount(stackable));
+        inventory.setItem(4, other, 1);
+        Assertions.assertEquals(0, inventory.getTotalCount(stackable));
+        Assertions.assertEquals(5, inventory.getTotalCount(other));
+    }
+
+    /** Test that changing an item after it is added to the inventory keeps the index correct. */
+    @Test
+    void testItemChangedInSlot() {
+        Inventory inventory = new Inventory(3);
+        Item original = getUniqueItem();
+        Item added = original.copy();
+        inventory.setItem(0, added, 5);
+        inventory.setItem(1, original, 3);
+
+        // The inventory hands out the item in the slot, which can be changed
+        Item changed = inventory.getItem(0).orElseThrow();
+        Assertions.assertSame(added, changed);
+        changed.setMaterial("lotomation:iron");
+        changed.getTags().add("lotomation:metal");
+
+        // New items are not merged into the changed stack
+        Assertions.assertTrue(inventory.addItem(original, 4));
+        Assertions.assertEquals(5, inventory.getItemCount(0));
+        Assertions.assertEquals(7, inventory.getItemCount(1));
+        Assertions.assertEquals(7, inventory.getTotalCount(original));
+        Assertions.assertEquals(5, inventory.getTotalCount(changed));
+
+        // Clearing the slot removes it from the index
+        inventory.clearSlot(0);
+        Assertions.assertEquals(0, inventory.getTotalCount(changed));
+        Assertions.assertEquals(7, inventory.getTotalCount(original));
+        Assertions.assertTrue(inventory.addItem(original.copy(), ItemStack.MAX_STACK_SIZE));
+        Assertions.assertEquals(ItemStack.MAX_STACK_SIZE, inventory.getItemCount(1));
+        Assertions.assertEquals(7, inventory.getItemCount(0));
+        Assertions.assertEquals(ItemStack.MAX_STACK_SIZE + 7L, inventory.getTotalCount(original));
+        Assertions.assertTrue(inventory.hasEmptySlot());
+    }
+
     /** Tests logic for checking empty slots. */
     @Test
     void testHasEmptySlot() {
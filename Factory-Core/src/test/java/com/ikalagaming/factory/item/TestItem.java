@@ -31,6 +31,22 @@ class TestItem {
         expectedKVT.addInteger("dirt_dirtiness", 100);
     }
 
+    @Test
+    void testCopy() {
+        var item = new Item(expectedName, expectedMaterial, expectedTags, expectedKVT);
+        var copy = item.copy();
+
+        assertEquals(item, copy);
+        assertNotSame(item.getTags(), copy.getTags());
+        assertNotSame(item.getKvt(), copy.getKvt());
+
+        copy.getTags().add("clean");
+        copy.getKvt().addInteger("dirt_color", 0);
+        assertEquals(expectedTags, item.getTags());
+        assertFalse(item.getKvt().hasChild("dirt_color"));
+        assertNotEquals(item, copy);
+    }
+
     @Test
     void testItemBuilder() {
         var result =
@@ -6,6 +6,7 @@ import com.ikalagaming.factory.crafting.InputItem;
 import com.ikalagaming.factory.crafting.ItemMatchCondition;
 import com.ikalagaming.factory.kvt.KVT;
 import com.ikalagaming.factory.kvt.Node;
+import com.ikalagaming.factory.registry.TagRegistry;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -49,6 +50,29 @@ class TestItemMatchCondition {
         assertFalse(matcher.matches(recipeItem, differentStack));
     }
 
+    @Test
+    void testDefaultMatch() {
+        var recipeItem = new InputItem(stack);
+        var matcher = ItemMatchCondition.DEFAULT;
+        assertTrue(matcher.matches(recipeItem, stack));
+
+        KVT moreKVT = new Node();
+        moreKVT.addInteger("damage", 100);
+        moreKVT.addInteger("durability", 5);
+        var extraData = expectedItem.toBuilder().kvt(moreKVT).build();
+        assertTrue(matcher.matches(recipeItem, new ItemStack(extraData)));
+
+        var noData = expectedItem.toBuilder().kvt(null).build();
+        assertFalse(matcher.matches(recipeItem, new ItemStack(noData)));
+        assertTrue(matcher.matches(new InputItem(new ItemStack(noData)), stack));
+
+        // Interned items match the same way
+        var table = new ItemTypes();
+        var internedStack = table.intern(stack);
+        assertTrue(matcher.matches(new InputItem(internedStack), internedStack));
+        assertFalse(matcher.matches(new InputItem(internedStack), new ItemStack(noData)));
+    }
+
     @Test
     void testMatchAllTags() {
         var expectedName = "lotomation:sword";
@@ -181,4 +205,34 @@ class TestItemMatchCondition {
         assertTrue(matcher.matches(recipeItem, stack));
         assertTrue(matcher.matches(recipeItem, differentStack));
     }
+
+    @Test
+    void testMatchTagHierarchy() {
+        var registry = new TagRegistry();
+        registry.addTag("metal");
+        registry.addTag("ingot", "metal");
+        registry.addTag("iron_ingot", "ingot");
+        registry.addTag("tool");
+        registry.freeze();
+
+        var recipeItem =
+                new InputItem(new ItemStack(new Item("any", null, Set.of("ingot", "tool"), null)));
+        var ironIngot =
+                new ItemStack(new Item("lotomation:iron_ingot", null, Set.of("iron_ingot"), null));
+        var ironHammer =
+                new ItemStack(
+                        new Item("lotomation:hammer", null, Set.of("iron_ingot", "tool"), null));
+        var metal = new ItemStack(new Item("lotomation:scrap", null, Set.of("metal"), null));
+
+        var any = ItemMatchCondition.matchAnyTags(registry);
+        assertTrue(any.matches(recipeItem, ironIngot));
+        assertTrue(any.matches(recipeItem, ironHammer));
+        // Having an ancestor of a tag is not enough
+        assertFalse(any.matches(recipeItem, metal));
+
+        var all = ItemMatchCondition.matchAllTags(registry);
+        assertFalse(all.matches(recipeItem, ironIngot));
+        assertTrue(all.matches(recipeItem, ironHammer));
+        assertFalse(all.matches(recipeItem, metal));
+    }
 }
@@ -0,0 +1,125 @@
+package com.ikalagaming.factory.item;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ikalagaming.factory.kvt.KVT;
+import com.ikalagaming.factory.kvt.Node;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Tests for interning item types.
+ *
+ * @author Ches Burks
+ */
+class TestItemTypes {
+    private ItemTypes types;
+    private KVT charge;
+
+    @BeforeEach
+    void setUp() {
+        types = new ItemTypes();
+        charge = new Node();
+        charge.addLong("charge", 1000);
+    }
+
+    /** Test that equal items share one interned copy and ID. */
+    @Test
+    void testIntern() {
+        var battery = new Item("lotomation:battery", "iron", Set.of("electronic"), charge);
+        var copy = battery.toBuilder().build();
+        var dirt = new Item("lotomation:dirt");
+
+        var first = types.intern(battery);
+        var second = types.intern(copy);
+        var third = types.intern(dirt);
+
+        assertSame(first, second);
+        assertNotSame(battery, first);
+        assertEquals(battery, first);
+        assertEquals(first, battery);
+        assertEquals(battery.hashCode(), first.hashCode());
+        assertSame(first, types.intern(first));
+
+        assertEquals(0, types.getId(first));
+        assertEquals(1, types.getId(third));
+        assertEquals(-1, types.getId(battery));
+        assertEquals(-1, types.getId(null));
+        assertEquals(-1, new ItemTypes().getId(first));
+        assertEquals(Optional.of(third), types.getItem(1));
+        assertTrue(types.getItem(2).isEmpty());
+        assertEquals(2, types.size());
+    }
+
+    /** Test that interned items are separate from the items they were made from. */
+    @Test
+    void testImmutable() {
+        var battery = new Item("lotomation:battery", "iron", Set.of("electronic"), charge);
+        var interned = types.intern(battery);
+
+        assertThrows(UnsupportedOperationException.class, () -> interned.getTags().add("metal"));
+        assertThrows(UnsupportedOperationException.class, () -> interned.setMaterial("copper"));
+        assertThrows(UnsupportedOperationException.class, () -> interned.setKvt(null));
+
+        battery.getTags().add("metal");
+        charge.addLong("charge", 5);
+        assertEquals(Set.of("electronic"), interned.getTags());
+        assertNotEquals(battery, interned);
+
+        var changed = interned.toBuilder().material("copper").build();
+        changed.getTags().add("metal");
+        assertEquals(Set.of("electronic"), interned.getTags());
+        assertNotSame(interned, types.intern(changed));
+    }
+
+    /** Test that changing the data fetched from an interned item doesn't change the type. */
+    @Test
+    void testImmutableKvt() {
+        var battery = new Item("lotomation:battery", "iron", Set.of("electronic"), charge);
+        var interned = types.intern(battery);
+        final int hash = interned.hashCode();
+
+        var kvt = interned.getKvt();
+        kvt.addLong("capacity", 5000);
+        assertNotSame(kvt, interned.getKvt());
+        assertFalse(interned.getKvt().hasChild("capacity"));
+        assertEquals(hash, interned.hashCode());
+        assertEquals(battery, interned);
+        assertTrue(Item.isSameType(battery, interned));
+
+        var built = interned.toBuilder().build();
+        assertSame(interned, types.intern(built));
+        built.getKvt().addLong("capacity", 5000);
+        assertFalse(interned.getKvt().hasChild("capacity"));
+        assertSame(interned, types.intern(battery));
+        assertEquals(1, types.size());
+    }
+
+    /** Test type comparisons with interned items. */
+    @Test
+    void testIsSameType() {
+        var battery = new Item("lotomation:battery", "iron", Set.of("electronic"), charge);
+        var plain = new Item("lotomation:battery", "iron", Set.of("electronic"), null);
+        var tagged = new Item("lotomation:battery", "iron", Set.of("metal"), charge);
+
+        var interned = types.intern(battery);
+        assertTrue(Item.isSameType(interned, battery));
+        assertTrue(Item.isSameType(interned, types.intern(battery)));
+        assertFalse(Item.isSameType(interned, types.intern(plain)));
+        assertFalse(Item.isSameType(interned, types.intern(tagged)));
+        assertFalse(Item.isSameType(battery, plain));
+        assertFalse(Item.isSameType(battery, tagged));
+        assertFalse(Item.isSameType(interned, null));
+
+        var stack = new ItemStack(battery, 5);
+        var internedStack = types.intern(stack);
+        assertSame(interned, internedStack.getItem());
+        assertEquals(5, internedStack.getCount());
+        assertSame(internedStack, types.intern(internedStack));
+        assertTrue(ItemStack.isSameType(stack, internedStack));
+    }
+}
@@ -0,0 +1,284 @@
+package com.ikalagaming.factory.machine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ikalagaming.factory.FactoryPlugin;
+import com.ikalagaming.factory.crafting.Recipe;
+import com.ikalagaming.localization.Localization;
+
+import lombok.NonNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Tests for advancing machines.
+ *
+ * @author Ches Burks
+ */
+class TestMachineSimulation {
+    /** The largest number of machines used in a test. */
+    private static final int MAX_MACHINES = 100_000;
+
+    /** A machine that takes items in and puts items out. */
+    private static final MachineDefinition FURNACE =
+            new MachineDefinition(List.of("test:furnace"), false, 0, true, false, 0, true);
+
+    /** A machine that takes fluids in and puts fluids out. */
+    private static final MachineDefinition MIXER =
+            new MachineDefinition(List.of("test:mixer"), false, 2, false, false, 1, false);
+
+    private static MockedStatic<FactoryPlugin> fakePlugin;
+
+    /**
+     * Tracks how many cycles worth of inputs and output room each machine has, and throws for
+     * machines that have a negative amount of inputs or room.
+     *
+     * @author Ches Burks
+     */
+    private static class FakeIO implements MachineSimulation.MachineIO {
+        /** The number of cycles worth of inputs available to each machine. */
+        private final AtomicIntegerArray inputs = new AtomicIntegerArray(MAX_MACHINES);
+
+        /** The number of cycles worth of outputs each machine has room for. */
+        private final AtomicIntegerArray room = new AtomicIntegerArray(MAX_MACHINES);
+
+        @Override
+        public boolean consumeInputs(int machine, @NonNull Recipe recipe) {
+            if (inputs.get(machine) < 0) {
+                throw new IllegalStateException("Expected failure");
+            }
+            if (inputs.get(machine) == 0) {
+                return false;
+            }
+            inputs.decrementAndGet(machine);
+            return true;
+        }
+
+        @Override
+        public boolean produceOutputs(int machine, @NonNull Recipe recipe) {
+            if (room.get(machine) < 0) {
+                throw new IllegalStateException("Expected failure");
+            }
+            if (room.get(machine) == 0) {
+                return false;
+            }
+            room.decrementAndGet(machine);
+            return true;
+        }
+    }
+
+    /** Set up before all the tests. */
+    @BeforeAll
+    static void setUpBeforeClass() {
+        var bundle =
+                ResourceBundle.getBundle(
+                        "com.ikalagaming.factory.strings", Localization.getLocale());
+
+        fakePlugin = Mockito.mockStatic(FactoryPlugin.class);
+        fakePlugin.when(FactoryPlugin::getResourceBundle).thenReturn(bundle);
+    }
+
+    /** Tear down after all the tests. */
+    @AfterAll
+    static void tearDownAfterClass() {
+        fakePlugin.close();
+    }
+
+    /**
+     * Create a recipe that only takes time.
+     *
+     * @param time The time in ticks.
+     * @return The recipe.
+     */
+    private static Recipe recipe(long time) {
+        return Recipe.builder().withTime(time).build();
+    }
+
+    /** Test that machines run cycles until they run out of inputs. */
+    @Test
+    void testCycles() {
+        var io = new FakeIO();
+        try (var simulation = new MachineSimulation(io, 1)) {
+            final int machine = simulation.add(FURNACE, TestMachineSimulation.recipe(3));
+            io.inputs.set(machine, 2);
+            io.room.set(machine, 10);
+
+            assertEquals(0, simulation.tick());
+            assertEquals(MachineState.RUNNING, simulation.getState(machine));
+            assertEquals(3, simulation.getRemainingTicks(machine));
+            assertEquals(1, io.inputs.get(machine));
+
+            assertEquals(0, simulation.tick());
+            assertEquals(0, simulation.tick());
+            assertEquals(1, simulation.tick());
+            assertEquals(0, io.inputs.get(machine));
+            assertEquals(9, io.room.get(machine));
+
+            assertEquals(0, simulation.tick());
+            assertEquals(0, simulation.tick());
+            assertEquals(1, simulation.tick());
+            assertEquals(MachineState.IDLE, simulation.getState(machine));
+            assertEquals(0, simulation.getActiveCount());
+
+            // Sleeping machines are left alone until woken
+            io.inputs.set(machine, 1);
+            assertEquals(0, simulation.tick());
+            assertEquals(1, io.inputs.get(machine));
+            simulation.wake(machine);
+            simulation.tick();
+            assertEquals(MachineState.RUNNING, simulation.getState(machine));
+            assertEquals(0, io.inputs.get(machine));
+        }
+    }
+
+    /** Test that machines without room for their outputs wait until they are woken. */
+    @Test
+    void testBlocked() {
+        var io = new FakeIO();
+        try (var simulation = new MachineSimulation(io, 1)) {
+            final int machine = simulation.add(FURNACE, TestMachineSimulation.recipe(1));
+            io.inputs.set(machine, 5);
+
+            simulation.tick();
+            assertEquals(0, simulation.tick());
+            assertEquals(MachineState.BLOCKED, simulation.getState(machine));
+            assertEquals(4, io.inputs.get(machine));
+
+            io.room.set(machine, 1);
+            simulation.wake(machine);
+            assertEquals(1, simulation.tick());
+            assertEquals(MachineState.RUNNING, simulation.getState(machine));
+            assertEquals(3, io.inputs.get(machine));
+
+            assertEquals(0, simulation.tick());
+            assertEquals(MachineState.BLOCKED, simulation.getState(machine));
+        }
+    }
+
+    /** Test changing recipes, including to no recipe at all. */
+    @Test
+    void testSetRecipe() {
+        var io = new FakeIO();
+        try (var simulation = new MachineSimulation(io, 1)) {
+            final int machine = simulation.add(FURNACE, null);
+            io.inputs.set(machine, 5);
+            simulation.tick();
+            assertEquals(MachineState.IDLE, simulation.getState(machine));
+            assertEquals(5, io.inputs.get(machine));
+
+            var recipe = TestMachineSimulation.recipe(10);
+            simulation.setRecipe(machine, recipe);
+            assertSame(recipe, simulation.getRecipe(machine));
+            simulation.tick();
+            assertEquals(MachineState.RUNNING, simulation.getState(machine));
+            assertEquals(10, simulation.getRemainingTicks(machine));
+
+            simulation.setRecipe(machine, null);
+            simulation.tick();
+            assertEquals(MachineState.IDLE, simulation.getState(machine));
+            assertEquals(0, simulation.getActiveCount());
+        }
+    }
+
+    /** Test that removed machines stop running and their IDs are reused. */
+    @Test
+    void testRemove() {
+        var io = new FakeIO();
+        try (var simulation = new MachineSimulation(io, 1)) {
+            final int first = simulation.add(FURNACE, TestMachineSimulation.recipe(1));
+            final int second = simulation.add(MIXER, TestMachineSimulation.recipe(1));
+            final int third = simulation.add(FURNACE, TestMachineSimulation.recipe(1));
+            for (int machine : new int[] {first, second, third}) {
+                io.inputs.set(machine, 100);
+                io.room.set(machine, 100);
+            }
+            simulation.tick();
+            assertEquals(3, simulation.getActiveCount());
+            assertEquals(MIXER, simulation.getDefinition(second));
+
+            simulation.remove(first);
+            assertEquals(2, simulation.getMachineCount());
+            assertThrows(IllegalArgumentException.class, () -> simulation.getState(first));
+            assertEquals(2, simulation.tick());
+            assertEquals(99, io.inputs.get(first));
+            assertEquals(98, io.inputs.get(third));
+
+            final int reused = simulation.add(MIXER, null);
+            assertEquals(first, reused);
+            assertEquals(MIXER, simulation.getDefinition(reused));
+            assertEquals(3, simulation.getMachineCount());
+        }
+    }
+
+    /** Test that a failing cycle puts just that machine to sleep. */
+    @Test
+    void testFailure() {
+        var io = new FakeIO();
+        try (var simulation = new MachineSimulation(io, 1)) {
+            final int broken = simulation.add(FURNACE, TestMachineSimulation.recipe(1));
+            final int working = simulation.add(FURNACE, TestMachineSimulation.recipe(1));
+            io.inputs.set(broken, -1);
+            io.inputs.set(working, 1);
+
+            simulation.tick();
+            assertEquals(MachineState.IDLE, simulation.getState(broken));
+            assertEquals(MachineState.RUNNING, simulation.getState(working));
+        }
+    }
+
+    /** Test that outputs which fail to be produced are tried again once the machine wakes. */
+    @Test
+    void testOutputFailure() {
+        var io = new FakeIO();
+        try (var simulation = new MachineSimulation(io, 1)) {
+            final int machine = simulation.add(FURNACE, TestMachineSimulation.recipe(1));
+            io.inputs.set(machine, 2);
+            io.room.set(machine, -1);
+
+            simulation.tick();
+            assertEquals(0, simulation.tick());
+            assertEquals(MachineState.BLOCKED, simulation.getState(machine));
+            assertEquals(1, io.inputs.get(machine));
+
+            io.room.set(machine, 1);
+            simulation.wake(machine);
+            assertEquals(1, simulation.tick());
+            assertEquals(0, io.room.get(machine));
+            assertEquals(MachineState.RUNNING, simulation.getState(machine));
+            assertEquals(0, io.inputs.get(machine));
+        }
+    }
+
+    /** Test that lots of machines in several batches all advance together. */
+    @Test
+    void testManyMachines() {
+        var io = new FakeIO();
+        try (var simulation = new MachineSimulation(io, 4)) {
+            var recipe = TestMachineSimulation.recipe(2);
+            for (int i = 0; i < MAX_MACHINES; ++i) {
+                final int machine = simulation.add(i % 3 == 0 ? MIXER : FURNACE, recipe);
+                io.inputs.set(machine, 1);
+                io.room.set(machine, 1);
+            }
+            assertTrue(MAX_MACHINES > 2 * MachineSimulation.BATCH_SIZE);
+
+            assertEquals(0, simulation.tick());
+            assertEquals(MAX_MACHINES, simulation.getActiveCount());
+            assertEquals(0, simulation.tick());
+            assertEquals(MAX_MACHINES, simulation.tick());
+            assertEquals(0, simulation.getActiveCount());
+            for (int i = 0; i < MAX_MACHINES; ++i) {
+                assertEquals(MachineState.IDLE, simulation.getState(i));
+                assertEquals(0, io.inputs.get(i));
+                assertEquals(0, io.room.get(i));
+            }
+        }
+    }
+}
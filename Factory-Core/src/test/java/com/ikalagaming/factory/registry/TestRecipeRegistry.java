@@ -203,4 +203,24 @@ class TestRecipeRegistry {
         assertTrue(result.contains(expectedRecipe));
         assertTrue(result.contains(secondRecipe));
     }
+
+    @Test
+    void testFreeze() {
+        var machine = "lotomation:forge";
+        registry.add(machine, expectedRecipe);
+        assertFalse(registry.isFrozen());
+        assertTrue(registry.findIndex(machine).isEmpty());
+
+        registry.freeze();
+        registry.add(machine, secondRecipe);
+        registry.add("lotomation:furnace", secondRecipe);
+
+        assertTrue(registry.isFrozen());
+        assertEquals(List.of(expectedRecipe), registry.find(machine).get());
+        assertFalse(registry.containsKey("lotomation:furnace"));
+        var index = registry.findIndex(machine);
+        assertTrue(index.isPresent());
+        assertEquals(List.of(expectedRecipe), index.get().getRecipes());
+        assertTrue(registry.findIndex("lotomation:furnace").isEmpty());
+    }
 }
@@ -14,5 +14,6 @@ class TestRegistries {
         assertNotNull(registries.getMaterialRegistry());
         assertNotNull(registries.getItemRegistry());
         assertNotNull(registries.getBlockRegistry());
+        assertNotNull(registries.getItemTypes());
     }
 }
@@ -1,6 +1,7 @@
 package com.ikalagaming.factory.registry;
 
 import com.ikalagaming.factory.FactoryPlugin;
+import com.ikalagaming.factory.item.Item;
 import com.ikalagaming.factory.world.Tag;
 import com.ikalagaming.localization.Localization;
 
@@ -8,8 +9,10 @@ import org.junit.jupiter.api.*;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 /**
  * Tests for the world.
@@ -81,4 +84,94 @@ class TestTagRegistry {
         Assertions.assertEquals(childName, maybeSludge.get().name());
         Assertions.assertEquals(maybeLiquid.get(), maybeSludge.get().parent());
     }
+
+    /** Test assigning IDs and working out ancestors when freezing. */
+    @Test
+    void testFreeze() {
+        Assertions.assertTrue(tagRegistry.addTag("metal"));
+        Assertions.assertTrue(tagRegistry.addTag("ingot", "metal"));
+        Assertions.assertTrue(tagRegistry.addTag("iron_ingot", "ingot"));
+        Assertions.assertTrue(tagRegistry.addTag("tool"));
+        Assertions.assertEquals(-1, tagRegistry.getTagId("metal"));
+
+        tagRegistry.freeze();
+        Assertions.assertTrue(tagRegistry.isFrozen());
+        Assertions.assertFalse(tagRegistry.addTag("late"));
+        Assertions.assertFalse(tagRegistry.containsKey("late"));
+
+        // IDs are assigned in name order
+        final int ingot = tagRegistry.getTagId("ingot");
+        final int ironIngot = tagRegistry.getTagId("iron_ingot");
+        final int metal = tagRegistry.getTagId("metal");
+        final int tool = tagRegistry.getTagId("tool");
+        Assertions.assertEquals(0, ingot);
+        Assertions.assertEquals(1, ironIngot);
+        Assertions.assertEquals(2, metal);
+        Assertions.assertEquals(3, tool);
+        Assertions.assertEquals(-1, tagRegistry.getTagId("late"));
+        Assertions.assertEquals(Optional.of("metal"), tagRegistry.getTagName(metal));
+        Assertions.assertTrue(tagRegistry.getTagName(4).isEmpty());
+
+        var ancestry = tagRegistry.getAncestry("iron_ingot");
+        Assertions.assertEquals(3, ancestry.size());
+        Assertions.assertTrue(ancestry.contains(ingot));
+        Assertions.assertTrue(ancestry.contains(ironIngot));
+        Assertions.assertTrue(ancestry.contains(metal));
+        Assertions.assertFalse(ancestry.contains(tool));
+
+        var closure = tagRegistry.closureOf(List.of("ingot", "tool", "late"));
+        Assertions.assertEquals(3, closure.size());
+        Assertions.assertFalse(closure.contains(ironIngot));
+        var exact = tagRegistry.exactSetOf(List.of("ingot", "tool", "late"));
+        Assertions.assertEquals(2, exact.size());
+        Assertions.assertFalse(exact.contains(metal));
+    }
+
+    /** Test checking if items have tags, including through descendant tags. */
+    @Test
+    void testHasTag() {
+        tagRegistry.addTag("metal");
+        tagRegistry.addTag("ingot", "metal");
+        tagRegistry.addTag("iron_ingot", "ingot");
+        var item = new Item("lotomation:iron_ingot", "iron", Set.of("iron_ingot"), null);
+
+        // Nothing is known before freezing
+        Assertions.assertFalse(tagRegistry.hasTag(item, "metal"));
+        tagRegistry.freeze();
+
+        Assertions.assertTrue(tagRegistry.hasTag(item, "iron_ingot"));
+        Assertions.assertTrue(tagRegistry.hasTag(item, "ingot"));
+        Assertions.assertTrue(tagRegistry.hasTag(item, "metal"));
+        Assertions.assertFalse(tagRegistry.hasTag(item, "tool"));
+
+        // Changing the tags of the item is noticed
+        item.getTags().remove("iron_ingot");
+        Assertions.assertFalse(tagRegistry.hasTag(item, "metal"));
+    }
+
+    /** Test that changing tags is noticed even when the old and new tags have the same hash. */
+    @Test
+    void testHasTagCollidingNames() {
+        // "Aa" and "BB" have the same hash code
+        Assertions.assertEquals("Aa".hashCode(), "BB".hashCode());
+        tagRegistry.addTag("first");
+        tagRegistry.addTag("second");
+        tagRegistry.addTag("Aa", "first");
+        tagRegistry.addTag("BB", "second");
+        tagRegistry.freeze();
+        var item = new Item("lotomation:test", null, Set.of("Aa"), null);
+
+        Assertions.assertTrue(tagRegistry.hasTag(item, "first"));
+        Assertions.assertFalse(tagRegistry.hasTag(item, "second"));
+
+        item.getTags().remove("Aa");
+        item.getTags().add("BB");
+        Assertions.assertFalse(tagRegistry.hasTag(item, "first"));
+        Assertions.assertTrue(tagRegistry.hasTag(item, "second"));
+
+        var iterator = item.getTags().iterator();
+        iterator.next();
+        iterator.remove();
+        Assertions.assertFalse(tagRegistry.hasTag(item, "second"));
+    }
 }
@@ -0,0 +1,97 @@
+package com.ikalagaming.factory.world;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ikalagaming.factory.kvt.KVT;
+import com.ikalagaming.factory.kvt.Node;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests for the global block state IDs.
+ *
+ * @author Ches Burks
+ */
+class TestBlockStates {
+
+    /** Test that empty space always has the same ID. */
+    @Test
+    void testEmpty() {
+        assertEquals(BlockStates.EMPTY, BlockStates.getId((Block) null));
+        assertNull(BlockStates.getBlock(BlockStates.EMPTY));
+    }
+
+    /** Test that equal blocks share an ID and a single block instance. */
+    @Test
+    void testSharedBlocks() {
+        final int stone = BlockStates.getId(new Block("test:states_stone", null));
+        final int dirt = BlockStates.getId("test:states_dirt");
+
+        assertNotEquals(BlockStates.EMPTY, stone);
+        assertNotEquals(stone, dirt);
+        assertEquals(stone, BlockStates.getId(new Block("test:states_stone", null)));
+        assertEquals(stone, BlockStates.getId("test:states_stone"));
+        assertEquals(dirt, BlockStates.getId(new Block("test:states_dirt", null)));
+        assertSame(BlockStates.getBlock(stone), BlockStates.getBlock(stone));
+        assertEquals("test:states_dirt", BlockStates.getBlock(dirt).getName());
+    }
+
+    /** Test that blocks with different state data get different IDs. */
+    @Test
+    void testStateData() {
+        KVT north = new Node();
+        north.addString("facing", "north");
+        KVT east = new Node();
+        east.addString("facing", "east");
+
+        final int plain = BlockStates.getId("test:states_conveyor");
+        final int facingNorth = BlockStates.getId(new Block("test:states_conveyor", north));
+        final int facingEast = BlockStates.getId(new Block("test:states_conveyor", east));
+
+        assertNotEquals(plain, facingNorth);
+        assertNotEquals(facingNorth, facingEast);
+        assertEquals(north, BlockStates.getBlock(facingNorth).getData());
+        assertNull(BlockStates.getBlock(plain).getData());
+    }
+
+    /**
+     * Test that threads registering the same blocks at once all get the same IDs.
+     *
+     * @throws Exception If a thread fails.
+     */
+    @Test
+    void testConcurrentRegistration() throws Exception {
+        final int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                results.add(
+                        executor.submit(
+                                () -> {
+                                    int[] ids = new int[100];
+                                    for (int j = 0; j < ids.length; ++j) {
+                                        ids[j] = BlockStates.getId("test:states_concurrent" + j);
+                                    }
+                                    return ids;
+                                }));
+            }
+            int[] expected = results.get(0).get();
+            for (var result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+            for (int j = 0; j < expected.length; ++j) {
+                assertEquals(
+                        "test:states_concurrent" + j, BlockStates.getBlock(expected[j]).getName());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.ikalagaming.factory.world;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for running scheduled block updates.
+ *
+ * @author Ches Burks
+ */
+class TestBlockTickScheduler {
+    /** The width of a region in blocks. */
+    private static final int REGION_BLOCKS = WorldSave.REGION_WIDTH * World.CHUNK_WIDTH;
+
+    /** The ticks that have run, in the order they ran. */
+    private final List<ScheduledTick> ran = Collections.synchronizedList(new ArrayList<>());
+
+    /** Test that ticks run on the tick they are due, in the order they were scheduled. */
+    @Test
+    void testOrder() {
+        try (var scheduler = new BlockTickScheduler(ran::add, 1)) {
+            assertTrue(scheduler.schedule(1, 0, 0, 5, 3));
+            assertTrue(scheduler.schedule(2, 0, 0, 5, 1));
+            assertTrue(scheduler.schedule(3, 0, 0, 5, 3));
+            assertEquals(3, scheduler.getScheduledCount());
+
+            assertEquals(1, scheduler.tick());
+            assertEquals(2, ran.get(0).x());
+            assertEquals(0, scheduler.tick());
+            assertEquals(2, scheduler.tick());
+            assertEquals(1, ran.get(1).x());
+            assertEquals(3, ran.get(2).x());
+            assertEquals(3, ran.get(2).tick());
+            assertEquals(0, scheduler.getScheduledCount());
+        }
+    }
+
+    /** Test that scheduling the same tick twice only runs it once. */
+    @Test
+    void testDuplicates() {
+        try (var scheduler = new BlockTickScheduler(ran::add, 1)) {
+            assertTrue(scheduler.schedule(1, 2, 3, 5, 2));
+            assertFalse(scheduler.schedule(1, 2, 3, 5, 2));
+            // A different state or time is a different tick
+            assertTrue(scheduler.schedule(1, 2, 3, 6, 2));
+            assertTrue(scheduler.schedule(1, 2, 3, 5, 4));
+
+            scheduler.tick();
+            scheduler.tick();
+            assertEquals(2, ran.size());
+            // Once it has run, it can be scheduled again
+            assertTrue(scheduler.schedule(1, 2, 3, 5, 1));
+        }
+    }
+
+    /** Test that ticks scheduled while ticks are running are due on a later tick. */
+    @Test
+    void testRescheduling() {
+        AtomicInteger count = new AtomicInteger();
+        BlockTickScheduler[] holder = new BlockTickScheduler[1];
+        try (var scheduler =
+                new BlockTickScheduler(
+                        tick -> {
+                            count.incrementAndGet();
+                            holder[0].schedule(tick.x(), tick.y(), tick.z(), tick.state(), 0);
+                        },
+                        2)) {
+            holder[0] = scheduler;
+            scheduler.schedule(0, 0, 0, 1, 1);
+            for (int i = 0; i < 5; ++i) {
+                assertEquals(1, scheduler.tick());
+            }
+            assertEquals(5, count.get());
+            assertEquals(1, scheduler.getScheduledCount());
+        }
+    }
+
+    /** Test that ticks in many regions all run, and a failing tick doesn't stop the rest. */
+    @Test
+    void testManyRegions() {
+        AtomicInteger count = new AtomicInteger();
+        try (var scheduler =
+                new BlockTickScheduler(
+                        tick -> {
+                            count.incrementAndGet();
+                            if (tick.state() == 0) {
+                                throw new IllegalStateException("Expected failure");
+                            }
+                        },
+                        4)) {
+            for (int regionX = -3; regionX < 3; ++regionX) {
+                for (int regionZ = -3; regionZ < 3; ++regionZ) {
+                    final int x = regionX * REGION_BLOCKS + 7;
+                    final int z = regionZ * REGION_BLOCKS + 9;
+                    scheduler.schedule(x, 0, z, 0, 1);
+                    scheduler.schedule(x, 1, z, 1, 1);
+                }
+            }
+            assertEquals(72, scheduler.tick());
+            assertEquals(72, count.get());
+            assertEquals(0, scheduler.getScheduledCount());
+        }
+    }
+
+    /** Test that ticks outside the world are rejected. */
+    @Test
+    void testOutsideWorld() {
+        try (var scheduler = new BlockTickScheduler(ran::add, 1)) {
+            assertFalse(scheduler.schedule(0, World.WORLD_HEIGHT_MIN - 1, 0, 1, 1));
+            assertFalse(
+                    scheduler.schedule(
+                            0, World.WORLD_HEIGHT_MIN + World.WORLD_HEIGHT_TOTAL, 0, 1, 1));
+            assertEquals(0, scheduler.getScheduledCount());
+        }
+    }
+
+    /**
+     * Test that ticks are saved with their chunk, and keep the same block and delay when loaded
+     * again, even if block state IDs were assigned differently in between.
+     *
+     * @throws IOException If the chunk can't be written or read, which should not happen.
+     */
+    @Test
+    void testPersistence() throws IOException {
+        final int chunkX = -3;
+        final int chunkZ = 2;
+        final int x = chunkX * World.CHUNK_WIDTH + 4;
+        final int z = chunkZ * World.CHUNK_WIDTH + 11;
+        var lever = new Block("test:lever", null);
+        var piston = new Block("test:piston", null);
+        var chunk = new Chunk();
+
+        BlockStates.purge();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (var scheduler = new BlockTickScheduler(ran::add, 1)) {
+            scheduler.schedule(x, -20, z, BlockStates.getId(lever), 5);
+            scheduler.schedule(x + 1, 30, z, BlockStates.getId(piston), 5);
+            // In a different chunk, so it stays scheduled
+            scheduler.schedule(x + World.CHUNK_WIDTH, 0, z, BlockStates.getId(lever), 5);
+            scheduler.tick();
+
+            scheduler.unloadChunk(chunkX, chunkZ, chunk);
+            assertTrue(chunk.isDirty());
+            assertEquals(2, chunk.getScheduledTicks().size());
+            assertEquals(1, scheduler.getScheduledCount());
+            chunk.write(new DataOutputStream(bytes));
+        }
+
+        // Assign IDs in a different order, as if the game had restarted
+        BlockStates.purge();
+        BlockStates.getId(new Block("test:other", null));
+        BlockStates.getId(piston);
+        var loaded = Chunk.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(2, loaded.getScheduledTicks().size());
+        try (var scheduler = new BlockTickScheduler(ran::add, 1)) {
+            scheduler.loadChunk(chunkX, chunkZ, loaded);
+            assertTrue(loaded.getScheduledTicks().isEmpty());
+            // The saved copy still has the ticks, so it has to be written again
+            assertTrue(loaded.isDirty());
+            assertEquals(2, scheduler.getScheduledCount());
+
+            for (int i = 0; i < 3; ++i) {
+                assertEquals(0, scheduler.tick());
+            }
+            assertEquals(2, scheduler.tick());
+            assertEquals(
+                    new ScheduledTick(x, -20, z, BlockStates.getId(lever), 4), ran.get(0));
+            assertEquals(
+                    new ScheduledTick(x + 1, 30, z, BlockStates.getId(piston), 4), ran.get(1));
+            assertEquals(lever, BlockStates.getBlock(ran.get(0).state()));
+            assertEquals(piston, BlockStates.getBlock(ran.get(1).state()));
+        } finally {
+            BlockStates.purge();
+        }
+    }
+}
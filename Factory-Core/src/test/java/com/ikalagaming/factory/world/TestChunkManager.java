@@ -0,0 +1,260 @@
+package com.ikalagaming.factory.world;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for keeping track of loaded chunks.
+ *
+ * @author Ches Burks
+ */
+class TestChunkManager {
+    @TempDir Path directory;
+
+    /** The block that every generated chunk has at the origin. */
+    private static final Block STONE = new Block("test:stone", null);
+
+    /** Counts the number of chunks that have been generated. */
+    private final AtomicInteger generated = new AtomicInteger();
+
+    private WorldSave save;
+
+    /**
+     * Generate a chunk with stone at the origin.
+     *
+     * @param chunkX The chunk x coordinate.
+     * @param chunkZ The chunk z coordinate.
+     * @return The generated chunk.
+     */
+    private CompletableFuture<Chunk> generate(int chunkX, int chunkZ) {
+        generated.incrementAndGet();
+        var chunk = new Chunk();
+        chunk.setBlock(0, 0, 0, STONE);
+        return CompletableFuture.completedFuture(chunk);
+    }
+
+    /**
+     * Open the save.
+     *
+     * @throws IOException If the save directory can't be created.
+     */
+    @BeforeEach
+    void setup() throws IOException {
+        save = new WorldSave(directory);
+    }
+
+    /** Close the save. */
+    @AfterEach
+    void tearDown() {
+        save.close();
+    }
+
+    /** Test that requesting a loaded chunk again reuses it. */
+    @Test
+    void testHitsAndMisses() {
+        try (var manager = new ChunkManager(save, this::generate, 4)) {
+            var first = manager.getChunk(1, 2).join();
+            var second = manager.getChunk(1, 2).join();
+
+            assertSame(first, second);
+            assertEquals(1, generated.get());
+            assertEquals(1, manager.getMissCount());
+            assertEquals(1, manager.getHitCount());
+            assertEquals(first, manager.getLoadedChunk(1, 2).orElseThrow());
+            assertTrue(manager.getLoadedChunk(2, 1).isEmpty());
+        }
+    }
+
+    /**
+     * Test that the least recently used chunks are unloaded, saved, and read back later.
+     *
+     * @throws IOException If the saved chunk can't be read.
+     */
+    @Test
+    void testEviction() throws IOException {
+        try (var manager = new ChunkManager(save, this::generate, 2)) {
+            manager.getChunk(0, 0).join().setBlock(1, 0, 0, STONE);
+            manager.getChunk(1, 0).join();
+            manager.getChunk(0, 0).join();
+            manager.getChunk(2, 0).join();
+
+            // Chunk (1, 0) was the least recently used
+            assertEquals(1, manager.getEvictionCount());
+            assertEquals(2, manager.getCachedCount());
+            assertTrue(manager.getLoadedChunk(1, 0).isEmpty());
+
+            manager.setMaxCachedChunks(0);
+            assertEquals(3, manager.getEvictionCount());
+            assertEquals(0, manager.getLoadedCount());
+            manager.saveAll();
+            assertTrue(save.loadChunk(0, 0).isPresent());
+
+            var reloaded = manager.getChunk(0, 0).join();
+            assertEquals(3, generated.get());
+            assertEquals(STONE, reloaded.getBlock(1, 0, 0));
+            assertFalse(reloaded.isDirty());
+        }
+    }
+
+    /** Test that chunks with tickets are never evicted, and are cached once released. */
+    @Test
+    void testTickets() {
+        try (var manager = new ChunkManager(save, this::generate, 1)) {
+            manager.addTicket(5, 5, TicketType.PLAYER).join();
+            manager.addTicket(5, 5, TicketType.PLAYER).join();
+            manager.addTicket(5, 5, TicketType.MACHINE).join();
+            assertEquals(2, manager.getTicketCount(5, 5, TicketType.PLAYER));
+            assertEquals(0, manager.getTicketCount(5, 5, TicketType.SPAWN));
+
+            for (int x = 0; x < 4; ++x) {
+                manager.getChunk(x, 0).join();
+            }
+            assertTrue(manager.getLoadedChunk(5, 5).isPresent());
+            assertEquals(2, manager.getLoadedCount());
+
+            assertFalse(manager.removeTicket(5, 5, TicketType.SPAWN));
+            assertTrue(manager.removeTicket(5, 5, TicketType.PLAYER));
+            assertTrue(manager.removeTicket(5, 5, TicketType.PLAYER));
+            assertTrue(manager.getLoadedChunk(5, 5).isPresent());
+
+            assertTrue(manager.removeTicket(5, 5, TicketType.MACHINE));
+            assertEquals(1, manager.getCachedCount());
+            assertTrue(manager.getLoadedChunk(3, 0).isEmpty());
+            assertTrue(manager.getLoadedChunk(5, 5).isPresent());
+        }
+    }
+
+    /** Test that modified chunks are saved when the manager is closed. */
+    @Test
+    void testSaveOnClose() {
+        try (var manager = new ChunkManager(save, this::generate, 4)) {
+            manager.addTicket(0, 0, TicketType.SPAWN).join().setBlock(8, 8, 8, STONE);
+        }
+        try (var manager = new ChunkManager(save, this::generate, 4)) {
+            var chunk = manager.getChunk(0, 0).join();
+            assertEquals(STONE, chunk.getBlock(8, 8, 8));
+            assertEquals(1, generated.get());
+            assertThrows(IllegalStateException.class, () -> closeAndUse(manager));
+        }
+    }
+
+    /**
+     * Close a manager and then try to use it.
+     *
+     * @param manager The manager.
+     */
+    private static void closeAndUse(ChunkManager manager) {
+        manager.close();
+        manager.getChunk(0, 0);
+    }
+
+    /** Test that failed loads are forgotten so that they can be tried again. */
+    @Test
+    void testFailedLoad() {
+        ChunkManager.Generator failing =
+                (chunkX, chunkZ) -> CompletableFuture.failedFuture(new IllegalStateException());
+        try (var manager = new ChunkManager(save, failing, 4)) {
+            assertThrows(CompletionException.class, () -> manager.getChunk(0, 0).join());
+            assertEquals(0, manager.getLoadedCount());
+            assertEquals(0, manager.getCachedCount());
+        }
+    }
+
+    /**
+     * Test that a chunk that can't be read fails to load, rather than being generated again and
+     * overwriting the saved data.
+     *
+     * @throws IOException If the region file can't be read or written.
+     */
+    @Test
+    void testCorruptChunk() throws IOException {
+        try (var manager = new ChunkManager(save, this::generate, 4)) {
+            manager.getChunk(0, 0).join();
+        }
+        save.close();
+        generated.set(0);
+
+        // Replace the compression type of the only chunk with one that does not exist
+        Path regionPath = directory.resolve("r.0.0.region");
+        try (var file =
+                FileChannel.open(regionPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer location = ByteBuffer.allocate(Integer.BYTES);
+            file.read(location, 0);
+            final long position = (long) (location.flip().getInt() >>> 8) * RegionFile.SECTOR_SIZE;
+            file.write(ByteBuffer.wrap(new byte[] {Byte.MAX_VALUE}), position + Integer.BYTES);
+        }
+        final byte[] corrupt = Files.readAllBytes(regionPath);
+
+        save = new WorldSave(directory);
+        try (var manager = new ChunkManager(save, this::generate, 4)) {
+            var thrown =
+                    assertThrows(CompletionException.class, () -> manager.getChunk(0, 0).join());
+            assertInstanceOf(UncheckedIOException.class, thrown.getCause());
+            assertEquals(0, generated.get());
+            assertEquals(0, manager.getLoadedCount());
+        }
+        save.close();
+        assertArrayEquals(corrupt, Files.readAllBytes(regionPath));
+    }
+
+    /** Test that scheduled ticks are stored in chunks when they unload, and scheduled on load. */
+    @Test
+    void testScheduledTicks() {
+        try (var scheduler = new BlockTickScheduler(tick -> {}, 1)) {
+            try (var manager = new ChunkManager(save, this::generate, scheduler, 1)) {
+                manager.getChunk(0, 0).join();
+                assertTrue(scheduler.schedule(1, 0, 2, BlockStates.getId(STONE), 5));
+
+                manager.getChunk(1, 0).join();
+                manager.saveAll();
+                assertEquals(0, scheduler.getScheduledCount());
+
+                manager.getChunk(0, 0).join();
+                assertEquals(1, scheduler.getScheduledCount());
+            }
+            assertEquals(0, scheduler.getScheduledCount());
+
+            try (var manager = new ChunkManager(save, this::generate, scheduler, 1)) {
+                var chunk = manager.getChunk(0, 0).join();
+                assertEquals(1, scheduler.getScheduledCount());
+                assertTrue(chunk.getScheduledTicks().isEmpty());
+            }
+        }
+    }
+
+    /** Test that ticks which ran after their chunk was loaded are not loaded again later. */
+    @Test
+    void testFinishedTicksNotReloaded() {
+        try (var scheduler = new BlockTickScheduler(tick -> {}, 1)) {
+            try (var manager = new ChunkManager(save, this::generate, scheduler, 1)) {
+                manager.getChunk(0, 0).join();
+                assertTrue(scheduler.schedule(1, 0, 2, BlockStates.getId(STONE), 1));
+            }
+            try (var manager = new ChunkManager(save, this::generate, scheduler, 1)) {
+                manager.getChunk(0, 0).join();
+                assertEquals(1, scheduler.getScheduledCount());
+                assertEquals(1, scheduler.tick());
+                assertEquals(0, scheduler.getScheduledCount());
+            }
+            try (var manager = new ChunkManager(save, this::generate, scheduler, 1)) {
+                manager.getChunk(0, 0).join();
+                assertEquals(0, scheduler.getScheduledCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.ikalagaming.factory.world;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ikalagaming.factory.kvt.KVT;
+import com.ikalagaming.factory.kvt.Node;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Tests for region files.
+ *
+ * @author Ches Burks
+ */
+class TestRegionFile {
+    @TempDir Path directory;
+
+    /**
+     * Create some data that does not compress well.
+     *
+     * @param seed The random seed.
+     * @param length The number of bytes.
+     * @return The data.
+     */
+    private static byte[] randomData(long seed, int length) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Test that a chunk survives a round trip through a region file, including reopening it.
+     *
+     * @throws IOException If the test file can't be used.
+     */
+    @Test
+    void testChunkRoundTrip() throws IOException {
+        var path = directory.resolve("test.region");
+        var stone = new Block("test:stone", null);
+        var dirt = new Block("test:dirt", null);
+        var chunk = new Chunk();
+        chunk.setBlock(0, 0, 0, stone);
+        chunk.setBlock(15, 100, 15, dirt);
+
+        try (var region = new RegionFile(path)) {
+            assertFalse(region.hasChunk(3, 7));
+            assertTrue(region.readChunk(3, 7).isEmpty());
+            region.writeChunk(3, 7, chunk);
+            assertTrue(region.hasChunk(3, 7));
+            assertTrue(region.getTimestamp(3, 7) > 0);
+        }
+
+        try (var region = new RegionFile(path)) {
+            var loaded = region.readChunk(3, 7).orElseThrow();
+            assertEquals(stone, loaded.getBlock(0, 0, 0));
+            assertEquals(dirt, loaded.getBlock(15, 100, 15));
+            assertNull(loaded.getBlock(1, 0, 0));
+            assertFalse(region.hasChunk(7, 3));
+        }
+    }
+
+    /**
+     * Test that block entities are saved, and are removed when their block is replaced.
+     *
+     * @throws IOException If the test file can't be used.
+     */
+    @Test
+    void testBlockEntities() throws IOException {
+        var path = directory.resolve("test.region");
+        var chunk = new Chunk();
+        KVT contents = new Node();
+        contents.addInteger("energy", 250);
+        chunk.setBlock(4, 10, 5, new Block("test:machine", null));
+        chunk.setBlockEntity(4, 10, 5, contents);
+        chunk.setBlock(6, 10, 5, new Block("test:machine", null));
+        chunk.setBlockEntity(6, 10, 5, new Node());
+        chunk.setBlock(6, 10, 5, new Block("test:stone", null));
+        assertEquals(1, chunk.getBlockEntityCount());
+        assertTrue(chunk.getBlockEntity(6, 10, 5).isEmpty());
+
+        try (var region = new RegionFile(path)) {
+            region.writeChunk(0, 0, chunk);
+        }
+
+        try (var region = new RegionFile(path)) {
+            var loaded = region.readChunk(0, 0).orElseThrow();
+            assertEquals(1, loaded.getBlockEntityCount());
+            assertEquals(contents, loaded.getBlockEntity(4, 10, 5).orElseThrow());
+            assertTrue(loaded.getBlockEntity(4, 11, 5).isEmpty());
+        }
+    }
+
+    /**
+     * Test that growing one chunk moves it without disturbing its neighbours, and that the space
+     * it used is reused afterward.
+     *
+     * @throws IOException If the test file can't be used.
+     */
+    @Test
+    void testRewriteLargerChunk() throws IOException {
+        var path = directory.resolve("test.region");
+        var first = TestRegionFile.randomData(1, 1000);
+        var second = TestRegionFile.randomData(2, 1000);
+        var larger = TestRegionFile.randomData(3, 3 * RegionFile.SECTOR_SIZE);
+        var third = TestRegionFile.randomData(4, 1000);
+
+        try (var region = new RegionFile(path)) {
+            region.writeData(0, 0, first);
+            region.writeData(1, 0, second);
+            final long sizeBefore = Files.size(path);
+
+            region.writeData(0, 0, larger);
+            assertTrue(Files.size(path) > sizeBefore);
+            assertArrayEquals(larger, region.readData(0, 0).orElseThrow());
+            assertArrayEquals(second, region.readData(1, 0).orElseThrow());
+
+            final long sizeAfter = Files.size(path);
+            region.writeData(2, 0, third);
+            assertEquals(sizeAfter, Files.size(path));
+        }
+
+        try (var region = new RegionFile(path)) {
+            assertArrayEquals(larger, region.readData(0, 0).orElseThrow());
+            assertArrayEquals(second, region.readData(1, 0).orElseThrow());
+            assertArrayEquals(third, region.readData(2, 0).orElseThrow());
+        }
+    }
+
+    /**
+     * Test that removed chunks are gone after reopening the file.
+     *
+     * @throws IOException If the test file can't be used.
+     */
+    @Test
+    void testRemoveChunk() throws IOException {
+        var path = directory.resolve("test.region");
+        try (var region = new RegionFile(path)) {
+            region.writeData(31, 31, TestRegionFile.randomData(5, 100));
+            region.removeChunk(31, 31);
+            assertFalse(region.hasChunk(31, 31));
+        }
+        try (var region = new RegionFile(path)) {
+            assertFalse(region.hasChunk(31, 31));
+            assertEquals(0, region.getTimestamp(31, 31));
+        }
+    }
+
+    /**
+     * Test that coordinates outside the region are rejected.
+     *
+     * @throws IOException If the test file can't be used.
+     */
+    @Test
+    void testOutOfBounds() throws IOException {
+        try (var region = new RegionFile(directory.resolve("test.region"))) {
+            assertThrows(IndexOutOfBoundsException.class, () -> region.hasChunk(32, 0));
+            assertThrows(IndexOutOfBoundsException.class, () -> region.hasChunk(0, -1));
+        }
+    }
+}
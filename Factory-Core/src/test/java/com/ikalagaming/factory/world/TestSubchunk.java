@@ -0,0 +1,94 @@
+package com.ikalagaming.factory.world;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for paletted subchunk storage.
+ *
+ * @author Ches Burks
+ */
+class TestSubchunk {
+
+    /** Test that a new subchunk is empty and does not store any per-block data. */
+    @Test
+    void testEmpty() {
+        var subchunk = new Subchunk();
+
+        assertTrue(subchunk.isUniform());
+        assertEquals(0, subchunk.getDataByteSize());
+        assertNull(subchunk.getBlock(3, 4, 5));
+    }
+
+    /** Test that blocks are stored and the storage grows with the palette. */
+    @Test
+    void testSetAndGet() {
+        var subchunk = new Subchunk();
+        var stone = new Block("test:stone", null);
+        var dirt = new Block("test:dirt", null);
+
+        subchunk.setBlock(0, 0, 0, stone);
+        assertFalse(subchunk.isUniform());
+        final int smallSize = subchunk.getDataByteSize();
+
+        for (int i = 0; i < 20; ++i) {
+            subchunk.setBlock(i % 16, 1, 0, new Block("test:block" + i, null));
+        }
+        subchunk.setBlock(15, 15, 15, dirt);
+
+        assertTrue(subchunk.getDataByteSize() > smallSize);
+        assertEquals(stone, subchunk.getBlock(0, 0, 0));
+        assertEquals(dirt, subchunk.getBlock(15, 15, 15));
+        assertEquals(new Block("test:block19", null), subchunk.getBlock(3, 1, 0));
+        assertNull(subchunk.getBlock(1, 0, 0));
+
+        subchunk.removeBlock(15, 15, 15);
+        assertNull(subchunk.getBlock(15, 15, 15));
+    }
+
+    /** Test that compacting drops unused palette entries and collapses uniform subchunks. */
+    @Test
+    void testCompact() {
+        var subchunk = new Subchunk();
+        var stone = new Block("test:stone", null);
+        var dirt = new Block("test:dirt", null);
+
+        for (int x = 0; x < World.CHUNK_WIDTH; ++x) {
+            for (int y = 0; y < Subchunk.SUBCHUNK_HEIGHT; ++y) {
+                for (int z = 0; z < World.CHUNK_WIDTH; ++z) {
+                    subchunk.setBlock(x, y, z, dirt);
+                }
+            }
+        }
+        subchunk.setBlock(2, 2, 2, stone);
+        assertEquals(3, subchunk.getPaletteSize());
+
+        subchunk.compact();
+        assertEquals(2, subchunk.getPaletteSize());
+        assertEquals(stone, subchunk.getBlock(2, 2, 2));
+        assertEquals(dirt, subchunk.getBlock(2, 2, 3));
+
+        subchunk.setBlock(2, 2, 2, dirt);
+        subchunk.compact();
+        assertTrue(subchunk.isUniform());
+        assertEquals(0, subchunk.getDataByteSize());
+        assertEquals(dirt, subchunk.getBlock(9, 9, 9));
+    }
+
+    /** Test that blocks can be set and fetched by ID, sharing the registered block. */
+    @Test
+    void testBlockStates() {
+        var subchunk = new Subchunk();
+        final int stone = BlockStates.getId("test:stone");
+
+        subchunk.setBlockState(1, 2, 3, stone);
+        assertEquals(stone, subchunk.getBlockState(1, 2, 3));
+        assertEquals(BlockStates.EMPTY, subchunk.getBlockState(3, 2, 1));
+        assertSame(BlockStates.getBlock(stone), subchunk.getBlock(1, 2, 3));
+
+        subchunk.setBlock(3, 2, 1, new Block("test:stone", null));
+        assertEquals(stone, subchunk.getBlockState(3, 2, 1));
+        assertEquals(2, subchunk.getPaletteSize());
+    }
+}
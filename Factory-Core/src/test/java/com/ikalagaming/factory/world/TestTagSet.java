@@ -0,0 +1,69 @@
+package com.ikalagaming.factory.world;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+/**
+ * Tests for sets of tag IDs.
+ *
+ * @author Ches Burks
+ */
+class TestTagSet {
+    /**
+     * Create a set with some IDs.
+     *
+     * @param ids The IDs to include.
+     * @return The set.
+     */
+    private static TagSet of(int... ids) {
+        BitSet bits = new BitSet();
+        for (int id : ids) {
+            bits.set(id);
+        }
+        return TagSet.of(bits);
+    }
+
+    /** Test checking for single tags. */
+    @Test
+    void testContains() {
+        var set = TestTagSet.of(0, 63, 64, 200);
+
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(63));
+        assertTrue(set.contains(64));
+        assertTrue(set.contains(200));
+        assertFalse(set.contains(1));
+        assertFalse(set.contains(1000));
+        assertFalse(set.contains(-1));
+        assertEquals(4, set.size());
+        assertFalse(set.isEmpty());
+        assertTrue(TagSet.EMPTY.isEmpty());
+        assertSame(TagSet.EMPTY, TestTagSet.of());
+    }
+
+    /** Test comparing sets. */
+    @Test
+    void testSets() {
+        var large = TestTagSet.of(1, 5, 70, 130);
+        var small = TestTagSet.of(5, 130);
+        var other = TestTagSet.of(2, 71);
+
+        assertTrue(large.containsAll(small));
+        assertFalse(small.containsAll(large));
+        assertTrue(large.containsAll(TagSet.EMPTY));
+        assertFalse(large.containsAll(TestTagSet.of(5, 300)));
+
+        assertTrue(large.intersects(small));
+        assertTrue(small.intersects(large));
+        assertFalse(large.intersects(other));
+        assertFalse(large.intersects(TagSet.EMPTY));
+
+        assertEquals(small, TestTagSet.of(130, 5));
+        assertEquals(small.hashCode(), TestTagSet.of(130, 5).hashCode());
+        assertNotEquals(small, other);
+        assertEquals(small, TagSet.of(small.toBitSet()));
+    }
+}
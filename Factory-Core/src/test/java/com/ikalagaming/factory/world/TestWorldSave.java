@@ -0,0 +1,70 @@
+package com.ikalagaming.factory.world;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Tests for reading and writing chunks to region files.
+ *
+ * @author Ches Burks
+ */
+class TestWorldSave {
+    @TempDir Path directory;
+
+    /** The block placed in test chunks. */
+    private static final Block STONE = new Block("test:stone", null);
+
+    /**
+     * Test that only a limited number of region files are kept open, and closed regions can still
+     * be read.
+     *
+     * @throws IOException If the save directory can't be created.
+     */
+    @Test
+    void testOpenRegionLimit() throws IOException {
+        final int regionCount = 5;
+        try (var save = new WorldSave(directory, 2)) {
+            for (int i = 0; i < regionCount; ++i) {
+                var chunk = new Chunk();
+                chunk.setBlock(0, 0, i, STONE);
+                assertTrue(save.saveChunk(i * WorldSave.REGION_WIDTH, 0, chunk));
+                assertTrue(save.getOpenRegionCount() <= 2);
+            }
+            for (int i = 0; i < regionCount; ++i) {
+                var chunk = save.loadChunk(i * WorldSave.REGION_WIDTH, 0).orElseThrow();
+                assertEquals(STONE, chunk.getBlock(0, 0, i));
+                assertTrue(save.getOpenRegionCount() <= 2);
+            }
+        }
+    }
+
+    /**
+     * Test that saving a chunk writes a compacted copy without changing the chunk.
+     *
+     * @throws IOException If the save directory can't be created.
+     */
+    @Test
+    void testSaveDoesNotCompact() throws IOException {
+        final int y = World.WORLD_HEIGHT_MIN;
+        var dirt = new Block("test:dirt", null);
+        var chunk = new Chunk();
+        chunk.setBlock(0, y, 0, STONE);
+        chunk.setBlock(0, y, 0, dirt);
+        final int paletteSize = chunk.getSubchunk(0).getPaletteSize();
+        assertEquals(3, paletteSize);
+
+        try (var save = new WorldSave(directory)) {
+            assertTrue(save.saveChunk(0, 0, chunk));
+            assertEquals(paletteSize, chunk.getSubchunk(0).getPaletteSize());
+
+            var loaded = save.loadChunk(0, 0).orElseThrow();
+            assertEquals(dirt, loaded.getBlock(0, y, 0));
+            assertEquals(2, loaded.getSubchunk(0).getPaletteSize());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.ikalagaming.factory.world.gen;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the biome lookup index.
+ *
+ * @author Ches Burks
+ */
+class TestBiomeIndex {
+    /**
+     * Create a range around a center point.
+     *
+     * @param center The center of the range.
+     * @param radius Half the width of the range.
+     * @return The range, clamped to [0, 1].
+     */
+    private static ParameterRange around(float center, float radius) {
+        return new ParameterRange(Math.max(0, center - radius), Math.min(1, center + radius));
+    }
+
+    /**
+     * Create biome parameters with the same range for every parameter.
+     *
+     * @param range The range to use.
+     * @return The biome parameters.
+     */
+    private static BiomeParameters uniform(ParameterRange range) {
+        return new BiomeParameters(range, range, range, range, range);
+    }
+
+    /**
+     * Pick a biome the slow way, checking every biome, to compare against the index.
+     *
+     * @param names The biome names.
+     * @param biomes The biome parameters.
+     * @param parameters The generated parameters.
+     * @param x The x coordinate.
+     * @param z The z coordinate.
+     * @return The index of the selected biome.
+     */
+    private static int pickSlowly(
+            List<String> names,
+            List<BiomeParameters> biomes,
+            ParameterPack parameters,
+            int x,
+            int z) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < biomes.size(); ++i) {
+            if (biomes.get(i).contains(parameters)) {
+                candidates.add(i);
+            }
+        }
+        if (candidates.isEmpty()) {
+            for (int i = 0; i < biomes.size(); ++i) {
+                candidates.add(i);
+            }
+        }
+        final float closest =
+                candidates.stream()
+                        .map(i -> biomes.get(i).getDistance(parameters))
+                        .min(Float::compare)
+                        .orElseThrow();
+        candidates.removeIf(
+                i -> biomes.get(i).getDistance(parameters) > closest + BiomeIndex.EPSILON);
+        final float narrowest =
+                candidates.stream()
+                        .map(i -> biomes.get(i).getTotalWidth())
+                        .min(Float::compare)
+                        .orElseThrow();
+        candidates.removeIf(i -> biomes.get(i).getTotalWidth() > narrowest + BiomeIndex.EPSILON);
+        candidates.sort(Comparator.comparingInt(i -> names.get(i).hashCode()));
+        return candidates.get(Math.floorMod(31 * (31 + x) + z, candidates.size()));
+    }
+
+    /** Test that the index picks the same biomes as checking every biome. */
+    @Test
+    void testMatchesExhaustiveSearch() {
+        var random = new Random(1234);
+        List<String> names = new ArrayList<>();
+        List<BiomeParameters> biomes = new ArrayList<>();
+        for (int i = 0; i < 40; ++i) {
+            names.add("test:biome" + i);
+            biomes.add(
+                    new BiomeParameters(
+                            around(random.nextFloat(), random.nextFloat() * 0.3f),
+                            around(random.nextFloat(), random.nextFloat() * 0.3f),
+                            around(random.nextFloat(), random.nextFloat() * 0.3f),
+                            around(random.nextFloat(), random.nextFloat() * 0.3f),
+                            around(random.nextFloat(), random.nextFloat() * 0.3f)));
+        }
+        // Exact duplicates, so that there are ties broken by coordinates
+        names.add("test:duplicate");
+        biomes.add(biomes.get(0));
+
+        var index = new BiomeIndex(names, biomes);
+        for (int i = 0; i < 20_000; ++i) {
+            var parameters =
+                    new ParameterPack(
+                            random.nextFloat(),
+                            random.nextFloat(),
+                            random.nextFloat(),
+                            random.nextFloat(),
+                            random.nextFloat());
+            final int x = random.nextInt(-1000, 1000);
+            final int z = random.nextInt(-1000, 1000);
+            assertEquals(
+                    pickSlowly(names, biomes, parameters, x, z),
+                    index.pick(parameters, x, z),
+                    parameters::toString);
+        }
+    }
+
+    /** Test that a biome containing the parameters wins over a closer one that does not. */
+    @Test
+    void testContainingBiomePreferred() {
+        var index =
+                new BiomeIndex(
+                        List.of("test:wide", "test:near"),
+                        List.of(
+                                uniform(new ParameterRange(0, 0.5f)),
+                                uniform(new ParameterRange(0.6f, 0.7f))));
+        var parameters = new ParameterPack(0.5f, 0.5f, 0.5f, 0.5f, 0.5f);
+        assertEquals("test:wide", index.getName(index.pick(parameters, 0, 0)));
+
+        var outside = new ParameterPack(0.58f, 0.58f, 0.58f, 0.58f, 0.58f);
+        assertEquals("test:near", index.getName(index.pick(outside, 0, 0)));
+    }
+
+    /** Test that the more specific biome wins when two are equally close. */
+    @Test
+    void testNarrowerBiomePreferred() {
+        var index =
+                new BiomeIndex(
+                        List.of("test:wide", "test:narrow"),
+                        List.of(uniform(around(0.5f, 0.4f)), uniform(around(0.5f, 0.1f))));
+        var parameters = new ParameterPack(0.5f, 0.5f, 0.5f, 0.5f, 0.5f);
+        for (int x = -5; x < 5; ++x) {
+            assertEquals("test:narrow", index.getName(index.pick(parameters, x, -x)));
+        }
+    }
+
+    /** Test that an empty index does not pick anything. */
+    @Test
+    void testEmpty() {
+        var index = new BiomeIndex(List.of(), List.of());
+        assertEquals(0, index.size());
+        assertEquals(-1, index.pick(new ParameterPack(0, 0, 0, 0, 0), 0, 0));
+    }
+}
@@ -0,0 +1,212 @@
+package com.ikalagaming.factory.world.gen;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ikalagaming.factory.world.Block;
+import com.ikalagaming.factory.world.Chunk;
+import com.ikalagaming.factory.world.ChunkPosition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests for generating chunks in the background.
+ *
+ * @author Ches Burks
+ */
+class TestChunkGenerationService {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    /**
+     * Test that chunks generated by the service match generating them directly.
+     *
+     * @throws Exception If the chunk fails to generate in time.
+     */
+    @Test
+    void testMatchesDirectGeneration() throws Exception {
+        var full = new ParameterRange(0, 1);
+        WorldGenerator.registerBiome(
+                "test:plains",
+                new BiomeParameters(full, full, full, full, full),
+                new BiomeDefinition(
+                        List.of(
+                                new BiomeDefinition.Layer("test:grass", (short) 1, (short) 1, 0),
+                                new BiomeDefinition.Layer("test:stone", (short) 10, (short) 10, 0)),
+                        11));
+
+        var sampler = new ParameterSampler(NoiseGenerator.SIMPLEX, 42);
+        try (var service = new ChunkGenerationService(42, 2)) {
+            var futures = new ArrayList<CompletableFuture<Chunk>>();
+            for (int i = 0; i < 4; ++i) {
+                futures.add(service.request(i, -i));
+            }
+            for (int i = 0; i < 4; ++i) {
+                var chunk = futures.get(i).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                var expected = WorldGenerator.generateChunk(sampler, i, -i);
+                assertEquals(new Block("test:stone", null), chunk.getBlock(3, 0, 5));
+                assertEquals(new Block("test:grass", null), chunk.getBlock(3, 10, 5));
+                assertNull(chunk.getBlock(3, 11, 5));
+                assertEquals(expected.getBlock(15, 10, 15), chunk.getBlock(15, 10, 15));
+            }
+        }
+    }
+
+    /**
+     * Test that requesting a chunk that is already waiting does not generate it twice.
+     *
+     * @throws Exception If the chunks fail to generate in time.
+     */
+    @Test
+    void testDeduplicatesRequests() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var generated = Collections.synchronizedList(new ArrayList<ChunkPosition>());
+        ChunkGenerationService.Generator generator =
+                (seed, x, z) -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                    generated.add(new ChunkPosition(x, z));
+                    return new Chunk();
+                };
+
+        try (var service = new ChunkGenerationService(0, 1, generator)) {
+            var blocker = service.request(100, 100);
+            assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            var first = service.request(1, 2);
+            var second = service.request(1, 2);
+            assertSame(first, second);
+            assertSame(blocker, service.request(100, 100));
+            assertEquals(1, service.getQueuedCount());
+
+            release.countDown();
+            first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            blocker.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of(new ChunkPosition(100, 100), new ChunkPosition(1, 2)), generated);
+    }
+
+    /**
+     * Test that queued chunks closest to a player are generated first, and that cancelled chunks
+     * are skipped.
+     *
+     * @throws Exception If the chunks fail to generate in time.
+     */
+    @Test
+    void testPriorityOrder() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var generated = Collections.synchronizedList(new ArrayList<ChunkPosition>());
+        ChunkGenerationService.Generator generator =
+                (seed, x, z) -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                    generated.add(new ChunkPosition(x, z));
+                    return new Chunk();
+                };
+
+        try (var service = new ChunkGenerationService(0, 1, generator)) {
+            service.request(0, 0);
+            assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            var farthest = service.request(10, 0);
+            service.request(5, 0);
+            var cancelled = service.request(-3, 0);
+            var last = service.request(-8, 0);
+            cancelled.cancel(false);
+            service.setPlayerPositions(List.of(new ChunkPosition(-10, 0)));
+
+            release.countDown();
+            last.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            farthest.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        assertEquals(
+                List.of(
+                        new ChunkPosition(0, 0),
+                        new ChunkPosition(-8, 0),
+                        new ChunkPosition(5, 0),
+                        new ChunkPosition(10, 0)),
+                generated);
+    }
+
+    /**
+     * Test that closing the service cancels anything still queued.
+     *
+     * @throws Exception If the test is interrupted.
+     */
+    @Test
+    void testCloseCancelsQueued() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        ChunkGenerationService.Generator generator =
+                (seed, x, z) -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                    return new Chunk();
+                };
+
+        var service = new ChunkGenerationService(0, 1, generator);
+        var running = service.request(0, 0);
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        var queued = service.request(1, 0);
+        release.countDown();
+        service.close();
+
+        assertNotNull(running.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(queued.isCancelled() || queued.isDone());
+        assertThrows(IllegalStateException.class, () -> service.request(2, 0));
+    }
+
+    /**
+     * Test that a chunk whose generation throws an error fails its future and can be requested
+     * again.
+     *
+     * @throws Exception If the chunk fails to generate in time.
+     */
+    @Test
+    void testGenerationError() throws Exception {
+        var failed = new AtomicBoolean();
+        var error = new AssertionError("Generation failed");
+        ChunkGenerationService.Generator generator =
+                (seed, x, z) -> {
+                    if (failed.compareAndSet(false, true)) {
+                        throw error;
+                    }
+                    return new Chunk();
+                };
+
+        try (var service = new ChunkGenerationService(0, 2, generator)) {
+            var first = service.request(0, 0);
+            var thrown =
+                    assertThrows(
+                            ExecutionException.class,
+                            () -> first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertSame(error, thrown.getCause());
+
+            var second = service.request(0, 0);
+            assertNotSame(first, second);
+            assertNotNull(second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Wait on a latch, ignoring interrupts.
+     *
+     * @param latch The latch to wait on.
+     */
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -41,4 +41,26 @@ class TestParameterPack {
                 () -> assertEquals(expectedValue, result.precipitation()),
                 () -> assertEquals(expectedValue, result.weirdness()));
     }
+
+    /**
+     * Check that generating a grid of parameter packs matches generating them one at a time, both
+     * for simplex noise and for generators that only support single points.
+     */
+    @Test
+    void testGridGeneration() {
+        NoiseGenerator pointsOnly = (seed, x, y, scale, octaves) -> ((x * 31 + y) & 0xFF) / 255d;
+        for (var noise : new NoiseGenerator[] {NoiseGenerator.SIMPLEX, pointsOnly}) {
+            var seed = 42L;
+            var grid = ParameterPack.generateParameters(noise, seed, -3, 5, 4, 3);
+
+            assertEquals(12, grid.length);
+            for (int row = 0; row < 3; ++row) {
+                for (int column = 0; column < 4; ++column) {
+                    assertEquals(
+                            ParameterPack.generateParameters(noise, seed, column - 3, row + 5),
+                            grid[row * 4 + column]);
+                }
+            }
+        }
+    }
 }
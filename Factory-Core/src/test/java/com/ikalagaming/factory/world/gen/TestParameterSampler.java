@@ -0,0 +1,103 @@
+package com.ikalagaming.factory.world.gen;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.ikalagaming.factory.world.World;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for sampling biome parameters on a coarse lattice.
+ *
+ * @author Ches Burks
+ */
+class TestParameterSampler {
+    /** How close interpolated values need to be to the expected value. */
+    private static final float TOLERANCE = 0.0001f;
+
+    /**
+     * Check that lattice points match sampling the noise directly, and height is sampled at full
+     * resolution everywhere.
+     */
+    @Test
+    void testMatchesFullResolution() {
+        var sampler = new ParameterSampler(NoiseGenerator.SIMPLEX, 42);
+        for (int chunkX = -1; chunkX <= 1; ++chunkX) {
+            final int chunkZ = 2 - chunkX;
+            var packs = sampler.sampleChunk(chunkX, chunkZ);
+            var expected =
+                    ParameterPack.generateParameters(
+                            NoiseGenerator.SIMPLEX,
+                            42,
+                            chunkX * World.CHUNK_WIDTH,
+                            chunkZ * World.CHUNK_WIDTH,
+                            World.CHUNK_WIDTH,
+                            World.CHUNK_WIDTH);
+            for (int i = 0; i < packs.length; ++i) {
+                assertEquals(expected[i].height(), packs[i].height());
+            }
+            for (int z = 0; z < World.CHUNK_WIDTH; z += ParameterSampler.SPACING) {
+                for (int x = 0; x < World.CHUNK_WIDTH; x += ParameterSampler.SPACING) {
+                    var pack = packs[z * World.CHUNK_WIDTH + x];
+                    var exact = expected[z * World.CHUNK_WIDTH + x];
+                    assertEquals(exact.temperature(), pack.temperature(), TOLERANCE);
+                    assertEquals(exact.erosion(), pack.erosion(), TOLERANCE);
+                    assertEquals(exact.precipitation(), pack.precipitation(), TOLERANCE);
+                    assertEquals(exact.weirdness(), pack.weirdness(), TOLERANCE);
+                }
+            }
+        }
+    }
+
+    /** Check that values between lattice points are interpolated, including across chunks. */
+    @Test
+    void testInterpolation() {
+        // Each parameter is just the lattice x coordinate, so interpolation gives the block x / 4
+        NoiseGenerator linear = (seed, x, y, scale, octaves) -> x;
+        var sampler = new ParameterSampler(linear, 0);
+        for (int chunkX = -2; chunkX <= 1; ++chunkX) {
+            var packs = sampler.sampleChunk(chunkX, 3);
+            for (int z = 0; z < World.CHUNK_WIDTH; ++z) {
+                for (int x = 0; x < World.CHUNK_WIDTH; ++x) {
+                    final float expected =
+                            (chunkX * World.CHUNK_WIDTH + x) / (float) ParameterSampler.SPACING;
+                    var pack = packs[z * World.CHUNK_WIDTH + x];
+                    assertEquals(expected, pack.temperature(), TOLERANCE);
+                    assertEquals(expected, pack.weirdness(), TOLERANCE);
+                    assertEquals(chunkX * World.CHUNK_WIDTH + x, pack.height());
+                }
+            }
+        }
+    }
+
+    /** Check that neighbouring chunks share lattice points instead of generating them again. */
+    @Test
+    void testNeighboursShareTiles() {
+        AtomicInteger points = new AtomicInteger();
+        NoiseGenerator counting =
+                (seed, x, y, scale, octaves) -> {
+                    points.incrementAndGet();
+                    return 0.5;
+                };
+        var sampler = new ParameterSampler(counting, 0);
+        final int columns = World.CHUNK_WIDTH * World.CHUNK_WIDTH;
+        // The coarse parameters are sampled in 4x4 tiles
+        final int tile = 4 * 16;
+
+        sampler.sampleChunk(0, 0);
+        assertEquals(columns + 4 * tile, points.get());
+        assertEquals(4, sampler.getCachedTileCount());
+
+        // Only the two new tiles on the far side are needed
+        points.set(0);
+        sampler.sampleChunk(1, 0);
+        assertEquals(columns + 2 * tile, points.get());
+        assertEquals(6, sampler.getCachedTileCount());
+
+        points.set(0);
+        sampler.sampleChunk(0, 0);
+        assertEquals(columns, points.get());
+    }
+}
@@ -1,6 +1,7 @@
 package com.ikalagaming.rpg.windows;
 
 import com.ikalagaming.ecs.ECSManager;
+import com.ikalagaming.ecs.EntityHandle;
 import com.ikalagaming.graphics.graph.Texture;
 import com.ikalagaming.graphics.scene.Scene;
 import com.ikalagaming.rpg.GUIPlugin;
@@ -36,7 +37,6 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Optional;
-import java.util.UUID;
 
 /**
  * An inventory for items.
@@ -372,7 +372,7 @@ public class PlayerInventory implements GUIWindow {
     @Override
     public void setup(@NonNull Scene scene) {
         itemDragInfo = new InventoryDrag();
-        UUID player = GameManager.getPlayer();
+        EntityHandle player = GameManager.getPlayer();
 
         if (player == null) {
             inventory =
@@ -1,12 +1,11 @@
 package com.ikalagaming.rpg;
 
 import com.ikalagaming.ecs.ECSManager;
+import com.ikalagaming.ecs.EntityHandle;
 import com.ikalagaming.rpg.inventory.Inventory;
 
 import lombok.Getter;
 
-import java.util.UUID;
-
 /**
  * Manages general game things, like the player.
  *
@@ -14,7 +13,7 @@ import java.util.UUID;
  */
 public class GameManager {
 
-    @Getter private static UUID player;
+    @Getter private static EntityHandle player;
 
     /** Create a player. */
     public static void createPlayer() {
@@ -0,0 +1,87 @@
+package com.ikalagaming.random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+
+/**
+ * Benchmarks for sampling rows of simplex noise, comparing the scalar version to the Vector API
+ * version. The Vector API benchmark is skipped if the incubator module is not enabled.
+ *
+ * @author Ches Burks
+ */
+@State(Scope.Benchmark)
+public class NoiseBenchmark {
+    /** The seed used for every benchmark. */
+    private static final long SEED = 4_815_162_342L;
+
+    /** The distance between samples, similar to what world generation uses. */
+    private static final double SCALE = 0.01;
+
+    /** The number of samples in each row. */
+    @Param({"16", "32", "256", "4096"})
+    public int width;
+
+    /** The x coordinate of each sample. */
+    private double[] xs;
+
+    /** Where samples are written. */
+    private double[] output;
+
+    /** Where grid samples are written. */
+    private float[] grid;
+
+    /** Set up the coordinates and output. */
+    @Setup(Level.Trial)
+    public void setup() {
+        this.xs = new double[this.width];
+        for (int i = 0; i < this.width; ++i) {
+            this.xs[i] = (i - this.width / 2) * SCALE;
+        }
+        this.output = new double[this.width];
+        this.grid = new float[16 * this.width];
+    }
+
+    /**
+     * Sample a row one point at a time.
+     *
+     * @return The output, so the work is not optimized away.
+     */
+    @Benchmark
+    public double[] rowScalar() {
+        Arrays.fill(this.output, 0);
+        OpenSimplex2S.noise2RowScalar(SEED, this.xs, 0, 1.5, 1, this.output, 0);
+        return this.output;
+    }
+
+    /**
+     * Sample a row using the Vector API, if it is available.
+     *
+     * @return The output, so the work is not optimized away.
+     */
+    @Benchmark
+    public double[] rowVector() {
+        Arrays.fill(this.output, 0);
+        if (OpenSimplex2S.isVectorBackendAvailable()) {
+            OpenSimplex2SVector.noise2Row(SEED, this.xs, 1.5, 1, this.output, 0);
+        }
+        return this.output;
+    }
+
+    /**
+     * Sample a grid of several octaves through the public API, which uses whichever backend is
+     * available.
+     *
+     * @return The output, so the work is not optimized away.
+     */
+    @Benchmark
+    public float[] grid() {
+        RandomGen.generateSimplexNoise(SEED, 0, 0, this.width, 16, SCALE, 4, this.grid);
+        return this.grid;
+    }
+}
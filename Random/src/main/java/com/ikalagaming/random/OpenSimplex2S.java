@@ -30,17 +30,17 @@ public class OpenSimplex2S {
         }
     }
 
-    private static final long PRIME_X = 0x5205402B9270C86FL;
-    private static final long PRIME_Y = 0x598CD327003817B5L;
+    static final long PRIME_X = 0x5205402B9270C86FL;
+    static final long PRIME_Y = 0x598CD327003817B5L;
     private static final long PRIME_Z = 0x5BCC226E9FA0BACBL;
     private static final long PRIME_W = 0x56CC5227E58F554BL;
-    private static final long HASH_MULTIPLIER = 0x53A3F72DEEC546F5L;
+    static final long HASH_MULTIPLIER = 0x53A3F72DEEC546F5L;
 
     // private static final long SEED_FLIP_3D = -0x52D547B2E96ED629L;
     private static final double ROOT2OVER2 = 0.707_106_781_186_547_6;
-    private static final double SKEW_2D = 0.366_025_403_784_439;
+    static final double SKEW_2D = 0.366_025_403_784_439;
 
-    private static final double UNSKEW_2D = -0.211_324_865_405_187_13;
+    static final double UNSKEW_2D = -0.211_324_865_405_187_13;
     private static final double ROOT3OVER3 = 0.577_350_269_189_626;
     private static final double FALLBACK_ROTATE3 = 2.0 / 3.0;
 
@@ -48,10 +48,10 @@ public class OpenSimplex2S {
     private static final float SKEW_4D = 0.309_016_994_374_947f;
 
     private static final float UNSKEW_4D = -0.138_196_601_125_011f;
-    private static final int N_GRADS_2D_EXPONENT = 7;
+    static final int N_GRADS_2D_EXPONENT = 7;
     private static final int N_GRADS_3D_EXPONENT = 8;
     private static final int N_GRADS_4D_EXPONENT = 9;
-    private static final int N_GRADS_2D = 1 << OpenSimplex2S.N_GRADS_2D_EXPONENT;
+    static final int N_GRADS_2D = 1 << OpenSimplex2S.N_GRADS_2D_EXPONENT;
     private static final int N_GRADS_3D = 1 << OpenSimplex2S.N_GRADS_3D_EXPONENT;
 
     private static final int N_GRADS_4D = 1 << OpenSimplex2S.N_GRADS_4D_EXPONENT;
@@ -59,7 +59,7 @@ public class OpenSimplex2S {
     private static final double NORMALIZER_3D = 0.278_192_611_752_718_6;
 
     private static final double NORMALIZER_4D = 0.111_274_018_899_455_51;
-    private static final float RSQUARED_2D = 2.0f / 3.0f;
+    static final float RSQUARED_2D = 2.0f / 3.0f;
     private static final float RSQUARED_3D = 3.0f / 4.0f;
 
     /*
@@ -68,7 +68,7 @@ public class OpenSimplex2S {
 
     private static final float RSQUARED_4D = 4.0f / 5.0f;
 
-    private static float[] GRADIENTS_2D;
+    static float[] GRADIENTS_2D;
 
     private static float[] GRADIENTS_3D;
 
@@ -1762,6 +1762,94 @@ public class OpenSimplex2S {
         return OpenSimplex2S.noise2_UnskewedBase(seed, xs, ys);
     }
 
+    /**
+     * The shortest row that is sampled with the Vector API. In NoiseBenchmark, rows of 16 points
+     * were slower with vectors than without, since the setup for each row outweighs the savings,
+     * while rows of 32 points were about a third faster.
+     */
+    static final int MIN_VECTOR_ROW_WIDTH = 32;
+
+    /**
+     * Checks whether the Vector API backend can be used, which requires the incubator module to be
+     * enabled with {@code --add-modules jdk.incubator.vector}. Kept in its own class so that the
+     * check only happens the first time it is needed.
+     */
+    private static final class VectorBackend {
+        static final boolean AVAILABLE = VectorBackend.check();
+
+        private static boolean check() {
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+                return false;
+            }
+            try {
+                return OpenSimplex2SVector.isUsable();
+            } catch (LinkageError e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Whether rows of noise are evaluated several points at a time using the Vector API.
+     *
+     * @return True if the Vector API backend is in use, false if noise is computed one point at a
+     *     time.
+     */
+    static boolean isVectorBackendAvailable() {
+        return VectorBackend.AVAILABLE;
+    }
+
+    /**
+     * Sample a row of 2D noise at a shared y coordinate, adding each sample multiplied by an
+     * amplitude to the output. Gives exactly the same values as calling {@link #noise2(long,
+     * double, double)} for each point, but keeps the loop in one place so the x coordinates only
+     * have to be computed once for a whole grid. Uses the Vector API when it is available and the
+     * row has at least {@value #MIN_VECTOR_ROW_WIDTH} points.
+     *
+     * @param seed The seed to use.
+     * @param xs The x coordinate of each sample.
+     * @param y The y coordinate shared by every sample.
+     * @param amplitude The amount to scale each sample by before adding it to the output.
+     * @param output Where to add the samples.
+     * @param offset The index in the output that the first sample is added to.
+     */
+    static void noise2Row(
+            long seed, double[] xs, double y, double amplitude, double[] output, int offset) {
+        if (xs.length >= MIN_VECTOR_ROW_WIDTH && VectorBackend.AVAILABLE) {
+            OpenSimplex2SVector.noise2Row(seed, xs, y, amplitude, output, offset);
+        } else {
+            OpenSimplex2S.noise2RowScalar(seed, xs, 0, y, amplitude, output, offset);
+        }
+    }
+
+    /**
+     * The scalar version of {@link #noise2Row(long, double[], double, double, double[], int)},
+     * which samples one point at a time.
+     *
+     * @param seed The seed to use.
+     * @param xs The x coordinate of each sample.
+     * @param start The first index in xs to sample.
+     * @param y The y coordinate shared by every sample.
+     * @param amplitude The amount to scale each sample by before adding it to the output.
+     * @param output Where to add the samples.
+     * @param offset The index in the output that the sample at index 0 of xs is added to.
+     */
+    static void noise2RowScalar(
+            long seed,
+            double[] xs,
+            int start,
+            double y,
+            double amplitude,
+            double[] output,
+            int offset) {
+        for (int i = start; i < xs.length; ++i) {
+            final double x = xs[i];
+            final double s = OpenSimplex2S.SKEW_2D * (x + y);
+            output[offset + i] +=
+                    amplitude * OpenSimplex2S.noise2_UnskewedBase(seed, x + s, y + s);
+        }
+    }
+
     /**
      * 2D OpenSimplex2S/SuperSimplex noise, with Y pointing down the main diagonal. Might be better
      * for a 2D sandbox style game, where Y is vertical. Probably slightly less optimal for
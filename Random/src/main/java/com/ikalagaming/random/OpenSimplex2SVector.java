@@ -0,0 +1,572 @@
+package com.ikalagaming.random;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * A Vector API version of the 2D {@link OpenSimplex2S} noise, which evaluates several points at
+ * once.
+ *
+ * <p>This performs exactly the same floating point operations as the scalar version, in the same
+ * order and with the same precision, so the results are identical rather than just close. The
+ * branches in the scalar version are replaced with masks, choosing the lattice vertex offsets for
+ * each lane and skipping the contribution of vertices that are out of range.
+ *
+ * <p>Rows are processed in blocks, with one pass over the block for each step of the algorithm and
+ * intermediate values kept in scratch arrays. Each vertex pass works out the offsets for one
+ * lattice vertex, and a shared pass adds its contribution. Doing everything in one loop body makes
+ * the method too large for the JIT to inline all the vector operations, and vectors that cross a
+ * call that is not inlined end up as objects on the heap, which is much slower than the scalar
+ * version.
+ *
+ * <p>This class must only be loaded when the {@code jdk.incubator.vector} module is enabled, which
+ * {@link OpenSimplex2S} checks before using it.
+ *
+ * @author Ches Burks
+ */
+final class OpenSimplex2SVector {
+    /** Used for the coordinates, which are doubles like the scalar version. */
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    /** Used for lattice positions and hashes, with the same number of lanes as the doubles. */
+    private static final VectorSpecies<Long> LONGS = DOUBLES.withLanes(long.class);
+
+    /** Used for the offsets and contributions, with the same number of lanes as the doubles. */
+    private static final VectorSpecies<Float> FLOATS =
+            VectorSpecies.of(float.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+    /** Used for gradient indices, with the same number of lanes as the doubles. */
+    private static final VectorSpecies<Integer> INTS = FLOATS.withLanes(int.class);
+
+    /** The number of points evaluated at once. */
+    private static final int LANES = DOUBLES.length();
+
+    /** The number of points processed by each pass, a multiple of the number of lanes. */
+    private static final int BLOCK_SIZE = 256;
+
+    /** The unskew constant, rounded to a float the same way the scalar version does. */
+    private static final float UNSKEW = (float) OpenSimplex2S.UNSKEW_2D;
+
+    /**
+     * The scalar version compares a float to the double {@link OpenSimplex2S#UNSKEW_2D}. Since we
+     * compare floats, if the constant was rounded down we need to include values equal to it.
+     */
+    private static final boolean UNSKEW_INCLUSIVE = UNSKEW < OpenSimplex2S.UNSKEW_2D;
+
+    // The other constants from the scalar version, rounded to floats the same way
+    private static final float A1_T_SCALE =
+            (float)
+                    (2
+                            * (1 + 2 * OpenSimplex2S.UNSKEW_2D)
+                            * (1 / OpenSimplex2S.UNSKEW_2D + 2));
+    private static final float A1_OFFSET =
+            (float)
+                    (-2
+                            * (1 + 2 * OpenSimplex2S.UNSKEW_2D)
+                            * (1 + 2 * OpenSimplex2S.UNSKEW_2D));
+    private static final float D1 = (float) (1 + 2 * OpenSimplex2S.UNSKEW_2D);
+    private static final float THREE_U_PLUS_2 = (float) (3 * OpenSimplex2S.UNSKEW_2D + 2);
+    private static final float THREE_U_PLUS_1 = (float) (3 * OpenSimplex2S.UNSKEW_2D + 1);
+    private static final float U_PLUS_1 = (float) (OpenSimplex2S.UNSKEW_2D + 1);
+    private static final float ONE_PLUS_U = (float) (1 + OpenSimplex2S.UNSKEW_2D);
+
+    /**
+     * Intermediate values for a block of points.
+     *
+     * @author Ches Burks
+     */
+    private static final class Scratch {
+        /** The x offset of each point inside its skewed lattice cell. */
+        final float[] xi;
+
+        /** The y offset of each point inside its skewed lattice cell. */
+        final float[] yi;
+
+        /** The x coordinate of the base lattice vertex, premultiplied by the prime. */
+        final long[] xsbp;
+
+        /** The y coordinate of the base lattice vertex, premultiplied by the prime. */
+        final long[] ysbp;
+
+        /** The falloff for the vertex currently being added. */
+        final float[] a;
+
+        /** The x offset from the vertex currently being added. */
+        final float[] dx;
+
+        /** The y offset from the vertex currently being added. */
+        final float[] dy;
+
+        /** The x coordinate of the vertex currently being added, premultiplied by the prime. */
+        final long[] xsvp;
+
+        /** The y coordinate of the vertex currently being added, premultiplied by the prime. */
+        final long[] ysvp;
+
+        /** The noise value so far. */
+        final float[] value;
+
+        /** Gradient indices for one vector of points. */
+        final int[] indices = new int[LANES];
+
+        /**
+         * Allocate space for a block.
+         *
+         * @param size The number of points in the largest block.
+         */
+        Scratch(int size) {
+            xi = new float[size];
+            yi = new float[size];
+            xsbp = new long[size];
+            ysbp = new long[size];
+            a = new float[size];
+            dx = new float[size];
+            dy = new float[size];
+            xsvp = new long[size];
+            ysvp = new long[size];
+            value = new float[size];
+        }
+    }
+
+    /** Private constructor so this class is not instantiated. */
+    private OpenSimplex2SVector() {}
+
+    /**
+     * Check that the preferred vector size can hold more than one point, so that it is worth
+     * using.
+     *
+     * @return True if this backend should be used.
+     */
+    static boolean isUsable() {
+        return LANES > 1;
+    }
+
+    /**
+     * Calculate the falloff for a vertex, which is (r^2 - dx^2 - dy^2).
+     *
+     * @param dx The x offset from the vertex.
+     * @param dy The y offset from the vertex.
+     * @return The falloff value, which is only positive when the vertex is in range.
+     */
+    private static FloatVector falloff(FloatVector dx, FloatVector dy) {
+        return FloatVector.broadcast(FLOATS, OpenSimplex2S.RSQUARED_2D)
+                .sub(dx.mul(dx))
+                .sub(dy.mul(dy));
+    }
+
+    /**
+     * Pick one of four values for each lane. The masks for the first three values must not
+     * overlap, and every other lane gets the last value.
+     *
+     * @param a The value for lanes in the first mask.
+     * @param b The value for lanes in the second mask.
+     * @param c The value for lanes in the third mask.
+     * @param d The value for every other lane.
+     * @param maskA The first mask.
+     * @param maskB The second mask.
+     * @param maskC The third mask.
+     * @return The selected values.
+     */
+    private static FloatVector select(
+            float a,
+            float b,
+            float c,
+            float d,
+            VectorMask<Float> maskA,
+            VectorMask<Float> maskB,
+            VectorMask<Float> maskC) {
+        return FloatVector.broadcast(FLOATS, d).blend(c, maskC).blend(b, maskB).blend(a, maskA);
+    }
+
+    /**
+     * Pick a multiple of a prime for each lane, like {@link #select(float, float, float, float,
+     * VectorMask, VectorMask, VectorMask)}. The multiples are small integers, so they are exact as
+     * floats.
+     *
+     * @param prime The prime to multiply.
+     * @param a The multiple for lanes in the first mask.
+     * @param b The multiple for lanes in the second mask.
+     * @param c The multiple for lanes in the third mask.
+     * @param d The multiple for every other lane.
+     * @param maskA The first mask.
+     * @param maskB The second mask.
+     * @param maskC The third mask.
+     * @return The selected multiple of the prime.
+     */
+    private static LongVector selectPrime(
+            long prime,
+            float a,
+            float b,
+            float c,
+            float d,
+            VectorMask<Float> maskA,
+            VectorMask<Float> maskB,
+            VectorMask<Float> maskC) {
+        return ((LongVector)
+                        OpenSimplex2SVector.select(a, b, c, d, maskA, maskB, maskC)
+                                .convertShape(VectorOperators.F2L, LONGS, 0))
+                .mul(prime);
+    }
+
+    /**
+     * Find which half of the lattice cell each point is in. This matches the scalar version
+     * comparing a float to the double {@link OpenSimplex2S#UNSKEW_2D}.
+     *
+     * @param t The unskew offset for each point.
+     * @return The lanes where the point is in the lower half of the cell.
+     */
+    private static VectorMask<Float> lowerHalf(FloatVector t) {
+        return UNSKEW_INCLUSIVE
+                ? t.compare(VectorOperators.LE, UNSKEW)
+                : t.compare(VectorOperators.LT, UNSKEW);
+    }
+
+    /**
+     * Skew the points in a block and find the lattice cell each one is in.
+     *
+     * @param xs The x coordinate of each sample in the row.
+     * @param start The index of the first sample in the block.
+     * @param count The number of samples in the block, a multiple of the lane count.
+     * @param y The y coordinate shared by every sample.
+     * @param scratch Where the results are stored.
+     */
+    private static void lattice(double[] xs, int start, int count, double y, Scratch scratch) {
+        for (int i = 0; i < count; i += LANES) {
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, xs, start + i);
+            DoubleVector s = x.add(y).mul(OpenSimplex2S.SKEW_2D);
+            DoubleVector xs0 = x.add(s);
+            DoubleVector ys0 = s.add(y);
+
+            // Floor to ints the same way the scalar version does, by truncating and correcting
+            IntVector xsb = (IntVector) xs0.convertShape(VectorOperators.D2I, INTS, 0);
+            IntVector ysb = (IntVector) ys0.convertShape(VectorOperators.D2I, INTS, 0);
+            DoubleVector xTruncated =
+                    (DoubleVector) xsb.convertShape(VectorOperators.I2D, DOUBLES, 0);
+            DoubleVector yTruncated =
+                    (DoubleVector) ysb.convertShape(VectorOperators.I2D, DOUBLES, 0);
+            xsb = xsb.sub(1, xs0.lt(xTruncated).cast(INTS));
+            ysb = ysb.sub(1, ys0.lt(yTruncated).cast(INTS));
+
+            xs0.sub((DoubleVector) xsb.convertShape(VectorOperators.I2D, DOUBLES, 0))
+                    .convertShape(VectorOperators.D2F, FLOATS, 0)
+                    .reinterpretAsFloats()
+                    .intoArray(scratch.xi, i);
+            ys0.sub((DoubleVector) ysb.convertShape(VectorOperators.I2D, DOUBLES, 0))
+                    .convertShape(VectorOperators.D2F, FLOATS, 0)
+                    .reinterpretAsFloats()
+                    .intoArray(scratch.yi, i);
+            ((LongVector) xsb.convertShape(VectorOperators.I2L, LONGS, 0))
+                    .mul(OpenSimplex2S.PRIME_X)
+                    .intoArray(scratch.xsbp, i);
+            ((LongVector) ysb.convertShape(VectorOperators.I2L, LONGS, 0))
+                    .mul(OpenSimplex2S.PRIME_Y)
+                    .intoArray(scratch.ysbp, i);
+        }
+    }
+
+    /**
+     * Work out the offsets for the first vertex, which is the base of the lattice cell.
+     *
+     * @param count The number of samples in the block.
+     * @param scratch The intermediate values.
+     */
+    private static void firstVertex(int count, Scratch scratch) {
+        for (int i = 0; i < count; i += LANES) {
+            FloatVector xi = FloatVector.fromArray(FLOATS, scratch.xi, i);
+            FloatVector yi = FloatVector.fromArray(FLOATS, scratch.yi, i);
+            FloatVector t = xi.add(yi).mul(UNSKEW);
+            FloatVector dx0 = xi.add(t);
+            FloatVector dy0 = yi.add(t);
+            OpenSimplex2SVector.falloff(dx0, dy0).intoArray(scratch.a, i);
+            dx0.intoArray(scratch.dx, i);
+            dy0.intoArray(scratch.dy, i);
+            LongVector.fromArray(LONGS, scratch.xsbp, i).intoArray(scratch.xsvp, i);
+            LongVector.fromArray(LONGS, scratch.ysbp, i).intoArray(scratch.ysvp, i);
+        }
+    }
+
+    /**
+     * Work out the offsets for the second vertex, which is the opposite corner of the cell. The
+     * falloff is calculated from the first vertex like the scalar version, so this must be called
+     * right after the contribution of the first vertex is added.
+     *
+     * @param count The number of samples in the block.
+     * @param scratch The intermediate values.
+     */
+    private static void secondVertex(int count, Scratch scratch) {
+        for (int i = 0; i < count; i += LANES) {
+            FloatVector xi = FloatVector.fromArray(FLOATS, scratch.xi, i);
+            FloatVector yi = FloatVector.fromArray(FLOATS, scratch.yi, i);
+            FloatVector t = xi.add(yi).mul(UNSKEW);
+            FloatVector a0 = FloatVector.fromArray(FLOATS, scratch.a, i);
+            t.mul(A1_T_SCALE).add(a0.add(A1_OFFSET)).intoArray(scratch.a, i);
+            xi.add(t).sub(D1).intoArray(scratch.dx, i);
+            yi.add(t).sub(D1).intoArray(scratch.dy, i);
+            LongVector.fromArray(LONGS, scratch.xsbp, i)
+                    .add(OpenSimplex2S.PRIME_X)
+                    .intoArray(scratch.xsvp, i);
+            LongVector.fromArray(LONGS, scratch.ysbp, i)
+                    .add(OpenSimplex2S.PRIME_Y)
+                    .intoArray(scratch.ysvp, i);
+        }
+    }
+
+    /**
+     * Work out the offsets for the third vertex, which depends on where the point is in the cell.
+     *
+     * @param count The number of samples in the block.
+     * @param scratch The intermediate values.
+     */
+    private static void thirdVertex(int count, Scratch scratch) {
+        for (int i = 0; i < count; i += LANES) {
+            FloatVector xi = FloatVector.fromArray(FLOATS, scratch.xi, i);
+            FloatVector yi = FloatVector.fromArray(FLOATS, scratch.yi, i);
+            FloatVector t = xi.add(yi).mul(UNSKEW);
+            FloatVector xmyi = xi.sub(yi);
+
+            VectorMask<Float> low = OpenSimplex2SVector.lowerHalf(t);
+            VectorMask<Float> lowFar = low.and(xi.add(xmyi).compare(VectorOperators.GT, 1));
+            VectorMask<Float> lowNear = low.andNot(lowFar);
+            VectorMask<Float> highBack =
+                    low.not().and(xi.add(xmyi).compare(VectorOperators.LT, 0));
+
+            FloatVector dx =
+                    xi.add(t)
+                            .sub(
+                                    OpenSimplex2SVector.select(
+                                            THREE_U_PLUS_2,
+                                            UNSKEW,
+                                            -ONE_PLUS_U,
+                                            U_PLUS_1,
+                                            lowFar,
+                                            lowNear,
+                                            highBack));
+            FloatVector dy =
+                    yi.add(t)
+                            .sub(
+                                    OpenSimplex2SVector.select(
+                                            THREE_U_PLUS_1,
+                                            U_PLUS_1,
+                                            -UNSKEW,
+                                            UNSKEW,
+                                            lowFar,
+                                            lowNear,
+                                            highBack));
+            OpenSimplex2SVector.falloff(dx, dy).intoArray(scratch.a, i);
+            dx.intoArray(scratch.dx, i);
+            dy.intoArray(scratch.dy, i);
+            LongVector.fromArray(LONGS, scratch.xsbp, i)
+                    .add(
+                            OpenSimplex2SVector.selectPrime(
+                                    OpenSimplex2S.PRIME_X,
+                                    2,
+                                    0,
+                                    -1,
+                                    1,
+                                    lowFar,
+                                    lowNear,
+                                    highBack))
+                    .intoArray(scratch.xsvp, i);
+            LongVector.fromArray(LONGS, scratch.ysbp, i)
+                    .add(
+                            OpenSimplex2SVector.selectPrime(
+                                    OpenSimplex2S.PRIME_Y,
+                                    1,
+                                    1,
+                                    0,
+                                    0,
+                                    lowFar,
+                                    lowNear,
+                                    highBack))
+                    .intoArray(scratch.ysvp, i);
+        }
+    }
+
+    /**
+     * Work out the offsets for the fourth vertex, which depends on where the point is in the cell.
+     *
+     * @param count The number of samples in the block.
+     * @param scratch The intermediate values.
+     */
+    private static void fourthVertex(int count, Scratch scratch) {
+        for (int i = 0; i < count; i += LANES) {
+            FloatVector xi = FloatVector.fromArray(FLOATS, scratch.xi, i);
+            FloatVector yi = FloatVector.fromArray(FLOATS, scratch.yi, i);
+            FloatVector t = xi.add(yi).mul(UNSKEW);
+            FloatVector xmyi = xi.sub(yi);
+
+            VectorMask<Float> low = OpenSimplex2SVector.lowerHalf(t);
+            VectorMask<Float> lowFar = low.and(yi.sub(xmyi).compare(VectorOperators.GT, 1));
+            VectorMask<Float> lowNear = low.andNot(lowFar);
+            VectorMask<Float> highBack = low.not().and(yi.compare(VectorOperators.LT, xmyi));
+
+            FloatVector dx =
+                    xi.add(t)
+                            .sub(
+                                    OpenSimplex2SVector.select(
+                                            THREE_U_PLUS_1,
+                                            U_PLUS_1,
+                                            -UNSKEW,
+                                            UNSKEW,
+                                            lowFar,
+                                            lowNear,
+                                            highBack));
+            FloatVector dy =
+                    yi.add(t)
+                            .sub(
+                                    OpenSimplex2SVector.select(
+                                            THREE_U_PLUS_2,
+                                            UNSKEW,
+                                            -U_PLUS_1,
+                                            U_PLUS_1,
+                                            lowFar,
+                                            lowNear,
+                                            highBack));
+            OpenSimplex2SVector.falloff(dx, dy).intoArray(scratch.a, i);
+            dx.intoArray(scratch.dx, i);
+            dy.intoArray(scratch.dy, i);
+            LongVector.fromArray(LONGS, scratch.xsbp, i)
+                    .add(
+                            OpenSimplex2SVector.selectPrime(
+                                    OpenSimplex2S.PRIME_X,
+                                    1,
+                                    1,
+                                    0,
+                                    0,
+                                    lowFar,
+                                    lowNear,
+                                    highBack))
+                    .intoArray(scratch.xsvp, i);
+            LongVector.fromArray(LONGS, scratch.ysbp, i)
+                    .add(
+                            OpenSimplex2SVector.selectPrime(
+                                    OpenSimplex2S.PRIME_Y,
+                                    2,
+                                    0,
+                                    -1,
+                                    1,
+                                    lowFar,
+                                    lowNear,
+                                    highBack))
+                    .intoArray(scratch.ysvp, i);
+        }
+    }
+
+    /**
+     * Add the contribution of the vertex currently in the scratch space, which is a^4 times the
+     * gradient.
+     *
+     * @param seed The seed to use.
+     * @param count The number of samples in the block.
+     * @param scratch The intermediate values.
+     * @param inRangeOnly Whether to skip lanes where the falloff is not positive. The scalar
+     *     version only checks this for the third and fourth vertices.
+     */
+    private static void addContribution(
+            long seed, int count, Scratch scratch, boolean inRangeOnly) {
+        final LongVector seeds = LongVector.broadcast(LONGS, seed);
+        final float[] gradients = OpenSimplex2S.GRADIENTS_2D;
+        for (int i = 0; i < count; i += LANES) {
+            LongVector hash =
+                    seeds.lanewise(
+                                    VectorOperators.XOR,
+                                    LongVector.fromArray(LONGS, scratch.xsvp, i))
+                            .lanewise(
+                                    VectorOperators.XOR,
+                                    LongVector.fromArray(LONGS, scratch.ysvp, i));
+            hash = hash.mul(OpenSimplex2S.HASH_MULTIPLIER);
+            hash =
+                    hash.lanewise(
+                            VectorOperators.XOR,
+                            hash.lanewise(
+                                    VectorOperators.ASHR,
+                                    64 - OpenSimplex2S.N_GRADS_2D_EXPONENT + 1));
+            hash.and((long) (OpenSimplex2S.N_GRADS_2D - 1) << 1)
+                    .convertShape(VectorOperators.L2I, INTS, 0)
+                    .reinterpretAsInts()
+                    .intoArray(scratch.indices, 0);
+            FloatVector gx = FloatVector.fromArray(FLOATS, gradients, 0, scratch.indices, 0);
+            FloatVector gy = FloatVector.fromArray(FLOATS, gradients, 1, scratch.indices, 0);
+            FloatVector grad =
+                    gx.mul(FloatVector.fromArray(FLOATS, scratch.dx, i))
+                            .add(gy.mul(FloatVector.fromArray(FLOATS, scratch.dy, i)));
+
+            FloatVector a = FloatVector.fromArray(FLOATS, scratch.a, i);
+            FloatVector contribution = a.mul(a).mul(a.mul(a)).mul(grad);
+            FloatVector value = FloatVector.fromArray(FLOATS, scratch.value, i);
+            if (inRangeOnly) {
+                value = value.add(contribution, a.compare(VectorOperators.GT, 0));
+            } else {
+                value = value.add(contribution);
+            }
+            value.intoArray(scratch.value, i);
+        }
+    }
+
+    /**
+     * Add the noise values for a block to the output, multiplied by the amplitude.
+     *
+     * @param amplitude The amount to scale each sample by.
+     * @param output Where to add the samples.
+     * @param offset The index in the output for the first sample in the block.
+     * @param count The number of samples in the block.
+     * @param scratch The intermediate values.
+     */
+    private static void accumulate(
+            double amplitude, double[] output, int offset, int count, Scratch scratch) {
+        for (int i = 0; i < count; i += LANES) {
+            DoubleVector samples =
+                    (DoubleVector)
+                            FloatVector.fromArray(FLOATS, scratch.value, i)
+                                    .convertShape(VectorOperators.F2D, DOUBLES, 0);
+            DoubleVector.fromArray(DOUBLES, output, offset + i)
+                    .add(samples.mul(amplitude))
+                    .intoArray(output, offset + i);
+        }
+    }
+
+    /**
+     * Sample a row of 2D noise at a shared y coordinate, adding each sample multiplied by an
+     * amplitude to the output. Any points left over after filling whole vectors are computed with
+     * the scalar version.
+     *
+     * @param seed The seed to use.
+     * @param xs The x coordinate of each sample.
+     * @param y The y coordinate shared by every sample.
+     * @param amplitude The amount to scale each sample by before adding it to the output.
+     * @param output Where to add the samples.
+     * @param offset The index in the output that the first sample is added to.
+     */
+    static void noise2Row(
+            long seed, double[] xs, double y, double amplitude, double[] output, int offset) {
+        final int bound = DOUBLES.loopBound(xs.length);
+        if (bound > 0) {
+            final Scratch scratch = new Scratch(Math.min(bound, BLOCK_SIZE));
+            for (int start = 0; start < bound; start += BLOCK_SIZE) {
+                final int count = Math.min(BLOCK_SIZE, bound - start);
+                OpenSimplex2SVector.lattice(xs, start, count, y, scratch);
+                // Adding to -0 leaves every value unchanged, including the sign of zero
+                Arrays.fill(scratch.value, 0, count, -0.0f);
+                OpenSimplex2SVector.firstVertex(count, scratch);
+                OpenSimplex2SVector.addContribution(seed, count, scratch, false);
+                OpenSimplex2SVector.secondVertex(count, scratch);
+                OpenSimplex2SVector.addContribution(seed, count, scratch, false);
+                OpenSimplex2SVector.thirdVertex(count, scratch);
+                OpenSimplex2SVector.addContribution(seed, count, scratch, true);
+                OpenSimplex2SVector.fourthVertex(count, scratch);
+                OpenSimplex2SVector.addContribution(seed, count, scratch, true);
+                OpenSimplex2SVector.accumulate(
+                        amplitude, output, offset + start, count, scratch);
+            }
+        }
+        OpenSimplex2S.noise2RowScalar(seed, xs, bound, y, amplitude, output, offset);
+    }
+}
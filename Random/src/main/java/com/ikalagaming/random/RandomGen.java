@@ -428,38 +428,126 @@ public class RandomGen {
             return result;
         }
 
-        int[] rawData = new int[params.width * params.height];
-
-        for (int y = params.startY; y < params.startY + params.height; ++y) {
-            for (int x = params.startX; x < params.startX + params.width; ++x) {
-                double pixelValue = 0;
-                double totalAmplitude = 0;
-                double amplitude = 1;
-                double freq = params.scale;
-
-                for (int i = 0; i < params.octaves; ++i) {
-                    pixelValue += amplitude * OpenSimplex2S.noise2(params.seed, freq * x, freq * y);
-                    totalAmplitude += amplitude;
-                    amplitude *= params.persistence;
-                    freq *= 2;
-                }
+        float[] noise = new float[params.width * params.height];
+        RandomGen.fillSimplexNoise(
+                params.seed,
+                params.startX,
+                params.startY,
+                params.width,
+                params.height,
+                params.scale,
+                params.octaves,
+                params.persistence,
+                noise);
+
+        int[] rawData = new int[noise.length];
+        for (int i = 0; i < noise.length; ++i) {
+            // Map to [min, max)
+            final int pixelTemp =
+                    (int) (noise[i] * (params.maxRGB - params.minRGB)) + params.minRGB;
+            // fill out R, G, and B to pixelTemps least significant byte
+            rawData[i] = pixelTemp << 16 | pixelTemp << 8 | pixelTemp;
+        }
+        result.setRGB(0, 0, params.width, params.height, rawData, 0, params.width);
+        return result;
+    }
 
-                if (totalAmplitude > 0) {
-                    pixelValue /= totalAmplitude;
-                }
+    /**
+     * Generate simplex noise for a whole grid of positions at once. Each value is the same as
+     * calling {@link #generateSimplexNoise(long, int, int, double, int)} for that position, but the
+     * work that is shared between positions is only done once, which makes this much faster than
+     * sampling one position at a time.
+     *
+     * <p>Values are stored in row-major order, so the value at (startX + i, startY + j) is written
+     * to index j * width + i.
+     *
+     * @param seed The seed to use.
+     * @param startX The x coordinate of the first column.
+     * @param startY The y coordinate of the first row.
+     * @param width The number of columns.
+     * @param height The number of rows.
+     * @param scale The scale of the noise. A reasonable example is 0.001, should be in the range
+     *     (0, 1).
+     * @param octaves The number of octaves of noise to use. Must be &gt; 0, should be &lt; 16.
+     * @param output Where to store the noise values, mapped to the range [0, 1]. Must have room
+     *     for at least width * height values.
+     * @throws IllegalArgumentException If the width or height are negative, or the output is too
+     *     small.
+     */
+    public static void generateSimplexNoise(
+            final long seed,
+            final int startX,
+            final int startY,
+            final int width,
+            final int height,
+            final double scale,
+            final int octaves,
+            @NonNull final float[] output) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Negative grid size");
+        }
+        if (output.length < width * height) {
+            throw new IllegalArgumentException("Output is too small for the grid");
+        }
+        if (scale <= 0 || octaves < 0) {
+            Arrays.fill(output, 0, width * height, 0);
+            return;
+        }
+        RandomGen.fillSimplexNoise(
+                seed, startX, startY, width, height, scale, octaves, 0.5, output);
+    }
 
-                // we map it from 0 to 1
-                pixelValue = (pixelValue + 1d) / 2d;
-                // Map to [min, max)
-                final int pixelTemp =
-                        (int) (pixelValue * (params.maxRGB - params.minRGB)) + params.minRGB;
-                // fill out R, G, and B to pixelTemps least significant byte
-                rawData[params.width * (y - params.startY) + x - params.startX] =
-                        pixelTemp << 16 | pixelTemp << 8 | pixelTemp;
+    /**
+     * Fill a grid with layered simplex noise. Parameters are assumed to be valid.
+     *
+     * @param seed The seed to use.
+     * @param startX The x coordinate of the first column.
+     * @param startY The y coordinate of the first row.
+     * @param width The number of columns.
+     * @param height The number of rows.
+     * @param scale The scale of the first octave.
+     * @param octaves The number of octaves of noise to use.
+     * @param persistence The amplitude multiplier for each successive octave.
+     * @param output Where to store the noise values, mapped to the range [0, 1].
+     */
+    private static void fillSimplexNoise(
+            final long seed,
+            final int startX,
+            final int startY,
+            final int width,
+            final int height,
+            final double scale,
+            final int octaves,
+            final double persistence,
+            final float[] output) {
+        // NOTE(ches) accumulate in doubles so we get the same values as the single point version
+        double[] total = new double[width * height];
+        double[] xs = new double[width];
+        double totalAmplitude = 0;
+        double amplitude = 1;
+        double freq = scale;
+
+        for (int i = 0; i < octaves; ++i) {
+            for (int column = 0; column < width; ++column) {
+                xs[column] = freq * (startX + column);
             }
+            for (int row = 0; row < height; ++row) {
+                OpenSimplex2S.noise2Row(
+                        seed, xs, freq * (startY + row), amplitude, total, row * width);
+            }
+            totalAmplitude += amplitude;
+            amplitude *= persistence;
+            freq *= 2;
+        }
+
+        for (int i = 0; i < total.length; ++i) {
+            double value = total[i];
+            if (totalAmplitude > 0) {
+                value /= totalAmplitude;
+            }
+            // NOTE(ches) map [-1, 1] to [0, 1].
+            output[i] = (float) ((value + 1d) / 2d);
         }
-        result.setRGB(0, 0, params.width, params.height, rawData, 0, params.width);
-        return result;
     }
 
     /**
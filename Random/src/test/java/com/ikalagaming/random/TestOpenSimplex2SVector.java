@@ -0,0 +1,72 @@
+package com.ikalagaming.random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+/**
+ * Tests for the Vector API noise backend, which are skipped unless the incubator module is
+ * enabled. These use the widest vectors the machine supports, so the build also runs them with
+ * the vector size limited to 128 and 256 bits.
+ *
+ * @author Ches Burks
+ */
+class TestOpenSimplex2SVector {
+    /** Skip the tests if the backend can't be used. */
+    @BeforeEach
+    void checkAvailable() {
+        Assumptions.assumeTrue(
+                OpenSimplex2S.isVectorBackendAvailable(), "Vector API module is not enabled");
+    }
+
+    /**
+     * Check that a row sampled with the vector backend exactly matches the scalar version.
+     *
+     * @param seed The seed.
+     * @param xs The x coordinates.
+     * @param y The y coordinate.
+     */
+    private void assertMatchesScalar(long seed, double[] xs, double y) {
+        final int offset = 3;
+        double[] expected = new double[xs.length + offset];
+        double[] actual = new double[xs.length + offset];
+        OpenSimplex2S.noise2RowScalar(seed, xs, 0, y, 0.5, expected, offset);
+        OpenSimplex2SVector.noise2Row(seed, xs, y, 0.5, actual, offset);
+        Assertions.assertArrayEquals(expected, actual);
+    }
+
+    /** Check random rows, with lengths that are not a multiple of the vector size. */
+    @Test
+    void testRandomRows() {
+        SplittableRandom random = new SplittableRandom(1234);
+        for (int row = 0; row < 200; ++row) {
+            double[] xs = new double[random.nextInt(1, 70)];
+            for (int i = 0; i < xs.length; ++i) {
+                xs[i] = random.nextDouble(-1000, 1000);
+            }
+            assertMatchesScalar(random.nextLong(), xs, random.nextDouble(-1000, 1000));
+        }
+    }
+
+    /** Check a dense grid, which hits every lattice vertex case many times. */
+    @Test
+    void testDenseGrid() {
+        double[] xs = new double[517];
+        for (int i = 0; i < xs.length; ++i) {
+            xs[i] = (i - 250) * 0.013;
+        }
+        for (int y = -100; y < 100; ++y) {
+            assertMatchesScalar(42, xs, y * 0.017);
+        }
+    }
+
+    /** Check that rows shorter than a single vector still work. */
+    @Test
+    void testShortRows() {
+        assertMatchesScalar(7, new double[0], 0);
+        assertMatchesScalar(7, new double[] {0.5}, 0.25);
+    }
+}
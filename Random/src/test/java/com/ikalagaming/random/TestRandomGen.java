@@ -289,4 +289,51 @@ class TestRandomGen {
         Assertions.assertNotNull(selections);
         Assertions.assertTrue(selections.isEmpty());
     }
+
+    /**
+     * Test that generating a grid of simplex noise gives exactly the same values as generating
+     * each point individually, including at negative coordinates.
+     */
+    @Test
+    void testSimplexNoiseGrid() {
+        final long seed = 8675309L;
+        final int startX = -7;
+        final int startY = -20;
+        final int width = 23;
+        final int height = 17;
+        final double scale = 0.013;
+        final int octaves = 5;
+
+        float[] grid = new float[width * height];
+        RandomGen.generateSimplexNoise(seed, startX, startY, width, height, scale, octaves, grid);
+
+        for (int row = 0; row < height; ++row) {
+            for (int column = 0; column < width; ++column) {
+                final float expected =
+                        (float)
+                                RandomGen.generateSimplexNoise(
+                                        seed, startX + column, startY + row, scale, octaves);
+                Assertions.assertEquals(expected, grid[row * width + column]);
+            }
+        }
+    }
+
+    /** Test that the noise grid method handles invalid inputs correctly. */
+    @Test
+    void testSimplexNoiseGridErrors() {
+        float[] output = new float[4];
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> RandomGen.generateSimplexNoise(0, 0, 0, 3, 3, 0.01, 2, output));
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> RandomGen.generateSimplexNoise(0, 0, 0, -1, 2, 0.01, 2, output));
+        Assertions.assertThrows(
+                NullPointerException.class,
+                () -> RandomGen.generateSimplexNoise(0, 0, 0, 2, 2, 0.01, 2, null));
+
+        output[0] = 1;
+        RandomGen.generateSimplexNoise(0, 0, 0, 2, 2, 0, 2, output);
+        Assertions.assertArrayEquals(new float[4], output);
+    }
 }